@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Provides a repository that maintains a reentrant lock for a key of type T, without synchronizing access
+ * to the repository itself.  Lock lookups for different keys never block each other.
+ * </p>
+ * <p>
+ * The actual lock for a key is kept in a {@link ConcurrentHashMap} with a count of the threads holding or waiting for it,
+ * and is removed as soon as the last thread unlocks.  Memory use is proportional to the number of keys that are
+ * currently locked, not to the number of keys that have been used.  The {@link ObjectLock} instances returned
+ * are lightweight handles for the key: different instances for an equal key represent the same lock.
+ * Keys must not be null.
+ * </p>
+ * <p>
+ * Because the underlying lock can be removed while no thread holds it, {@link ObjectLock#newCondition()} is not
+ * supported.  Use a {@link StripedObjectLockRepository} if conditions are required or if the memory used should
+ * be bounded regardless of the number of threads.
+ * </p>
+ *
+ * @param <T> type of the key
+ * @see ReentrantObjectLockRepository
+ * @see StripedObjectLockRepository
+ */
+public class ConcurrentObjectLockRepository<T> implements ObjectLockRepository<T>
+{
+	private final ConcurrentMap<T, Entry> locks = new ConcurrentHashMap<>();
+
+	/**
+	 * Fetches the lock with the specific key.  The lock will only be registered in the repository
+	 * once a thread attempts to acquire it.
+	 *
+	 * @param key Key for the ObjectLock instance
+	 * @return ObjectLock instance that can be locked
+	 */
+	@Override
+	public ObjectLock<T> getLock( T key ) {
+		return new KeyLock( key );
+	}
+
+	/**
+	 * Fetches the lock with the specific key, and blocks until the lock is acquired
+	 * by the current thread as well. The instance returned is {@link java.lang.AutoCloseable}
+	 * and can be used in a try-with-resources construct.
+	 *
+	 * @param key Key for the ObjectLock instance
+	 * @return ObjectLock instance that is held by the current thread.
+	 */
+	@Override
+	public CloseableObjectLock<T> lock( T key ) {
+		CloseableObjectLock<T> lock = new CloseableObjectLock<>( getLock( key ) );
+		lock.lock();
+		return lock;
+	}
+
+	/**
+	 * @return number of keys that are currently locked or waited for
+	 */
+	public int getActiveLockCount() {
+		return locks.size();
+	}
+
+	private Entry retain( T key ) {
+		while ( true ) {
+			Entry entry = locks.get( key );
+
+			if ( entry == null ) {
+				entry = locks.computeIfAbsent( key, k -> new Entry() );
+			}
+
+			if ( entry.retain() ) {
+				return entry;
+			}
+
+			// entry was released by its last user but not yet removed
+			locks.remove( key, entry );
+		}
+	}
+
+	private void release( T key, Entry entry ) {
+		if ( entry.release() ) {
+			locks.remove( key, entry );
+		}
+	}
+
+	/**
+	 * Lock registered for a key, along with the number of threads using it.
+	 * Once the number of users has dropped to zero the entry is marked as removed and can no longer be retained.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Entry extends ReentrantLock
+	{
+		private static final AtomicIntegerFieldUpdater<Entry> USERS =
+				AtomicIntegerFieldUpdater.newUpdater( Entry.class, "users" );
+
+		private volatile int users;
+
+		boolean retain() {
+			while ( true ) {
+				int current = users;
+
+				if ( current < 0 ) {
+					return false;
+				}
+
+				if ( USERS.compareAndSet( this, current, current + 1 ) ) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * @return true if this was the last user and the entry should be removed
+		 */
+		boolean release() {
+			return USERS.decrementAndGet( this ) == 0 && USERS.compareAndSet( this, 0, -1 );
+		}
+	}
+
+	private final class KeyLock implements ObjectLock<T>
+	{
+		private final T key;
+
+		KeyLock( T key ) {
+			this.key = key;
+		}
+
+		@Override
+		public T getKey() {
+			return key;
+		}
+
+		@Override
+		public boolean isLocked() {
+			Entry entry = locks.get( key );
+			return entry != null && entry.isLocked();
+		}
+
+		@Override
+		public boolean isHeldByCurrentThread() {
+			Entry entry = locks.get( key );
+			return entry != null && entry.isHeldByCurrentThread();
+		}
+
+		@Override
+		public void lock() {
+			retain( key ).lock();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			Entry entry = retain( key );
+
+			try {
+				entry.lockInterruptibly();
+			}
+			catch ( InterruptedException ie ) {
+				release( key, entry );
+				throw ie;
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			Entry entry = retain( key );
+
+			if ( entry.tryLock() ) {
+				return true;
+			}
+
+			release( key, entry );
+			return false;
+		}
+
+		@Override
+		public boolean tryLock( long time, TimeUnit unit ) throws InterruptedException {
+			Entry entry = retain( key );
+			boolean acquired = false;
+
+			try {
+				acquired = entry.tryLock( time, unit );
+				return acquired;
+			}
+			finally {
+				if ( !acquired ) {
+					release( key, entry );
+				}
+			}
+		}
+
+		@Override
+		public void unlock() {
+			Entry entry = locks.get( key );
+
+			if ( entry == null || !entry.isHeldByCurrentThread() ) {
+				throw new IllegalMonitorStateException( "Lock " + key + " is not held by the current thread" );
+			}
+
+			entry.unlock();
+			release( key, entry );
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException(
+					"Conditions are not supported by locks of a ConcurrentObjectLockRepository" );
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Provides a repository that maintains a reentrant lock for a key of type T using a fixed number of locks.
+ * Every key is mapped to one of the locks by its hash code: memory use is bounded and lookups never block or allocate
+ * a new lock, but different keys can share the same lock.  Locking one key can then block a thread locking
+ * another key, and acquiring multiple keys in a different order from different threads can deadlock
+ * even if the keys are not equal.
+ * </p>
+ * <p>
+ * The {@link ObjectLock} instances returned are lightweight handles for the key and the lock it is mapped to.
+ * </p>
+ *
+ * @param <T> type of the key
+ * @see ConcurrentObjectLockRepository
+ */
+public class StripedObjectLockRepository<T> implements ObjectLockRepository<T>
+{
+	/**
+	 * Default number of locks.
+	 */
+	public static final int DEFAULT_STRIPES = 1024;
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	public StripedObjectLockRepository() {
+		this( DEFAULT_STRIPES );
+	}
+
+	/**
+	 * @param stripes minimum number of locks, will be rounded up to a power of two
+	 */
+	public StripedObjectLockRepository( int stripes ) {
+		if ( stripes <= 0 || stripes > 1 << 30 ) {
+			throw new IllegalArgumentException( "Number of stripes must be between 1 and 2^30" );
+		}
+
+		int size = 1;
+		while ( size < stripes ) {
+			size <<= 1;
+		}
+
+		this.stripes = new ReentrantLock[size];
+		this.mask = size - 1;
+
+		for ( int i = 0; i < size; i++ ) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Fetches the lock with the specific key.
+	 *
+	 * @param key Key for the ObjectLock instance
+	 * @return ObjectLock instance that can be locked
+	 */
+	@Override
+	public ObjectLock<T> getLock( T key ) {
+		return new StripedLock<>( key, stripeFor( key ) );
+	}
+
+	/**
+	 * Fetches the lock with the specific key, and blocks until the lock is acquired
+	 * by the current thread as well. The instance returned is {@link java.lang.AutoCloseable}
+	 * and can be used in a try-with-resources construct.
+	 *
+	 * @param key Key for the ObjectLock instance
+	 * @return ObjectLock instance that is held by the current thread.
+	 */
+	@Override
+	public CloseableObjectLock<T> lock( T key ) {
+		CloseableObjectLock<T> lock = new CloseableObjectLock<>( getLock( key ) );
+		lock.lock();
+		return lock;
+	}
+
+	private ReentrantLock stripeFor( T key ) {
+		int hash = Objects.hashCode( key );
+		// spread the higher bits, as only the lower bits are used
+		hash ^= ( hash >>> 16 );
+		return stripes[hash & mask];
+	}
+
+	private static final class StripedLock<T> implements ObjectLock<T>
+	{
+		private final T key;
+		private final ReentrantLock lock;
+
+		StripedLock( T key, ReentrantLock lock ) {
+			this.key = key;
+			this.lock = lock;
+		}
+
+		@Override
+		public T getKey() {
+			return key;
+		}
+
+		@Override
+		public boolean isLocked() {
+			return lock.isLocked();
+		}
+
+		@Override
+		public boolean isHeldByCurrentThread() {
+			return lock.isHeldByCurrentThread();
+		}
+
+		@Override
+		public void lock() {
+			lock.lock();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			lock.lockInterruptibly();
+		}
+
+		@Override
+		public boolean tryLock() {
+			return lock.tryLock();
+		}
+
+		@Override
+		public boolean tryLock( long time, TimeUnit unit ) throws InterruptedException {
+			return lock.tryLock( time, unit );
+		}
+
+		@Override
+		public void unlock() {
+			lock.unlock();
+		}
+
+		@Override
+		public Condition newCondition() {
+			return lock.newCondition();
+		}
+	}
+}
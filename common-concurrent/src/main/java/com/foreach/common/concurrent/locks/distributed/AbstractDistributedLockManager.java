@@ -0,0 +1,478 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Base class for {@link DistributedLockManager} implementations.  Implements all waiting for locks,
+ * both blocking and asynchronous, on top of the single attempt to acquire a lock as provided by the backend.
+ * Local threads waiting for a lock are woken up as soon as the backend signals the release of that lock,
+ * see {@link #signalReleased(String)}.
+ * <p/>
+ * A backend needs to implement at least {@link #tryAcquire(String, String, DistributedLock)},
+ * {@link #release(String, String)} and the lock state queries.  Acquiring and releasing several locks
+ * at once is done lock by lock in canonical order, backends can override the methods to do this more efficiently.
+ * Backends supporting stealing of locks should use the default callbacks configured on the manager
+ * if the lock instance has no specific callback.
+ *
+ * @see SqlBasedDistributedLockManager
+ * @see InMemoryDistributedLockManager
+ * @see FileBasedDistributedLockManager
+ */
+public abstract class AbstractDistributedLockManager implements DistributedLockManager
+{
+	private static final Logger LOG = LoggerFactory.getLogger( AbstractDistributedLockManager.class );
+
+	private final DistributedLockConfiguration configuration;
+	private final ScheduledExecutorService asyncAcquireExecutor;
+	private final Set<AsyncAcquisition> pendingAcquisitions = ConcurrentHashMap.newKeySet();
+	private final LocalLockWaitQueue waitQueue = new LocalLockWaitQueue();
+
+	private boolean destroyed = false;
+
+	private volatile DistributedLockMetrics metrics = DistributedLockMetrics.NONE;
+
+	private DistributedLock.LockStolenCallback defaultLockStolenCallback;
+	private DistributedLock.LockUnstableCallback defaultLockUnstableCallback;
+
+	protected AbstractDistributedLockManager( DistributedLockConfiguration configuration ) {
+		this.configuration = configuration;
+
+		asyncAcquireExecutor = Executors.newScheduledThreadPool( configuration.getAsyncAcquirePoolSize() );
+	}
+
+	/**
+	 * @return Callback instance that will be executed if no specific instance configured on a lock.
+	 */
+	public DistributedLock.LockStolenCallback getDefaultLockStolenCallback() {
+		return defaultLockStolenCallback;
+	}
+
+	/**
+	 * Set the default callback instance to be executed if a lock is stolen but no callback instance
+	 * has been configured directly on the {@link DistributedLock}.
+	 *
+	 * @param defaultLockStolenCallback instance
+	 */
+	public void setDefaultLockStolenCallback( DistributedLock.LockStolenCallback defaultLockStolenCallback ) {
+		this.defaultLockStolenCallback = defaultLockStolenCallback;
+	}
+
+	/**
+	 * @return Callback instance that will be executed if no specific instance configured on a lock.
+	 */
+	public DistributedLock.LockUnstableCallback getDefaultLockUnstableCallback() {
+		return defaultLockUnstableCallback;
+	}
+
+	/**
+	 * Set the default callback instance to be executed if a lock goes unstable but no callback instance
+	 * has been configured directly on the {@link DistributedLock}.
+	 *
+	 * @param defaultLockUnstableCallback instance
+	 */
+	public void setDefaultLockUnstableCallback( DistributedLock.LockUnstableCallback defaultLockUnstableCallback ) {
+		this.defaultLockUnstableCallback = defaultLockUnstableCallback;
+	}
+
+	/**
+	 * @return Metrics instance measurements are reported to.
+	 */
+	public DistributedLockMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the instance to report acquisition times, stolen locks and monitor runs to.
+	 * By default measurements are ignored.
+	 *
+	 * @param metrics instance
+	 */
+	public void setMetrics( DistributedLockMetrics metrics ) {
+		Assert.notNull( metrics );
+		metrics.register( this );
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return number of locks currently held by owners through this manager
+	 */
+	public abstract int getActiveLockCount();
+
+	/**
+	 * @return number of asynchronous acquisitions that have not yet completed
+	 */
+	public int getPendingAcquisitionCount() {
+		return pendingAcquisitions.size();
+	}
+
+	/**
+	 * Releases all resources for waiting on locks, any pending asynchronous requests will fail.
+	 * Once closed the manager is no longer usable.  Subclasses should release their held locks
+	 * before calling this method.
+	 */
+	public void close() {
+		try {
+			for ( AsyncAcquisition acquisition : pendingAcquisitions ) {
+				acquisition.abort( new DistributedLockException( "The DistributedLockManager has been destroyed" ) );
+			}
+			asyncAcquireExecutor.shutdownNow();
+		}
+		finally {
+			destroyed = true;
+		}
+	}
+
+	@Override
+	public void acquire( DistributedLock lock ) {
+		try {
+			acquireInterruptibly( lock );
+		}
+		catch ( InterruptedException ie ) {
+			throw new DistributedLockWaitException( ie );
+		}
+	}
+
+	@Override
+	public void acquireInterruptibly( DistributedLock lock ) throws InterruptedException {
+		checkDestroyed();
+		waitForLock( lock, this::tryAcquire, -1 );
+	}
+
+	@Override
+	public boolean tryAcquire( DistributedLock lock, long time, TimeUnit unit ) {
+		checkDestroyed();
+
+		try {
+			return waitForLock( lock, this::tryAcquire, unit.toNanos( time ) );
+		}
+		catch ( InterruptedException ie ) {
+			throw new DistributedLockWaitException( ie );
+		}
+	}
+
+	/**
+	 * Keep attempting to acquire the lock until an attempt succeeds or the timeout has passed.
+	 * Waits on the local queue in between attempts, so that a release through this manager triggers
+	 * the next attempt immediately.
+	 *
+	 * @param lock         to acquire
+	 * @param attempt      performs a single attempt to acquire the lock
+	 * @param timeoutNanos maximum time to wait, negative to wait indefinitely
+	 * @return true if the lock was acquired
+	 */
+	protected boolean waitForLock( DistributedLock lock,
+	                               Predicate<DistributedLock> attempt,
+	                               long timeoutNanos ) throws InterruptedException {
+		long started = System.nanoTime();
+		LocalLockWaitQueue.Ticket ticket = waitQueue.enter( lock.getKey() );
+
+		try {
+			boolean acquired = attempt.test( lock );
+
+			long deadline = System.nanoTime() + timeoutNanos;
+			int attempts = 0;
+
+			while ( !acquired ) {
+				long delay = TimeUnit.MILLISECONDS.toNanos( retryDelay( lock.getKey(), attempts++ ) );
+
+				if ( timeoutNanos >= 0 ) {
+					long timeRemaining = deadline - System.nanoTime();
+
+					if ( timeRemaining <= 0 ) {
+						metrics.lockAcquireTimedOut( System.nanoTime() - started, attempts );
+						return false;
+					}
+
+					delay = Math.min( delay, timeRemaining );
+				}
+
+				waitQueue.await( ticket, delay );
+				acquired = attempt.test( lock );
+			}
+
+			metrics.lockAcquired( System.nanoTime() - started, attempts );
+			return true;
+		}
+		finally {
+			waitQueue.leave( ticket );
+		}
+	}
+
+	@Override
+	public CompletableFuture<DistributedLock> acquireAsync( DistributedLock lock ) {
+		return acquireAsync( lock, this::tryAcquire, this::release );
+	}
+
+	/**
+	 * Asynchronously acquire a lock using a custom backend attempt, for example for a read lock.
+	 * The owner id is taken from the lock on the calling thread, attempts are performed on the async executor.
+	 * If the request has been cancelled by the time the lock is acquired, the release action is used
+	 * to give it up again.
+	 *
+	 * @param lock          instance being acquired
+	 * @param attempt       single attempt to acquire the lock in the backend
+	 * @param releaseAction releases a hold of the owner (first argument) on the lock (second argument)
+	 * @return future that completes once the lock is acquired
+	 */
+	protected CompletableFuture<DistributedLock> acquireAsync( DistributedLock lock,
+	                                                           AcquireAttempt attempt,
+	                                                           BiConsumer<String, String> releaseAction ) {
+		checkDestroyed();
+
+		String ownerId = lock.getOwnerId();
+		verify( lock.getKey(), ownerId );
+
+		AsyncAcquisition acquisition = new AsyncAcquisition( lock, ownerId, attempt, releaseAction );
+		pendingAcquisitions.add( acquisition );
+		acquisition.schedule( 0 );
+
+		return acquisition.future;
+	}
+
+	/**
+	 * Calculate the time to wait before the next attempt to acquire a lock.  If the lock is held through this
+	 * manager, the waiting thread will be woken up on release so the regular retry interval is used.
+	 * If the lock is held by another node, the interval is doubled on every attempt with a random jitter,
+	 * up to the maximum retry interval.
+	 */
+	protected long retryDelay( String lockId, int attempt ) {
+		long retryInterval = configuration.getRetryInterval();
+
+		if ( isHeldLocally( lockId ) ) {
+			return retryInterval;
+		}
+
+		long maxDelay = Math.max( retryInterval, configuration.getMaxRetryInterval() );
+		long delay = attempt < 30 ? Math.min( retryInterval << attempt, maxDelay ) : maxDelay;
+
+		if ( delay <= 1 ) {
+			return delay;
+		}
+
+		// equal jitter: half of the delay is fixed, the other half random
+		return delay / 2 + ThreadLocalRandom.current().nextLong( delay / 2 + 1 );
+	}
+
+	/**
+	 * Backends holding locks on behalf of this manager should return {@code true}, waiting threads will
+	 * then be woken up on release and use the regular retry interval instead of an exponential backoff.
+	 *
+	 * @param lockId key of the lock
+	 * @return true if the lock is currently held through this manager
+	 */
+	protected boolean isHeldLocally( String lockId ) {
+		return false;
+	}
+
+	@Override
+	public boolean tryAcquire( DistributedLock lock ) {
+		checkDestroyed();
+
+		String lockId = lock.getKey();
+		String ownerId = lock.getOwnerId();
+
+		verify( lockId, ownerId );
+
+		try {
+			return tryAcquire( lockId, ownerId, lock );
+		}
+		catch ( DistributedLockException dle ) {
+			throw dle;
+		}
+		catch ( Exception e ) {
+			throw new DistributedLockException( "Exception when trying to acquire lock " + lockId, e );
+		}
+	}
+
+	protected void verify( String lockId, String ownerId ) {
+		Assert.hasText( lockId, "lock key must not be empty" );
+		Assert.hasText( ownerId, "owner id must not be empty" );
+		Assert.isTrue( lockId.length() <= configuration.getMaxKeyLength(),
+		               "lock key cannot be longer than " + configuration.getMaxKeyLength() + " characters" );
+		Assert.isTrue( ownerId.length() <= configuration.getMaxOwnerIdLength(),
+		               "owner id cannot be longer than " + configuration.getMaxOwnerIdLength() + " characters" );
+	}
+
+	/**
+	 * Perform a single attempt to acquire the lock in the backend.
+	 *
+	 * @param lockId  key of the lock
+	 * @param ownerId id of the owner acquiring the lock
+	 * @param lock    instance being acquired
+	 * @return true if the lock is now held by the owner
+	 */
+	protected abstract boolean tryAcquire( String lockId, String ownerId, DistributedLock lock );
+
+	@Override
+	public void acquireAll( Collection<DistributedLock> locks ) {
+		checkDestroyed();
+		DistributedLockManager.super.acquireAll( locks );
+	}
+
+	@Override
+	public void releaseAll( Collection<DistributedLock> locks ) {
+		checkDestroyed();
+
+		for ( DistributedLock lock : locks ) {
+			release( lock.getOwnerId(), lock.getKey() );
+		}
+	}
+
+	@Override
+	public void release( DistributedLock lock ) {
+		checkDestroyed();
+		release( lock.getOwnerId(), lock.getKey() );
+	}
+
+	protected void checkDestroyed() {
+		if ( destroyed ) {
+			throw new IllegalStateException(
+					"The DistributedLockManager has been destroyed - creating locks is impossible." );
+		}
+	}
+
+	/**
+	 * Release a single hold of the owner on the lock in the backend.  Implementations should call
+	 * {@link #signalReleased(String)} once the lock is no longer held.
+	 *
+	 * @param ownerId id of the owner releasing the lock
+	 * @param lockId  key of the lock
+	 */
+	protected abstract void release( String ownerId, String lockId );
+
+	/**
+	 * Wake up all local threads and asynchronous requests waiting for the lock.
+	 *
+	 * @param lockId key of the lock that has been released
+	 */
+	protected void signalReleased( String lockId ) {
+		waitQueue.signal( lockId );
+	}
+
+	/**
+	 * Single attempt to acquire a lock in the backend for a specific owner.
+	 *
+	 * @see #tryAcquire(String, String, DistributedLock)
+	 */
+	@FunctionalInterface
+	protected interface AcquireAttempt
+	{
+		boolean tryAcquire( String lockId, String ownerId, DistributedLock lock );
+	}
+
+	/**
+	 * Pending asynchronous request for a lock.  Every attempt is scheduled on the async executor, if the lock
+	 * is released locally in the meantime the scheduled attempt is replaced by an immediate one.
+	 */
+	private final class AsyncAcquisition implements Runnable
+	{
+		private final DistributedLock lock;
+		private final String ownerId;
+		private final AcquireAttempt attempt;
+		private final BiConsumer<String, String> releaseAction;
+		private final CompletableFuture<DistributedLock> future = new CompletableFuture<>();
+		private final LocalLockWaitQueue.Ticket ticket;
+		private final AtomicReference<ScheduledFuture<?>> nextAttempt = new AtomicReference<>();
+		private final long started = System.nanoTime();
+
+		private int attempts;
+
+		AsyncAcquisition( DistributedLock lock,
+		                  String ownerId,
+		                  AcquireAttempt attempt,
+		                  BiConsumer<String, String> releaseAction ) {
+			this.lock = lock;
+			this.ownerId = ownerId;
+			this.attempt = attempt;
+			this.releaseAction = releaseAction;
+
+			ticket = waitQueue.enter( lock.getKey() );
+		}
+
+		@Override
+		public void run() {
+			nextAttempt.set( null );
+
+			if ( future.isDone() ) {
+				// cancelled or aborted
+				finish();
+				return;
+			}
+
+			String lockId = lock.getKey();
+
+			try {
+				if ( attempt.tryAcquire( lockId, ownerId, lock ) ) {
+					finish();
+					metrics.lockAcquired( System.nanoTime() - started, attempts );
+
+					if ( !future.complete( lock ) ) {
+						LOG.trace( "Lock {} acquired by {} but request was cancelled - releasing", lockId, ownerId );
+						releaseAction.accept( ownerId, lockId );
+					}
+				}
+				else {
+					schedule( retryDelay( lockId, attempts++ ) );
+					waitQueue.onRelease( ticket, this::retryNow );
+				}
+			}
+			catch ( DistributedLockException dle ) {
+				abort( dle );
+			}
+			catch ( Exception e ) {
+				abort( new DistributedLockException( "Exception when trying to acquire lock " + lockId, e ) );
+			}
+		}
+
+		void schedule( long delay ) {
+			try {
+				nextAttempt.set( asyncAcquireExecutor.schedule( this, delay, TimeUnit.MILLISECONDS ) );
+			}
+			catch ( RejectedExecutionException ree ) {
+				abort( new DistributedLockException( "The DistributedLockManager has been destroyed", ree ) );
+			}
+		}
+
+		private void retryNow() {
+			ScheduledFuture<?> scheduled = nextAttempt.getAndSet( null );
+
+			if ( scheduled != null && scheduled.cancel( false ) ) {
+				schedule( 0 );
+			}
+		}
+
+		void abort( DistributedLockException dle ) {
+			finish();
+			future.completeExceptionally( dle );
+		}
+
+		private void finish() {
+			if ( pendingAcquisitions.remove( this ) ) {
+				waitQueue.leave( ticket );
+			}
+		}
+	}
+}
@@ -17,6 +17,7 @@ package com.foreach.common.concurrent.locks.distributed;
 
 import com.foreach.common.concurrent.locks.ObjectLock;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,6 +45,28 @@ public interface DistributedLock extends ObjectLock<String>
 	 */
 	void lock();
 
+	/**
+	 * Will try to obtain the lock without blocking the calling thread.
+	 * The future returned completes with this lock instance once it has been obtained.
+	 * <p/>
+	 * The default implementation does not support this and blocks the calling thread using {@link #lock()},
+	 * returning an already completed future.
+	 *
+	 * @return future that completes when the lock is obtained
+	 * @see DistributedLockManager#acquireAsync(DistributedLock)
+	 */
+	default CompletableFuture<DistributedLock> lockAsync() {
+		CompletableFuture<DistributedLock> future = new CompletableFuture<>();
+		try {
+			lock();
+			future.complete( this );
+		}
+		catch ( RuntimeException e ) {
+			future.completeExceptionally( e );
+		}
+		return future;
+	}
+
 	/**
 	 * Will try to obtain the lock a single time and return immediately.
 	 *
@@ -91,6 +114,23 @@ public interface DistributedLock extends ObjectLock<String>
 	 */
 	void unlock();
 
+	/**
+	 * Returns the fencing token of the current hold on this lock.  Every time ownership of the lock changes
+	 * (acquired or stolen) a new token is generated that is strictly larger than all previous tokens for the same key.
+	 * A reentrant acquire by the same owner keeps the token.
+	 * <p/>
+	 * The token can be passed along with writes to an external resource, so that resource can reject writes
+	 * with a token lower than the highest one it has seen: writes from an owner whose lock has been
+	 * stolen in the meantime.
+	 *
+	 * @return fencing token for the owner holding the lock
+	 * @throws IllegalStateException if the lock is not held by the owner or fencing tokens are not enabled
+	 * @see DistributedLockManager#getFencingToken(String, String)
+	 */
+	default long getFencingToken() {
+		throw new IllegalStateException( "Fencing tokens are not supported by " + getClass().getName() );
+	}
+
 	/**
 	 * Set the callback to be executed in case this lock gets stolen.
 	 *
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * {@link java.lang.AutoCloseable} handle for a number of {@link DistributedLock}s that have been acquired together,
+ * the close method releases all locks at once.
+ *
+ * @see DistributedLockRepository#lockAll(java.util.Collection)
+ */
+public class DistributedLockGroup implements AutoCloseable
+{
+	private final List<DistributedLock> locks;
+	private final Consumer<List<DistributedLock>> releaseAction;
+
+	private final AtomicBoolean released = new AtomicBoolean( false );
+
+	DistributedLockGroup( DistributedLockManager lockManager, List<DistributedLock> locks ) {
+		this( locks, lockManager::releaseAll );
+	}
+
+	/**
+	 * Creates a group that releases its locks by unlocking them one by one, in reverse order.
+	 */
+	DistributedLockGroup( List<DistributedLock> locks ) {
+		this( locks, DistributedLockGroup::unlockAll );
+	}
+
+	private DistributedLockGroup( List<DistributedLock> locks, Consumer<List<DistributedLock>> releaseAction ) {
+		this.locks = Collections.unmodifiableList( new ArrayList<>( locks ) );
+		this.releaseAction = releaseAction;
+	}
+
+	/**
+	 * @return The keys of the locks in this group, in the order they were acquired.
+	 */
+	public List<String> getKeys() {
+		List<String> keys = new ArrayList<>( locks.size() );
+		for ( DistributedLock lock : locks ) {
+			keys.add( lock.getKey() );
+		}
+		return keys;
+	}
+
+	/**
+	 * @return The individual locks in this group, in the order they were acquired.
+	 */
+	public List<DistributedLock> getLocks() {
+		return locks;
+	}
+
+	/**
+	 * Queries if all locks of the group are still held by the current owner.
+	 *
+	 * @return true if all locks are held
+	 * @see DistributedLock#isHeldByCurrentThread()
+	 */
+	public boolean isHeldByCurrentThread() {
+		for ( DistributedLock lock : locks ) {
+			if ( !lock.isHeldByCurrentThread() ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Releases all locks of the group together.  Subsequent calls do nothing.
+	 */
+	public void unlock() {
+		if ( released.compareAndSet( false, true ) ) {
+			releaseAction.accept( locks );
+		}
+	}
+
+	/**
+	 * Unlocks on close.
+	 */
+	@Override
+	public void close() {
+		unlock();
+	}
+
+	static void unlockAll( List<DistributedLock> locks ) {
+		for ( int i = locks.size() - 1; i >= 0; i-- ) {
+			locks.get( i ).unlock();
+		}
+	}
+}
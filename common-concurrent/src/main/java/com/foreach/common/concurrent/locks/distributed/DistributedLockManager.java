@@ -15,6 +15,11 @@
  */
 package com.foreach.common.concurrent.locks.distributed;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,6 +48,35 @@ public interface DistributedLockManager
 	 */
 	void acquireInterruptibly( DistributedLock lock ) throws InterruptedException;
 
+	/**
+	 * Will try and acquire the lock without blocking the calling thread.  The returned future completes
+	 * with the lock instance once it has been acquired.  While waiting no thread is tied to the request,
+	 * making this suitable for virtual threads or reactive pipelines that can have many pending lock requests.
+	 * <p/>
+	 * The owner id of the lock is determined when calling this method.  Unless the lock has an owner id
+	 * that is not derived from the current thread (see {@link DistributedLockRepository#getInstanceLock(String)}),
+	 * it must be released from the same thread that requested it.
+	 * <p/>
+	 * Cancelling the future will stop any further attempts to acquire the lock.
+	 * <p/>
+	 * The default implementation does not support this and blocks the calling thread using
+	 * {@link #acquire(DistributedLock)}, returning an already completed future.
+	 *
+	 * @param lock Lock instance to acquire.
+	 * @return future that completes once the lock is acquired
+	 */
+	default CompletableFuture<DistributedLock> acquireAsync( DistributedLock lock ) {
+		CompletableFuture<DistributedLock> future = new CompletableFuture<>();
+		try {
+			acquire( lock );
+			future.complete( lock );
+		}
+		catch ( RuntimeException e ) {
+			future.completeExceptionally( e );
+		}
+		return future;
+	}
+
 	/**
 	 * Will release the lock.
 	 *
@@ -50,6 +84,57 @@ public interface DistributedLockManager
 	 */
 	void release( DistributedLock lock );
 
+	/**
+	 * Will acquire all locks and block the thread until this succeeds.  Locks are acquired in a canonical
+	 * order (sorted by key) to avoid deadlocks between owners requesting overlapping sets of locks,
+	 * implementations should use as few round trips to the backend as possible.
+	 * A {@link com.foreach.common.concurrent.locks.distributed.DistributedLockWaitException} will be thrown
+	 * in case the thread is interrupted while waiting, any locks acquired up to that point will be released.
+	 *
+	 * <p/>
+	 * The default implementation acquires the locks one by one.
+	 *
+	 * @param locks Lock instances to acquire.
+	 */
+	default void acquireAll( Collection<DistributedLock> locks ) {
+		List<DistributedLock> sorted = new ArrayList<>( locks );
+		sorted.sort( Comparator.comparing( DistributedLock::getKey ) );
+
+		List<DistributedLock> acquired = new ArrayList<>( sorted.size() );
+		boolean success = false;
+
+		try {
+			for ( DistributedLock lock : sorted ) {
+				acquireInterruptibly( lock );
+				acquired.add( lock );
+			}
+
+			success = true;
+		}
+		catch ( InterruptedException ie ) {
+			throw new DistributedLockWaitException( ie );
+		}
+		finally {
+			if ( !success && !acquired.isEmpty() ) {
+				releaseAll( acquired );
+			}
+		}
+	}
+
+	/**
+	 * Will release all locks together.
+	 *
+	 * <p/>
+	 * The default implementation releases the locks one by one.
+	 *
+	 * @param locks Lock instances to release.
+	 */
+	default void releaseAll( Collection<DistributedLock> locks ) {
+		for ( DistributedLock lock : locks ) {
+			release( lock );
+		}
+	}
+
 	/**
 	 * Will try and acquire the lock a single time and will return immediately after trying.
 	 * The return value determines if the acquiring succeeded or failed.
@@ -97,4 +182,18 @@ public interface DistributedLockManager
 	 * @return {@code true} if the lock was held by the owner
 	 */
 	boolean verifyLockedByOwner( String ownerId, String lockKey );
+
+	/**
+	 * Returns the fencing token that was generated when the owner acquired the lock.
+	 * Does not verify that the lock is still held in the backend.
+	 *
+	 * @param ownerId Id of the owner holding the lock.
+	 * @param lockKey Id of the lock.
+	 * @return fencing token of the current hold
+	 * @throws IllegalStateException if the lock is not held by the owner or fencing tokens are not supported
+	 * @see DistributedLock#getFencingToken()
+	 */
+	default long getFencingToken( String ownerId, String lockKey ) {
+		throw new IllegalStateException( "Fencing tokens are not supported by " + getClass().getName() );
+	}
 }
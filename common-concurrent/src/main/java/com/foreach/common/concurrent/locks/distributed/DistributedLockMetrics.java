@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+/**
+ * <p>
+ * Receives measurements from an {@link AbstractDistributedLockManager}.  All methods take primitive values only
+ * and are called on the threads acquiring the locks or the monitor threads: implementations should not block
+ * and should not allocate when recording.
+ * </p>
+ * <p>
+ * All methods have an empty default implementation, see {@link #NONE}.  Use {@link MicrometerDistributedLockMetrics}
+ * to publish the measurements to a Micrometer registry.
+ * </p>
+ *
+ * @see AbstractDistributedLockManager#setMetrics(DistributedLockMetrics)
+ */
+public interface DistributedLockMetrics
+{
+	/**
+	 * Metrics instance that ignores all measurements.
+	 */
+	DistributedLockMetrics NONE = new DistributedLockMetrics()
+	{
+	};
+
+	/**
+	 * Called once when the metrics are attached to a lock manager, can be used to register gauges.
+	 *
+	 * @param lockManager the metrics are attached to
+	 */
+	default void register( AbstractDistributedLockManager lockManager ) {
+	}
+
+	/**
+	 * A blocking or asynchronous acquisition has succeeded.
+	 *
+	 * @param waitNanos time it took to acquire the lock
+	 * @param retries   number of failed attempts before the lock was acquired
+	 */
+	default void lockAcquired( long waitNanos, int retries ) {
+	}
+
+	/**
+	 * A timed acquisition has given up without acquiring the lock.
+	 *
+	 * @param waitNanos time spent waiting
+	 * @param retries   number of failed attempts
+	 */
+	default void lockAcquireTimedOut( long waitNanos, int retries ) {
+	}
+
+	/**
+	 * A lock held through the manager has been taken by another owner.
+	 */
+	default void lockStolen() {
+	}
+
+	/**
+	 * A lock held through the manager could not be verified for too long.
+	 */
+	default void lockUnstable() {
+	}
+
+	/**
+	 * A run of the monitor verifying the held locks has finished.
+	 *
+	 * @param durationNanos duration of the run
+	 */
+	default void monitorCycle( long durationNanos ) {
+	}
+
+	/**
+	 * A run of the cleanup of unused lock records has finished.
+	 *
+	 * @param durationNanos  duration of the run
+	 * @param recordsDeleted number of records that have been removed
+	 */
+	default void cleanup( long durationNanos, int recordsDeleted ) {
+	}
+}
@@ -16,6 +16,13 @@
 package com.foreach.common.concurrent.locks.distributed;
 
 import com.foreach.common.concurrent.locks.ObjectLockRepository;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
 
 /**
  * Central repository for creating distributed locks.
@@ -55,6 +62,74 @@ public interface DistributedLockRepository extends ObjectLockRepository<String>
 	 */
 	DistributedLock getLock( String ownerName, String key );
 
+	/**
+	 * Creates a new DistributedLock where the lock instance itself is the owner, instead of the thread using it.
+	 * Every instance returned has a unique owner id, but the same instance can be locked and unlocked from
+	 * different threads.  This is the lock to use with virtual threads or reactive pipelines, usually combined
+	 * with {@link DistributedLock#lockAsync()}.
+	 * <p/>
+	 * The generated owner id is based on the default owner name and a UUID.
+	 * <p/>
+	 * The default implementation creates a shared lock using a UUID as owner id.
+	 *
+	 * @param key Unique id of the lock.
+	 * @return DistributedLock instance.
+	 * @see SharedDistributedLock
+	 * @see #createSharedLock(String, String)
+	 */
+	default DistributedLock getInstanceLock( String key ) {
+		return createSharedLock( UUID.randomUUID().toString(), key );
+	}
+
+	/**
+	 * Acquires the locks for all keys at once, blocking until all of them are held by the current thread.
+	 * The locks are acquired in a canonical order, avoiding deadlocks with other owners locking an overlapping
+	 * set of keys.  The instance returned is {@link AutoCloseable} and releases all locks together, it can be used
+	 * in a try-with-resources construct.
+	 * <p/>
+	 * The default implementation sorts the keys and locks them one by one using {@link #getLock(String)}.
+	 * If acquiring one of the locks fails, the locks already taken are released again.
+	 *
+	 * @param keys Unique ids of the locks.
+	 * @return DistributedLockGroup holding all locks.
+	 * @see DistributedLockManager#acquireAll(Collection)
+	 */
+	default DistributedLockGroup lockAll( Collection<String> keys ) {
+		Assert.notEmpty( keys, "keys must not be empty" );
+
+		List<DistributedLock> acquired = new ArrayList<>( keys.size() );
+		boolean success = false;
+
+		try {
+			for ( String key : new TreeSet<>( keys ) ) {
+				DistributedLock lock = getLock( key );
+				lock.lock();
+				acquired.add( lock );
+			}
+
+			success = true;
+		}
+		finally {
+			if ( !success ) {
+				DistributedLockGroup.unlockAll( acquired );
+			}
+		}
+
+		return new DistributedLockGroup( acquired );
+	}
+
+	/**
+	 * Creates a new read/write lock pair for the key.  The read lock can be held by many owners at the same time,
+	 * the write lock is exclusive.  Like {@link #getLock(String)} both locks are thread based.
+	 * <p/>
+	 * Only supported if the underlying {@link DistributedLockManager} is a {@link DistributedReadLockManager}.
+	 *
+	 * @param key Unique id of the lock.
+	 * @return DistributedReadWriteLock instance.
+	 * @throws UnsupportedOperationException if read locks are not supported by the lock manager
+	 */
+	DistributedReadWriteLock getReadWriteLock( String key );
+
 	/**
 	 * Creates a new shared distributed lock with the specified owner id.  This lock instance
 	 * will require manual management across separate threads within the same vm.
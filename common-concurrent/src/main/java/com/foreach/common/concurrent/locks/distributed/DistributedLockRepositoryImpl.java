@@ -19,6 +19,10 @@ import com.foreach.common.concurrent.locks.CloseableObjectLock;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.UUID;
 
 /**
@@ -65,6 +69,20 @@ public class DistributedLockRepositoryImpl implements DistributedLockRepository
 		return new ThreadBasedDistributedLock( lockManager, ownerName, key );
 	}
 
+	@Override
+	public DistributedLock getInstanceLock( String key ) {
+		Assert.isTrue( StringUtils.hasText( key ), "key must not be empty" );
+
+		return new SharedDistributedLock( lockManager, defaultOwnerName + "[" + UUID.randomUUID() + "]", key );
+	}
+
+	@Override
+	public DistributedReadWriteLock getReadWriteLock( String key ) {
+		Assert.isTrue( StringUtils.hasText( key ), "key must not be empty" );
+
+		return new DistributedReadWriteLock( lockManager, defaultOwnerName, key );
+	}
+
 	@Override
 	public DistributedLock createSharedLock( String ownerId, String key ) {
 		Assert.isTrue( StringUtils.hasText( key ), "key must not be empty" );
@@ -80,4 +98,19 @@ public class DistributedLockRepositoryImpl implements DistributedLockRepository
 
 		return lock;
 	}
+
+	@Override
+	public DistributedLockGroup lockAll( Collection<String> keys ) {
+		Assert.notEmpty( keys, "keys must not be empty" );
+
+		List<DistributedLock> locks = new ArrayList<>( keys.size() );
+
+		for ( String key : new TreeSet<>( keys ) ) {
+			locks.add( getLock( key ) );
+		}
+
+		lockManager.acquireAll( locks );
+
+		return new DistributedLockGroup( lockManager, locks );
+	}
 }
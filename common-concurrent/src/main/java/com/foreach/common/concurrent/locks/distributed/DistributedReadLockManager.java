@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extension for a {@link DistributedLockManager} that supports shared read locks next to the exclusive locks.
+ * Any number of owners can hold a read lock on the same key at the same time, but a read lock can only
+ * be acquired if no other owner holds the exclusive lock on that key.  Likewise the exclusive lock can only
+ * be acquired if no other owner holds a read lock.
+ * <p/>
+ * An owner holding the exclusive lock can also acquire the read lock (downgrading) and an owner that is the only
+ * reader can acquire the exclusive lock (upgrading).
+ *
+ * @see DistributedReadWriteLock
+ */
+public interface DistributedReadLockManager
+{
+	/**
+	 * Will try and acquire the read lock and will block the thread until this succeeds.
+	 * A {@link com.foreach.common.concurrent.locks.distributed.DistributedLockWaitException} will be thrown
+	 * in case an exception occurs (like the thread being interrupted while waiting).
+	 *
+	 * @param lock Lock instance to acquire.
+	 */
+	void acquireRead( DistributedLock lock );
+
+	/**
+	 * Will try and acquire the read lock and will block the thread until this succeeds.
+	 *
+	 * @param lock Lock instance to acquire.
+	 * @throws InterruptedException thrown if Thread was interrupted during wait
+	 */
+	void acquireReadInterruptibly( DistributedLock lock ) throws InterruptedException;
+
+	/**
+	 * Will try and acquire the read lock without blocking the calling thread.  The returned future completes
+	 * with the lock instance once the read lock has been acquired.  As with
+	 * {@link DistributedLockManager#acquireAsync(DistributedLock)} the owner id is determined when calling
+	 * this method and cancelling the future stops any further attempts.
+	 * <p/>
+	 * The default implementation blocks the calling thread using {@link #acquireRead(DistributedLock)},
+	 * returning an already completed future.
+	 *
+	 * @param lock Lock instance to acquire.
+	 * @return future that completes once the read lock is acquired
+	 */
+	default CompletableFuture<DistributedLock> acquireReadAsync( DistributedLock lock ) {
+		CompletableFuture<DistributedLock> future = new CompletableFuture<>();
+		try {
+			acquireRead( lock );
+			future.complete( lock );
+		}
+		catch ( RuntimeException e ) {
+			future.completeExceptionally( e );
+		}
+		return future;
+	}
+
+	/**
+	 * Will try and acquire the read lock a single time and will return immediately after trying.
+	 *
+	 * @param lock Lock instance to acquire.
+	 * @return {@code true} if the read lock was acquired and {@code false} otherwise
+	 */
+	boolean tryAcquireRead( DistributedLock lock );
+
+	/**
+	 * Will try and acquire the read lock and will keep trying until the specified time has passed.
+	 *
+	 * @param lock Lock instance to acquire.
+	 * @param time the maximum time to wait for the lock
+	 * @param unit the time unit of the {@code time} argument
+	 * @return {@code true} if the read lock was acquired and {@code false} if the waiting time elapsed
+	 */
+	boolean tryAcquireRead( DistributedLock lock, long time, TimeUnit unit );
+
+	/**
+	 * Will release a hold on the read lock.
+	 *
+	 * @param lock Lock instance to release.
+	 */
+	void releaseRead( DistributedLock lock );
+
+	/**
+	 * Checks if any owner holds the read lock.
+	 *
+	 * @param lockKey Id of the lock to check.
+	 * @return {@code true} if the read lock is held by anyone.
+	 */
+	boolean isReadLocked( String lockKey );
+
+	/**
+	 * Checks if a specific owner holds the read lock.
+	 *
+	 * @param ownerId Id of the owner.
+	 * @param lockKey Id of the lock to check.
+	 * @return {@code true} if the read lock is held by that owner
+	 */
+	boolean isReadLockedByOwner( String ownerId, String lockKey );
+}
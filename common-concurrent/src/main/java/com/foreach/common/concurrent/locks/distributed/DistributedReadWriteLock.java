@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Distributed {@link ReadWriteLock}: a pair of a shared read lock and an exclusive write lock for the same key.
+ * The write lock is a regular {@link DistributedLock} that additionally waits for all other readers to be gone,
+ * the read lock can be held by many owners (possibly on different nodes) at the same time.
+ * <p/>
+ * Both locks are thread based, the owner id is determined in the same way as for a
+ * {@link ThreadBasedDistributedLock}.  This implementation has no concept of fairness: a constant stream of
+ * overlapping readers can starve a writer.
+ *
+ * @see DistributedReadLockManager
+ * @see DistributedLockRepository#getReadWriteLock(String)
+ */
+public class DistributedReadWriteLock implements ReadWriteLock
+{
+	private final String key;
+	private final DistributedLock readLock, writeLock;
+
+	DistributedReadWriteLock( DistributedLockManager lockManager, String ownerName, String key ) {
+		if ( !( lockManager instanceof DistributedReadLockManager ) ) {
+			throw new UnsupportedOperationException(
+					"Read/write locks are not supported by " + lockManager.getClass().getName() );
+		}
+
+		this.key = key;
+		this.readLock = new ReadLock( lockManager, ownerName, key );
+		this.writeLock = new ThreadBasedDistributedLock( lockManager, ownerName, key );
+	}
+
+	/**
+	 * @return Key of the lock.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	@Override
+	public DistributedLock readLock() {
+		return readLock;
+	}
+
+	@Override
+	public DistributedLock writeLock() {
+		return writeLock;
+	}
+
+	/**
+	 * Shared lock: the lock methods acquire a read hold instead of the exclusive lock.
+	 * Fencing tokens are not supported, {@link #getFencingToken()} always throws an {@link IllegalStateException}.
+	 */
+	static class ReadLock extends ThreadBasedDistributedLock
+	{
+		private final DistributedReadLockManager readLockManager;
+
+		ReadLock( DistributedLockManager lockManager, String owner, String key ) {
+			super( lockManager, owner, key );
+			this.readLockManager = (DistributedReadLockManager) lockManager;
+		}
+
+		@Override
+		public void lock() {
+			readLockManager.acquireRead( this );
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			readLockManager.acquireReadInterruptibly( this );
+		}
+
+		@Override
+		public CompletableFuture<DistributedLock> lockAsync() {
+			return readLockManager.acquireReadAsync( this );
+		}
+
+		@Override
+		public boolean tryLock() {
+			return readLockManager.tryAcquireRead( this );
+		}
+
+		@Override
+		public boolean tryLock( long time, TimeUnit unit ) {
+			return readLockManager.tryAcquireRead( this, time, unit );
+		}
+
+		@Override
+		public boolean isLocked() {
+			return readLockManager.isReadLocked( getKey() );
+		}
+
+		@Override
+		public boolean isHeldByCurrentThread() {
+			return readLockManager.isReadLockedByOwner( getOwnerId(), getKey() );
+		}
+
+		@Override
+		public void unlock() {
+			readLockManager.releaseRead( this );
+		}
+
+		@Override
+		public long getFencingToken() {
+			throw new IllegalStateException( "Fencing tokens are only available for the write lock." );
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.springframework.util.Assert;
+
+import java.io.File;
+
+/**
+ * Configuration class for a {@link com.foreach.common.concurrent.locks.distributed.FileBasedDistributedLockManager}.
+ * All processes sharing the same lock file must use the same number of slots and the same maximum
+ * key and owner id length, as these determine the layout of the file.
+ */
+public class FileBasedDistributedLockConfiguration extends DistributedLockConfiguration
+{
+	/**
+	 * Number of lock records the lock file can hold.
+	 */
+	public static final int DEFAULT_SLOTS = 4096;
+
+	private final File file;
+
+	private int slots = DEFAULT_SLOTS;
+
+	public FileBasedDistributedLockConfiguration( File file ) {
+		Assert.notNull( file );
+
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	/**
+	 * Set the number of lock records the file can hold.  Every distinct lock key that has been used
+	 * occupies a record until it is cleaned up, acquiring a new lock fails if all records are occupied.
+	 *
+	 * @param slots number of records
+	 */
+	public void setSlots( int slots ) {
+		Assert.isTrue( slots > 0, "slots must be positive" );
+		this.slots = slots;
+	}
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Implementation of a {@link DistributedLockManager} that uses a single memory mapped file as lock table,
+ * allowing several processes on the same machine to share locks without a database.  Configuration is done
+ * through a {@link FileBasedDistributedLockConfiguration}.
+ * </p>
+ * <p>
+ * The file holds a fixed number of lock records, located by hashing the lock key.  Every read or modification
+ * of the table is done while holding an exclusive lock on the file, and additionally a lock per file within the JVM,
+ * as file locks are held on behalf of the entire JVM.  Operations on the table are very short, but all of them are
+ * serialized: this backend is meant for a limited number of local processes, not for high contention.
+ * </p>
+ * <p>
+ * Stealing, the stolen and unstable callbacks and fencing tokens behave the same as for the
+ * {@link SqlBasedDistributedLockManager}: held locks are kept alive by a monitor thread and can be stolen
+ * by another owner once they have been idle for longer than the max idle time, which can only happen
+ * if the holding process no longer updates the file.  Unused lock records are cleaned up after the cleanup age.
+ * </p>
+ *
+ * @see InMemoryDistributedLockManager
+ * @see SqlBasedDistributedLockManager
+ */
+public class FileBasedDistributedLockManager extends AbstractDistributedLockManager
+{
+	private static final Logger LOG = LoggerFactory.getLogger( FileBasedDistributedLockManager.class );
+
+	private static final int MAGIC = 0x464c434b;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_SLOTS = 8;
+	private static final int HEADER_RECORD_SIZE = 12;
+	private static final int HEADER_FENCING_TOKEN = 16;
+
+	private static final int SLOT_EMPTY = 0;
+	private static final int SLOT_USED = 1;
+	private static final int SLOT_DELETED = 2;
+
+	private static final int RECORD_STATE = 0;
+	private static final int RECORD_CREATED = 4;
+	private static final int RECORD_UPDATED = 12;
+	private static final int RECORD_HOLDS = 20;
+	private static final int RECORD_FENCING_TOKEN = 24;
+	private static final int RECORD_KEY = 32;
+
+	/**
+	 * Fencing tokens are based on the acquisition time, like for the {@link SqlBasedDistributedLockManager}.
+	 */
+	private static final long FENCING_TOKENS_PER_MS = 1000;
+
+	private static final ConcurrentMap<String, ReentrantLock> JVM_FILE_LOCKS = new ConcurrentHashMap<>();
+
+	private final FileBasedDistributedLockConfiguration configuration;
+	private final int slots, recordSize, ownerOffset;
+
+	private final RandomAccessFile lockFile;
+	private final FileChannel channel;
+	private final MappedByteBuffer table;
+	private final ReentrantLock jvmFileLock;
+
+	private final ConcurrentMap<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService monitorThread = Executors.newSingleThreadScheduledExecutor();
+
+	// only accessed by the monitor thread
+	private long lastCleanup;
+
+	public FileBasedDistributedLockManager( FileBasedDistributedLockConfiguration configuration ) {
+		super( configuration );
+		this.configuration = configuration;
+
+		slots = configuration.getSlots();
+		ownerOffset = RECORD_KEY + 2 + (int) configuration.getMaxKeyLength() * 2;
+		recordSize = ownerOffset + 2 + (int) configuration.getMaxOwnerIdLength() * 2;
+
+		try {
+			File file = configuration.getFile().getCanonicalFile();
+
+			jvmFileLock = JVM_FILE_LOCKS.computeIfAbsent( file.getPath(), path -> new ReentrantLock() );
+			lockFile = new RandomAccessFile( file, "rw" );
+			channel = lockFile.getChannel();
+			table = channel.map( FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * recordSize );
+		}
+		catch ( IOException ioe ) {
+			super.close();
+			throw new DistributedLockException( "Unable to open lock file " + configuration.getFile(), ioe );
+		}
+
+		try {
+			withFileLock( this::initializeTable );
+		}
+		catch ( DistributedLockException dle ) {
+			try {
+				lockFile.close();
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Failed to close lock file {}", configuration.getFile(), ioe );
+			}
+			super.close();
+			throw dle;
+		}
+
+		//NOTE: Scheduled tasks should NEVER throw exceptions!  The pool would live on, but the task would not...
+		monitorThread.scheduleWithFixedDelay( this::monitor, 0, configuration.getVerifyInterval(),
+		                                      TimeUnit.MILLISECONDS );
+	}
+
+	private Void initializeTable() {
+		if ( table.getInt( HEADER_MAGIC ) == 0 ) {
+			LOG.info( "Initializing lock file {} with {} slots", configuration.getFile(), slots );
+			table.putInt( HEADER_VERSION, VERSION );
+			table.putInt( HEADER_SLOTS, slots );
+			table.putInt( HEADER_RECORD_SIZE, recordSize );
+			table.putLong( HEADER_FENCING_TOKEN, 0 );
+			table.putInt( HEADER_MAGIC, MAGIC );
+		}
+		else if ( table.getInt( HEADER_MAGIC ) != MAGIC
+				|| table.getInt( HEADER_VERSION ) != VERSION
+				|| table.getInt( HEADER_SLOTS ) != slots
+				|| table.getInt( HEADER_RECORD_SIZE ) != recordSize ) {
+			throw new DistributedLockException(
+					"Lock file " + configuration.getFile() + " is not a lock file or has a different configuration" );
+		}
+
+		return null;
+	}
+
+	@Override
+	public void close() {
+		LOG.trace( "Destruction of the file based lock manager requested" );
+
+		try {
+			LOG.info( "Destroying file based lock manager - releasing {} held locks", heldLocks.size() );
+
+			for ( HeldLock heldLock : new ArrayList<>( heldLocks.values() ) ) {
+				release( heldLock.ownerId, heldLock.lockId );
+			}
+
+			monitorThread.shutdown();
+
+			try {
+				monitorThread.awaitTermination( configuration.getVerifyInterval() * 2, TimeUnit.MILLISECONDS );
+			}
+			catch ( InterruptedException ie ) {
+				LOG.warn( "Failed to wait for clean shutdown of lock monitor" );
+			}
+
+			try {
+				lockFile.close();
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Failed to close lock file {}", configuration.getFile(), ioe );
+			}
+		}
+		finally {
+			super.close();
+		}
+	}
+
+	@Override
+	protected boolean tryAcquire( String lockId, String ownerId, DistributedLock lock ) {
+		LOG.trace( "Owner {} is trying to acquire lock {}", ownerId, lockId );
+
+		boolean acquired = withFileLock( () -> {
+			long timestamp = System.currentTimeMillis();
+			int record = recordOffset( findSlot( lockId, true ) );
+			String currentOwner = readString( record + ownerOffset );
+
+			if ( currentOwner != null && !currentOwner.equals( ownerId ) ) {
+				long lastUpdateAge = timestamp - table.getLong( record + RECORD_UPDATED );
+
+				if ( lastUpdateAge <= configuration.getMaxIdleBeforeSteal() ) {
+					LOG.trace( "Lock {} is held by {}", lockId, currentOwner );
+					return false;
+				}
+
+				LOG.trace( "Lock {} was last updated {} ms ago - stealing the lock", lockId, lastUpdateAge );
+				currentOwner = null;
+			}
+
+			if ( currentOwner == null ) {
+				writeString( record + ownerOffset, ownerId );
+				table.putLong( record + RECORD_CREATED, timestamp );
+				table.putInt( record + RECORD_HOLDS, 1 );
+				table.putLong( record + RECORD_FENCING_TOKEN, nextFencingToken( timestamp ) );
+			}
+			else {
+				table.putInt( record + RECORD_HOLDS, table.getInt( record + RECORD_HOLDS ) + 1 );
+			}
+
+			table.putLong( record + RECORD_UPDATED, timestamp );
+			return true;
+		} );
+
+		if ( acquired ) {
+			HeldLock previous = heldLocks.put( lockId, new HeldLock( ownerId, lockId, lock ) );
+
+			if ( previous != null && !previous.ownerId.equals( ownerId ) ) {
+				// another local owner had its lock stolen
+				reportStolen( previous );
+			}
+		}
+
+		return acquired;
+	}
+
+	private long nextFencingToken( long timestamp ) {
+		long fencingToken = Math.max( table.getLong( HEADER_FENCING_TOKEN ) + 1, timestamp * FENCING_TOKENS_PER_MS );
+		table.putLong( HEADER_FENCING_TOKEN, fencingToken );
+		return fencingToken;
+	}
+
+	@Override
+	protected void release( String ownerId, String lockId ) {
+		LOG.trace( "Owner {} is releasing lock {}", ownerId, lockId );
+
+		try {
+			boolean released = withFileLock( () -> {
+				int slot = findSlot( lockId, false );
+
+				if ( slot < 0 || !matches( recordOffset( slot ) + ownerOffset, ownerId ) ) {
+					LOG.trace( "Releasing lock {} failed - possibly it was forcibly taken already", lockId );
+					unregister( ownerId, lockId );
+					return false;
+				}
+
+				int record = recordOffset( slot );
+				int holds = table.getInt( record + RECORD_HOLDS );
+
+				if ( holds > 1 ) {
+					table.putInt( record + RECORD_HOLDS, holds - 1 );
+					return false;
+				}
+
+				// unregister while holding the file lock, so the monitor does not consider the lock stolen
+				unregister( ownerId, lockId );
+				writeString( record + ownerOffset, null );
+				table.putInt( record + RECORD_HOLDS, 0 );
+				table.putLong( record + RECORD_UPDATED, System.currentTimeMillis() );
+				return true;
+			} );
+
+			if ( released ) {
+				signalReleased( lockId );
+			}
+		}
+		catch ( DistributedLockException dle ) {
+			LOG.warn(
+					"Clean release of lock {} in lock file failed - lock appears still taken but can be stolen after the idle time.",
+					lockId );
+		}
+	}
+
+	private void unregister( String ownerId, String lockId ) {
+		heldLocks.computeIfPresent( lockId, ( id, heldLock ) -> heldLock.ownerId.equals( ownerId ) ? null : heldLock );
+	}
+
+	@Override
+	public int getActiveLockCount() {
+		return heldLocks.size();
+	}
+
+	@Override
+	protected boolean isHeldLocally( String lockId ) {
+		return heldLocks.containsKey( lockId );
+	}
+
+	@Override
+	public boolean isLocked( String lockKey ) {
+		checkDestroyed();
+
+		return withFileLock( () -> {
+			int slot = findSlot( lockKey, false );
+			return slot >= 0 && table.getShort( recordOffset( slot ) + ownerOffset ) > 0;
+		} );
+	}
+
+	@Override
+	public boolean isLockedByOwner( String ownerId, String lockKey ) {
+		Assert.notNull( ownerId );
+		checkDestroyed();
+
+		HeldLock heldLock = heldLocks.get( lockKey );
+
+		if ( heldLock != null && heldLock.ownerId.equals( ownerId )
+				&& System.currentTimeMillis() - heldLock.lastVerified <= configuration.getMaxIdleBeforeSteal() ) {
+			return true;
+		}
+
+		return withFileLock( () -> {
+			int slot = findSlot( lockKey, false );
+			return slot >= 0 && matches( recordOffset( slot ) + ownerOffset, ownerId );
+		} );
+	}
+
+	@Override
+	public boolean verifyLockedByOwner( String ownerId, String lockKey ) {
+		checkDestroyed();
+
+		return withFileLock( () -> {
+			int slot = findSlot( lockKey, false );
+
+			if ( slot >= 0 && matches( recordOffset( slot ) + ownerOffset, ownerId ) ) {
+				table.putLong( recordOffset( slot ) + RECORD_UPDATED, System.currentTimeMillis() );
+				return true;
+			}
+
+			return false;
+		} );
+	}
+
+	@Override
+	public long getFencingToken( String ownerId, String lockKey ) {
+		checkDestroyed();
+
+		long fencingToken = withFileLock( () -> {
+			int slot = findSlot( lockKey, false );
+
+			if ( slot >= 0 && matches( recordOffset( slot ) + ownerOffset, ownerId ) ) {
+				return table.getLong( recordOffset( slot ) + RECORD_FENCING_TOKEN );
+			}
+
+			return -1L;
+		} );
+
+		if ( fencingToken < 0 ) {
+			throw new IllegalStateException( "Lock " + lockKey + " is not held by " + ownerId );
+		}
+
+		return fencingToken;
+	}
+
+	private void monitor() {
+		try {
+			if ( !heldLocks.isEmpty() ) {
+				long verifyStart = System.nanoTime();
+				verifyHeldLocks();
+				getMetrics().monitorCycle( System.nanoTime() - verifyStart );
+			}
+
+			long timestamp = System.currentTimeMillis();
+
+			if ( timestamp - lastCleanup >= configuration.getCleanupInterval() ) {
+				lastCleanup = timestamp;
+				cleanup( timestamp );
+			}
+		}
+		catch ( Exception e ) {
+			LOG.error( "Exception trying to monitor locks", e );
+		}
+	}
+
+	private void verifyHeldLocks() {
+		List<HeldLock> toVerify = new ArrayList<>( heldLocks.values() );
+		List<HeldLock> stolen;
+
+		try {
+			stolen = withFileLock( () -> {
+				long timestamp = System.currentTimeMillis();
+				List<HeldLock> lost = new ArrayList<>();
+
+				for ( HeldLock heldLock : toVerify ) {
+					int slot = findSlot( heldLock.lockId, false );
+
+					if ( slot >= 0 && matches( recordOffset( slot ) + ownerOffset, heldLock.ownerId ) ) {
+						table.putLong( recordOffset( slot ) + RECORD_UPDATED, timestamp );
+						heldLock.lastVerified = timestamp;
+					}
+					else {
+						lost.add( heldLock );
+					}
+				}
+
+				return lost;
+			} );
+		}
+		catch ( DistributedLockException dle ) {
+			LOG.warn( "Unable to update {} held locks - locks might be unstable", toVerify.size() );
+
+			long timestamp = System.currentTimeMillis();
+
+			for ( HeldLock heldLock : toVerify ) {
+				if ( timestamp - heldLock.lastVerified > configuration.getVerifyInterval() * 2 ) {
+					reportUnstable( heldLock, dle );
+				}
+			}
+
+			return;
+		}
+
+		for ( HeldLock heldLock : stolen ) {
+			if ( heldLocks.remove( heldLock.lockId, heldLock ) ) {
+				reportStolen( heldLock );
+			}
+		}
+	}
+
+	private void cleanup( long timestamp ) {
+		long cleanupStart = System.nanoTime();
+		long staleRecordsTimestamp = timestamp - configuration.getCleanupAge();
+
+		int recordsDeleted = withFileLock( () -> {
+			int deleted = 0;
+
+			for ( int slot = 0; slot < slots; slot++ ) {
+				int record = recordOffset( slot );
+
+				if ( table.getInt( record + RECORD_STATE ) == SLOT_USED
+						&& table.getShort( record + ownerOffset ) == 0
+						&& table.getLong( record + RECORD_UPDATED ) < staleRecordsTimestamp ) {
+					table.putInt( record + RECORD_STATE, SLOT_DELETED );
+					deleted++;
+				}
+			}
+
+			return deleted;
+		} );
+
+		getMetrics().cleanup( System.nanoTime() - cleanupStart, recordsDeleted );
+
+		LOG.info( "Deleted {} locks that have been unused for {} ms - cleanup time was {} ms, next run in {} ms",
+		          recordsDeleted, configuration.getCleanupAge(), System.currentTimeMillis() - timestamp,
+		          configuration.getCleanupInterval() );
+	}
+
+	private void reportStolen( HeldLock heldLock ) {
+		LOG.trace( "Lock {} was supposed to be owned by {}, but it appears to be stolen",
+		           heldLock.lockId, heldLock.ownerId );
+		getMetrics().lockStolen();
+
+		DistributedLock.LockStolenCallback callback = heldLock.lock.getStolenCallback();
+
+		if ( callback == null ) {
+			callback = getDefaultLockStolenCallback();
+		}
+
+		if ( callback != null ) {
+			try {
+				callback.stolen( heldLock.lockId, heldLock.ownerId, heldLock.lock );
+			}
+			catch ( Exception e ) {
+				LOG.error( "Exception executing stolen callback for lock {}", heldLock.lockId, e );
+			}
+		}
+	}
+
+	private void reportUnstable( HeldLock heldLock, DistributedLockException dle ) {
+		getMetrics().lockUnstable();
+
+		DistributedLock.LockUnstableCallback callback = heldLock.lock.getUnstableCallback();
+
+		if ( callback == null ) {
+			callback = getDefaultLockUnstableCallback();
+		}
+
+		if ( callback != null ) {
+			try {
+				callback.unstable( heldLock.lockId, heldLock.ownerId, heldLock.lock, heldLock.lastVerified, dle );
+			}
+			catch ( Exception e ) {
+				LOG.error( "Exception executing unstable callback for lock {}", heldLock.lockId, e );
+			}
+		}
+	}
+
+	/**
+	 * Execute the action while holding the exclusive lock on the file.
+	 */
+	private <T> T withFileLock( Supplier<T> action ) {
+		// an interrupt during a file channel operation closes the channel, postpone it until the lock is released
+		boolean interrupted = Thread.interrupted();
+
+		jvmFileLock.lock();
+		try (FileLock ignore = channel.lock()) {
+			return action.get();
+		}
+		catch ( IOException ioe ) {
+			throw new DistributedLockException( "Unable to lock file " + configuration.getFile(), ioe );
+		}
+		finally {
+			jvmFileLock.unlock();
+
+			if ( interrupted ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private int recordOffset( int slot ) {
+		return HEADER_SIZE + slot * recordSize;
+	}
+
+	/**
+	 * Find the slot holding the lock record using linear probing.  Slots of deleted records are reused
+	 * when creating a new record, but probing continues past them as the record might be located further.
+	 *
+	 * @return slot or -1 if there is no record and it should not be created
+	 */
+	private int findSlot( String lockId, boolean create ) {
+		int start = ( lockId.hashCode() & Integer.MAX_VALUE ) % slots;
+		int available = -1;
+
+		for ( int i = 0; i < slots; i++ ) {
+			int slot = ( start + i ) % slots;
+			int record = recordOffset( slot );
+			int state = table.getInt( record + RECORD_STATE );
+
+			if ( state == SLOT_EMPTY ) {
+				if ( available < 0 ) {
+					available = slot;
+				}
+				break;
+			}
+
+			if ( state == SLOT_DELETED ) {
+				if ( available < 0 ) {
+					available = slot;
+				}
+			}
+			else if ( matches( record + RECORD_KEY, lockId ) ) {
+				return slot;
+			}
+		}
+
+		if ( !create ) {
+			return -1;
+		}
+
+		if ( available < 0 ) {
+			throw new DistributedLockException(
+					"Lock file " + configuration.getFile() + " is full - unable to create lock " + lockId );
+		}
+
+		LOG.trace( "Lock {} currently does not exist, creating", lockId );
+
+		int record = recordOffset( available );
+		writeString( record + RECORD_KEY, lockId );
+		writeString( record + ownerOffset, null );
+		table.putLong( record + RECORD_CREATED, 0 );
+		table.putLong( record + RECORD_UPDATED, System.currentTimeMillis() );
+		table.putInt( record + RECORD_HOLDS, 0 );
+		table.putInt( record + RECORD_STATE, SLOT_USED );
+
+		return available;
+	}
+
+	private String readString( int offset ) {
+		int length = table.getShort( offset );
+
+		if ( length == 0 ) {
+			return null;
+		}
+
+		char[] chars = new char[length];
+		for ( int i = 0; i < length; i++ ) {
+			chars[i] = table.getChar( offset + 2 + i * 2 );
+		}
+
+		return new String( chars );
+	}
+
+	private boolean matches( int offset, String value ) {
+		int length = table.getShort( offset );
+
+		if ( value == null || length != value.length() ) {
+			return value == null && length == 0;
+		}
+
+		for ( int i = 0; i < length; i++ ) {
+			if ( table.getChar( offset + 2 + i * 2 ) != value.charAt( i ) ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void writeString( int offset, String value ) {
+		int length = value != null ? value.length() : 0;
+		table.putShort( offset, (short) length );
+
+		for ( int i = 0; i < length; i++ ) {
+			table.putChar( offset + 2 + i * 2, value.charAt( i ) );
+		}
+	}
+
+	private static final class HeldLock
+	{
+		private final String ownerId, lockId;
+		private final DistributedLock lock;
+		private volatile long lastVerified;
+
+		HeldLock( String ownerId, String lockId, DistributedLock lock ) {
+			this.ownerId = ownerId;
+			this.lockId = lockId;
+			this.lock = lock;
+
+			lastVerified = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Implementation of a {@link DistributedLockManager} that keeps all locks in memory.  Intended for single node
+ * deployments and tests, where the locks do not need to be shared with other applications.  Locks are only shared
+ * between repositories that use the same manager instance.
+ * </p>
+ * <p>
+ * Every held lock is an immutable entry in a concurrent map that is swapped using compare-and-set operations,
+ * there is no manager wide lock and acquiring or releasing one lock never waits for another lock.
+ * Threads waiting for a lock are woken up as soon as it is released.
+ * </p>
+ * <p>
+ * Because all owners live in the same JVM, a lock can never be lost without its owner releasing it:
+ * locks are never stolen and never become unstable, the stolen and unstable callbacks are never executed.
+ * Fencing tokens are always available, a single counter is used for all locks.
+ * </p>
+ *
+ * @see SqlBasedDistributedLockManager
+ * @see FileBasedDistributedLockManager
+ */
+public class InMemoryDistributedLockManager extends AbstractDistributedLockManager
+{
+	private static final Logger LOG = LoggerFactory.getLogger( InMemoryDistributedLockManager.class );
+
+	private final ConcurrentMap<String, Hold> holds = new ConcurrentHashMap<>();
+	private final AtomicLong fencingTokens = new AtomicLong();
+
+	public InMemoryDistributedLockManager() {
+		this( new DistributedLockConfiguration() );
+	}
+
+	public InMemoryDistributedLockManager( DistributedLockConfiguration configuration ) {
+		super( configuration );
+	}
+
+	@Override
+	public void close() {
+		LOG.info( "Destroying in-memory lock manager - releasing {} held locks", holds.size() );
+
+		try {
+			for ( String lockId : holds.keySet() ) {
+				holds.remove( lockId );
+				signalReleased( lockId );
+			}
+		}
+		finally {
+			super.close();
+		}
+	}
+
+	@Override
+	protected boolean tryAcquire( String lockId, String ownerId, DistributedLock lock ) {
+		while ( true ) {
+			Hold current = holds.get( lockId );
+
+			if ( current == null ) {
+				if ( holds.putIfAbsent( lockId, new Hold( ownerId, 1, fencingTokens.incrementAndGet() ) ) == null ) {
+					return true;
+				}
+			}
+			else if ( current.ownerId.equals( ownerId ) ) {
+				if ( holds.replace( lockId, current, current.withCount( current.count + 1 ) ) ) {
+					return true;
+				}
+			}
+			else {
+				LOG.trace( "Lock {} is held by {}", lockId, current.ownerId );
+				return false;
+			}
+		}
+	}
+
+	@Override
+	protected void release( String ownerId, String lockId ) {
+		while ( true ) {
+			Hold current = holds.get( lockId );
+
+			if ( current == null || !current.ownerId.equals( ownerId ) ) {
+				LOG.trace( "Releasing lock {} failed - not held by {}", lockId, ownerId );
+				return;
+			}
+
+			if ( current.count > 1 ) {
+				if ( holds.replace( lockId, current, current.withCount( current.count - 1 ) ) ) {
+					return;
+				}
+			}
+			else if ( holds.remove( lockId, current ) ) {
+				signalReleased( lockId );
+				return;
+			}
+		}
+	}
+
+	@Override
+	public int getActiveLockCount() {
+		return holds.size();
+	}
+
+	@Override
+	protected boolean isHeldLocally( String lockId ) {
+		return holds.containsKey( lockId );
+	}
+
+	@Override
+	public boolean isLocked( String lockKey ) {
+		checkDestroyed();
+		return holds.containsKey( lockKey );
+	}
+
+	@Override
+	public boolean isLockedByOwner( String ownerId, String lockKey ) {
+		Assert.notNull( ownerId );
+		checkDestroyed();
+
+		Hold current = holds.get( lockKey );
+		return current != null && current.ownerId.equals( ownerId );
+	}
+
+	@Override
+	public boolean verifyLockedByOwner( String ownerId, String lockKey ) {
+		return isLockedByOwner( ownerId, lockKey );
+	}
+
+	@Override
+	public long getFencingToken( String ownerId, String lockKey ) {
+		checkDestroyed();
+
+		Hold current = holds.get( lockKey );
+
+		if ( current == null || !current.ownerId.equals( ownerId ) ) {
+			throw new IllegalStateException( "Lock " + lockKey + " is not held by " + ownerId );
+		}
+
+		return current.fencingToken;
+	}
+
+	/**
+	 * Immutable entry for a held lock, every modification results in a new instance.
+	 * Does not implement equals on purpose: compare-and-set operations must compare the actual instances.
+	 */
+	private static final class Hold
+	{
+		private final String ownerId;
+		private final int count;
+		private final long fencingToken;
+
+		Hold( String ownerId, int count, long fencingToken ) {
+			this.ownerId = ownerId;
+			this.count = count;
+			this.fencingToken = fencingToken;
+		}
+
+		Hold withCount( int count ) {
+			return new Hold( ownerId, count, fencingToken );
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-JVM wait queue for threads waiting on a distributed lock.  Allows a lock manager to wake up
+ * local waiters as soon as a lock has been released, instead of having them sleep a full retry interval.
+ * <p/>
+ * A waiter should {@link #enter(String)} the queue <strong>before</strong> its first attempt to acquire the lock,
+ * so that no release is missed between an attempt and the subsequent {@link #await(Ticket, long)}.
+ * Queue entries only exist as long as there are waiters for the lock key.
+ * <p/>
+ * Waiters that should not block a thread can use {@link #onRelease(Ticket, Runnable)} instead, the callback
+ * will be executed by the thread releasing the lock.
+ */
+class LocalLockWaitQueue
+{
+	private final ConcurrentMap<String, Waiters> waitersByKey = new ConcurrentHashMap<>();
+
+	/**
+	 * Register the current thread as waiting for the lock.  Every ticket must be
+	 * passed to {@link #leave(Ticket)} once the thread is no longer waiting.
+	 *
+	 * @param lockKey key of the lock
+	 * @return ticket to use for waiting
+	 */
+	Ticket enter( String lockKey ) {
+		Waiters waiters = waitersByKey.compute( lockKey, ( key, current ) -> {
+			Waiters w = current != null ? current : new Waiters();
+			w.count++;
+			return w;
+		} );
+
+		return new Ticket( lockKey, waiters, waiters.currentGeneration() );
+	}
+
+	/**
+	 * Wait until the lock is released locally or the timeout has passed, whichever comes first.
+	 * Returns immediately if the lock has been released since the previous call for this ticket
+	 * (or since entering the queue).
+	 *
+	 * @param ticket       of the waiting thread
+	 * @param timeoutNanos maximum time to wait
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	void await( Ticket ticket, long timeoutNanos ) throws InterruptedException {
+		Waiters waiters = ticket.waiters;
+		waiters.lock.lockInterruptibly();
+		try {
+			long nanos = timeoutNanos;
+			while ( waiters.generation == ticket.generation && nanos > 0 ) {
+				nanos = waiters.released.awaitNanos( nanos );
+			}
+			ticket.generation = waiters.generation;
+		}
+		finally {
+			waiters.lock.unlock();
+		}
+	}
+
+	/**
+	 * Register a callback to be executed once when the lock is released locally.  If the lock has been released
+	 * since the previous call for this ticket (or since entering the queue), the callback is executed immediately.
+	 * Callbacks are executed by the releasing thread and should return quickly.  A ticket can only have a single
+	 * callback registered at any time, registering again before the callback was executed replaces the callback.
+	 *
+	 * @param ticket   of the waiter
+	 * @param callback to execute on release
+	 */
+	void onRelease( Ticket ticket, Runnable callback ) {
+		Waiters waiters = ticket.waiters;
+		boolean released;
+
+		waiters.lock.lock();
+		try {
+			released = waiters.generation != ticket.generation;
+			ticket.generation = waiters.generation;
+			ticket.releaseCallback = released ? null : callback;
+
+			if ( !released && !waiters.listening.contains( ticket ) ) {
+				waiters.listening.add( ticket );
+			}
+		}
+		finally {
+			waiters.lock.unlock();
+		}
+
+		if ( released ) {
+			callback.run();
+		}
+	}
+
+	/**
+	 * Remove the waiting registration.  Any release callback registered for the ticket will no longer be executed.
+	 *
+	 * @param ticket of the waiting thread
+	 */
+	void leave( Ticket ticket ) {
+		Waiters waiters = ticket.waiters;
+
+		waiters.lock.lock();
+		try {
+			waiters.listening.remove( ticket );
+			ticket.releaseCallback = null;
+		}
+		finally {
+			waiters.lock.unlock();
+		}
+
+		waitersByKey.computeIfPresent( ticket.lockKey, ( key, current ) -> --current.count == 0 ? null : current );
+	}
+
+	/**
+	 * Wake up all local threads waiting for the lock.  Does nothing if there are no waiters.
+	 *
+	 * @param lockKey key of the lock that has been released
+	 */
+	void signal( String lockKey ) {
+		Waiters waiters = waitersByKey.get( lockKey );
+
+		if ( waiters != null ) {
+			List<Runnable> callbacks = new ArrayList<>();
+
+			waiters.lock.lock();
+			try {
+				waiters.generation++;
+				waiters.released.signalAll();
+
+				for ( Ticket ticket : waiters.listening ) {
+					ticket.generation = waiters.generation;
+					callbacks.add( ticket.releaseCallback );
+					ticket.releaseCallback = null;
+				}
+				waiters.listening.clear();
+			}
+			finally {
+				waiters.lock.unlock();
+			}
+
+			callbacks.forEach( Runnable::run );
+		}
+	}
+
+	static final class Ticket
+	{
+		private final String lockKey;
+		private final Waiters waiters;
+		private long generation;
+		private Runnable releaseCallback;
+
+		private Ticket( String lockKey, Waiters waiters, long generation ) {
+			this.lockKey = lockKey;
+			this.waiters = waiters;
+			this.generation = generation;
+		}
+	}
+
+	private static final class Waiters
+	{
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition released = lock.newCondition();
+
+		// guarded by lock
+		private final List<Ticket> listening = new ArrayList<>();
+		private long generation;
+
+		// only modified while the queue entry is being computed
+		private int count;
+
+		long currentGeneration() {
+			lock.lock();
+			try {
+				return generation;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+}
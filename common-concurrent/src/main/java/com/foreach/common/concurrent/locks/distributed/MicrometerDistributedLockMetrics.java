@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import io.micrometer.core.instrument.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * {@link DistributedLockMetrics} implementation that publishes the measurements to a Micrometer {@link MeterRegistry}.
+ * All meters are created up front, recording a measurement does not allocate.  Requires micrometer-core on the
+ * classpath, it is an optional dependency of this module.  An instance should only be attached to a single
+ * lock manager, use different tags for every manager.
+ * </p>
+ * <p>
+ * The following meters are registered, all with the tags passed to the constructor:
+ * <ul>
+ * <li>{@code distributed.lock.acquire}: timer with percentile histogram of the time waited for a lock,
+ * tag {@code result} is either {@code acquired} or {@code timeout}</li>
+ * <li>{@code distributed.lock.acquire.retries}: number of failed attempts before an acquisition finished</li>
+ * <li>{@code distributed.lock.stolen} and {@code distributed.lock.unstable}: counters</li>
+ * <li>{@code distributed.lock.active}: gauge with the number of locks held through the manager</li>
+ * <li>{@code distributed.lock.pending}: gauge with the number of pending asynchronous acquisitions</li>
+ * <li>{@code distributed.lock.monitor}: timer of the runs verifying the held locks</li>
+ * <li>{@code distributed.lock.cleanup} and {@code distributed.lock.cleanup.deleted}: timer of the cleanup runs
+ * and counter of the deleted lock records</li>
+ * </ul>
+ */
+public class MicrometerDistributedLockMetrics implements DistributedLockMetrics
+{
+	public static final String METER_PREFIX = "distributed.lock";
+
+	private final MeterRegistry registry;
+	private final Tags tags;
+
+	private final Timer acquired, acquireTimedOut, monitorCycle, cleanup;
+	private final DistributionSummary retries;
+	private final Counter stolen, unstable, recordsDeleted;
+
+	public MicrometerDistributedLockMetrics( MeterRegistry registry ) {
+		this( registry, Tags.empty() );
+	}
+
+	public MicrometerDistributedLockMetrics( MeterRegistry registry, Iterable<Tag> tags ) {
+		this.registry = registry;
+		this.tags = Tags.of( tags );
+
+		acquired = acquireTimer( "acquired" );
+		acquireTimedOut = acquireTimer( "timeout" );
+		retries = DistributionSummary.builder( METER_PREFIX + ".acquire.retries" )
+		                             .description( "Number of failed attempts before an acquisition finished" )
+		                             .tags( this.tags )
+		                             .register( registry );
+		stolen = Counter.builder( METER_PREFIX + ".stolen" )
+		                .description( "Locks held through the manager that have been taken by another owner" )
+		                .tags( this.tags )
+		                .register( registry );
+		unstable = Counter.builder( METER_PREFIX + ".unstable" )
+		                  .description( "Locks held through the manager that could not be verified for too long" )
+		                  .tags( this.tags )
+		                  .register( registry );
+		monitorCycle = Timer.builder( METER_PREFIX + ".monitor" )
+		                    .description( "Duration of the runs verifying the held locks" )
+		                    .tags( this.tags )
+		                    .register( registry );
+		cleanup = Timer.builder( METER_PREFIX + ".cleanup" )
+		               .description( "Duration of the runs deleting unused lock records" )
+		               .tags( this.tags )
+		               .register( registry );
+		recordsDeleted = Counter.builder( METER_PREFIX + ".cleanup.deleted" )
+		                        .description( "Unused lock records that have been deleted" )
+		                        .tags( this.tags )
+		                        .register( registry );
+	}
+
+	private Timer acquireTimer( String result ) {
+		return Timer.builder( METER_PREFIX + ".acquire" )
+		            .description( "Time waited for a lock" )
+		            .tags( tags )
+		            .tag( "result", result )
+		            .publishPercentileHistogram()
+		            .register( registry );
+	}
+
+	@Override
+	public void register( AbstractDistributedLockManager lockManager ) {
+		Gauge.builder( METER_PREFIX + ".active", lockManager, AbstractDistributedLockManager::getActiveLockCount )
+		     .description( "Number of locks held through the manager" )
+		     .tags( tags )
+		     .register( registry );
+		Gauge.builder( METER_PREFIX + ".pending", lockManager,
+		               AbstractDistributedLockManager::getPendingAcquisitionCount )
+		     .description( "Number of asynchronous acquisitions that have not completed" )
+		     .tags( tags )
+		     .register( registry );
+	}
+
+	@Override
+	public void lockAcquired( long waitNanos, int retries ) {
+		acquired.record( waitNanos, TimeUnit.NANOSECONDS );
+		this.retries.record( retries );
+	}
+
+	@Override
+	public void lockAcquireTimedOut( long waitNanos, int retries ) {
+		acquireTimedOut.record( waitNanos, TimeUnit.NANOSECONDS );
+		this.retries.record( retries );
+	}
+
+	@Override
+	public void lockStolen() {
+		stolen.increment();
+	}
+
+	@Override
+	public void lockUnstable() {
+		unstable.increment();
+	}
+
+	@Override
+	public void monitorCycle( long durationNanos ) {
+		monitorCycle.record( durationNanos, TimeUnit.NANOSECONDS );
+	}
+
+	@Override
+	public void cleanup( long durationNanos, int recordsDeleted ) {
+		cleanup.record( durationNanos, TimeUnit.NANOSECONDS );
+		this.recordsDeleted.increment( recordsDeleted );
+	}
+}
@@ -22,52 +22,19 @@ import org.springframework.util.Assert;
  *
  * @author Arne Vandamme
  */
-public class SqlBasedDistributedLockConfiguration
+public class SqlBasedDistributedLockConfiguration extends DistributedLockConfiguration
 {
 	/**
-	 * Number of milliseconds between tries for acquiring a lock.
+	 * Maximum number of held locks the monitor will verify in a single batch of statements.
+	 * A value of 1 or less verifies every lock with a separate statement.
 	 */
-	public static final long DEFAULT_RETRY_INTERVAL = 533;
-
-	/**
-	 * Number of milliseconds between monitor runs that will update all actively held locks.
-	 */
-	public static final long DEFAULT_VERIFY_INTERVAL = 3000;
-
-	/**
-	 * Number of milliseconds that a held lock can go without update before another owner can steal it.
-	 */
-	public static final long DEFAULT_MAX_IDLE_BEFORE_STEAL = 15000;
-
-	/**
-	 * Number of milliseconds a lock record should be unlocked before it gets actually deleted from the store.
-	 */
-	public static final long DEFAULT_MIN_AGE_BEFORE_DELETE = 3600000;
-
-	/**
-	 * Number of milliseconds between running the database cleanup.
-	 */
-	public static final long DEFAULT_CLEANUP_INTERVAL = 900000;
-
-	/**
-	 * Maximum length for a valid lock key.
-	 */
-	public static final int DEFAULT_MAX_LOCK_KEY_LENGTH = 150;
-
-	/**
-	 * Maximum length for a valid owner id.
-	 */
-	public static final int DEFAULT_MAX_OWNER_ID_LENGTH = 150;
+	public static final int DEFAULT_VERIFY_BATCH_SIZE = 1;
 
 	private final String tableName;
+	private String readLockTableName;
+	private boolean fencingTokensEnabled;
 
-	private long retryInterval = DEFAULT_RETRY_INTERVAL;
-	private long verifyInterval = DEFAULT_VERIFY_INTERVAL;
-	private long maxIdleBeforeSteal = DEFAULT_MAX_IDLE_BEFORE_STEAL;
-	private long cleanupInterval = DEFAULT_CLEANUP_INTERVAL;
-	private long cleanupAge = DEFAULT_MIN_AGE_BEFORE_DELETE;
-	private long maxKeyLength = DEFAULT_MAX_LOCK_KEY_LENGTH;
-	private long maxOwnerIdLength = DEFAULT_MAX_OWNER_ID_LENGTH;
+	private int verifyBatchSize = DEFAULT_VERIFY_BATCH_SIZE;
 
 	public SqlBasedDistributedLockConfiguration( String tableName ) {
 		Assert.notNull( tableName );
@@ -80,59 +47,49 @@ public class SqlBasedDistributedLockConfiguration
 		return tableName;
 	}
 
-	public long getRetryInterval() {
-		return retryInterval;
-	}
-
-	public void setRetryInterval( long retryInterval ) {
-		this.retryInterval = retryInterval;
+	public String getReadLockTableName() {
+		return readLockTableName;
 	}
 
-	public long getVerifyInterval() {
-		return verifyInterval;
-	}
-
-	public void setVerifyInterval( long verifyInterval ) {
-		this.verifyInterval = verifyInterval;
-	}
-
-	public long getMaxIdleBeforeSteal() {
-		return maxIdleBeforeSteal;
-	}
-
-	public void setMaxIdleBeforeSteal( long maxIdleBeforeSteal ) {
-		this.maxIdleBeforeSteal = maxIdleBeforeSteal;
-	}
-
-	public long getCleanupInterval() {
-		return cleanupInterval;
-	}
-
-	public void setCleanupInterval( long cleanupInterval ) {
-		this.cleanupInterval = cleanupInterval;
-	}
-
-	public long getCleanupAge() {
-		return cleanupAge;
-	}
-
-	public void setCleanupAge( long cleanupAge ) {
-		this.cleanupAge = cleanupAge;
+	/**
+	 * Set the name of the companion table holding the read leases for shared read locks.
+	 * If not set (default) read/write locks are not supported by the lock manager.
+	 *
+	 * @param readLockTableName name of the table
+	 * @see SqlBasedDistributedLockManager
+	 */
+	public void setReadLockTableName( String readLockTableName ) {
+		this.readLockTableName = readLockTableName;
 	}
 
-	public long getMaxKeyLength() {
-		return maxKeyLength;
+	public boolean isFencingTokensEnabled() {
+		return fencingTokensEnabled;
 	}
 
-	public void setMaxKeyLength( long maxKeyLength ) {
-		this.maxKeyLength = maxKeyLength;
+	/**
+	 * Enable fencing tokens for the exclusive locks: every time ownership of a lock changes, a strictly increasing
+	 * token is stored with the lock and made available through {@link DistributedLock#getFencingToken()}.
+	 * Requires an additional column <em>fencing_token</em> (long, not null, default 0) in the lock table.
+	 *
+	 * @param fencingTokensEnabled true if fencing tokens should be generated
+	 */
+	public void setFencingTokensEnabled( boolean fencingTokensEnabled ) {
+		this.fencingTokensEnabled = fencingTokensEnabled;
 	}
 
-	public long getMaxOwnerIdLength() {
-		return maxOwnerIdLength;
+	public int getVerifyBatchSize() {
+		return verifyBatchSize;
 	}
 
-	public void setMaxOwnerIdLength( long maxOwnerIdLength ) {
-		this.maxOwnerIdLength = maxOwnerIdLength;
+	/**
+	 * Set the maximum number of held locks that should be verified in a single batch.  When larger than 1,
+	 * the monitor will send the keep-alive updates for the held locks as chunked JDBC batches instead of a
+	 * separate statement for every lock.  This drastically reduces the number of database round trips when
+	 * many locks are being held at the same time.
+	 *
+	 * @param verifyBatchSize maximum number of locks per batch
+	 */
+	public void setVerifyBatchSize( int verifyBatchSize ) {
+		this.verifyBatchSize = verifyBatchSize;
 	}
 }
@@ -23,15 +23,16 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * <p>
@@ -72,6 +73,18 @@ import java.util.concurrent.TimeUnit;
  * </pre>
  * </p>
  * <p>
+ * Shared read locks (see {@link DistributedReadLockManager}) are only supported if a read lock table has been
+ * configured.  That table has the same columns, but with a primary key on both lock_id and owner_id: every
+ * reader has its own read lease record that is kept alive by the monitor.  Read leases that have not been
+ * updated for longer than the max idle time are ignored.
+ * </p>
+ * <p>
+ * If fencing tokens are enabled in the configuration, the table requires an additional column
+ * <em>fencing_token</em> (long, not null, default 0).  The token is increased every time ownership of the lock
+ * changes and is never lower than the acquisition time in milliseconds multiplied by 1000, so tokens keep increasing
+ * if an unused lock record has been cleaned up in the meantime.  See {@link DistributedLock#getFencingToken()}.
+ * </p>
+ * <p>
  * <strong>Important notes:</strong>
  * <ul>
  * <li>It is absolutely critical that all application servers using the same distributed locks are time synchronized.
@@ -82,6 +95,12 @@ import java.util.concurrent.TimeUnit;
  * </li>
  * <li>This DistributedLock implementation has no concept of fairness.  In environments with high
  * contention, it is possible lock starvation occurs.</li>
+ * <li>Threads waiting for a lock that is held through the same manager are woken up as soon as the lock is
+ * released.  Locks held by other nodes are polled with a jittered exponential backoff, starting from the
+ * retry interval up to the maximum retry interval.</li>
+ * <li>Locks can be acquired asynchronously using {@link #acquireAsync(DistributedLock)}.  Pending asynchronous
+ * requests do not occupy a thread while waiting, the attempts are executed on a small scheduled pool whose size
+ * is determined by the configuration.</li>
  * <li>The DistributedLocks are reentrant: the same owner can enter the lock multiple times and have
  * multiple holds on the same lock. For every lock() there must be an unlock() call to release the lock again!
  * A lock will only be released once all holds have been released.</li>
@@ -110,7 +129,7 @@ import java.util.concurrent.TimeUnit;
  * @see com.foreach.common.concurrent.locks.distributed.SqlBasedDistributedLockConfiguration
  * @see com.foreach.common.concurrent.locks.distributed.DistributedLockRepository
  */
-public class SqlBasedDistributedLockManager implements DistributedLockManager
+public class SqlBasedDistributedLockManager extends AbstractDistributedLockManager implements DistributedReadLockManager
 {
 	private static final Logger LOG = LoggerFactory.getLogger( SqlBasedDistributedLockManager.class );
 
@@ -124,6 +143,9 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 	private static final String SQL_SELECT_LOCK = "SELECT lock_id, owner_id, created, updated, holds " +
 			"FROM %s " +
 			"WHERE lock_id = ?";
+	private static final String SQL_SELECT_LOCKS = "SELECT lock_id, owner_id, created, updated, holds " +
+			"FROM %s " +
+			"WHERE lock_id IN (";
 	private static final String SQL_INSERT_LOCK = "INSERT INTO %s (lock_id, owner_id, created, updated, holds) " +
 			"VALUES (?,?,?,?,1)";
 	private static final String SQL_RELEASE_LOCK = "UPDATE %s " +
@@ -137,9 +159,55 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 			"WHERE lock_id = ? AND owner_id = ?";
 	private static final String SQL_CLEANUP = "DELETE FROM %s WHERE owner_id IS NULL AND updated < ?";
 
-	private final String sqlTakeLock, sqlStealLock, sqlSelectLock, sqlInsertLock, sqlReleaseLock, sqlDecreaseHold,
-			sqlVerifyLock,
+	// fencing token is assigned first as some databases use the already updated values in the other assignments
+	private static final String SQL_TAKE_LOCK_FENCED = "UPDATE %s " +
+			"SET fencing_token = CASE WHEN owner_id = ? THEN fencing_token " +
+			"WHEN fencing_token >= ? THEN fencing_token + 1 ELSE ? END, " +
+			"owner_id = ?, created = ?, updated = ?, holds = holds + 1 " +
+			"WHERE lock_id = ? AND (owner_id IS NULL OR owner_id = ?)";
+	private static final String SQL_STEAL_LOCK_FENCED = "UPDATE %s " +
+			"SET fencing_token = CASE WHEN fencing_token >= ? THEN fencing_token + 1 ELSE ? END, " +
+			"owner_id = ?, created = ?, updated = ?, holds = 1 " +
+			"WHERE lock_id = ? AND (owner_id IS NULL OR (owner_id = ? AND updated = ?))";
+	private static final String SQL_INSERT_LOCK_FENCED =
+			"INSERT INTO %s (lock_id, owner_id, created, updated, holds, fencing_token) " +
+					"VALUES (?,?,?,?,1,?)";
+	private static final String SQL_SELECT_FENCING_TOKENS = "SELECT lock_id, owner_id, fencing_token " +
+			"FROM %s " +
+			"WHERE lock_id IN (";
+
+	/**
+	 * Fencing tokens are based on the acquisition time, leaving room for this number of ownership changes
+	 * within the same millisecond.  This keeps tokens increasing even if the lock record has been cleaned up.
+	 */
+	private static final long FENCING_TOKENS_PER_MS = 1000;
+
+	private static final String SQL_TAKE_READ_LEASE = "UPDATE %s " +
+			"SET updated = ?, holds = holds + 1 " +
+			"WHERE lock_id = ? AND owner_id = ?";
+	private static final String SQL_INSERT_READ_LEASE = "INSERT INTO %s (lock_id, owner_id, created, updated, holds) " +
+			"VALUES (?,?,?,?,1)";
+	private static final String SQL_RELEASE_READ_LEASE = "DELETE FROM %s " +
+			"WHERE lock_id = ? AND owner_id = ? AND holds = 1";
+	private static final String SQL_DECREASE_READ_LEASE = "UPDATE %s " +
+			"SET holds = holds - 1 " +
+			"WHERE lock_id = ? AND owner_id = ? AND holds > 1";
+	private static final String SQL_VERIFY_READ_LEASE = "UPDATE %s " +
+			"SET updated = ? " +
+			"WHERE lock_id = ? AND owner_id = ?";
+	private static final String SQL_SELECT_READ_LEASES = "SELECT lock_id, owner_id, created, updated, holds " +
+			"FROM %s " +
+			"WHERE updated >= ? AND lock_id IN (";
+	private static final String SQL_CLEANUP_READ_LEASES = "DELETE FROM %s WHERE updated < ?";
+
+	private final String sqlTakeLock, sqlStealLock, sqlSelectLock, sqlSelectLocks, sqlInsertLock, sqlReleaseLock,
+			sqlDecreaseHold, sqlVerifyLock, sqlSelectFencingTokens,
 			sqlCleanup;
+	private final boolean fencingTokensEnabled;
+
+	// only set if a read lock table is configured
+	private final String sqlTakeReadLease, sqlInsertReadLease, sqlReleaseReadLease, sqlDecreaseReadLease,
+			sqlVerifyReadLease, sqlSelectReadLeases, sqlCleanupReadLeases;
 
 	private final ScheduledExecutorService monitorThread = Executors.newSingleThreadScheduledExecutor();
 
@@ -147,32 +215,41 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 	private final JdbcOperations jdbcTemplate;
 	private final SqlBasedDistributedLockMonitor lockMonitor;
 
-	private boolean destroyed = false;
-
-	private DistributedLock.LockStolenCallback defaultLockStolenCallback;
-	private DistributedLock.LockUnstableCallback defaultLockUnstableCallback;
-
 	public SqlBasedDistributedLockManager( DataSource dataSource, SqlBasedDistributedLockConfiguration configuration ) {
 		this( new JdbcTemplate( dataSource ), configuration );
 	}
 
 	public SqlBasedDistributedLockManager( JdbcOperations jdbcTemplate,
 	                                       SqlBasedDistributedLockConfiguration configuration ) {
+		super( configuration );
 		this.configuration = configuration;
 
-		sqlTakeLock = sql( SQL_TAKE_LOCK );
-		sqlStealLock = sql( SQL_STEAL_LOCK );
+		fencingTokensEnabled = configuration.isFencingTokensEnabled();
+
+		sqlTakeLock = sql( fencingTokensEnabled ? SQL_TAKE_LOCK_FENCED : SQL_TAKE_LOCK );
+		sqlStealLock = sql( fencingTokensEnabled ? SQL_STEAL_LOCK_FENCED : SQL_STEAL_LOCK );
 		sqlSelectLock = sql( SQL_SELECT_LOCK );
-		sqlInsertLock = sql( SQL_INSERT_LOCK );
+		sqlSelectLocks = sql( SQL_SELECT_LOCKS );
+		sqlInsertLock = sql( fencingTokensEnabled ? SQL_INSERT_LOCK_FENCED : SQL_INSERT_LOCK );
 		sqlReleaseLock = sql( SQL_RELEASE_LOCK );
 		sqlDecreaseHold = sql( SQL_DECREASE_HOLD );
 		sqlVerifyLock = sql( SQL_VERIFY_LOCK );
+		sqlSelectFencingTokens = sql( SQL_SELECT_FENCING_TOKENS );
 		sqlCleanup = sql( SQL_CLEANUP );
 
+		sqlTakeReadLease = readLeaseSql( SQL_TAKE_READ_LEASE );
+		sqlInsertReadLease = readLeaseSql( SQL_INSERT_READ_LEASE );
+		sqlReleaseReadLease = readLeaseSql( SQL_RELEASE_READ_LEASE );
+		sqlDecreaseReadLease = readLeaseSql( SQL_DECREASE_READ_LEASE );
+		sqlVerifyReadLease = readLeaseSql( SQL_VERIFY_READ_LEASE );
+		sqlSelectReadLeases = readLeaseSql( SQL_SELECT_READ_LEASES );
+		sqlCleanupReadLeases = readLeaseSql( SQL_CLEANUP_READ_LEASES );
+
 		this.jdbcTemplate = jdbcTemplate;
 		lockMonitor = new SqlBasedDistributedLockMonitor( this,
 		                                                  configuration.getVerifyInterval() * 2,
-		                                                  configuration.getMaxIdleBeforeSteal() );
+		                                                  configuration.getMaxIdleBeforeSteal(),
+		                                                  configuration.getVerifyBatchSize() );
 
 		//NOTE: Scheduled tasks should NEVER throw exceptions!  The pool would live on, but the task would not...
 		monitorThread.scheduleWithFixedDelay( lockMonitor, configuration.getVerifyInterval(),
@@ -185,15 +262,31 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 		return String.format( template, configuration.getTableName() );
 	}
 
+	private String readLeaseSql( String template ) {
+		String readLockTableName = configuration.getReadLockTableName();
+		return readLockTableName != null ? String.format( template, readLockTableName ) : null;
+	}
+
+	private boolean isReadLockingEnabled() {
+		return sqlTakeReadLease != null;
+	}
+
 	class CleanupMonitor implements Runnable
 	{
 		@Override
 		public void run() {
 			try {
 				long cleanupStart = System.currentTimeMillis();
+				long cleanupStartNanos = System.nanoTime();
 				long staleRecordsTimestamp = cleanupStart - configuration.getCleanupAge();
 				int recordsDeleted = jdbcTemplate.update( sqlCleanup, staleRecordsTimestamp );
 
+				if ( isReadLockingEnabled() ) {
+					recordsDeleted += jdbcTemplate.update( sqlCleanupReadLeases, staleRecordsTimestamp );
+				}
+
+				getMetrics().cleanup( System.nanoTime() - cleanupStartNanos, recordsDeleted );
+
 				LOG.info(
 						"Deleted {} locks that have been unused for {} ms - cleanup time was {} ms, next run in {} ms",
 						recordsDeleted,
@@ -206,40 +299,7 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 		}
 	}
 
-	/**
-	 * @return Callback instance that will be executed if no specific instance configured on a lock.
-	 */
-	public DistributedLock.LockStolenCallback getDefaultLockStolenCallback() {
-		return defaultLockStolenCallback;
-	}
-
-	/**
-	 * Set the default callback instance to be executed if a lock is stolen but no callback instance
-	 * has been configured directly on the {@link DistributedLock}.
-	 *
-	 * @param defaultLockStolenCallback instance
-	 */
-	public void setDefaultLockStolenCallback( DistributedLock.LockStolenCallback defaultLockStolenCallback ) {
-		this.defaultLockStolenCallback = defaultLockStolenCallback;
-	}
-
-	/**
-	 * @return Callback instance that will be executed if no specific instance configured on a lock.
-	 */
-	public DistributedLock.LockUnstableCallback getDefaultLockUnstableCallback() {
-		return defaultLockUnstableCallback;
-	}
-
-	/**
-	 * Set the default callback instance to be executed if a lock goes unstable but no callback instance
-	 * has been configured directly on the {@link DistributedLock}.
-	 *
-	 * @param defaultLockUnstableCallback instance
-	 */
-	public void setDefaultLockUnstableCallback( DistributedLock.LockUnstableCallback defaultLockUnstableCallback ) {
-		this.defaultLockUnstableCallback = defaultLockUnstableCallback;
-	}
-
+	@Override
 	public void close() {
 		LOG.trace( "Destruction of the distributed lock manager requested" );
 
@@ -252,6 +312,10 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 				release( activeLock.getOwnerId(), activeLock.getLockId() );
 			}
 
+			for ( SqlBasedDistributedLockMonitor.ActiveLock readLease : lockMonitor.getReadLeases().keySet() ) {
+				releaseReadLeaseInDatabase( readLease.getOwnerId(), readLease.getLockId() );
+			}
+
 			monitorThread.shutdown();
 
 			try {
@@ -262,177 +326,453 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 			}
 		}
 		finally {
-			destroyed = true;
+			super.close();
 		}
 	}
 
 	@Override
-	public void acquire( DistributedLock lock ) {
+	public int getActiveLockCount() {
+		return lockMonitor.getActiveLockCount();
+	}
+
+	@Override
+	protected boolean isHeldLocally( String lockId ) {
+		return lockMonitor.isHeldLocally( lockId );
+	}
+
+	@Override
+	protected boolean tryAcquire( String lockId, String ownerId, DistributedLock lock ) {
+		boolean acquired = false;
+
+		LOG.trace( "Owner {} is trying to acquire lock {}", ownerId, lockId );
+
+		long timestamp = System.currentTimeMillis();
 		try {
-			acquireInterruptibly( lock );
+			int updated;
+
+			try {
+				updated = jdbcTemplate.update( sqlTakeLock, takeLockArgs( lockId, ownerId, timestamp ) );
+			}
+			catch ( DeadlockLoserDataAccessException dle ) {
+				LOG.trace( "Deadlock loser for lock  {} - retrying once immediately", lockId );
+				updated = jdbcTemplate.update( sqlTakeLock, takeLockArgs( lockId, ownerId, timestamp ) );
+			}
+
+			if ( updated > 1 ) {
+				throw new DistributedLockException(
+						"DistributedLockRepository table corrupt, more than one lock with id " + lockId );
+			}
+
+			if ( updated == 1 ) {
+				LOG.trace( "Owner {} directly acquired lock {}", ownerId, lockId );
+				acquired = true;
+			}
+			else {
+				LockInfo lockInfo = getLockInfo( lockId );
+
+				if ( lockInfo != null ) {
+					if ( ownerId.equals( lockInfo.getOwnerId() ) ) {
+						acquired = true;
+					}
+					else {
+						acquired = trySteal( lockId, ownerId, lockInfo );
+					}
+				}
+				else {
+					acquired = createLock( lockId, ownerId );
+				}
+			}
+
+			boolean undone = false;
+
+			if ( acquired && isReadLockingEnabled() && hasOtherReaders( lockId, ownerId ) ) {
+				LOG.trace( "Lock {} still has active readers - undoing acquire by {}", lockId, ownerId );
+				releaseInDatabase( ownerId, lockId );
+				acquired = false;
+				undone = true;
+			}
+
+			if ( acquired ) {
+				lockMonitor.addLock( ownerId, lock, fencingTokensEnabled
+						? getFencingTokens( Collections.singletonList( lockId ), new String[] { ownerId } )[0]
+						: SqlBasedDistributedLockMonitor.NO_FENCING_TOKEN );
+			}
+			else if ( !undone ) {
+				// Cleanup any stale record already, we're sure we no longer have the lock
+				// (an undone attempt registered nothing, earlier reentrant holds must remain monitored)
+				lockMonitor.removeLock( ownerId, lockId );
+			}
 		}
-		catch ( InterruptedException ie ) {
-			throw new DistributedLockWaitException( ie );
+		catch ( DeadlockLoserDataAccessException dle ) {
+			LOG.debug( "Deadlock loser for lock {}", lockId, dle );
 		}
+
+		return acquired;
 	}
 
-	@Override
-	public void acquireInterruptibly( DistributedLock lock ) throws InterruptedException {
-		checkDestroyed();
+	private boolean trySteal( String lockId, String ownerId, LockInfo lockInfo ) {
+		long timestamp = System.currentTimeMillis();
+		long lastUpdateAge = timestamp - lockInfo.getUpdated();
+		if ( lastUpdateAge > configuration.getMaxIdleBeforeSteal() ) {
+			LOG.trace( "Lock {} was last updated {} ms ago - attempting to steal the lock",
+			           lockId, lastUpdateAge );
+			int updated = jdbcTemplate.update( sqlStealLock, stealLockArgs( lockId, ownerId, timestamp, lockInfo ) );
 
-		boolean acquired = tryAcquire( lock );
+			return updated == 1;
+		}
+		else if ( LOG.isTraceEnabled() ) {
+			long duration = System.currentTimeMillis() - lockInfo.getCreated();
+			LOG.trace( "Lock {} is held by {} since {} ms", lockId, lockInfo.getOwnerId(), duration );
+		}
 
-		while ( !acquired ) {
-			Thread.sleep( configuration.getRetryInterval() );
-			acquired = tryAcquire( lock );
+		return false;
+	}
+
+	private Object[] takeLockArgs( String lockId, String ownerId, long timestamp ) {
+		if ( fencingTokensEnabled ) {
+			SqlParameterValue minimumToken = minimumFencingToken( timestamp );
+			return new Object[] { ownerId, minimumToken, minimumToken, ownerId, timestamp, timestamp, lockId, ownerId };
 		}
+		return new Object[] { ownerId, timestamp, timestamp, lockId, ownerId };
+	}
+
+	private Object[] stealLockArgs( String lockId, String ownerId, long timestamp, LockInfo lockInfo ) {
+		if ( fencingTokensEnabled ) {
+			SqlParameterValue minimumToken = minimumFencingToken( timestamp );
+			return new Object[] { minimumToken, minimumToken, ownerId, timestamp, timestamp, lockId,
+			                      lockInfo.getOwnerId(), lockInfo.getUpdated() };
+		}
+		return new Object[] { ownerId, timestamp, timestamp, lockId, lockInfo.getOwnerId(), lockInfo.getUpdated() };
+	}
+
+	/**
+	 * The minimum token is bound as a typed long parameter, as it is the only value of one of the CASE branches.
+	 */
+	private SqlParameterValue minimumFencingToken( long timestamp ) {
+		return new SqlParameterValue( Types.BIGINT, timestamp * FENCING_TOKENS_PER_MS );
+	}
+
+	private Object[] insertLockArgs( String lockId, String ownerId, long timestamp ) {
+		if ( fencingTokensEnabled ) {
+			return new Object[] { lockId, ownerId, timestamp, timestamp, timestamp * FENCING_TOKENS_PER_MS };
+		}
+		return new Object[] { lockId, ownerId, timestamp, timestamp };
+	}
+
+	/**
+	 * Fetch the fencing tokens for a number of locks in a single query.
+	 *
+	 * @return token for every lock in the same order, {@link SqlBasedDistributedLockMonitor#NO_FENCING_TOKEN}
+	 * if the lock is no longer held by the expected owner
+	 */
+	private long[] getFencingTokens( List<String> lockIds, String[] ownerIds ) {
+		String query = sqlSelectFencingTokens + String.join( ",", Collections.nCopies( lockIds.size(), "?" ) ) + ")";
+		Map<String, LockInfo> lockInfos = new HashMap<>();
+
+		jdbcTemplate.query( query, rs -> {
+			LockInfo lockInfo = new LockInfo();
+			lockInfo.setLockId( rs.getString( "lock_id" ) );
+			lockInfo.setOwnerId( rs.getString( "owner_id" ) );
+			lockInfo.setFencingToken( rs.getLong( "fencing_token" ) );
+			lockInfos.put( lockInfo.getLockId(), lockInfo );
+		}, lockIds.toArray() );
+
+		long[] fencingTokens = new long[lockIds.size()];
+
+		for ( int i = 0; i < fencingTokens.length; i++ ) {
+			LockInfo lockInfo = lockInfos.get( lockIds.get( i ) );
+			fencingTokens[i] = lockInfo != null && ownerIds[i].equals( lockInfo.getOwnerId() )
+					? lockInfo.getFencingToken() : SqlBasedDistributedLockMonitor.NO_FENCING_TOKEN;
+		}
+
+		return fencingTokens;
+	}
+
+	private boolean createLock( String lockId, String ownerId ) {
+		LOG.trace( "Lock {} currently does not exist, creating", lockId );
+
+		int created;
+
+		try {
+			long timestamp = System.currentTimeMillis();
+			created = jdbcTemplate.update( sqlInsertLock, insertLockArgs( lockId, ownerId, timestamp ) );
+		}
+		catch ( DataAccessException dae ) {
+			created = 0;
+		}
+
+		if ( created != 1 ) {
+			LOG.trace( "Failed to create lock record {} - was possibly created in the meantime", lockId );
+			return false;
+		}
+
+		LOG.trace( "Lock {} created by {}", lockId, ownerId );
+		return true;
 	}
 
 	@Override
-	public boolean tryAcquire( DistributedLock lock, long time, TimeUnit unit ) {
+	public void acquireAll( Collection<DistributedLock> locks ) {
 		checkDestroyed();
 
-		boolean acquired = tryAcquire( lock );
+		List<DistributedLock> remaining = new ArrayList<>( locks );
+		remaining.sort( Comparator.comparing( DistributedLock::getKey ) );
 
-		long delay = configuration.getRetryInterval();
-		long timeRemaining = unit.toMillis( time );
+		List<DistributedLock> acquired = new ArrayList<>( remaining.size() );
+		boolean success = false;
 
 		try {
-			while ( !acquired && timeRemaining > 0 ) {
-				if ( timeRemaining < delay ) {
-					delay = timeRemaining;
+			while ( !remaining.isEmpty() ) {
+				boolean[] taken = tryAcquireBatch( remaining );
+
+				int firstMissing = 0;
+				while ( firstMissing < taken.length && taken[firstMissing] ) {
+					firstMissing++;
 				}
 
-				Thread.sleep( delay );
-				acquired = tryAcquire( lock );
+				List<DistributedLock> outOfOrder = new ArrayList<>();
+
+				for ( int i = 0; i < taken.length; i++ ) {
+					if ( taken[i] && i < firstMissing ) {
+						acquired.add( remaining.get( i ) );
+					}
+					else if ( taken[i] ) {
+						outOfOrder.add( remaining.get( i ) );
+					}
+				}
 
-				timeRemaining -= delay;
+				if ( firstMissing == taken.length ) {
+					break;
+				}
+
+				// Only keep the locks preceding the first one we failed to get, wait for that one
+				if ( !outOfOrder.isEmpty() ) {
+					releaseAll( outOfOrder );
+				}
+
+				DistributedLock blocking = remaining.get( firstMissing );
+				LOG.trace( "Waiting for lock {} before acquiring the {} remaining locks", blocking.getKey(),
+				           remaining.size() - firstMissing - 1 );
+				acquireInterruptibly( blocking );
+				acquired.add( blocking );
+
+				remaining = new ArrayList<>( remaining.subList( firstMissing + 1, remaining.size() ) );
 			}
+
+			success = true;
 		}
 		catch ( InterruptedException ie ) {
 			throw new DistributedLockWaitException( ie );
 		}
-
-		return acquired;
+		finally {
+			if ( !success && !acquired.isEmpty() ) {
+				releaseAll( acquired );
+			}
+		}
 	}
 
-	@Override
-	public boolean tryAcquire( DistributedLock lock ) {
-		checkDestroyed();
-
-		String lockId = lock.getKey();
-		String ownerId = lock.getOwnerId();
+	/**
+	 * Try to acquire all locks using as few statements as possible: a single batch of take statements,
+	 * followed by a single select and a batch of inserts for the locks that could not be taken directly.
+	 * Only locks that can be stolen are handled one by one.
+	 *
+	 * @return acquired status for every lock, in the same order
+	 */
+	private boolean[] tryAcquireBatch( List<DistributedLock> locks ) {
+		int size = locks.size();
+		String[] lockIds = new String[size];
+		String[] ownerIds = new String[size];
+
+		for ( int i = 0; i < size; i++ ) {
+			DistributedLock lock = locks.get( i );
+			lockIds[i] = lock.getKey();
+			ownerIds[i] = lock.getOwnerId();
+			verify( lockIds[i], ownerIds[i] );
+		}
 
-		verify( lockId, ownerId );
+		LOG.trace( "Trying to acquire batch of {} locks", size );
 
 		try {
-			return tryAcquire( lockId, ownerId, lock );
+			long timestamp = System.currentTimeMillis();
+			List<Object[]> takeArgs = new ArrayList<>( size );
+
+			for ( int i = 0; i < size; i++ ) {
+				takeArgs.add( takeLockArgs( lockIds[i], ownerIds[i], timestamp ) );
+			}
+
+			int[] updateCounts = jdbcTemplate.batchUpdate( sqlTakeLock, takeArgs );
+			boolean[] acquired = new boolean[size];
+			List<Integer> unresolved = new ArrayList<>();
+
+			for ( int i = 0; i < size; i++ ) {
+				if ( updateCounts.length == size && updateCounts[i] == 1 ) {
+					acquired[i] = true;
+				}
+				else {
+					unresolved.add( i );
+				}
+			}
+
+			if ( !unresolved.isEmpty() ) {
+				Set<String> unresolvedLockIds = new LinkedHashSet<>();
+				unresolved.forEach( i -> unresolvedLockIds.add( lockIds[i] ) );
+
+				Map<String, LockInfo> lockInfos = getLockInfos( unresolvedLockIds );
+				List<Integer> toCreate = new ArrayList<>();
+
+				for ( int i : unresolved ) {
+					LockInfo lockInfo = lockInfos.get( lockIds[i] );
+
+					if ( lockInfo == null ) {
+						toCreate.add( i );
+					}
+					else if ( ownerIds[i].equals( lockInfo.getOwnerId() ) ) {
+						acquired[i] = true;
+					}
+					else {
+						acquired[i] = trySteal( lockIds[i], ownerIds[i], lockInfo );
+					}
+				}
+
+				if ( !toCreate.isEmpty() ) {
+					createLocks( toCreate, lockIds, ownerIds, acquired );
+				}
+			}
+
+			boolean[] undone = isReadLockingEnabled() ? releaseLocksWithOtherReaders( lockIds, ownerIds, acquired ) : new boolean[size];
+
+			long[] fencingTokens = fencingTokensEnabled ? getFencingTokens( Arrays.asList( lockIds ), ownerIds ) : null;
+
+			for ( int i = 0; i < size; i++ ) {
+				if ( acquired[i] ) {
+					lockMonitor.addLock( ownerIds[i], locks.get( i ), fencingTokens != null
+							? fencingTokens[i] : SqlBasedDistributedLockMonitor.NO_FENCING_TOKEN );
+				}
+				else if ( !undone[i] ) {
+					lockMonitor.removeLock( ownerIds[i], lockIds[i] );
+				}
+			}
+
+			return acquired;
 		}
 		catch ( DistributedLockException dle ) {
 			throw dle;
 		}
 		catch ( Exception e ) {
-			throw new DistributedLockException( "Exception when trying to acquire lock " + lockId, e );
+			throw new DistributedLockException( "Exception when trying to acquire batch of " + size + " locks", e );
 		}
 	}
 
-	private void verify( String lockId, String ownerId ) {
-		Assert.hasText( lockId, "lock key must not be empty" );
-		Assert.hasText( ownerId, "owner id must not be empty" );
-		Assert.isTrue( lockId.length() <= configuration.getMaxKeyLength(),
-		               "lock key cannot be longer than " + configuration.getMaxKeyLength() + " characters" );
-		Assert.isTrue( ownerId.length() <= configuration.getMaxOwnerIdLength(),
-		               "owner id cannot be longer than " + configuration.getMaxOwnerIdLength() + " characters" );
-	}
+	/**
+	 * Undo the exclusive locks that were acquired but still have active read leases held by other owners.
+	 * Only the hold taken by this attempt is released, an owner that already held the lock keeps its earlier holds.
+	 *
+	 * @return flags for the locks that have been undone
+	 */
+	private boolean[] releaseLocksWithOtherReaders( String[] lockIds, String[] ownerIds, boolean[] acquired ) {
+		boolean[] undone = new boolean[acquired.length];
+		Set<String> acquiredLockIds = new LinkedHashSet<>();
 
-	private boolean tryAcquire( String lockId, String ownerId, DistributedLock lock ) {
-		boolean acquired = false;
+		for ( int i = 0; i < acquired.length; i++ ) {
+			if ( acquired[i] ) {
+				acquiredLockIds.add( lockIds[i] );
+			}
+		}
 
-		LOG.trace( "Owner {} is trying to acquire lock {}", ownerId, lockId );
+		if ( acquiredLockIds.isEmpty() ) {
+			return undone;
+		}
+
+		Map<String, List<LockInfo>> readLeases = getActiveReadLeases( acquiredLockIds );
+
+		for ( int i = 0; i < acquired.length; i++ ) {
+			if ( acquired[i] && hasOtherOwner( readLeases.get( lockIds[i] ), ownerIds[i] ) ) {
+				LOG.trace( "Lock {} still has active readers - undoing acquire by {}", lockIds[i], ownerIds[i] );
+				releaseInDatabase( ownerIds[i], lockIds[i] );
+				acquired[i] = false;
+				undone[i] = true;
+			}
+		}
+
+		return undone;
+	}
+
+	private void createLocks( List<Integer> toCreate, String[] lockIds, String[] ownerIds, boolean[] acquired ) {
+		LOG.trace( "Creating {} lock records in a single batch", toCreate.size() );
 
 		long timestamp = System.currentTimeMillis();
+		List<Object[]> insertArgs = new ArrayList<>( toCreate.size() );
+
+		for ( int i : toCreate ) {
+			insertArgs.add( insertLockArgs( lockIds[i], ownerIds[i], timestamp ) );
+		}
+
 		try {
-			int updated;
+			jdbcTemplate.batchUpdate( sqlInsertLock, insertArgs );
 
-			try {
-				updated = jdbcTemplate.update( sqlTakeLock, ownerId, timestamp, timestamp, lockId, ownerId );
+			for ( int i : toCreate ) {
+				acquired[i] = true;
 			}
-			catch ( DeadlockLoserDataAccessException dle ) {
-				LOG.trace( "Deadlock loser for lock  {} - retrying once immediately", lockId );
-				updated = jdbcTemplate.update( sqlTakeLock, ownerId, timestamp, timestamp, lockId, ownerId );
+		}
+		catch ( DataAccessException dae ) {
+			LOG.trace( "Failed to create batch of lock records - some were possibly created in the meantime" );
+
+			// Part of the batch might have been executed, check which records we own before inserting one by one
+			Set<String> lockIdsToCreate = new LinkedHashSet<>();
+			toCreate.forEach( i -> lockIdsToCreate.add( lockIds[i] ) );
+			Map<String, LockInfo> lockInfos = getLockInfos( lockIdsToCreate );
+
+			for ( int i : toCreate ) {
+				LockInfo lockInfo = lockInfos.get( lockIds[i] );
+				acquired[i] = lockInfo != null
+						? ownerIds[i].equals( lockInfo.getOwnerId() )
+						: createLock( lockIds[i], ownerIds[i] );
 			}
+		}
+	}
 
-			if ( updated > 1 ) {
-				throw new DistributedLockException(
-						"DistributedLockRepository table corrupt, more than one lock with id " + lockId );
-			}
+	@Override
+	public void releaseAll( Collection<DistributedLock> locks ) {
+		checkDestroyed();
 
-			if ( updated == 1 ) {
-				LOG.trace( "Owner {} directly acquired lock {}", ownerId, lockId );
-				acquired = true;
-			}
-			else {
-				LockInfo lockInfo = getLockInfo( lockId );
+		List<Object[]> releaseArgs = new ArrayList<>( locks.size() );
 
-				if ( lockInfo != null ) {
-					if ( ownerId.equals( lockInfo.getOwnerId() ) ) {
-						acquired = true;
-					}
-					else {
-						timestamp = System.currentTimeMillis();
-						long lastUpdateAge = timestamp - lockInfo.getUpdated();
-						if ( lastUpdateAge > configuration.getMaxIdleBeforeSteal() ) {
-							LOG.trace( "Lock {} was last updated {} ms ago - attempting to steal the lock",
-							           lockId, lastUpdateAge );
-							updated = jdbcTemplate.update( sqlStealLock, ownerId, timestamp, timestamp, lockId,
-							                               lockInfo.getOwnerId(), lockInfo.getUpdated() );
-
-							acquired = updated == 1;
-						}
-						else if ( LOG.isTraceEnabled() ) {
-							long duration = System.currentTimeMillis() - lockInfo.getCreated();
-							LOG.trace( "Lock {} is held by {} since {} ms", lockId, lockInfo.getOwnerId(),
-							           duration );
-						}
-					}
-				}
-				else {
-					LOG.trace( "Lock {} currently does not exist, creating", lockId );
+		for ( DistributedLock lock : locks ) {
+			String ownerId = lock.getOwnerId();
+			String lockId = lock.getKey();
 
-					int created;
+			LOG.trace( "Owner {} is releasing lock {}", ownerId, lockId );
+			lockMonitor.removeLock( ownerId, lockId );
+			releaseArgs.add( new Object[] { lockId, ownerId } );
+		}
 
-					try {
-						timestamp = System.currentTimeMillis();
-						created = jdbcTemplate.update( sqlInsertLock, lockId, ownerId, timestamp, timestamp );
-					}
-					catch ( DataAccessException dae ) {
-						created = 0;
-					}
+		try {
+			int[] updateCounts = jdbcTemplate.batchUpdate( sqlReleaseLock, releaseArgs );
+			List<Object[]> decreaseArgs = new ArrayList<>();
 
-					if ( created != 1 ) {
-						LOG.trace( "Failed to create lock record {} - was possibly created in the meantime",
-						           lockId );
-					}
-					else {
-						LOG.trace( "Lock {} created by {}", lockId, ownerId );
-						acquired = true;
-					}
+			for ( int i = 0; i < releaseArgs.size(); i++ ) {
+				int updated = updateCounts.length == releaseArgs.size() ? updateCounts[i] : Statement.SUCCESS_NO_INFO;
+				String lockId = (String) releaseArgs.get( i )[0];
+
+				if ( updated == 1 || updated == Statement.SUCCESS_NO_INFO ) {
+					signalReleased( lockId );
 				}
-			}
 
-			if ( acquired ) {
-				lockMonitor.addLock( ownerId, lock );
+				// release and decrease are mutually exclusive, so if unknown it is safe to execute the decrease as well
+				if ( updated != 1 ) {
+					decreaseArgs.add( releaseArgs.get( i ) );
+				}
 			}
-			else {
-				// Cleanup any stale record already, we're sure we no longer have the lock
-				lockMonitor.removeLock( ownerId, lockId );
+
+			if ( !decreaseArgs.isEmpty() ) {
+				LOG.trace( "Releasing {} locks failed - trying decreasing the holds", decreaseArgs.size() );
+				jdbcTemplate.batchUpdate( sqlDecreaseHold, decreaseArgs );
 			}
 		}
-		catch ( DeadlockLoserDataAccessException dle ) {
-			LOG.debug( "Deadlock loser for lock {}", lockId, dle );
+		catch ( DataAccessException dae ) {
+			LOG.warn(
+					"Clean release of {} locks in database failed - locks appear still taken but can be stolen after the idle time.",
+					releaseArgs.size() );
 		}
-
-		return acquired;
 	}
 
 	@Override
@@ -477,6 +817,23 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 		}
 	}
 
+	@Override
+	public long getFencingToken( String ownerId, String lockId ) {
+		checkDestroyed();
+
+		if ( !fencingTokensEnabled ) {
+			throw new IllegalStateException( "Fencing tokens have not been enabled in the lock configuration." );
+		}
+
+		long fencingToken = lockMonitor.getFencingToken( ownerId, lockId );
+
+		if ( fencingToken == SqlBasedDistributedLockMonitor.NO_FENCING_TOKEN ) {
+			throw new IllegalStateException( "Lock " + lockId + " is not held by " + ownerId );
+		}
+
+		return fencingToken;
+	}
+
 	@Override
 	public boolean verifyLockedByOwner( String ownerId, String lockId ) {
 		checkDestroyed();
@@ -488,24 +845,95 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 		}
 	}
 
-	@Override
-	public void release( DistributedLock lock ) {
+	/**
+	 * Verifies a number of locks in a single JDBC batch.  The result array holds the verification
+	 * result for every lock in the same order.  If the driver does not report the individual update counts,
+	 * the current owners of the locks will be selected in a single query instead.
+	 *
+	 * @param activeLocks locks to verify
+	 * @return {@code true} for every lock that was still held by its owner
+	 */
+	boolean[] verifyLockedByOwners( List<SqlBasedDistributedLockMonitor.ActiveLock> activeLocks ) {
 		checkDestroyed();
-		release( lock.getOwnerId(), lock.getKey() );
+		try {
+			long timestamp = System.currentTimeMillis();
+			List<Object[]> batchArgs = new ArrayList<>( activeLocks.size() );
+
+			for ( SqlBasedDistributedLockMonitor.ActiveLock activeLock : activeLocks ) {
+				batchArgs.add( new Object[] { timestamp, activeLock.getLockId(), activeLock.getOwnerId() } );
+			}
+
+			int[] updateCounts = jdbcTemplate.batchUpdate( sqlVerifyLock, batchArgs );
+
+			if ( updateCounts.length != activeLocks.size() ) {
+				return selectLockedByOwners( activeLocks );
+			}
+
+			boolean[] lockedByOwner = new boolean[updateCounts.length];
+
+			for ( int i = 0; i < updateCounts.length; i++ ) {
+				if ( updateCounts[i] == Statement.SUCCESS_NO_INFO ) {
+					LOG.trace( "No update counts returned for lock verification batch - selecting the owners" );
+					return selectLockedByOwners( activeLocks );
+				}
+				lockedByOwner[i] = updateCounts[i] == 1;
+			}
+
+			return lockedByOwner;
+		}
+		catch ( Exception e ) {
+			throw new DistributedLockException( "Exception trying to update batch of " + activeLocks.size() + " locks",
+			                                    e );
+		}
 	}
 
-	private void checkDestroyed() {
-		if ( destroyed ) {
-			throw new IllegalStateException(
-					"The DistributedLockManager has been destroyed - creating locks is impossible." );
+	private boolean[] selectLockedByOwners( List<SqlBasedDistributedLockMonitor.ActiveLock> activeLocks ) {
+		List<String> lockIds = new ArrayList<>( activeLocks.size() );
+
+		for ( SqlBasedDistributedLockMonitor.ActiveLock activeLock : activeLocks ) {
+			lockIds.add( activeLock.getLockId() );
+		}
+
+		Map<String, LockInfo> lockInfos = getLockInfos( lockIds );
+		boolean[] lockedByOwner = new boolean[lockIds.size()];
+
+		for ( int i = 0; i < lockedByOwner.length; i++ ) {
+			SqlBasedDistributedLockMonitor.ActiveLock activeLock = activeLocks.get( i );
+			LockInfo lockInfo = lockInfos.get( activeLock.getLockId() );
+			lockedByOwner[i] = lockInfo != null && activeLock.getOwnerId().equals( lockInfo.getOwnerId() );
+		}
+
+		return lockedByOwner;
+	}
+
+	/**
+	 * Fetch the lock info for a number of locks in a single query.  Locks that do not exist will not be present
+	 * in the map returned.
+	 */
+	private Map<String, LockInfo> getLockInfos( Collection<String> lockIds ) {
+		String query = sqlSelectLocks + String.join( ",", Collections.nCopies( lockIds.size(), "?" ) ) + ")";
+		Map<String, LockInfo> lockInfos = new HashMap<>();
+
+		for ( LockInfo lockInfo : jdbcTemplate.query( query, new LockInfoMapper(), lockIds.toArray() ) ) {
+			lockInfos.put( lockInfo.getLockId(), lockInfo );
 		}
+
+		return lockInfos;
 	}
 
-	private void release( String ownerId, String lockId ) {
+	@Override
+	protected void release( String ownerId, String lockId ) {
 		LOG.trace( "Owner {} is releasing lock {}", ownerId, lockId );
 		lockMonitor.removeLock( ownerId, lockId );
+		releaseInDatabase( ownerId, lockId );
+	}
+
+	private void releaseInDatabase( String ownerId, String lockId ) {
 		try {
-			if ( jdbcTemplate.update( sqlReleaseLock, lockId, ownerId ) != 1 ) {
+			if ( jdbcTemplate.update( sqlReleaseLock, lockId, ownerId ) == 1 ) {
+				signalReleased( lockId );
+			}
+			else {
 				LOG.trace( "Releasing lock {} failed - trying decreasing the holds", lockId );
 				if ( jdbcTemplate.update( sqlDecreaseHold, lockId, ownerId ) != 1 ) {
 					LOG.trace( "Releasing lock {} failed - possibly it was forcibly taken already", lockId );
@@ -519,11 +947,276 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 		}
 	}
 
+	@Override
+	public void acquireRead( DistributedLock lock ) {
+		try {
+			acquireReadInterruptibly( lock );
+		}
+		catch ( InterruptedException ie ) {
+			throw new DistributedLockWaitException( ie );
+		}
+	}
+
+	@Override
+	public void acquireReadInterruptibly( DistributedLock lock ) throws InterruptedException {
+		checkDestroyed();
+		checkReadLockingEnabled();
+		waitForLock( lock, this::tryAcquireRead, -1 );
+	}
+
+	@Override
+	public CompletableFuture<DistributedLock> acquireReadAsync( DistributedLock lock ) {
+		checkReadLockingEnabled();
+		return acquireAsync( lock, this::tryAcquireRead, this::releaseRead );
+	}
+
+	@Override
+	public boolean tryAcquireRead( DistributedLock lock, long time, TimeUnit unit ) {
+		checkDestroyed();
+		checkReadLockingEnabled();
+
+		try {
+			return waitForLock( lock, this::tryAcquireRead, unit.toNanos( time ) );
+		}
+		catch ( InterruptedException ie ) {
+			throw new DistributedLockWaitException( ie );
+		}
+	}
+
+	/**
+	 * Registers a read lease and checks afterwards that no other owner holds the exclusive lock.
+	 * If the exclusive lock turns out to be taken, the read lease is removed again.  Because the exclusive
+	 * lock checks for read leases after it has been taken, at least one of both parties will always back off.
+	 */
+	@Override
+	public boolean tryAcquireRead( DistributedLock lock ) {
+		checkDestroyed();
+		checkReadLockingEnabled();
+
+		String lockId = lock.getKey();
+		String ownerId = lock.getOwnerId();
+
+		verify( lockId, ownerId );
+
+		return tryAcquireRead( lockId, ownerId, lock );
+	}
+
+	private boolean tryAcquireRead( String lockId, String ownerId, DistributedLock lock ) {
+		LOG.trace( "Owner {} is trying to acquire read lock {}", ownerId, lockId );
+
+		try {
+			if ( !takeReadLease( lockId, ownerId ) ) {
+				return false;
+			}
+
+			if ( isLockedByOtherOwner( lockId, ownerId ) ) {
+				LOG.trace( "Lock {} is held exclusively - undoing read lease of {}", lockId, ownerId );
+				releaseReadLeaseInDatabase( ownerId, lockId );
+				return false;
+			}
+
+			lockMonitor.addReadLease( ownerId, lock );
+			return true;
+		}
+		catch ( DistributedLockException dle ) {
+			throw dle;
+		}
+		catch ( Exception e ) {
+			throw new DistributedLockException( "Exception when trying to acquire read lock " + lockId, e );
+		}
+	}
+
+	private boolean takeReadLease( String lockId, String ownerId ) {
+		long timestamp = System.currentTimeMillis();
+
+		if ( jdbcTemplate.update( sqlTakeReadLease, timestamp, lockId, ownerId ) == 1 ) {
+			return true;
+		}
+
+		try {
+			return jdbcTemplate.update( sqlInsertReadLease, lockId, ownerId, timestamp, timestamp ) == 1;
+		}
+		catch ( DataAccessException dae ) {
+			LOG.trace( "Failed to create read lease {} for {} - was possibly created in the meantime", lockId, ownerId );
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if another owner holds the exclusive lock and that lock cannot be stolen
+	 */
+	private boolean isLockedByOtherOwner( String lockId, String ownerId ) {
+		LockInfo lockInfo = getLockInfo( lockId );
+
+		return lockInfo != null
+				&& lockInfo.getOwnerId() != null
+				&& !ownerId.equals( lockInfo.getOwnerId() )
+				&& System.currentTimeMillis() - lockInfo.getUpdated() <= configuration.getMaxIdleBeforeSteal();
+	}
+
+	@Override
+	public void releaseRead( DistributedLock lock ) {
+		checkDestroyed();
+		checkReadLockingEnabled();
+
+		releaseRead( lock.getOwnerId(), lock.getKey() );
+	}
+
+	private void releaseRead( String ownerId, String lockId ) {
+		LOG.trace( "Owner {} is releasing read lock {}", ownerId, lockId );
+		lockMonitor.removeReadLease( ownerId, lockId );
+		releaseReadLeaseInDatabase( ownerId, lockId );
+	}
+
+	private void releaseReadLeaseInDatabase( String ownerId, String lockId ) {
+		try {
+			if ( jdbcTemplate.update( sqlReleaseReadLease, lockId, ownerId ) == 1 ) {
+				signalReleased( lockId );
+			}
+			else if ( jdbcTemplate.update( sqlDecreaseReadLease, lockId, ownerId ) != 1 ) {
+				LOG.trace( "Releasing read lock {} failed - possibly the read lease had expired already", lockId );
+			}
+		}
+		catch ( DataAccessException dae ) {
+			LOG.warn(
+					"Clean release of read lock {} in database failed - read lease will expire after the idle time.",
+					lockId );
+		}
+	}
+
+	@Override
+	public boolean isReadLocked( String lockKey ) {
+		checkDestroyed();
+		checkReadLockingEnabled();
+		return getActiveReadLeases( Collections.singleton( lockKey ) ).containsKey( lockKey );
+	}
+
+	@Override
+	public boolean isReadLockedByOwner( String ownerId, String lockKey ) {
+		Assert.notNull( ownerId );
+		checkDestroyed();
+		checkReadLockingEnabled();
+
+		if ( lockMonitor.hasReliableReadLease( ownerId, lockKey ) ) {
+			return true;
+		}
+
+		List<LockInfo> readLeases = getActiveReadLeases( Collections.singleton( lockKey ) ).get( lockKey );
+
+		if ( readLeases != null ) {
+			for ( LockInfo readLease : readLeases ) {
+				if ( ownerId.equals( readLease.getOwnerId() ) ) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean hasOtherReaders( String lockId, String ownerId ) {
+		return hasOtherOwner( getActiveReadLeases( Collections.singleton( lockId ) ).get( lockId ), ownerId );
+	}
+
+	private boolean hasOtherOwner( List<LockInfo> readLeases, String ownerId ) {
+		if ( readLeases != null ) {
+			for ( LockInfo readLease : readLeases ) {
+				if ( !ownerId.equals( readLease.getOwnerId() ) ) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Fetch all read leases that have been verified within the max idle time, grouped by lock id.
+	 * Locks without active read leases will not be present in the map returned.
+	 */
+	private Map<String, List<LockInfo>> getActiveReadLeases( Collection<String> lockIds ) {
+		String query = sqlSelectReadLeases + String.join( ",", Collections.nCopies( lockIds.size(), "?" ) ) + ")";
+
+		List<Object> args = new ArrayList<>( lockIds.size() + 1 );
+		args.add( System.currentTimeMillis() - configuration.getMaxIdleBeforeSteal() );
+		args.addAll( lockIds );
+
+		Map<String, List<LockInfo>> readLeases = new HashMap<>();
+
+		for ( LockInfo readLease : jdbcTemplate.query( query, new LockInfoMapper(), args.toArray() ) ) {
+			readLeases.computeIfAbsent( readLease.getLockId(), lockId -> new ArrayList<>() ).add( readLease );
+		}
+
+		return readLeases;
+	}
+
+	/**
+	 * Updates a number of read leases in a single JDBC batch, see {@link #verifyLockedByOwners(List)}.
+	 *
+	 * @param readLeases to verify
+	 * @return {@code true} for every read lease that was still present
+	 */
+	boolean[] verifyReadLeases( List<SqlBasedDistributedLockMonitor.ActiveLock> readLeases ) {
+		checkDestroyed();
+		try {
+			long timestamp = System.currentTimeMillis();
+			List<Object[]> batchArgs = new ArrayList<>( readLeases.size() );
+
+			for ( SqlBasedDistributedLockMonitor.ActiveLock readLease : readLeases ) {
+				batchArgs.add( new Object[] { timestamp, readLease.getLockId(), readLease.getOwnerId() } );
+			}
+
+			int[] updateCounts = jdbcTemplate.batchUpdate( sqlVerifyReadLease, batchArgs );
+			boolean[] held = new boolean[readLeases.size()];
+
+			for ( int i = 0; i < held.length; i++ ) {
+				if ( updateCounts.length != held.length || updateCounts[i] == Statement.SUCCESS_NO_INFO ) {
+					return selectReadLeases( readLeases );
+				}
+				held[i] = updateCounts[i] == 1;
+			}
+
+			return held;
+		}
+		catch ( Exception e ) {
+			throw new DistributedLockException(
+					"Exception trying to update batch of " + readLeases.size() + " read leases", e );
+		}
+	}
+
+	private boolean[] selectReadLeases( List<SqlBasedDistributedLockMonitor.ActiveLock> readLeases ) {
+		Set<String> lockIds = new LinkedHashSet<>();
+		readLeases.forEach( readLease -> lockIds.add( readLease.getLockId() ) );
+
+		Map<String, List<LockInfo>> activeReadLeases = getActiveReadLeases( lockIds );
+		boolean[] held = new boolean[readLeases.size()];
+
+		for ( int i = 0; i < held.length; i++ ) {
+			SqlBasedDistributedLockMonitor.ActiveLock readLease = readLeases.get( i );
+			List<LockInfo> candidates = activeReadLeases.get( readLease.getLockId() );
+
+			if ( candidates != null ) {
+				for ( LockInfo candidate : candidates ) {
+					held[i] |= readLease.getOwnerId().equals( candidate.getOwnerId() );
+				}
+			}
+		}
+
+		return held;
+	}
+
+	private void checkReadLockingEnabled() {
+		if ( !isReadLockingEnabled() ) {
+			throw new IllegalStateException(
+					"No read lock table has been configured - read locks are not supported." );
+		}
+	}
+
 	private static final class LockInfo
 	{
 		private String lockId, ownerId;
 		private int holdCount;
-		private long created, updated;
+		private long created, updated, fencingToken;
 
 		public String getLockId() {
 			return lockId;
@@ -557,6 +1250,14 @@ public class SqlBasedDistributedLockManager implements DistributedLockManager
 			this.updated = updated;
 		}
 
+		public long getFencingToken() {
+			return fencingToken;
+		}
+
+		public void setFencingToken( long fencingToken ) {
+			this.fencingToken = fencingToken;
+		}
+
 		public int getHoldCount() {
 			return holdCount;
 		}
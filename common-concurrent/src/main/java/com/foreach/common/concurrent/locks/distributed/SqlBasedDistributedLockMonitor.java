@@ -18,13 +18,24 @@ package com.foreach.common.concurrent.locks.distributed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Monitor to be executed at regular intervals that will check if the
  * registered locks are still valid.
+ * <p/>
+ * Active locks are registered by lock id in a concurrent map, modifications of a single lock
+ * (eg. adding or removing local holds) are atomic but do not block operations on other locks.
+ * Read leases for shared read locks are registered separately by owner and lock id, and are verified
+ * after the exclusive locks in every run.
  *
  * @author Arne Vandamme
  */
@@ -32,55 +43,217 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 {
 	private static final Logger LOG = LoggerFactory.getLogger( SqlBasedDistributedLockMonitor.class );
 
+	/**
+	 * Value used if the fencing token of a lock is unknown.
+	 */
+	public static final long NO_FENCING_TOKEN = -1;
+
 	private final SqlBasedDistributedLockManager lockManager;
-	private final Map<ActiveLock, DistributedLock> activeLocks = new HashMap<>();
+	private final ConcurrentMap<String, ActiveLock> activeLocks = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ActiveLock, ActiveLock> readLeases = new ConcurrentHashMap<>();
 	private final long maxTimeBeforeUnstable;
 	private final long maxCacheTime;
+	private final int verifyBatchSize;
 
 	public SqlBasedDistributedLockMonitor( SqlBasedDistributedLockManager lockManager,
 	                                       long maxTimeBeforeUnstable,
 	                                       long maxCacheTime ) {
+		this( lockManager, maxTimeBeforeUnstable, maxCacheTime,
+		      SqlBasedDistributedLockConfiguration.DEFAULT_VERIFY_BATCH_SIZE );
+	}
+
+	public SqlBasedDistributedLockMonitor( SqlBasedDistributedLockManager lockManager,
+	                                       long maxTimeBeforeUnstable,
+	                                       long maxCacheTime,
+	                                       int verifyBatchSize ) {
 		this.lockManager = lockManager;
 		this.maxTimeBeforeUnstable = maxTimeBeforeUnstable;
 		this.maxCacheTime = maxCacheTime;
+		this.verifyBatchSize = verifyBatchSize;
 	}
 
-	public synchronized void addLock( String ownerId, DistributedLock lock ) {
+	public void addLock( String ownerId, DistributedLock lock ) {
+		addLock( ownerId, lock, NO_FENCING_TOKEN );
+	}
+
+	/**
+	 * Register a hold on the lock along with the fencing token of the owner.
+	 * Use {@link #NO_FENCING_TOKEN} if the token is unknown.
+	 */
+	public void addLock( String ownerId, DistributedLock lock, long fencingToken ) {
 		String lockId = lock.getKey();
-		ActiveLock activeLock = findActiveLock( lockId );
+		ActiveLock activeLock = activeLocks.compute( lockId, ( id, current ) -> {
+			if ( current == null ) {
+				current = new ActiveLock( ownerId, lockId, lock );
+			}
+			else if ( current.getOwnerId().equals( ownerId ) ) {
+				current.addLocalHold();
+			}
+			else {
+				return current;
+			}
+			if ( fencingToken != NO_FENCING_TOKEN ) {
+				current.setFencingToken( fencingToken );
+			}
+			return current;
+		} );
 
-		if ( activeLock != null && !activeLock.getOwnerId().equals( ownerId ) ) {
+		if ( !activeLock.getOwnerId().equals( ownerId ) ) {
 			// This guy just had his lock stolen
 			reportStolen( activeLock.getOwnerId(), lockId );
 		}
-		else if ( activeLock != null ) {
-			activeLock.addLocalHold();
-		}
-		else {
-			activeLocks.put( new ActiveLock( ownerId, lockId ), lock );
-		}
 	}
 
 	@Override
 	public void run() {
-		try {
-			for ( Map.Entry<ActiveLock, DistributedLock> activeLock : getActiveLocks().entrySet() ) {
-				ActiveLock key = activeLock.getKey();
+		long runStart = System.nanoTime();
 
-				// Before checking, ensure that it is still supposed to be active
-				if ( activeLocks.containsKey( key ) ) {
-					LOG.trace( "Verifying lock {} is still owned by {}", key.getLockId(), key.getOwnerId() );
+		try {
+			if ( verifyBatchSize > 1 ) {
+				verifyInBatches();
+			}
+			else {
+				verifyOneByOne();
+			}
 
-					// If not active, report stolen
-					if ( !verifyStillLocked( key, activeLock.getValue() ) ) {
-						reportStolen( key.getOwnerId(), key.getLockId() );
-					}
-				}
+			if ( !readLeases.isEmpty() ) {
+				verifyReadLeases();
 			}
 		}
 		catch ( Exception e ) {
 			LOG.error( "Exception trying to monitor locks", e );
 		}
+
+		try {
+			lockManager.getMetrics().monitorCycle( System.nanoTime() - runStart );
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Exception trying to record the lock monitor cycle", e );
+		}
+	}
+
+	private void verifyOneByOne() {
+		for ( ActiveLock activeLock : activeLocks.values() ) {
+			// Before checking, ensure that it is still supposed to be active
+			if ( isRegistered( activeLock ) ) {
+				LOG.trace( "Verifying lock {} is still owned by {}", activeLock.getLockId(), activeLock.getOwnerId() );
+
+				// If not active, report stolen
+				if ( !verifyStillLocked( activeLock, activeLock.getLock() ) ) {
+					reportStolen( activeLock.getOwnerId(), activeLock.getLockId() );
+				}
+			}
+		}
+	}
+
+	private void verifyInBatches() {
+		List<ActiveLock> batch = new ArrayList<>( Math.min( verifyBatchSize, activeLocks.size() ) );
+
+		for ( ActiveLock activeLock : activeLocks.values() ) {
+			// Before checking, ensure that it is still supposed to be active
+			if ( isRegistered( activeLock ) ) {
+				batch.add( activeLock );
+			}
+
+			if ( batch.size() == verifyBatchSize ) {
+				verifyBatchStillLocked( batch );
+				batch.clear();
+			}
+		}
+
+		if ( !batch.isEmpty() ) {
+			verifyBatchStillLocked( batch );
+		}
+	}
+
+	private void verifyReadLeases() {
+		int batchSize = Math.max( verifyBatchSize, 1 );
+		List<ActiveLock> batch = new ArrayList<>( Math.min( batchSize, readLeases.size() ) );
+
+		for ( ActiveLock readLease : readLeases.values() ) {
+			batch.add( readLease );
+
+			if ( batch.size() == batchSize ) {
+				verifyReadLeaseBatch( batch );
+				batch.clear();
+			}
+		}
+
+		if ( !batch.isEmpty() ) {
+			verifyReadLeaseBatch( batch );
+		}
+	}
+
+	private void verifyReadLeaseBatch( List<ActiveLock> batch ) {
+		LOG.trace( "Verifying batch of {} read leases", batch.size() );
+
+		boolean[] held;
+
+		try {
+			held = lockManager.verifyReadLeases( batch );
+		}
+		catch ( DistributedLockException dle ) {
+			LOG.warn( "Unable to update batch of {} read leases - read locks might be unstable", batch.size() );
+			for ( ActiveLock readLease : batch ) {
+				if ( isUnstable( readLease ) ) {
+					LOG.error( "Read lease verification failed too many times - triggering lock unstable callback" );
+					reportUnstable( readLease.getLastVerified(), readLease.getLock(), dle );
+				}
+			}
+			return;
+		}
+
+		long verified = System.currentTimeMillis();
+
+		for ( int i = 0; i < held.length; i++ ) {
+			ActiveLock readLease = batch.get( i );
+			readLease.setLastVerified( verified );
+
+			if ( !held[i] && readLeases.remove( readLease, readLease ) ) {
+				LOG.trace( "Read lease on lock {} was supposed to be held by {}, but it appears to be gone",
+				           readLease.getLockId(), readLease.getOwnerId() );
+				executeStolenCallback( readLease.getOwnerId(), readLease.getLockId(), readLease.getLock() );
+			}
+		}
+	}
+
+	private boolean isRegistered( ActiveLock activeLock ) {
+		return activeLocks.get( activeLock.getLockId() ) == activeLock;
+	}
+
+	/**
+	 * Batch variant of {@link #verifyStillLocked(ActiveLock, DistributedLock)}: if the batch fails, every lock
+	 * in it is considered unverified and can go unstable.  Locks that are no longer held are reported stolen.
+	 */
+	private void verifyBatchStillLocked( List<ActiveLock> batch ) {
+		LOG.trace( "Verifying batch of {} locks", batch.size() );
+
+		boolean[] lockedByOwner;
+
+		try {
+			lockedByOwner = lockManager.verifyLockedByOwners( batch );
+		}
+		catch ( DistributedLockException dle ) {
+			LOG.warn( "Unable to update batch of {} locks - locks might be unstable", batch.size() );
+			for ( ActiveLock monitorInfo : batch ) {
+				if ( isUnstable( monitorInfo ) ) {
+					LOG.error( "Lock verification failed too many times - triggering lock unstable callback" );
+					reportUnstable( monitorInfo.getLastVerified(), monitorInfo.getLock(), dle );
+				}
+			}
+			return;
+		}
+
+		long verified = System.currentTimeMillis();
+
+		for ( int i = 0; i < lockedByOwner.length; i++ ) {
+			ActiveLock monitorInfo = batch.get( i );
+			monitorInfo.setLastVerified( verified );
+
+			if ( !lockedByOwner[i] ) {
+				reportStolen( monitorInfo.getOwnerId(), monitorInfo.getLockId() );
+			}
+		}
 	}
 
 	/**
@@ -106,6 +279,8 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 	}
 
 	private void reportUnstable( long lastVerified, DistributedLock lock, DistributedLockException dle ) {
+		lockManager.getMetrics().lockUnstable();
+
 		DistributedLock.LockUnstableCallback callback = lock.getUnstableCallback();
 
 		if ( callback == null ) {
@@ -130,20 +305,26 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 			LOG.trace( "Lock {} was supposed to be owned by {}, but it appears to be stolen",
 			           lockId, ownerId );
 
-			// Execute the stolen callback if there is one
-			DistributedLock.LockStolenCallback callback = removedLock.getStolenCallback();
+			executeStolenCallback( ownerId, lockId, removedLock );
+		}
+	}
 
-			if ( callback == null ) {
-				callback = lockManager.getDefaultLockStolenCallback();
-			}
+	private void executeStolenCallback( String ownerId, String lockId, DistributedLock removedLock ) {
+		lockManager.getMetrics().lockStolen();
 
-			if ( callback != null ) {
-				try {
-					callback.stolen( lockId, ownerId, removedLock );
-				}
-				catch ( Exception e ) {
-					LOG.error( "Exception executing stolen callback for lock {}", lockId, e );
-				}
+		// Execute the stolen callback if there is one
+		DistributedLock.LockStolenCallback callback = removedLock.getStolenCallback();
+
+		if ( callback == null ) {
+			callback = lockManager.getDefaultLockStolenCallback();
+		}
+
+		if ( callback != null ) {
+			try {
+				callback.stolen( lockId, ownerId, removedLock );
+			}
+			catch ( Exception e ) {
+				LOG.error( "Exception executing stolen callback for lock {}", lockId, e );
 			}
 		}
 	}
@@ -151,23 +332,26 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 	/**
 	 * @return instance only if it was the final remove (not a hold decrease)
 	 */
-	public synchronized DistributedLock removeLock( String ownerId, String lockId ) {
-		ActiveLock activeLock = findActiveLock( lockId );
-
-		if ( activeLock != null && activeLock.getOwnerId().equals( ownerId ) && activeLock.removeLocalHold() ) {
-			return activeLocks.remove( activeLock );
+	public DistributedLock removeLock( String ownerId, String lockId ) {
+		AtomicReference<DistributedLock> removed = new AtomicReference<>();
 
-		}
+		activeLocks.computeIfPresent( lockId, ( id, activeLock ) -> {
+			if ( activeLock.getOwnerId().equals( ownerId ) && activeLock.removeLocalHold() ) {
+				removed.set( activeLock.getLock() );
+				return null;
+			}
+			return activeLock;
+		} );
 
-		return null;
+		return removed.get();
 	}
 
 	/**
 	 * Get the lock owner according to the monitor thread.  The monitor caches the active locks for
 	 * performance.  If this method returns null, it simply means the monitor cannot reliably tell who the owner is.
 	 */
-	public synchronized String getOwnerForLock( String lockId ) {
-		ActiveLock activeLock = findActiveLock( lockId );
+	public String getOwnerForLock( String lockId ) {
+		ActiveLock activeLock = activeLocks.get( lockId );
 
 		if ( activeLock != null && isReliable( activeLock ) ) {
 			return activeLock.getOwnerId();
@@ -176,18 +360,91 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 		return null;
 	}
 
-	private synchronized ActiveLock findActiveLock( String lockId ) {
-		for ( ActiveLock activeLock : activeLocks.keySet() ) {
-			if ( activeLock.getLockId().equals( lockId ) ) {
-				return activeLock;
+	/**
+	 * @return fencing token registered for the owner or {@link #NO_FENCING_TOKEN} if unknown or not held by the owner
+	 */
+	public long getFencingToken( String ownerId, String lockId ) {
+		ActiveLock activeLock = activeLocks.get( lockId );
+
+		if ( activeLock != null && activeLock.getOwnerId().equals( ownerId ) ) {
+			return activeLock.getFencingToken();
+		}
+
+		return NO_FENCING_TOKEN;
+	}
+
+	/**
+	 * @return true if the lock is currently held by any owner that registered with this monitor
+	 */
+	public boolean isHeldLocally( String lockId ) {
+		return activeLocks.containsKey( lockId );
+	}
+
+	public void addReadLease( String ownerId, DistributedLock lock ) {
+		ActiveLock readLease = new ActiveLock( ownerId, lock.getKey(), lock );
+		readLeases.merge( readLease, readLease, ( current, added ) -> {
+			current.addLocalHold();
+			return current;
+		} );
+	}
+
+	/**
+	 * @return true if the last hold on the read lease was removed
+	 */
+	public boolean removeReadLease( String ownerId, String lockId ) {
+		AtomicBoolean removed = new AtomicBoolean( false );
+
+		readLeases.computeIfPresent( new ActiveLock( ownerId, lockId, null ), ( key, readLease ) -> {
+			if ( readLease.releaseHold() ) {
+				removed.set( true );
+				return null;
 			}
+			return readLease;
+		} );
+
+		return removed.get();
+	}
+
+	/**
+	 * Check if the owner holds a read lease according to the monitor.  Like {@link #getOwnerForLock(String)}
+	 * a {@code false} return value simply means the monitor cannot reliably tell.
+	 */
+	public boolean hasReliableReadLease( String ownerId, String lockId ) {
+		ActiveLock readLease = readLeases.get( new ActiveLock( ownerId, lockId, null ) );
+		return readLease != null && isReliable( readLease );
+	}
+
+	/**
+	 * @return snapshot of the read leases currently registered in the monitor
+	 */
+	public Map<ActiveLock, DistributedLock> getReadLeases() {
+		Map<ActiveLock, DistributedLock> snapshot = new HashMap<>();
+
+		for ( ActiveLock readLease : readLeases.values() ) {
+			snapshot.put( readLease, readLease.getLock() );
 		}
 
-		return null;
+		return snapshot;
 	}
 
-	public synchronized Map<ActiveLock, DistributedLock> getActiveLocks() {
-		return new HashMap<>( activeLocks );
+	/**
+	 * @return number of locks currently registered in the monitor
+	 */
+	public int getActiveLockCount() {
+		return activeLocks.size();
+	}
+
+	/**
+	 * @return snapshot of the locks currently registered in the monitor
+	 */
+	public Map<ActiveLock, DistributedLock> getActiveLocks() {
+		Map<ActiveLock, DistributedLock> snapshot = new HashMap<>();
+
+		for ( ActiveLock activeLock : activeLocks.values() ) {
+			snapshot.put( activeLock, activeLock.getLock() );
+		}
+
+		return snapshot;
 	}
 
 	private boolean isUnstable( ActiveLock activeLock ) {
@@ -200,13 +457,18 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 
 	public static class ActiveLock
 	{
-		private String ownerId, lockId;
-		private long lastVerified;
+		private final String ownerId, lockId;
+		private final DistributedLock lock;
+		private volatile long lastVerified;
+		private volatile long fencingToken = NO_FENCING_TOKEN;
+
+		// only modified while the registry entry is being computed
 		private int localHolds;
 
-		ActiveLock( String ownerId, String lockId ) {
+		ActiveLock( String ownerId, String lockId, DistributedLock lock ) {
 			this.ownerId = ownerId;
 			this.lockId = lockId;
+			this.lock = lock;
 
 			localHolds = 1;
 			lastVerified = System.currentTimeMillis();
@@ -220,6 +482,10 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 			return lockId;
 		}
 
+		DistributedLock getLock() {
+			return lock;
+		}
+
 		long getLastVerified() {
 			return lastVerified;
 		}
@@ -228,6 +494,14 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 			this.lastVerified = lastVerified;
 		}
 
+		long getFencingToken() {
+			return fencingToken;
+		}
+
+		void setFencingToken( long fencingToken ) {
+			this.fencingToken = fencingToken;
+		}
+
 		void addLocalHold() {
 			localHolds++;
 		}
@@ -239,6 +513,15 @@ public class SqlBasedDistributedLockMonitor implements Runnable
 			return --localHolds <= 1;
 		}
 
+		/**
+		 * Used for read leases, where every hold is released separately.
+		 *
+		 * @return true if no holds remain
+		 */
+		boolean releaseHold() {
+			return --localHolds <= 0;
+		}
+
 		@Override
 		public boolean equals( Object o ) {
 			if ( this == o ) {
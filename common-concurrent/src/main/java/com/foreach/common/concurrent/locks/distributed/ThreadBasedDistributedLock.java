@@ -15,6 +15,7 @@
  */
 package com.foreach.common.concurrent.locks.distributed;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 
@@ -60,6 +61,11 @@ public class ThreadBasedDistributedLock implements DistributedLock
 		lockManager.acquire( this );
 	}
 
+	@Override
+	public CompletableFuture<DistributedLock> lockAsync() {
+		return lockManager.acquireAsync( this );
+	}
+
 	@Override
 	public boolean tryLock() {
 		return lockManager.tryAcquire( this );
@@ -85,6 +91,11 @@ public class ThreadBasedDistributedLock implements DistributedLock
 		lockManager.release( this );
 	}
 
+	@Override
+	public long getFencingToken() {
+		return lockManager.getFencingToken( getOwnerId(), getKey() );
+	}
+
 	@Override
 	public void lockInterruptibly() throws InterruptedException {
 		lockManager.acquireInterruptibly( this );
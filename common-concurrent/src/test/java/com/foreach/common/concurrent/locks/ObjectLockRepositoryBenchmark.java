@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the {@link ObjectLockRepository} implementations.  Every operation looks up the lock
+ * for a random key out of a varying number of keys, locks and unlocks it under 32 threads.
+ * Not executed as part of the test suite, run the main method to execute.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class ObjectLockRepositoryBenchmark
+{
+	@State(Scope.Benchmark)
+	public static class Repository
+	{
+		@Param({ "reentrant", "concurrent", "striped" })
+		public String implementation;
+
+		@Param({ "100", "1000000" })
+		public int keys;
+
+		ObjectLockRepository<String> repository;
+		String[] keyValues;
+
+		@Setup
+		public void createRepository() {
+			switch ( implementation ) {
+				case "reentrant":
+					repository = new ReentrantObjectLockRepository<>();
+					break;
+				case "concurrent":
+					repository = new ConcurrentObjectLockRepository<>();
+					break;
+				default:
+					repository = new StripedObjectLockRepository<>();
+			}
+
+			keyValues = new String[keys];
+			for ( int i = 0; i < keys; i++ ) {
+				keyValues[i] = "key-" + i;
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean lockAndUnlock( Repository repository ) {
+		String[] keyValues = repository.keyValues;
+		ObjectLock<String> lock = repository.repository.getLock(
+				keyValues[ThreadLocalRandom.current().nextInt( keyValues.length )] );
+
+		lock.lock();
+		try {
+			return lock.isHeldByCurrentThread();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner(
+				new OptionsBuilder()
+						.include( ObjectLockRepositoryBenchmark.class.getSimpleName() )
+						.build()
+		).run();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrentObjectLockRepository
+{
+	private ConcurrentObjectLockRepository<String> repository;
+
+	@BeforeEach
+	public void setUp() {
+		repository = new ConcurrentObjectLockRepository<>();
+	}
+
+	@Test
+	public void locksForEqualKeysAreTheSame() throws Exception {
+		ObjectLock<String> lock = repository.getLock( "1" );
+		ObjectLock<String> other = repository.getLock( new String( "1" ) );
+		assertEquals( "1", other.getKey() );
+
+		lock.lock();
+		assertTrue( other.isLocked() );
+		assertTrue( other.isHeldByCurrentThread() );
+
+		assertFalse( Executors.newSingleThreadExecutor().submit( () -> other.tryLock() ).get() );
+
+		other.unlock();
+		assertFalse( lock.isLocked() );
+	}
+
+	@Test
+	public void lockIsOnlyRegisteredWhileInUse() throws Exception {
+		ObjectLock<String> lock = repository.getLock( "1" );
+		assertEquals( 0, repository.getActiveLockCount() );
+
+		lock.lock();
+		lock.lock();
+		assertEquals( 1, repository.getActiveLockCount() );
+
+		Future<Boolean> waiting = Executors.newSingleThreadExecutor().submit(
+				() -> repository.getLock( "1" ).tryLock( 5, TimeUnit.SECONDS ) );
+		Thread.sleep( 100 );
+
+		lock.unlock();
+		assertEquals( 1, repository.getActiveLockCount() );
+		assertTrue( lock.isHeldByCurrentThread() );
+
+		lock.unlock();
+		assertTrue( waiting.get() );
+		assertTrue( lock.isLocked() );
+		assertFalse( lock.isHeldByCurrentThread() );
+
+		// failed attempts do not keep the lock registered
+		assertFalse( Executors.newSingleThreadExecutor().submit( () -> repository.getLock( "1" ).tryLock() ).get() );
+		assertEquals( 1, repository.getActiveLockCount() );
+	}
+
+	@Test
+	public void unlockWithoutHoldingTheLockFails() {
+		ObjectLock<String> lock = repository.getLock( "1" );
+
+		assertThrows( IllegalMonitorStateException.class, lock::unlock );
+		assertEquals( 0, repository.getActiveLockCount() );
+	}
+
+	@Test
+	public void autoClosableLocking() {
+		ObjectLock<String> otherLock = repository.getLock( "123" );
+		assertFalse( otherLock.isHeldByCurrentThread() );
+
+		try (CloseableObjectLock<String> lock = repository.lock( "123" )) {
+			assertTrue( lock.isHeldByCurrentThread() );
+			assertTrue( otherLock.isHeldByCurrentThread() );
+		}
+
+		assertFalse( otherLock.isHeldByCurrentThread() );
+		assertEquals( 0, repository.getActiveLockCount() );
+	}
+
+	@Test
+	public void multiThreadLocking() throws Exception {
+		Map<String, Integer> resultValues = new HashMap<>();
+
+		Collection<ExecutorBatch.Status> results = ExecutorBatch.execute(
+				Collections.singletonList( repository ),
+				resultValues,
+				5,
+				5,
+				300
+		);
+
+		for ( ExecutorBatch.Status status : results ) {
+			assertEquals( 5 * 300, status.getSucceeded() );
+		}
+
+		assertEquals( 5, resultValues.size() );
+		for ( Integer resultValue : resultValues.values() ) {
+			assertEquals( Integer.valueOf( 300 ), resultValue );
+		}
+
+		assertEquals( 0, repository.getActiveLockCount() );
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStripedObjectLockRepository
+{
+	@Test
+	public void numberOfStripesMustBePositive() {
+		assertThrows( IllegalArgumentException.class, () -> new StripedObjectLockRepository<String>( 0 ) );
+	}
+
+	@Test
+	public void keysShareTheLockOfTheirStripe() throws Exception {
+		StripedObjectLockRepository<Integer> repository = new StripedObjectLockRepository<>( 1 );
+
+		ObjectLock<Integer> one = repository.getLock( 1 );
+		ObjectLock<Integer> two = repository.getLock( 2 );
+		assertEquals( Integer.valueOf( 2 ), two.getKey() );
+
+		one.lock();
+		assertTrue( two.isHeldByCurrentThread() );
+		assertFalse( Executors.newSingleThreadExecutor().submit( () -> two.tryLock() ).get() );
+		one.unlock();
+
+		assertFalse( two.isLocked() );
+	}
+
+	@Test
+	public void conditionsAreSupported() throws Exception {
+		StripedObjectLockRepository<String> repository = new StripedObjectLockRepository<>();
+		ObjectLock<String> lock = repository.getLock( "1" );
+
+		lock.lock();
+		try {
+			Condition condition = lock.newCondition();
+			Executors.newSingleThreadScheduledExecutor().schedule( () -> {
+				ObjectLock<String> other = repository.getLock( "1" );
+				other.lock();
+				condition.signalAll();
+				other.unlock();
+			}, 100, TimeUnit.MILLISECONDS );
+
+			assertTrue( condition.await( 5, TimeUnit.SECONDS ) );
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Test
+	public void multiThreadLocking() throws Exception {
+		Map<String, Integer> resultValues = new HashMap<>();
+
+		Collection<ExecutorBatch.Status> results = ExecutorBatch.execute(
+				Collections.singletonList( new StripedObjectLockRepository<>( 16 ) ),
+				resultValues,
+				5,
+				5,
+				300
+		);
+
+		for ( ExecutorBatch.Status status : results ) {
+			assertEquals( 5 * 300, status.getSucceeded() );
+		}
+
+		assertEquals( 5, resultValues.size() );
+		for ( Integer resultValue : resultValues.values() ) {
+			assertEquals( Integer.valueOf( 300 ), resultValue );
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import com.foreach.common.concurrent.locks.CloseableObjectLock;
+import com.foreach.common.concurrent.locks.ObjectLockRepository;
+import org.apache.commons.lang3.time.StopWatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.foreach.common.concurrent.locks.ExecutorBatch.Status;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Contract tests every {@link DistributedLockManager} implementation should pass.
+ * Repositories created with a different owner name behave as if they were in different applications.
+ */
+public abstract class AbstractDistributedLockRepositoryTest
+{
+	protected static final int BATCHES = 5;
+	protected static final int LOCKS_PER_BATCH = 20;
+	protected static final int EXECUTORS_PER_LOCK = 30;
+
+	protected static final AtomicInteger REPOSITORY_COUNTER = new AtomicInteger();
+
+	protected final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+
+	/**
+	 * @return configuration that will be used by lock managers created after the call
+	 */
+	protected abstract DistributedLockConfiguration configuration();
+
+	protected abstract DistributedLockRepository createRepository( String defaultOwnerName );
+
+	protected DistributedLockRepository createRepository() {
+		return createRepository( "local" );
+	}
+
+	/**
+	 * @return number of lock records kept by the backend, -1 if the backend does not keep records of unused locks
+	 */
+	protected int lockCount() {
+		return -1;
+	}
+
+	@Test
+	public void testSynchronization() throws Exception {
+		int batchSize = BATCHES;
+		int totalLocks = LOCKS_PER_BATCH;
+		int resultsPerLock = EXECUTORS_PER_LOCK * BATCHES;
+
+		Map<String, Integer> resultValues = new HashMap<>();
+
+		Set<ObjectLockRepository<String>> repositories = new HashSet<>();
+
+		for ( int i = 0; i < batchSize; i++ ) {
+			repositories.add( createRepository() );
+		}
+
+		int locksBeforeStart = lockCount();
+
+		Collection<Status> results =
+				com.foreach.common.concurrent.locks.ExecutorBatch.execute(
+						repositories,
+						resultValues,
+						5,
+						LOCKS_PER_BATCH,
+						EXECUTORS_PER_LOCK
+				);
+
+		assertEquals( batchSize, results.size() );
+		for ( Status status : results ) {
+			assertEquals( LOCKS_PER_BATCH * EXECUTORS_PER_LOCK, status.getSucceeded() );
+		}
+
+		if ( locksBeforeStart >= 0 ) {
+			assertEquals( totalLocks + locksBeforeStart, lockCount() );
+		}
+
+		// Check synchronization was correct
+		assertEquals( totalLocks, resultValues.size() );
+		for ( Integer value : resultValues.values() ) {
+			assertEquals( Integer.valueOf( resultsPerLock ), value );
+		}
+	}
+
+	@Test
+	public void tryLockShouldReturnImmediately() throws Exception {
+		String localRepositoryName = "local-" + REPOSITORY_COUNTER.incrementAndGet();
+
+		DistributedLockRepository lockRepository = createRepository( localRepositoryName );
+		DistributedLockRepository otherRepositoryInSameJvm = createRepository( localRepositoryName );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		final DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		final DistributedLock otherLock = otherRepositoryInSameJvm.getLock( lock.getKey() );
+		final DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+
+		boolean locked = lock.tryLock();
+		assertTrue( locked );
+
+		final AtomicLong duration = new AtomicLong( 0 );
+
+		// Same lock but from a different thread should fail
+		Future<Boolean> sameLockByOtherThreadLocked = singleThread.submit( () -> {
+			StopWatch stopWatch = new StopWatch();
+			stopWatch.start();
+
+			boolean success = lock.tryLock();
+
+			duration.set( stopWatch.getTime() );
+
+			return success;
+		} );
+
+		assertFalse( sameLockByOtherThreadLocked.get() );
+		assertTrue( duration.get() < 100 );
+
+		// Other lock instances but same thread should work
+		assertTrue( otherLock.tryLock() );
+
+		// Other lock instance in another thread should also fail
+		Future<Boolean> otherLockByOtherThreadLocked = singleThread.submit( new Callable<Boolean>()
+		{
+			@Override
+			public Boolean call() throws Exception {
+				StopWatch stopWatch = new StopWatch();
+				stopWatch.start();
+
+				boolean success = otherLock.tryLock();
+
+				duration.set( stopWatch.getTime() );
+
+				return success;
+			}
+		} );
+
+		assertFalse( otherLockByOtherThreadLocked.get() );
+		assertTrue( duration.get() < 100 );
+
+		// Same thread but an "external" repository should fail
+		assertFalse( externalLock.tryLock() );
+	}
+
+	@Test
+	public void tryLockWithTimeout() {
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		assertTrue( lock.tryLock( 3, TimeUnit.SECONDS ) );
+		assertTrue( stopWatch.getTime() < 150 );
+
+		stopWatch.reset();
+		stopWatch.start();
+
+		assertFalse( externalLock.tryLock( 3, TimeUnit.SECONDS ) );
+		assertTrue( stopWatch.getTime() >= 3000 );
+	}
+
+	@Test
+	public void localWaiterIsWokenUpOnRelease() throws Exception {
+		configuration().setRetryInterval( 5000 );
+
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+
+		lock.lock();
+
+		// started before the waiter is submitted, the lock is released at least 200ms later
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		Future<Long> waitTime = singleThread.submit( () -> {
+			assertTrue( lock.tryLock( 10, TimeUnit.SECONDS ) );
+			long duration = stopWatch.getTime();
+			lock.unlock();
+
+			return duration;
+		} );
+
+		Thread.sleep( 200 );
+		lock.unlock();
+
+		long duration = waitTime.get();
+		assertTrue( duration >= 200 );
+		assertTrue( duration < 2000, "Waiting thread should have been woken up on release" );
+	}
+
+	@Test
+	public void instanceLockCanBeAcquiredAsynchronously() throws Exception {
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		DistributedLock lock = lockRepository.getInstanceLock( UUID.randomUUID().toString() );
+		DistributedLock otherLock = lockRepository.getInstanceLock( lock.getKey() );
+		assertNotEquals( lock.getOwnerId(), otherLock.getOwnerId() );
+
+		assertSame( lock, lock.lockAsync().get( 1, TimeUnit.SECONDS ) );
+
+		CompletableFuture<DistributedLock> pending = otherLock.lockAsync();
+		Thread.sleep( 200 );
+		assertFalse( pending.isDone() );
+
+		// instance locks can be released from any thread
+		singleThread.submit( lock::unlock ).get();
+
+		assertSame( otherLock, pending.get( 1, TimeUnit.SECONDS ) );
+		assertTrue( otherLock.isHeldByCurrentThread() );
+		assertFalse( lock.isHeldByCurrentThread() );
+
+		CompletableFuture<DistributedLock> cancelled = lock.lockAsync();
+		assertTrue( cancelled.cancel( false ) );
+
+		otherLock.unlock();
+		Thread.sleep( 200 );
+
+		assertFalse( lock.isLocked() );
+	}
+
+	@Test
+	public void distributedLockIsReentrant() {
+		DistributedLockRepository lockRepository = createRepository();
+		DistributedLock lock = lockRepository.getLock( "somelock" );
+
+		lock.lock();
+
+		assertTrue( lock.isHeldByCurrentThread() );
+
+		try (CloseableObjectLock<String> sameLock = lockRepository.lock( "somelock" )) {
+			assertTrue( sameLock.isHeldByCurrentThread() );
+			assertTrue( lock.isHeldByCurrentThread() );
+		}
+
+		assertTrue( lock.isHeldByCurrentThread() );
+
+		try {
+			lock.lock();
+
+			assertTrue( lock.isHeldByCurrentThread() );
+		}
+		finally {
+			lock.unlock();
+		}
+
+		assertTrue( lock.isHeldByCurrentThread() );
+
+		lock.unlock();
+
+		assertFalse( lock.isLocked() );
+		assertFalse( lock.isHeldByCurrentThread() );
+	}
+}
@@ -15,11 +15,8 @@
  */
 package com.foreach.common.concurrent.locks.distributed;
 
-import com.foreach.common.concurrent.locks.CloseableObjectLock;
-import com.foreach.common.concurrent.locks.ObjectLockRepository;
 import liquibase.integration.spring.SpringLiquibase;
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -46,9 +43,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
-import static com.foreach.common.concurrent.locks.ExecutorBatch.Status;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -58,16 +53,8 @@ import static org.mockito.Mockito.*;
 @ExtendWith(SpringExtension.class)
 @DirtiesContext
 @ContextConfiguration(classes = ITDistributedLockRepository.Config.class)
-public class ITDistributedLockRepository
+public class ITDistributedLockRepository extends AbstractDistributedLockRepositoryTest
 {
-	private static final int BATCHES = 5;
-	private static final int LOCKS_PER_BATCH = 20;
-	private static final int EXECUTORS_PER_LOCK = 30;
-
-	private static final AtomicInteger REPOSITORY_COUNTER = new AtomicInteger();
-
-	private final ExecutorService singleThread = Executors.newSingleThreadExecutor();
-
 	@Autowired
 	@Qualifier("real")
 	private JdbcTemplate realJdbcTemplate;
@@ -80,6 +67,8 @@ public class ITDistributedLockRepository
 
 	private SqlBasedDistributedLockConfiguration configuration;
 
+	private final ExecutorService otherThread = Executors.newSingleThreadExecutor();
+
 	private final Map<String, Integer> resultsByLock = Collections.synchronizedMap(
 			new HashMap<>() );
 
@@ -89,6 +78,7 @@ public class ITDistributedLockRepository
 		configuration.setVerifyInterval( 100 );
 		configuration.setMaxIdleBeforeSteal( 500 );
 		configuration.setRetryInterval( 50 );
+		configuration.setMaxRetryInterval( 200 );
 		configuration.setCleanupInterval( 100 );
 		configuration.setCleanupAge( 60000 );
 
@@ -103,126 +93,140 @@ public class ITDistributedLockRepository
 			lockManager.close();
 		}
 		cleanupTable();
+		otherThread.shutdownNow();
 	}
 
 	@Test
-	public void testSynchronization() throws Exception {
-		int batchSize = BATCHES;
-		int totalLocks = LOCKS_PER_BATCH;
-		int resultsPerLock = EXECUTORS_PER_LOCK * BATCHES;
+	public void lockAllAcquiresAndReleasesAllKeysTogether() throws Exception {
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
 
-		Map<String, Integer> resultValues = new HashMap<>();
+		String prefix = UUID.randomUUID().toString();
+		List<String> keys = Arrays.asList( prefix + "-c", prefix + "-a", prefix + "-b", prefix + "-a" );
 
-		Set<ObjectLockRepository<String>> repositories = new HashSet<>();
+		// one of the keys is held by another local thread, another one by an external owner
+		DistributedLock reentrant = lockRepository.getLock( prefix + "-b" );
+		reentrant.lock();
 
-		for ( int i = 0; i < batchSize; i++ ) {
-			repositories.add( createRepository() );
-		}
+		DistributedLock external = externalRepository.getLock( prefix + "-c" );
+		assertTrue( singleThread.submit( () -> external.tryLock() ).get() );
 
-		int locksBeforeStart = lockCount();
+		Future<DistributedLockGroup> pending = otherThread.submit( () -> {
+			DistributedLockGroup group = lockRepository.lockAll( keys );
+			assertTrue( group.isHeldByCurrentThread() );
+			group.close();
+			assertFalse( group.getLocks().get( 0 ).isLocked() );
+			return group;
+		} );
 
-		Collection<Status> results =
-				com.foreach.common.concurrent.locks.ExecutorBatch.execute(
-						repositories,
-						resultValues,
-						5,
-						LOCKS_PER_BATCH,
-						EXECUTORS_PER_LOCK
-				);
+		Thread.sleep( 200 );
+		assertFalse( pending.isDone() );
+		assertTrue( lockRepository.getLock( prefix + "-a" ).isLocked() );
 
-		assertEquals( batchSize, results.size() );
-		for ( Status status : results ) {
-			assertEquals( LOCKS_PER_BATCH * EXECUTORS_PER_LOCK, status.getSucceeded() );
-		}
+		reentrant.unlock();
+		singleThread.submit( external::unlock ).get();
 
-		assertEquals( totalLocks + locksBeforeStart, lockCount() );
+		DistributedLockGroup group = pending.get( 5, TimeUnit.SECONDS );
+		assertEquals( Arrays.asList( prefix + "-a", prefix + "-b", prefix + "-c" ), group.getKeys() );
 
-		// Check synchronization was correct
-		assertEquals( totalLocks, resultValues.size() );
-		for ( Integer value : resultValues.values() ) {
-			assertEquals( Integer.valueOf( resultsPerLock ), value );
+		try (DistributedLockGroup all = lockRepository.lockAll( keys )) {
+			assertTrue( all.isHeldByCurrentThread() );
+			assertTrue( reentrant.isHeldByCurrentThread() );
+			assertFalse( external.tryLock() );
 		}
+
+		assertFalse( reentrant.isLocked() );
+		assertEquals( 3, lockCount( prefix + "-%" ) );
 	}
 
 	@Test
-	public void tryLockShouldReturnImmediately() throws Exception {
-		String localRepositoryName = "local-" + REPOSITORY_COUNTER.incrementAndGet();
+	public void readLocksAreSharedButExcludeTheWriteLock() throws Exception {
+		configuration.setReadLockTableName( "test_lock_readers" );
 
-		DistributedLockRepository lockRepository = createRepository( localRepositoryName );
-		DistributedLockRepository otherRepositoryInSameJvm = createRepository( localRepositoryName );
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
 		DistributedLockRepository externalRepository = createRepository(
 				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
 
-		final DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
-		final DistributedLock otherLock = otherRepositoryInSameJvm.getLock( lock.getKey() );
-		final DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
-
-		boolean locked = lock.tryLock();
-		assertTrue( locked );
+		String key = UUID.randomUUID().toString();
+		DistributedReadWriteLock local = lockRepository.getReadWriteLock( key );
+		DistributedReadWriteLock external = externalRepository.getReadWriteLock( key );
 
-		final AtomicLong duration = new AtomicLong( 0 );
+		local.readLock().lock();
+		assertTrue( singleThread.submit( () -> external.readLock().tryLock() ).get() );
+		assertTrue( local.readLock().isLocked() );
+		assertTrue( local.readLock().isHeldByCurrentThread() );
+		assertThrows( IllegalStateException.class, local.readLock()::getFencingToken );
 
-		// Same lock but from a different thread should fail
-		Future<Boolean> sameLockByOtherThreadLocked = singleThread.submit( () -> {
-			StopWatch stopWatch = new StopWatch();
-			stopWatch.start();
+		// write lock is not possible as long as other owners hold the read lock
+		assertFalse( singleThread.submit( () -> external.writeLock().tryLock() ).get() );
+		assertFalse( local.writeLock().isLocked() );
 
-			boolean success = lock.tryLock();
+		local.readLock().unlock();
+		singleThread.submit( external.readLock()::unlock ).get();
+		assertFalse( local.readLock().isLocked() );
 
-			duration.set( stopWatch.getTime() );
+		// read lock is not possible as long as another owner holds the write lock
+		assertTrue( singleThread.submit( () -> external.writeLock().tryLock() ).get() );
+		assertFalse( local.readLock().tryLock() );
 
-			return success;
-		} );
+		singleThread.submit( external.writeLock()::unlock ).get();
+		assertTrue( local.readLock().tryLock( 1, TimeUnit.SECONDS ) );
+		local.readLock().unlock();
+	}
 
-		assertFalse( sameLockByOtherThreadLocked.get() );
-		assertTrue( duration.get() < 100 );
+	@Test
+	public void readLockCanBeAcquiredAsynchronously() throws Exception {
+		configuration.setReadLockTableName( "test_lock_readers" );
 
-		// Other lock instances but same thread should work
-		assertTrue( otherLock.tryLock() );
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
 
-		// Other lock instance in another thread should also fail
-		Future<Boolean> otherLockByOtherThreadLocked = singleThread.submit( new Callable<Boolean>()
-		{
-			@Override
-			public Boolean call() throws Exception {
-				StopWatch stopWatch = new StopWatch();
-				stopWatch.start();
+		String key = UUID.randomUUID().toString();
+		DistributedReadWriteLock local = lockRepository.getReadWriteLock( key );
+		DistributedReadWriteLock external = externalRepository.getReadWriteLock( key );
 
-				boolean success = otherLock.tryLock();
+		assertTrue( singleThread.submit( () -> external.writeLock().tryLock() ).get() );
 
-				duration.set( stopWatch.getTime() );
+		CompletableFuture<DistributedLock> future = local.readLock().lockAsync();
+		Thread.sleep( 200 );
+		assertFalse( future.isDone() );
 
-				return success;
-			}
-		} );
+		singleThread.submit( external.writeLock()::unlock ).get();
 
-		assertFalse( otherLockByOtherThreadLocked.get() );
-		assertTrue( duration.get() < 100 );
+		assertSame( local.readLock(), future.get( 5, TimeUnit.SECONDS ) );
+		assertTrue( local.readLock().isHeldByCurrentThread() );
+		assertFalse( singleThread.submit( () -> external.writeLock().tryLock() ).get() );
 
-		// Same thread but an "external" repository should fail
-		assertFalse( externalLock.tryLock() );
+		local.readLock().unlock();
+		assertFalse( local.readLock().isLocked() );
 	}
 
 	@Test
-	public void tryLockWithTimeout() {
-		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
-		DistributedLockRepository externalRepository = createRepository(
-				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+	public void undoingReentrantWriteLockKeepsEarlierHoldMonitored() {
+		configuration.setReadLockTableName( "test_lock_readers" );
 
-		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
-		DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		SqlBasedDistributedLockMonitor lockMonitor = (SqlBasedDistributedLockMonitor) ReflectionTestUtils.getField(
+				lockManagers.iterator().next(), "lockMonitor" );
 
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
+		String key = UUID.randomUUID().toString();
+		DistributedReadWriteLock local = lockRepository.getReadWriteLock( key );
+		local.writeLock().lock();
 
-		assertTrue( lock.tryLock( 3, TimeUnit.SECONDS ) );
-		assertTrue( stopWatch.getTime() < 150 );
+		// read lease of another owner that was registered while the write lock was already held
+		long now = System.currentTimeMillis();
+		realJdbcTemplate.update( "INSERT INTO test_lock_readers (lock_id, owner_id, created, updated, holds) VALUES (?,?,?,?,1)",
+		                         key, "other-reader", now, now );
 
-		stopWatch.reset();
-		stopWatch.start();
+		assertFalse( local.writeLock().tryLock() );
+		assertTrue( local.writeLock().isHeldByCurrentThread() );
+		assertTrue( lockMonitor.isHeldLocally( key ) );
 
-		assertFalse( externalLock.tryLock( 3, TimeUnit.SECONDS ) );
-		assertTrue( stopWatch.getTime() >= 3000 );
+		local.writeLock().unlock();
+		assertFalse( lockMonitor.isHeldLocally( key ) );
+		assertFalse( local.writeLock().isLocked() );
 	}
 
 	@Test
@@ -253,6 +257,41 @@ public class ITDistributedLockRepository
 		assertFalse( lock.isHeldByCurrentThread() );
 	}
 
+	@Test
+	public void fencingTokenIncreasesWithEveryChangeOfOwner() {
+		configuration.setFencingTokensEnabled( true );
+
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+
+		assertThrows( IllegalStateException.class, lock::getFencingToken );
+
+		assertTrue( lock.tryLock() );
+		long first = lock.getFencingToken();
+
+		// reentrant acquire keeps the token
+		assertTrue( lock.tryLock() );
+		assertEquals( first, lock.getFencingToken() );
+
+		lock.unlock();
+		lock.unlock();
+
+		assertTrue( externalLock.tryLock() );
+		long second = externalLock.getFencingToken();
+		assertTrue( second > first );
+
+		// stealing generates a new token as well
+		updateIdleTime( externalLock, System.currentTimeMillis() - 30000 );
+		assertTrue( lock.tryLock() );
+		assertTrue( lock.getFencingToken() > second );
+
+		lock.unlock();
+	}
+
 	@Test
 	public void stolenLockCallback() {
 		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
@@ -376,36 +415,47 @@ public class ITDistributedLockRepository
 	}
 
 	@Test
-	public void distributedLockIsReentrant() {
-		DistributedLockRepository lockRepository = createRepository();
-		DistributedLock lock = lockRepository.getLock( "somelock" );
-
-		lock.lock();
+	public void lockMonitorShouldVerifyLocksInBatches() throws InterruptedException {
+		configuration.setVerifyBatchSize( 3 );
 
-		assertTrue( lock.isHeldByCurrentThread() );
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
 
-		try (CloseableObjectLock<String> sameLock = lockRepository.lock( "somelock" )) {
-			assertTrue( sameLock.isHeldByCurrentThread() );
-			assertTrue( lock.isHeldByCurrentThread() );
+		List<DistributedLock> locks = new ArrayList<>();
+		for ( int i = 0; i < 7; i++ ) {
+			DistributedLock lock = lockRepository.createSharedLock( "owner", UUID.randomUUID().toString() );
+			assertTrue( lock.tryLock() );
+			locks.add( lock );
 		}
 
-		assertTrue( lock.isHeldByCurrentThread() );
+		final AtomicInteger callbacksExecuted = new AtomicInteger();
+		DistributedLock stolenLock = locks.get( 4 );
+		stolenLock.setStolenCallback( ( lockId, ownerId, lock ) -> {
+			assertEquals( stolenLock.getKey(), lockId );
+			assertEquals( "owner", ownerId );
+			callbacksExecuted.incrementAndGet();
+		} );
 
-		try {
-			lock.lock();
+		long creation = lastUpdated( locks.get( 0 ) );
+		Thread.sleep( configuration.getVerifyInterval() + 20 );
 
-			assertTrue( lock.isHeldByCurrentThread() );
-		}
-		finally {
-			lock.unlock();
+		for ( DistributedLock lock : locks ) {
+			assertTrue( lastUpdated( lock ) > creation );
 		}
 
-		assertTrue( lock.isHeldByCurrentThread() );
+		DistributedLock otherLock = lockRepository.createSharedLock( "other-owner", stolenLock.getKey() );
+		stealLock( otherLock );
 
-		lock.unlock();
+		Thread.sleep( configuration.getVerifyInterval() * 2 );
 
-		assertFalse( lock.isLocked() );
-		assertFalse( lock.isHeldByCurrentThread() );
+		assertEquals( 1, callbacksExecuted.get() );
+		assertFalse( stolenLock.isHeldByCurrentThread() );
+		assertTrue( otherLock.isHeldByCurrentThread() );
+
+		for ( DistributedLock lock : locks ) {
+			if ( lock != stolenLock ) {
+				assertTrue( lock.isHeldByCurrentThread() );
+			}
+		}
 	}
 
 	//a variant on the stolenLockCallback callback above, that steals the lock via direct database access, and initially causes some errors during stolen lock verification
@@ -564,7 +614,8 @@ public class ITDistributedLockRepository
 		realJdbcTemplate.update( "UPDATE test_locks SET updated = ? WHERE lock_id = ?", updated, lock.getKey() );
 	}
 
-	private int lockCount() {
+	@Override
+	protected int lockCount() {
 		return realJdbcTemplate.queryForObject( "SELECT count(*) FROM test_locks", Integer.class );
 	}
 
@@ -573,6 +624,11 @@ public class ITDistributedLockRepository
 		                                        lock.getKey() );
 	}
 
+	private int lockCount( String keyPattern ) {
+		return realJdbcTemplate.queryForObject( "SELECT count(*) FROM test_locks where lock_id LIKE ?", Integer.class,
+		                                        keyPattern );
+	}
+
 	private long lastUpdated( DistributedLock lock ) {
 		return realJdbcTemplate.queryForObject( "SELECT updated FROM test_locks WHERE lock_id = ?", Long.class,
 		                                        lock.getKey() );
@@ -580,13 +636,16 @@ public class ITDistributedLockRepository
 
 	private void cleanupTable() {
 		realJdbcTemplate.update( "TRUNCATE TABLE test_locks" );
+		realJdbcTemplate.update( "TRUNCATE TABLE test_lock_readers" );
 	}
 
-	private DistributedLockRepository createRepository() {
-		return createRepository( "local" );
+	@Override
+	protected DistributedLockConfiguration configuration() {
+		return configuration;
 	}
 
-	private DistributedLockRepository createRepository( String defaultOwnerName ) {
+	@Override
+	protected DistributedLockRepository createRepository( String defaultOwnerName ) {
 		SqlBasedDistributedLockManager lockManager =
 				new SqlBasedDistributedLockManager( spyJdbcTemplate, configuration );
 		lockManagers.add( lockManager );
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the active lock registry of the {@link SqlBasedDistributedLockMonitor}.
+ * Measures lookups and registrations with a varying number of active locks under 32 threads.
+ * Not executed as part of the test suite, run the main method to execute.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class SqlBasedDistributedLockMonitorBenchmark
+{
+	@State(Scope.Benchmark)
+	public static class Registry
+	{
+		@Param({ "10", "1000", "100000" })
+		public int activeLocks;
+
+		SqlBasedDistributedLockMonitor monitor;
+		String[] lockIds;
+
+		@Setup
+		public void registerActiveLocks() {
+			monitor = new SqlBasedDistributedLockMonitor( null, Long.MAX_VALUE, Long.MAX_VALUE );
+			lockIds = new String[activeLocks];
+
+			for ( int i = 0; i < activeLocks; i++ ) {
+				lockIds[i] = "lock-" + i;
+				monitor.addLock( "owner-" + i, new SharedDistributedLock( null, "owner-" + i, lockIds[i] ) );
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class OwnLock
+	{
+		DistributedLock lock;
+
+		@Setup
+		public void createLock() {
+			String ownerId = UUID.randomUUID().toString();
+			lock = new SharedDistributedLock( null, ownerId, ownerId );
+		}
+	}
+
+	@Benchmark
+	public String getOwnerForLock( Registry registry ) {
+		String[] lockIds = registry.lockIds;
+		return registry.monitor.getOwnerForLock( lockIds[ThreadLocalRandom.current().nextInt( lockIds.length )] );
+	}
+
+	@Benchmark
+	public DistributedLock addAndRemoveLock( Registry registry, OwnLock ownLock ) {
+		DistributedLock lock = ownLock.lock;
+		registry.monitor.addLock( lock.getOwnerId(), lock );
+		return registry.monitor.removeLock( lock.getOwnerId(), lock.getKey() );
+	}
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner(
+				new OptionsBuilder()
+						.include( SqlBasedDistributedLockMonitorBenchmark.class.getSimpleName() )
+						.build()
+		).run();
+	}
+}
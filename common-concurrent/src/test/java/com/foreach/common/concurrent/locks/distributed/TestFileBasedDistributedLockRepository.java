@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFileBasedDistributedLockRepository extends AbstractDistributedLockRepositoryTest
+{
+	private File lockFile;
+	private FileBasedDistributedLockConfiguration configuration;
+	private List<FileBasedDistributedLockManager> lockManagers;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		lockFile = File.createTempFile( "distributed-locks", ".lck" );
+
+		configuration = new FileBasedDistributedLockConfiguration( lockFile );
+		configuration.setSlots( 256 );
+		configuration.setVerifyInterval( 100 );
+		configuration.setMaxIdleBeforeSteal( 500 );
+		configuration.setRetryInterval( 50 );
+		configuration.setMaxRetryInterval( 200 );
+
+		lockManagers = new ArrayList<>();
+	}
+
+	@AfterEach
+	public void shutdown() {
+		for ( FileBasedDistributedLockManager lockManager : lockManagers ) {
+			lockManager.close();
+		}
+
+		assertTrue( lockFile.delete() );
+	}
+
+	@Override
+	protected DistributedLockConfiguration configuration() {
+		return configuration;
+	}
+
+	@Override
+	protected DistributedLockRepository createRepository( String defaultOwnerName ) {
+		// every repository has its own manager on the same file, like separate processes would
+		FileBasedDistributedLockManager lockManager = new FileBasedDistributedLockManager( configuration );
+		lockManagers.add( lockManager );
+
+		return new DistributedLockRepositoryImpl( lockManager, defaultOwnerName );
+	}
+
+	@Test
+	public void lockIsStolenIfOwnerStopsUpdatingTheFile() throws InterruptedException {
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+
+		assertTrue( lock.tryLock() );
+		long fencingToken = lock.getFencingToken();
+
+		Thread.sleep( configuration.getMaxIdleBeforeSteal() + 100 );
+		assertFalse( externalLock.tryLock(), "Lock is kept alive by the monitor" );
+
+		// simulate the owning process dying
+		( (ScheduledExecutorService) ReflectionTestUtils.getField( lockManagers.get( 0 ), "monitorThread" ) ).shutdownNow();
+		Thread.sleep( configuration.getMaxIdleBeforeSteal() + 100 );
+
+		assertTrue( externalLock.tryLock() );
+		assertTrue( externalLock.isHeldByCurrentThread() );
+		assertTrue( externalLock.getFencingToken() > fencingToken );
+		assertFalse( lock.isHeldByCurrentThread() );
+	}
+
+	@Test
+	public void lockFileWithDifferentLayoutIsRejected() {
+		createRepository();
+
+		FileBasedDistributedLockConfiguration other = new FileBasedDistributedLockConfiguration( lockFile );
+		other.setSlots( 128 );
+
+		assertThrows( DistributedLockException.class, () -> new FileBasedDistributedLockManager( other ) );
+	}
+}
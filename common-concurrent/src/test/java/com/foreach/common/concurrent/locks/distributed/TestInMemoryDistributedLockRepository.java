@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.foreach.common.concurrent.locks.CloseableObjectLock;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestInMemoryDistributedLockRepository extends AbstractDistributedLockRepositoryTest
+{
+	private DistributedLockConfiguration configuration;
+	private InMemoryDistributedLockManager lockManager;
+
+	@BeforeEach
+	public void setup() {
+		configuration = new DistributedLockConfiguration();
+		configuration.setRetryInterval( 50 );
+		configuration.setMaxRetryInterval( 200 );
+	}
+
+	@AfterEach
+	public void shutdown() {
+		if ( lockManager != null ) {
+			lockManager.close();
+		}
+	}
+
+	@Override
+	protected DistributedLockConfiguration configuration() {
+		return configuration;
+	}
+
+	@Override
+	protected DistributedLockRepository createRepository( String defaultOwnerName ) {
+		// all repositories share the manager, different owner names act as different applications
+		if ( lockManager == null ) {
+			lockManager = new InMemoryDistributedLockManager( configuration );
+		}
+
+		return new DistributedLockRepositoryImpl( lockManager, defaultOwnerName );
+	}
+
+	@Test
+	public void fencingTokenIncreasesWithEveryChangeOfOwner() {
+		DistributedLockRepository lockRepository = createRepository( "local-" + REPOSITORY_COUNTER.incrementAndGet() );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		DistributedLock externalLock = externalRepository.getLock( lock.getKey() );
+
+		assertThrows( IllegalStateException.class, lock::getFencingToken );
+
+		assertTrue( lock.tryLock() );
+		long first = lock.getFencingToken();
+
+		assertTrue( lock.tryLock() );
+		assertEquals( first, lock.getFencingToken() );
+
+		lock.unlock();
+		lock.unlock();
+
+		assertTrue( externalLock.tryLock() );
+		assertTrue( externalLock.getFencingToken() > first );
+		externalLock.unlock();
+	}
+
+	@Test
+	public void lockManagerCannotBeUsedAfterClose() {
+		DistributedLockRepository lockRepository = createRepository();
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+
+		lock.lock();
+		assertTrue( lock.isLocked() );
+
+		lockManager.close();
+		assertThrows( IllegalStateException.class, lock::isLocked );
+		lockManager = null;
+	}
+
+	@Test
+	public void defaultLockAllAcquiresAllLocksUsingGetLock() {
+		DistributedLockRepository lockRepository = new DefaultLockAllRepository( createRepository(), null );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+		String prefix = UUID.randomUUID().toString();
+
+		try (DistributedLockGroup group = lockRepository.lockAll( Arrays.asList( prefix + "-b", prefix + "-a", prefix + "-b" ) )) {
+			assertEquals( Arrays.asList( prefix + "-a", prefix + "-b" ), group.getKeys() );
+			assertTrue( group.isHeldByCurrentThread() );
+			assertFalse( externalRepository.getLock( prefix + "-a" ).tryLock() );
+			assertFalse( externalRepository.getLock( prefix + "-b" ).tryLock() );
+		}
+
+		assertFalse( externalRepository.getLock( prefix + "-a" ).isLocked() );
+		assertFalse( externalRepository.getLock( prefix + "-b" ).isLocked() );
+	}
+
+	@Test
+	public void defaultLockAllReleasesLocksAlreadyTakenOnFailure() {
+		String prefix = UUID.randomUUID().toString();
+		DistributedLockRepository lockRepository = new DefaultLockAllRepository( createRepository(), prefix + "-c" );
+		DistributedLockRepository externalRepository = createRepository(
+				"external-" + REPOSITORY_COUNTER.incrementAndGet() );
+
+		assertThrows( IllegalStateException.class,
+		              () -> lockRepository.lockAll( Arrays.asList( prefix + "-c", prefix + "-a", prefix + "-b" ) ) );
+
+		assertFalse( externalRepository.getLock( prefix + "-a" ).isLocked() );
+		assertFalse( externalRepository.getLock( prefix + "-b" ).isLocked() );
+	}
+
+	/**
+	 * Delegates everything but {@link DistributedLockRepository#lockAll(java.util.Collection)},
+	 * optionally failing to create the lock for a single key.
+	 */
+	private static class DefaultLockAllRepository implements DistributedLockRepository
+	{
+		private final DistributedLockRepository delegate;
+		private final String failingKey;
+
+		DefaultLockAllRepository( DistributedLockRepository delegate, String failingKey ) {
+			this.delegate = delegate;
+			this.failingKey = failingKey;
+		}
+
+		@Override
+		public DistributedLock getLock( String key ) {
+			if ( key.equals( failingKey ) ) {
+				throw new IllegalStateException( "Unable to create lock " + key );
+			}
+			return delegate.getLock( key );
+		}
+
+		@Override
+		public DistributedLock getLock( String ownerName, String key ) {
+			return delegate.getLock( ownerName, key );
+		}
+
+		@Override
+		public DistributedReadWriteLock getReadWriteLock( String key ) {
+			return delegate.getReadWriteLock( key );
+		}
+
+		@Override
+		public DistributedLock createSharedLock( String ownerId, String lockKey ) {
+			return delegate.createSharedLock( ownerId, lockKey );
+		}
+
+		@Override
+		public CloseableObjectLock<String> lock( String key ) {
+			return delegate.lock( key );
+		}
+	}
+}
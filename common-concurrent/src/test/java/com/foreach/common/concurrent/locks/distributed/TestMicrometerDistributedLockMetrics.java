@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.concurrent.locks.distributed;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMicrometerDistributedLockMetrics
+{
+	private MeterRegistry registry;
+	private InMemoryDistributedLockManager lockManager;
+	private DistributedLockRepository lockRepository;
+	private ExecutorService executorService;
+
+	@BeforeEach
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+
+		DistributedLockConfiguration configuration = new DistributedLockConfiguration();
+		configuration.setRetryInterval( 10 );
+		configuration.setMaxRetryInterval( 10 );
+
+		lockManager = new InMemoryDistributedLockManager( configuration );
+		lockManager.setMetrics( new MicrometerDistributedLockMetrics( registry, Tags.of( "manager", "test" ) ) );
+
+		lockRepository = new DistributedLockRepositoryImpl( lockManager, "local" );
+		executorService = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterEach
+	public void shutdown() {
+		executorService.shutdownNow();
+		lockManager.close();
+	}
+
+	@Test
+	public void acquisitionsAreMeasured() throws Exception {
+		DistributedLock lock = lockRepository.getLock( UUID.randomUUID().toString() );
+		DistributedLock externalLock = lockRepository.createSharedLock( "external", lock.getKey() );
+
+		lock.lock();
+		assertEquals( 1.0, registry.get( "distributed.lock.active" ).tag( "manager", "test" ).gauge().value() );
+
+		assertFalse( externalLock.tryLock( 100, TimeUnit.MILLISECONDS ) );
+
+		Timer timedOut = registry.get( "distributed.lock.acquire" ).tag( "result", "timeout" ).timer();
+		assertEquals( 1, timedOut.count() );
+		assertTrue( timedOut.totalTime( TimeUnit.MILLISECONDS ) >= 100 );
+
+		Future<Boolean> pending = executorService.submit(
+				() -> externalLock.tryLock( 1, TimeUnit.SECONDS ) );
+		Thread.sleep( 100 );
+		lock.unlock();
+		assertTrue( pending.get() );
+
+		Timer acquired = registry.get( "distributed.lock.acquire" ).tag( "result", "acquired" ).timer();
+		assertEquals( 2, acquired.count() );
+		assertEquals( 3, registry.get( "distributed.lock.acquire.retries" ).summary().count() );
+		assertTrue( registry.get( "distributed.lock.acquire.retries" ).summary().max() > 1 );
+
+		externalLock.unlock();
+		assertEquals( 0.0, registry.get( "distributed.lock.active" ).gauge().value() );
+	}
+}
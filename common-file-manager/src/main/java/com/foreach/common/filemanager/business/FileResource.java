@@ -20,6 +20,7 @@ import com.foreach.common.filemanager.services.FileRepository;
 import lombok.NonNull;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
 
@@ -66,6 +67,33 @@ public interface FileResource extends WritableResource, FileRepositoryResource
 		throw new UnsupportedOperationException( "FileResource can not be resolved to java.io.File objects. Use getInputStream() or copyTo(File) instead." );
 	}
 
+	/**
+	 * Open an input stream on a range of the data of this resource. Remote implementations only
+	 * fetch the range requested, which allows for resuming or splitting up a download.
+	 * The default implementation skips the data before the offset of the complete input stream.
+	 *
+	 * @param offset position of the first byte to read
+	 * @param length maximum number of bytes to read, a negative value reads until the end of the data
+	 * @return input stream, empty if the offset is beyond the end of the data
+	 * @throws IOException thrown in case of IO error or resource not found
+	 */
+	default InputStream getInputStream( long offset, long length ) throws IOException {
+		if ( offset < 0 ) {
+			throw new IllegalArgumentException( "Offset must not be negative: " + offset );
+		}
+
+		InputStream inputStream = getInputStream();
+
+		try {
+			IOUtils.skip( inputStream, offset );
+			return length >= 0 ? BoundedInputStream.builder().setInputStream( inputStream ).setMaxCount( length ).get() : inputStream;
+		}
+		catch ( IOException | RuntimeException e ) {
+			inputStream.close();
+			throw e;
+		}
+	}
+
 	/**
 	 * Delete the actual file. The return code should give an indication if
 	 * delete has failed or not. Whereas {@code true} might not guarantee that a
@@ -103,6 +131,9 @@ public interface FileResource extends WritableResource, FileRepositoryResource
 	/**
 	 * Copy the file data from another file resource into this resource.
 	 * Optionally deletes the original file resource when done (useful for temporary files).
+	 * <p/>
+	 * Implementations can copy (or move) the data without streaming it through the application
+	 * if the original file resource is stored on the same backend.
 	 *
 	 * @param originalFileResource whose data to copy
 	 * @param deleteOriginal       true if the original file resources should be deleted when copy is done
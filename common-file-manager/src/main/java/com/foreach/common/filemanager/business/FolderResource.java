@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a single {@link FileRepository} folder,
@@ -185,6 +186,49 @@ public interface FolderResource extends FileRepositoryResource
 	 */
 	Collection<FileRepositoryResource> findResources( @NonNull String pattern );
 
+	/**
+	 * Stream all file resources matching the given ANT pattern.
+	 * Equivalent of {@link #streamResources(String, Class)} with a {@link FileResource} type filter.
+	 *
+	 * @param pattern to match
+	 * @return stream of resources, should be closed when done
+	 * @see #streamResources(String)
+	 */
+	default Stream<FileResource> streamFiles( @NonNull String pattern ) {
+		return streamResources( pattern, FileResource.class );
+	}
+
+	/**
+	 * Stream all resources matching the given ANT pattern.
+	 *
+	 * @param pattern      to match
+	 * @param resourceType type of resources to return
+	 * @return stream of resources, should be closed when done
+	 * @see #streamResources(String)
+	 */
+	default <U extends FileRepositoryResource> Stream<U> streamResources( @NonNull String pattern, Class<U> resourceType ) {
+		return streamResources( pattern )
+				.filter( resourceType::isInstance )
+				.map( resourceType::cast );
+	}
+
+	/**
+	 * Stream all resources matching the given ANT pattern. Unlike {@link #findResources(String)},
+	 * implementations can fetch the resources lazily, while the stream is being consumed. Use this to
+	 * avoid keeping all resources in memory when searching large folder trees, or to stop searching
+	 * once enough resources have been found (for example using {@link Stream#limit(long)}).
+	 * <p/>
+	 * The stream can hold resources like open directory handles, so it should be closed if it
+	 * is not entirely consumed, preferably using a try-with-resources block.
+	 * The default implementation streams the result of {@link #findResources(String)}.
+	 *
+	 * @param pattern to match
+	 * @return stream of resources, should be closed when done
+	 */
+	default Stream<FileRepositoryResource> streamResources( @NonNull String pattern ) {
+		return findResources( pattern ).stream();
+	}
+
 	/**
 	 * Delete this folder. The parameter value indicates if non-empty folders should be
 	 * deleted after first deleting all children ({@code true}) or if the folder should
@@ -225,6 +269,8 @@ public interface FolderResource extends FileRepositoryResource
 	 * @return true if the folder does not have any children
 	 */
 	default boolean isEmpty() {
-		return listResources( false ).isEmpty();
+		try (Stream<FileRepositoryResource> children = streamResources( "/*" )) {
+			return !children.findAny().isPresent();
+		}
 	}
 }
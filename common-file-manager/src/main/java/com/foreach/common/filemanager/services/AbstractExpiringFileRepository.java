@@ -27,8 +27,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Base class for a file repository which tracks its file resources and expires them
@@ -44,6 +46,11 @@ import java.util.stream.Collectors;
  * resource will be evicted; after which point it will be fetched again from the target
  * repository. If a resource expires when evicted depends on the {@link #expireOnEvict} value.
  * <p/>
+ * The tracking map does not lock on lookups and the expiration of an evicted resource is never
+ * executed while holding a lock. By default eviction is handled on the thread that caused it,
+ * once the map has been updated. An {@link #evictionExecutor} can be configured to expire
+ * evicted resources asynchronously instead.
+ * <p/>
  * In the base implementation folder resources do not expire but only the file resources
  * they return are converted to expiring resources. The actual folder actions are executed
  * directly on the target folder resource. This means that folder executions (for example listing
@@ -90,19 +97,56 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 	@Getter
 	private final Function<ExpiringFileResource, Boolean> expirationStrategy;
 
-	private final Map<FileDescriptor, T> trackedResources = Collections.synchronizedMap( new FileResourceCache() );
+	/**
+	 * Maximum combined weight of the tracked file resources, as determined by {@link #weigh(ExpiringFileResource)}.
+	 * Past this weight the least recently fetched file resources will be evicted. Zero or less means no limit.
+	 */
+	@Getter
+	private final long maxWeightToTrack;
+
+	/**
+	 * Executor used to handle evicted resources. Defaults to the thread that caused the eviction.
+	 */
+	@Getter
+	private final Executor evictionExecutor;
+
+	private final ConcurrentLruTrackingMap<FileDescriptor, T> trackedResources;
 
 	protected AbstractExpiringFileRepository( @NonNull FileRepository targetFileRepository,
 	                                          boolean expireOnShutdown,
 	                                          boolean expireOnEvict,
 	                                          int maxItemsToTrack,
 	                                          @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy ) {
+		this( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack, expirationStrategy, null );
+	}
+
+	protected AbstractExpiringFileRepository( @NonNull FileRepository targetFileRepository,
+	                                          boolean expireOnShutdown,
+	                                          boolean expireOnEvict,
+	                                          int maxItemsToTrack,
+	                                          @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy,
+	                                          Executor evictionExecutor ) {
+		this( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack, 0, expirationStrategy, evictionExecutor );
+	}
+
+	protected AbstractExpiringFileRepository( @NonNull FileRepository targetFileRepository,
+	                                          boolean expireOnShutdown,
+	                                          boolean expireOnEvict,
+	                                          int maxItemsToTrack,
+	                                          long maxWeightToTrack,
+	                                          @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy,
+	                                          Executor evictionExecutor ) {
 		super( targetFileRepository.getRepositoryId() );
 		this.targetFileRepository = targetFileRepository;
 		this.expireOnShutdown = expireOnShutdown;
 		this.expireOnEvict = expireOnEvict;
 		this.maxItemsToTrack = maxItemsToTrack;
+		this.maxWeightToTrack = maxWeightToTrack;
 		this.expirationStrategy = expirationStrategy;
+		this.evictionExecutor = evictionExecutor != null ? evictionExecutor : Runnable::run;
+		this.trackedResources = maxWeightToTrack > 0
+				? new ConcurrentLruTrackingMap<>( maxItemsToTrack, maxWeightToTrack, this::weigh, this.evictionExecutor, this::handleEviction )
+				: new ConcurrentLruTrackingMap<>( maxItemsToTrack, this.evictionExecutor, this::handleEviction );
 	}
 
 	@Override
@@ -138,7 +182,7 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 	public void expireTrackedItems() {
 		try {
 			LOG.trace( "Running file resource expiration for repository {}", getRepositoryId() );
-			new ArrayList<>( trackedResources.keySet() ).forEach( fd -> {
+			trackedResources.keys().forEach( fd -> {
 				T fileResource = trackedResources.get( fd );
 				if ( fileResource != null && expirationStrategy.apply( fileResource ) ) {
 					stopTracking( fd );
@@ -244,6 +288,38 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 	protected void evicted( T fileResource, boolean expired ) {
 	}
 
+	/**
+	 * Determine the weight of a tracked file resource, used to enforce {@link #maxWeightToTrack}.
+	 * Called when the resource starts being tracked and when {@link #updateWeight(ExpiringFileResource)} is called.
+	 * The default implementation returns zero, meaning only the number of resources is limited.
+	 *
+	 * @param fileResource to weigh
+	 * @return weight of the resource
+	 */
+	protected long weigh( T fileResource ) {
+		return 0;
+	}
+
+	/**
+	 * Recalculate the weight of a tracked file resource, for example because its size has changed.
+	 * This can cause other resources to be evicted. Nothing happens if the resource is not tracked.
+	 *
+	 * @param fileResource to weigh again
+	 */
+	protected void updateWeight( T fileResource ) {
+		trackedResources.updateWeight( fileResource.getDescriptor(), fileResource );
+	}
+
+	/**
+	 * Evict the least recently fetched file resources until their combined weight is at least the
+	 * requested weight, or until no tracked resources are left.
+	 *
+	 * @param weight combined weight of the resources to evict
+	 */
+	protected void evictTrackedItems( long weight ) {
+		trackedResources.evict( weight );
+	}
+
 	/**
 	 * Perform the actual expiration of a resource.
 	 *
@@ -251,6 +327,24 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 	 */
 	protected abstract void expire( T fileResource );
 
+	/**
+	 * @return snapshot of the file resources that are currently tracked
+	 */
+	protected Collection<T> getTrackedResources() {
+		return trackedResources.values();
+	}
+
+	/**
+	 * Check if a file resource is currently being tracked for this descriptor.
+	 * This does not count as an access of the resource.
+	 *
+	 * @param descriptor to check
+	 * @return true if the descriptor is tracked
+	 */
+	protected boolean isTracked( FileDescriptor descriptor ) {
+		return trackedResources.containsKey( descriptor );
+	}
+
 	/**
 	 * Remove this descriptor from the tracked resources. This does not expire the matching resource.
 	 *
@@ -278,26 +372,13 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 		                      .forEach( AbstractExpiringFileRepository::expireTrackedItems );
 	}
 
-	private class FileResourceCache extends LinkedHashMap<FileDescriptor, T>
-	{
-		FileResourceCache() {
-			super( maxItemsToTrack + 1, .75F, true );
+	private void handleEviction( FileDescriptor descriptor, T fileResource ) {
+		if ( expireOnEvict || expirationStrategy.apply( fileResource ) ) {
+			expire( fileResource );
+			evicted( fileResource, true );
 		}
-
-		@Override
-		protected boolean removeEldestEntry( Map.Entry<FileDescriptor, T> eldest ) {
-			boolean shouldEvict = size() > maxItemsToTrack;
-			if ( shouldEvict ) {
-				if ( expireOnEvict || expirationStrategy.apply( eldest.getValue() ) ) {
-					expire( eldest.getValue() );
-					evicted( eldest.getValue(), true );
-				}
-				else {
-					evicted( eldest.getValue(), false );
-				}
-			}
-
-			return shouldEvict;
+		else {
+			evicted( fileResource, false );
 		}
 	}
 
@@ -426,6 +507,16 @@ public abstract class AbstractExpiringFileRepository<T extends ExpiringFileResou
 			return wrap( target.findResources( pattern, resourceType ) );
 		}
 
+		@Override
+		public Stream<FileRepositoryResource> streamResources( String pattern ) {
+			return target.streamResources( pattern ).map( this::wrap );
+		}
+
+		@Override
+		public <U extends FileRepositoryResource> Stream<U> streamResources( String pattern, Class<U> resourceType ) {
+			return target.streamResources( pattern, resourceType ).map( this::wrap );
+		}
+
 		@Override
 		public boolean isEmpty() {
 			return target.isEmpty();
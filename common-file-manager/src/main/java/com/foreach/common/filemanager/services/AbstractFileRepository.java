@@ -149,8 +149,9 @@ public abstract class AbstractFileRepository implements FileRepository, FileMana
 		FileResource sourceResource = getFileResource( source );
 
 		try {
-			targetResource.copyFrom( sourceResource );
-			return sourceResource.delete();
+			// allows the resource implementation to move the data without streaming it
+			targetResource.copyFrom( sourceResource, true );
+			return !sourceResource.exists();
 		}
 		catch ( IOException ioe ) {
 			throw new FileStorageException( ioe );
@@ -17,8 +17,11 @@
 package com.foreach.common.filemanager.services;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
+import com.foreach.common.filemanager.business.FileStorageException;
 import com.foreach.common.filemanager.business.FolderDescriptor;
 import com.foreach.common.filemanager.business.FolderResource;
 import lombok.Builder;
@@ -28,10 +31,18 @@ import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * FileRepository which stores its files in an Amazon S3 bucket.
  * Optionally takes a {@link PathGenerator} for generating a folder structure when uploading a non-named file.
+ * <p/>
+ * Bulk deletes use the S3 multi-object delete, removing up to 1000 objects in a single request.
+ * Like {@link AmazonS3FileResource#delete()}, deleting a file that does not exist is considered successful:
+ * S3 reports a missing key as deleted and checking every key first would defeat the purpose of a batch delete.
  *
  * @author Sander Van Loock, Arne Vandamme
  * @since 1.4.0
@@ -39,6 +50,11 @@ import java.nio.file.Paths;
 @Slf4j
 public class AmazonS3FileRepository extends AbstractFileRepository
 {
+	/**
+	 * Maximum number of keys in a single multi-object delete request.
+	 */
+	static final int MAX_KEYS_PER_DELETE = 1000;
+
 	private final String bucketName;
 	private final AmazonS3 amazonS3Client;
 	private final TaskExecutor taskExecutor;
@@ -67,6 +83,50 @@ public class AmazonS3FileRepository extends AbstractFileRepository
 		return new AmazonS3FolderResource( descriptor, amazonS3Client, bucketName, objectName, taskExecutor );
 	}
 
+	/**
+	 * Deletes the files using multi-object deletes. Files that do not exist are reported as succeeded.
+	 */
+	@Override
+	public BulkOperationResult delete( @NonNull Collection<FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		return BulkOperations.execute( descriptors, MAX_KEYS_PER_DELETE, options, this::deleteObjects );
+	}
+
+	private void deleteObjects( List<FileDescriptor> descriptors, BulkOperationResult result ) {
+		Map<String, FileDescriptor> descriptorsByKey = new LinkedHashMap<>();
+
+		for ( FileDescriptor descriptor : descriptors ) {
+			try {
+				validateFileDescriptor( descriptor );
+				descriptorsByKey.put( createObjectName( descriptor ), descriptor );
+			}
+			catch ( IllegalArgumentException iae ) {
+				result.failed( descriptor, iae );
+			}
+		}
+
+		if ( descriptorsByKey.isEmpty() ) {
+			return;
+		}
+
+		try {
+			DeleteObjectsRequest request = new DeleteObjectsRequest( bucketName )
+					.withKeys( descriptorsByKey.keySet().toArray( new String[0] ) )
+					.withQuiet( true );
+			amazonS3Client.deleteObjects( request );
+		}
+		catch ( MultiObjectDeleteException mode ) {
+			mode.getErrors().forEach( error -> {
+				FileDescriptor descriptor = descriptorsByKey.remove( error.getKey() );
+				if ( descriptor != null ) {
+					result.failed( descriptor, new FileStorageException(
+							"Unable to delete " + descriptor + ": " + error.getCode() + " - " + error.getMessage() ) );
+				}
+			} );
+		}
+
+		descriptorsByKey.values().forEach( result::succeeded );
+	}
+
 	private String createObjectName( FileDescriptor descriptor ) {
 		String result;
 		if ( descriptor.getFolderId() != null ) {
@@ -16,10 +16,7 @@
 package com.foreach.common.filemanager.services;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.AmazonS3Exception;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.*;
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
 import com.foreach.common.filemanager.business.FolderResource;
@@ -27,20 +24,35 @@ import lombok.Getter;
 import lombok.NonNull;
 import org.apache.commons.io.FileUtils;
 import org.springframework.cloud.aws.core.io.s3.SimpleStorageResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.util.ReflectionUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents an Amazon S3 file object. Extends the {@code SimpleStorageResource} from Spring Cloud AWS
  * and adapts it to the {@link FileResource} semantics.
+ * <p/>
+ * Copying between two resources using the same {@link AmazonS3} client is done server-side,
+ * using a multipart copy for objects larger than 5 GB.
+ * <p/>
+ * Large uploads are split in parts that are uploaded in parallel on the {@link TaskExecutor},
+ * see {@link AmazonS3OutputStream} and {@link #copyFrom(File, boolean)}. Large downloads to a file
+ * are done in parallel segments using range requests, see {@link #copyTo(File)}.
  *
  * @author Arne Vandamme
  * @since 1.4.0
@@ -48,6 +60,16 @@ import java.net.URL;
 @SuppressWarnings("common-java:DuplicatedBlocks")
 class AmazonS3FileResource extends SimpleStorageResource implements FileResource
 {
+	/**
+	 * Maximum size of an object that can be copied in a single request.
+	 */
+	static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+	/**
+	 * Size of a single part when copying larger objects.
+	 */
+	static final long COPY_PART_SIZE = 512L * 1024 * 1024;
+
 	private static final Field metadataField;
 
 	static {
@@ -135,7 +157,7 @@ class AmazonS3FileResource extends SimpleStorageResource implements FileResource
 	public OutputStream getOutputStream() throws IOException {
 		// reset metadata - assume data will actually be written to the underlying resource
 		resetObjectMetadata();
-		return super.getOutputStream();
+		return new AmazonS3OutputStream( amazonS3, bucketName, objectName, taskExecutor );
 	}
 
 	@Override
@@ -163,9 +185,78 @@ class AmazonS3FileResource extends SimpleStorageResource implements FileResource
 		throw new UnsupportedOperationException( "creating relative path is not yet supported" );
 	}
 
+	/**
+	 * Fetches only the requested range of the object using an HTTP range request.
+	 */
+	@Override
+	public InputStream getInputStream( long offset, long length ) throws IOException {
+		return getInputStream( offset, length, null );
+	}
+
+	/**
+	 * Fetches a range of the object, if an ETag is specified the range is only returned
+	 * if the object still has that ETag.
+	 */
+	private InputStream getInputStream( long offset, long length, String eTag ) throws IOException {
+		if ( offset < 0 ) {
+			throw new IllegalArgumentException( "Offset must not be negative: " + offset );
+		}
+		if ( length == 0 ) {
+			return new ByteArrayInputStream( new byte[0] );
+		}
+
+		GetObjectRequest request = new GetObjectRequest( bucketName, objectName );
+		if ( length > 0 ) {
+			request.setRange( offset, offset + length - 1 );
+		}
+		else {
+			request.setRange( offset );
+		}
+		if ( eTag != null ) {
+			request.setMatchingETagConstraints( Collections.singletonList( eTag ) );
+		}
+
+		try {
+			S3Object object = amazonS3.getObject( request );
+
+			if ( object == null ) {
+				// constraint not met
+				throw new IOException( descriptor + " has been modified during the download" );
+			}
+
+			return object.getObjectContent();
+		}
+		catch ( AmazonS3Exception s3e ) {
+			if ( s3e.getStatusCode() == 404 ) {
+				throw fileNotFound( descriptor, s3e );
+			}
+			if ( s3e.getStatusCode() == 416 ) {
+				// offset is beyond the end of the object
+				return new ByteArrayInputStream( new byte[0] );
+			}
+			throw s3e;
+		}
+	}
+
+	/**
+	 * Objects larger than a single segment are downloaded in parallel segments on the {@link TaskExecutor}
+	 * (unless it is a {@link SyncTaskExecutor}), see {@link SegmentedDownload}. Every segment is requested with the ETag of the object when the download
+	 * started, if the object is modified in the meantime the download fails instead of mixing both versions.
+	 */
 	@Override
 	public void copyTo( File file ) throws IOException {
+		resetObjectMetadata();
+
 		try {
+			ObjectMetadata metadata = amazonS3.getObjectMetadata( bucketName, objectName );
+			long size = metadata.getContentLength();
+
+			if ( size > SegmentedDownload.SEGMENT_SIZE && !( taskExecutor instanceof SyncTaskExecutor ) ) {
+				String eTag = metadata.getETag();
+				SegmentedDownload.copyTo( this, ( offset, length ) -> getInputStream( offset, length, eTag ), size, file, taskExecutor );
+				return;
+			}
+
 			FileUtils.forceMkdirParent( file );
 			amazonS3.getObject( new GetObjectRequest( bucketName, objectName ), file );
 		}
@@ -179,6 +270,146 @@ class AmazonS3FileResource extends SimpleStorageResource implements FileResource
 		}
 	}
 
+	/**
+	 * Uploads the file directly, without buffering it in memory. If the file is larger than
+	 * the part size determined by its length, the parts are uploaded in parallel.
+	 */
+	@Override
+	public void copyFrom( @NonNull File originalFile, boolean deleteOriginal ) throws IOException {
+		if ( !originalFile.isFile() ) {
+			throw new FileNotFoundException( "File " + originalFile + " not found!" );
+		}
+
+		long size = originalFile.length();
+		long partSize = AmazonS3MultipartUpload.filePartSize( size );
+
+		try {
+			if ( size <= partSize ) {
+				amazonS3.putObject( bucketName, objectName, originalFile );
+			}
+			else {
+				AmazonS3MultipartUpload multipartUpload = new AmazonS3MultipartUpload( amazonS3, bucketName, objectName, taskExecutor );
+
+				for ( long position = 0; position < size; position += partSize ) {
+					multipartUpload.uploadPart(
+							new UploadPartRequest()
+									.withFile( originalFile )
+									.withFileOffset( position )
+									.withPartSize( Math.min( partSize, size - position ) ),
+							null
+					);
+				}
+
+				multipartUpload.complete();
+			}
+		}
+		finally {
+			resetObjectMetadata();
+		}
+
+		if ( deleteOriginal ) {
+			FileUtils.deleteQuietly( originalFile );
+		}
+	}
+
+	@Override
+	public void copyFrom( @NonNull Resource resource ) throws IOException {
+		if ( resource instanceof FileResource && isOnSameStorage( (FileResource) resource ) ) {
+			copyFrom( (FileResource) resource, false );
+		}
+		else {
+			FileResource.super.copyFrom( resource );
+		}
+	}
+
+	@Override
+	public void copyFrom( @NonNull FileResource originalFileResource, boolean deleteOriginal ) throws IOException {
+		if ( isOnSameStorage( originalFileResource ) ) {
+			AmazonS3FileResource source = (AmazonS3FileResource) originalFileResource;
+
+			if ( !isSameObject( source ) ) {
+				copyObject( source );
+
+				if ( deleteOriginal ) {
+					source.delete();
+				}
+			}
+		}
+		else {
+			FileResource.super.copyFrom( originalFileResource, deleteOriginal );
+		}
+	}
+
+	@Override
+	public void copyTo( @NonNull WritableResource targetResource ) throws IOException {
+		if ( targetResource instanceof AmazonS3FileResource && ( (AmazonS3FileResource) targetResource ).isOnSameStorage( this ) ) {
+			if ( !isSameObject( (AmazonS3FileResource) targetResource ) ) {
+				( (AmazonS3FileResource) targetResource ).copyObject( this );
+			}
+		}
+		else {
+			FileResource.super.copyTo( targetResource );
+		}
+	}
+
+	private boolean isOnSameStorage( FileResource other ) {
+		return other instanceof AmazonS3FileResource && ( (AmazonS3FileResource) other ).amazonS3 == amazonS3;
+	}
+
+	private boolean isSameObject( AmazonS3FileResource other ) {
+		return bucketName.equals( other.bucketName ) && objectName.equals( other.objectName );
+	}
+
+	private void copyObject( AmazonS3FileResource source ) throws IOException {
+		try {
+			long size = amazonS3.getObjectMetadata( source.bucketName, source.objectName ).getContentLength();
+
+			if ( size <= MAX_SINGLE_COPY_SIZE ) {
+				amazonS3.copyObject( source.bucketName, source.objectName, bucketName, objectName );
+			}
+			else {
+				copyObjectInParts( source, size );
+			}
+		}
+		catch ( AmazonS3Exception s3e ) {
+			if ( s3e.getStatusCode() == 404 ) {
+				throw fileNotFound( source.descriptor, s3e );
+			}
+			throw s3e;
+		}
+		finally {
+			resetObjectMetadata();
+		}
+	}
+
+	private void copyObjectInParts( AmazonS3FileResource source, long size ) {
+		String uploadId = amazonS3.initiateMultipartUpload( new InitiateMultipartUploadRequest( bucketName, objectName ) ).getUploadId();
+
+		try {
+			List<PartETag> partETags = new ArrayList<>();
+			int partNumber = 1;
+
+			for ( long position = 0; position < size; position += COPY_PART_SIZE ) {
+				CopyPartRequest copyPartRequest = new CopyPartRequest()
+						.withSourceBucketName( source.bucketName )
+						.withSourceKey( source.objectName )
+						.withDestinationBucketName( bucketName )
+						.withDestinationKey( objectName )
+						.withUploadId( uploadId )
+						.withFirstByte( position )
+						.withLastByte( Math.min( position + COPY_PART_SIZE, size ) - 1 )
+						.withPartNumber( partNumber++ );
+				partETags.add( amazonS3.copyPart( copyPartRequest ).getPartETag() );
+			}
+
+			amazonS3.completeMultipartUpload( new CompleteMultipartUploadRequest( bucketName, objectName, uploadId, partETags ) );
+		}
+		catch ( RuntimeException re ) {
+			amazonS3.abortMultipartUpload( new AbortMultipartUploadRequest( bucketName, objectName, uploadId ) );
+			throw re;
+		}
+	}
+
 	@Override
 	public boolean equals( Object obj ) {
 		return obj == this || ( obj instanceof FileResource && descriptor.equals( ( (FileResource) obj ).getDescriptor() ) );
@@ -21,16 +21,24 @@ import com.foreach.common.filemanager.business.*;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
-import org.springframework.util.AntPathMatcher;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a folder resource on Amazon S3 storage.
@@ -51,6 +59,21 @@ import java.util.function.BiPredicate;
 @RequiredArgsConstructor
 class AmazonS3FolderResource implements FolderResource
 {
+	/**
+	 * Maximum number of listings that are requested ahead at the same time by a single search.
+	 */
+	static final int MAX_LISTINGS_IN_FLIGHT = 8;
+
+	/**
+	 * Maximum number of list requests a single search sends per second.
+	 */
+	static final int MAX_LIST_REQUESTS_PER_SECOND = 100;
+
+	/**
+	 * Number of upcoming steps that are considered when requesting listings ahead.
+	 */
+	private static final int LISTING_LOOK_AHEAD = 4 * MAX_LISTINGS_IN_FLIGHT;
+
 	@Getter
 	private final FolderDescriptor descriptor;
 
@@ -94,10 +117,23 @@ class AmazonS3FolderResource implements FolderResource
 	}
 
 	@Override
-	public Collection<FileRepositoryResource> findResources( String pattern ) {
+	public Collection<FileRepositoryResource> findResources( @NonNull String pattern ) {
+		try (Stream<FileRepositoryResource> resources = streamResources( pattern )) {
+			return resources.collect( Collectors.toCollection( LinkedHashSet::new ) );
+		}
+	}
+
+	/**
+	 * Objects are listed one page at a time as the stream is consumed, no requests are sent to Amazon S3
+	 * before the first resource is requested. Limiting the stream avoids listing the remaining pages.
+	 * <p/>
+	 * The listings of the next prefixes to visit are requested ahead in parallel on the {@link TaskExecutor}
+	 * (unless it is a {@link SyncTaskExecutor}), the stream should be closed to cancel them if it is not
+	 * entirely consumed.
+	 */
+	@Override
+	public Stream<FileRepositoryResource> streamResources( @NonNull String pattern ) {
 		if ( exists() ) {
-			Set<FileRepositoryResource> resources = new LinkedHashSet<>();
-			AntPathMatcher pathMatcher = new AntPathMatcher( "/" );
 			String p = StringUtils.startsWith( pattern, "/" ) ? pattern.substring( 1 ) : pattern;
 			boolean matchOnlyDirectories = StringUtils.endsWith( p, "/" );
 
@@ -105,154 +141,311 @@ class AmazonS3FolderResource implements FolderResource
 				p = p.substring( 0, p.length() - 1 );
 			}
 
-			BiPredicate<String, String> keyMatcher = ( candidateObjectName, antPattern ) -> {
-				if ( pathMatcher.match( antPattern, antPattern.endsWith( "/" ) ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" ) ) ) {
+			BiPredicate<String, AntPathPattern> keyMatcher = ( candidateObjectName, keyPattern ) -> {
+				String path = keyPattern.endsWithSeparator() ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" );
+				if ( keyPattern.matches( path ) ) {
 					return !matchOnlyDirectories || candidateObjectName.endsWith( "/" );
 				}
 				return false;
 			};
 
-			findResourcesWithMatchingKeys( keyMatcher, resources, objectName + getValidPrefix( p ), objectName + p );
+			String keyPattern = objectName + p;
+			MatchingResourcesIterator resources = new MatchingResourcesIterator( keyMatcher, keyPattern, AntPathPattern.compile( keyPattern ) );
+			resources.findResourcesWithMatchingKeys( objectName + getValidPrefix( p ) );
 
-			return resources;
+			return StreamSupport.stream( Spliterators.spliteratorUnknownSize( resources, Spliterator.ORDERED | Spliterator.NONNULL ), false )
+			                    .onClose( resources::close );
 		}
 
-		return Collections.emptyList();
+		return Stream.empty();
 	}
 
-	private void findResourcesWithMatchingKeys( BiPredicate<String, String> keyMatcher,
-	                                            Set<FileRepositoryResource> resources,
-	                                            String prefix,
-	                                            String keyPattern ) {
-		String remainingPatternPart = getRemainingPatternPart( keyPattern, prefix );
-		if ( remainingPatternPart != null && remainingPatternPart.startsWith( "**" ) ) {
-			findAllResourcesThatMatches( keyMatcher, resources, prefix, keyPattern );
+	/**
+	 * Iterates over the resources with keys matching the pattern. Every listing of a prefix (or next page of a listing)
+	 * is a separate step on a stack, which is only executed when no matching resources remain.
+	 * <p/>
+	 * Listings near the top of the stack are requested ahead of time on the {@link TaskExecutor}, at most
+	 * {@link #MAX_LISTINGS_IN_FLIGHT} at the same time and no more than {@link #MAX_LIST_REQUESTS_PER_SECOND} per search.
+	 * The steps themselves are still executed in stack order, so the order of the results does not depend on which
+	 * listing returns first.
+	 * <p/>
+	 * The key pattern is compiled once per search, as are the leading parts of it used to match the common prefixes.
+	 */
+	private class MatchingResourcesIterator implements Iterator<FileRepositoryResource>
+	{
+		private final BiPredicate<String, AntPathPattern> keyMatcher;
+		private final String keyPattern;
+		private final AntPathPattern compiledKeyPattern;
+		private final Map<Integer, AntPathPattern> partialKeyPatterns = new HashMap<>();
+
+		private final Deque<Runnable> steps = new ArrayDeque<>();
+		private final Deque<FileRepositoryResource> resources = new ArrayDeque<>();
+		private final Set<String> folderKeys = new HashSet<>();
+
+		private final Semaphore listingsInFlight = new Semaphore( MAX_LISTINGS_IN_FLIGHT );
+		private long nextRequestTime = System.nanoTime();
+
+		MatchingResourcesIterator( BiPredicate<String, AntPathPattern> keyMatcher, String keyPattern, AntPathPattern compiledKeyPattern ) {
+			this.keyMatcher = keyMatcher;
+			this.keyPattern = keyPattern;
+			this.compiledKeyPattern = compiledKeyPattern;
 		}
-		else {
-			findProgressivelyWithPartialMatch( keyMatcher, resources, prefix, keyPattern );
+
+		@Override
+		public boolean hasNext() {
+			while ( resources.isEmpty() && !steps.isEmpty() ) {
+				requestListingsAhead();
+				steps.pop().run();
+			}
+			return !resources.isEmpty();
 		}
-	}
 
-	private void findAllResourcesThatMatches( BiPredicate<String, String> keyMatcher,
-	                                          Set<FileRepositoryResource> resources,
-	                                          String prefix,
-	                                          String keyPattern ) {
-		ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName( bucketName ).withPrefix( prefix );
-		ObjectListing objectListing = null;
+		@Override
+		public FileRepositoryResource next() {
+			if ( !hasNext() ) {
+				throw new NoSuchElementException();
+			}
+			return resources.poll();
+		}
 
-		do {
-			try {
-				if ( objectListing == null ) {
-					objectListing = this.amazonS3.listObjects( listObjectsRequest );
-				}
-				else {
-					objectListing = this.amazonS3.listNextBatchOfObjects( objectListing );
+		void findResourcesWithMatchingKeys( String prefix ) {
+			String remainingPatternPart = getRemainingPatternPart( keyPattern, prefix );
+			ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName( bucketName ).withPrefix( prefix );
+
+			if ( remainingPatternPart != null && remainingPatternPart.startsWith( "**" ) ) {
+				steps.push( new Listing( listObjectsRequest, null, true ) );
+			}
+			else {
+				listObjectsRequest.setDelimiter( "/" );
+				steps.push( new Listing( listObjectsRequest, null, false ) );
+			}
+		}
+
+		/**
+		 * Cancel the listings that have been requested ahead of time but are no longer needed.
+		 */
+		void close() {
+			steps.forEach( step -> {
+				if ( step instanceof Listing ) {
+					( (Listing) step ).cancel();
 				}
-				addResourcesFromObjectSummaries( keyMatcher, keyPattern, objectListing.getObjectSummaries(), resources );
-				extractFolderResources( keyMatcher, keyPattern, prefix, objectListing, resources );
+			} );
+			steps.clear();
+		}
+
+		private void requestListingsAhead() {
+			if ( taskExecutor instanceof SyncTaskExecutor ) {
+				return;
 			}
-			catch ( AmazonS3Exception e ) {
-				if ( 301 != e.getStatusCode() ) {
-					throw e;
+
+			Iterator<Runnable> upcoming = steps.iterator();
+			for ( int i = 0; i < LISTING_LOOK_AHEAD && upcoming.hasNext(); i++ ) {
+				Runnable step = upcoming.next();
+				if ( step instanceof Listing && !( (Listing) step ).requestAhead() ) {
+					return;
 				}
 			}
 		}
-		while ( objectListing != null && objectListing.isTruncated() );
-	}
 
-	private void extractFolderResources( BiPredicate<String, String> keyMatcher,
-	                                     String keyPattern, String prefix, ObjectListing objectListing, Set<FileRepositoryResource> resources ) {
-		objectListing.getObjectSummaries().forEach( objectSummary -> {
-			String resultObjectName = StringUtils.removeEnd( objectSummary.getKey(), "/" );
+		private void throttle() throws InterruptedException {
+			long delay;
+
+			synchronized ( this ) {
+				long now = System.nanoTime();
+				long requestTime = Math.max( now, nextRequestTime );
+				nextRequestTime = requestTime + TimeUnit.SECONDS.toNanos( 1 ) / MAX_LIST_REQUESTS_PER_SECOND;
+				delay = requestTime - now;
+			}
+
+			if ( delay > 0 ) {
+				TimeUnit.NANOSECONDS.sleep( delay );
+			}
+		}
+
+		private void findAllResourcesThatMatches( ListObjectsRequest listObjectsRequest, ObjectListing objectListing ) {
+			if ( objectListing.isTruncated() ) {
+				steps.push( new Listing( listObjectsRequest, objectListing, true ) );
+			}
+
+			addResourcesFromObjectSummaries( objectListing.getObjectSummaries() );
+			extractFolderResources( listObjectsRequest.getPrefix(), objectListing );
+		}
+
+		private void extractFolderResources( String prefix, ObjectListing objectListing ) {
+			objectListing.getObjectSummaries().forEach( objectSummary -> {
+				String resultObjectName = StringUtils.removeEnd( objectSummary.getKey(), "/" );
 
-			int last = resultObjectName.lastIndexOf( '/' );
+				int last = resultObjectName.lastIndexOf( '/' );
 
-			if ( last > 0 ) {
-				int delim = resultObjectName.indexOf( '/', prefix.length() + 1 );
-				while ( delim != -1 && delim <= last ) {
-					String partial = resultObjectName.substring( 0, delim + 1 );
-					if ( partial.length() > 0 && keyMatcher.test( partial, keyPattern ) ) {
-						resources.add( toFileRepositoryResource( partial, null ) );
+				if ( last > 0 ) {
+					int delim = resultObjectName.indexOf( '/', prefix.length() + 1 );
+					while ( delim != -1 && delim <= last ) {
+						String partial = resultObjectName.substring( 0, delim + 1 );
+						if ( partial.length() > 0 && keyMatcher.test( partial, compiledKeyPattern ) ) {
+							add( partial, null );
+						}
+						delim = resultObjectName.indexOf( '/', delim + 1 );
 					}
-					delim = resultObjectName.indexOf( '/', delim + 1 );
 				}
+			} );
+		}
+
+		private void findProgressivelyWithPartialMatch( ListObjectsRequest listObjectsRequest, ObjectListing objectListing ) {
+			if ( objectListing.isTruncated() ) {
+				steps.push( new Listing( listObjectsRequest, objectListing, false ) );
 			}
-		} );
-	}
 
-	private void findProgressivelyWithPartialMatch( BiPredicate<String, String> keyMatcher,
-	                                                Set<FileRepositoryResource> resources,
-	                                                String prefix,
-	                                                String keyPattern ) {
-		ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName( bucketName ).withDelimiter( "/" ).withPrefix( prefix );
-		ObjectListing objectListing = null;
+			addResourcesFromObjectSummaries( objectListing.getObjectSummaries() );
+
+			// push in reverse so the common prefixes are visited in listing order, before the next page;
+			// the listings of the prefixes are pushed directly so they can be requested ahead
+			List<String> commonPrefixes = objectListing.getCommonPrefixes();
+			for ( int i = commonPrefixes.size() - 1; i >= 0; i-- ) {
+				String commonPrefix = commonPrefixes.get( i );
 
-		do {
-			if ( objectListing == null ) {
-				objectListing = amazonS3.listObjects( listObjectsRequest );
+				if ( isKeyPathMatchesPartially( commonPrefix ) ) {
+					findResourcesWithMatchingKeys( commonPrefix );
+				}
+
+				if ( keyMatcher.test( commonPrefix, compiledKeyPattern ) ) {
+					steps.push( () -> add( commonPrefix, null ) );
+				}
+			}
+		}
+
+		private void addResourcesFromObjectSummaries( List<S3ObjectSummary> objectSummaries ) {
+			objectSummaries.forEach( candidate -> {
+				String candidateObjectName = candidate.getKey();
+				if ( !candidateObjectName.equals( objectName ) && keyMatcher.test( candidateObjectName, compiledKeyPattern ) ) {
+					add( candidateObjectName, candidate );
+				}
+			} );
+		}
+
+		private boolean isKeyPathMatchesPartially( String keyPath ) {
+			int indexOfNthSlash = getIndexAfterNthSlash( keyPattern, StringUtils.countMatches( keyPath, '/' ) );
+			if ( indexOfNthSlash != -1 ) {
+				AntPathPattern partialKeyPattern = partialKeyPatterns.computeIfAbsent(
+						indexOfNthSlash, index -> AntPathPattern.compile( keyPattern.substring( 0, index ) ) );
+				return keyMatcher.test( keyPath, partialKeyPattern );
 			}
 			else {
-				objectListing = amazonS3.listNextBatchOfObjects( objectListing );
+				return false;
 			}
+		}
 
-			addResourcesFromObjectSummaries( keyMatcher, keyPattern, objectListing.getObjectSummaries(), resources );
+		private void add( String childObjectName, S3ObjectSummary childObjectSummary ) {
+			// the same folder can be found both as folder object and as common part of object keys
+			if ( !childObjectName.endsWith( "/" ) || folderKeys.add( childObjectName ) ) {
+				resources.add( toFileRepositoryResource( childObjectName, childObjectSummary ) );
+			}
+		}
 
-			for ( String commonPrefix : objectListing.getCommonPrefixes() ) {
-				if ( keyMatcher.test( commonPrefix, keyPattern ) ) {
-					resources.add( toFileRepositoryResource( commonPrefix, null ) );
+		/**
+		 * Step listing a single page of objects. The page is either requested when the step is executed,
+		 * or ahead of time if a listing slot is available.
+		 */
+		private class Listing implements Runnable
+		{
+			private final ListObjectsRequest listObjectsRequest;
+			private final ObjectListing previousListing;
+			private final boolean recursive;
+
+			private FutureTask<ObjectListing> requested;
+
+			Listing( ListObjectsRequest listObjectsRequest, ObjectListing previousListing, boolean recursive ) {
+				this.listObjectsRequest = listObjectsRequest;
+				this.previousListing = previousListing;
+				this.recursive = recursive;
+			}
+
+			/**
+			 * @return false if no listing slot was available
+			 */
+			boolean requestAhead() {
+				if ( requested == null ) {
+					if ( !listingsInFlight.tryAcquire() ) {
+						return false;
+					}
+
+					FutureTask<ObjectListing> task = new FutureTask<>( () -> {
+						try {
+							return list();
+						}
+						finally {
+							listingsInFlight.release();
+						}
+					} );
+
+					try {
+						taskExecutor.execute( task );
+					}
+					catch ( RuntimeException re ) {
+						listingsInFlight.release();
+						throw re;
+					}
+
+					requested = task;
 				}
 
-				if ( isKeyPathMatchesPartially( keyMatcher, keyPattern, commonPrefix ) ) {
-					findResourcesWithMatchingKeys( keyMatcher, resources, commonPrefix, keyPattern );
+				return true;
+			}
+
+			void cancel() {
+				if ( requested != null ) {
+					requested.cancel( true );
 				}
 			}
-		}
-		while ( objectListing.isTruncated() );
-	}
 
-	private String getRemainingPatternPart( String keyPattern, String path ) {
-		int numberOfSlashes = org.springframework.util.StringUtils.countOccurrencesOf( path, "/" );
-		int indexOfNthSlash = getIndexOfNthOccurrence( keyPattern, numberOfSlashes );
-		return indexOfNthSlash == -1 ? null : keyPattern.substring( indexOfNthSlash );
-	}
+			@Override
+			@SneakyThrows
+			public void run() {
+				ObjectListing objectListing;
 
-	private boolean isKeyPathMatchesPartially( BiPredicate<String, String> keyMatcher, String keyPattern, String keyPath ) {
-		int numberOfSlashes = org.springframework.util.StringUtils.countOccurrencesOf( keyPath, "/" );
-		int indexOfNthSlash = getIndexOfNthOccurrence( keyPattern, numberOfSlashes );
-		if ( indexOfNthSlash != -1 ) {
-			return keyMatcher.test( keyPath, keyPattern.substring( 0, indexOfNthSlash ) );
-		}
-		else {
-			return false;
-		}
-	}
+				try {
+					objectListing = requested != null ? requested.get() : list();
+				}
+				catch ( ExecutionException ee ) {
+					throw ee.getCause();
+				}
 
-	private int getIndexOfNthOccurrence( String str, int pos ) {
-		int result = 0;
-		String subStr = str;
-		for ( int i = 0; i < pos; i++ ) {
-			int nthOccurrence = subStr.indexOf( '/' );
-			if ( nthOccurrence == -1 ) {
-				return -1;
+				if ( objectListing != null ) {
+					if ( recursive ) {
+						findAllResourcesThatMatches( listObjectsRequest, objectListing );
+					}
+					else {
+						findProgressivelyWithPartialMatch( listObjectsRequest, objectListing );
+					}
+				}
 			}
-			else {
-				result += nthOccurrence + 1;
-				subStr = subStr.substring( nthOccurrence + 1 );
+
+			private ObjectListing list() throws InterruptedException {
+				throttle();
+
+				try {
+					return previousListing == null ? amazonS3.listObjects( listObjectsRequest ) : amazonS3.listNextBatchOfObjects( previousListing );
+				}
+				catch ( AmazonS3Exception e ) {
+					if ( recursive && 301 == e.getStatusCode() ) {
+						return null;
+					}
+					throw e;
+				}
 			}
 		}
-		return result;
 	}
 
-	private void addResourcesFromObjectSummaries( BiPredicate<String, String> keyMatcher,
-	                                              String keyPattern,
-	                                              List<S3ObjectSummary> objectSummaries,
-	                                              Set<FileRepositoryResource> resources ) {
-		objectSummaries.forEach( candidate -> {
-			String candidateObjectName = candidate.getKey();
-			if ( !candidateObjectName.equals( objectName ) && keyMatcher.test( candidateObjectName, keyPattern ) ) {
-				resources.add( toFileRepositoryResource( candidateObjectName, candidate ) );
-			}
-		} );
+	private String getRemainingPatternPart( String keyPattern, String path ) {
+		int indexOfNthSlash = getIndexAfterNthSlash( keyPattern, StringUtils.countMatches( path, '/' ) );
+		return indexOfNthSlash == -1 ? null : keyPattern.substring( indexOfNthSlash );
+	}
+
+	private int getIndexAfterNthSlash( String str, int n ) {
+		if ( n == 0 ) {
+			return 0;
+		}
+		int index = StringUtils.ordinalIndexOf( str, "/", n );
+		return index == -1 ? -1 : index + 1;
 	}
 
 	private FileRepositoryResource toFileRepositoryResource( String childObjectName, S3ObjectSummary childObjectSummary ) {
@@ -298,28 +491,44 @@ class AmazonS3FolderResource implements FolderResource
 		return deleted;
 	}
 
+	/**
+	 * Deletes all objects with the key of this folder as prefix, using a multi-object delete for every
+	 * page of objects listed.
+	 */
 	@Override
 	public boolean deleteChildren() {
-		Collection<FileRepositoryResource> resources = findResources( "*" );
+		ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName( bucketName ).withPrefix( objectName );
+		ObjectListing objectListing = null;
+		boolean deleted = false;
 
-		if ( !resources.isEmpty() ) {
-			try {
-				resources.forEach( r -> {
-					if ( r instanceof FileResource ) {
-						( (FileResource) r ).delete();
-					}
-					else {
-						( (FolderResource) r ).delete( true );
-					}
-				} );
-			}
-			catch ( AmazonS3Exception ignore ) {
-				return false;
+		try {
+			do {
+				if ( objectListing == null ) {
+					objectListing = amazonS3.listObjects( listObjectsRequest );
+				}
+				else {
+					objectListing = amazonS3.listNextBatchOfObjects( objectListing );
+				}
+
+				String[] keys = objectListing.getObjectSummaries()
+				                             .stream()
+				                             .map( S3ObjectSummary::getKey )
+				                             .filter( key -> !key.equals( objectName ) )
+				                             .toArray( String[]::new );
+
+				if ( keys.length > 0 ) {
+					// the keys have just been listed, quiet mode only reports the ones that could not be deleted
+					amazonS3.deleteObjects( new DeleteObjectsRequest( bucketName ).withKeys( keys ).withQuiet( true ) );
+					deleted = true;
+				}
 			}
-			return true;
+			while ( objectListing.isTruncated() );
+		}
+		catch ( AmazonS3Exception ignore ) {
+			return false;
 		}
 
-		return false;
+		return deleted;
 	}
 
 	@Override
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uploads a single Amazon S3 object in multiple parts. The parts are uploaded on a {@link TaskExecutor},
+ * with at most {@link #MAX_PARTS_IN_FLIGHT} parts being uploaded at the same time: submitting another part
+ * blocks until one of the running uploads has finished. The multipart upload itself is only initiated
+ * when the first part is submitted.
+ * <p/>
+ * If any part fails, the entire multipart upload is aborted and nothing is written to the target object.
+ *
+ * @since 1.4.0
+ */
+@Slf4j
+final class AmazonS3MultipartUpload
+{
+	/**
+	 * Minimum size of a part (except the last one), imposed by Amazon S3.
+	 */
+	static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+	/**
+	 * Maximum number of parts in a single multipart upload, imposed by Amazon S3.
+	 */
+	static final int MAX_PARTS = 10000;
+
+	/**
+	 * Maximum number of parts that are being uploaded at the same time.
+	 */
+	static final int MAX_PARTS_IN_FLIGHT = 4;
+
+	/**
+	 * Default size of a single part when uploading a file.
+	 */
+	static final long DEFAULT_FILE_PART_SIZE = 16L * 1024 * 1024;
+
+	private final AmazonS3 amazonS3;
+	private final String bucketName;
+	private final String objectName;
+	private final TaskExecutor taskExecutor;
+
+	private final Semaphore partsInFlight = new Semaphore( MAX_PARTS_IN_FLIGHT );
+	private final List<Future<PartETag>> parts = new ArrayList<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private String uploadId;
+	private boolean aborted;
+
+	AmazonS3MultipartUpload( @NonNull AmazonS3 amazonS3,
+	                         @NonNull String bucketName,
+	                         @NonNull String objectName,
+	                         @NonNull TaskExecutor taskExecutor ) {
+		this.amazonS3 = amazonS3;
+		this.bucketName = bucketName;
+		this.objectName = objectName;
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Determine the part size for uploading a file with the given length. Uses the default part size
+	 * unless this would exceed the maximum number of parts. A file which is not larger than the part
+	 * size should be uploaded in a single request.
+	 *
+	 * @param contentLength length of the file
+	 * @return part size
+	 */
+	static long filePartSize( long contentLength ) {
+		long minimumPartSize = ( contentLength + MAX_PARTS - 1 ) / MAX_PARTS;
+		return Math.max( DEFAULT_FILE_PART_SIZE, minimumPartSize );
+	}
+
+	/**
+	 * @return true if at least one part has been submitted
+	 */
+	boolean isStarted() {
+		return uploadId != null;
+	}
+
+	/**
+	 * Submit the next part for uploading. The request should only specify the data of the part,
+	 * target object and part number will be set by this upload. Blocks if the maximum number of parts
+	 * is already being uploaded.
+	 *
+	 * @param request     for the part data
+	 * @param afterUpload callback executed once the part upload has finished, successfully or not
+	 * @throws IOException if a previous part has failed or the current thread was interrupted
+	 */
+	void uploadPart( @NonNull UploadPartRequest request, Runnable afterUpload ) throws IOException {
+		try {
+			partsInFlight.acquire();
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			abort();
+			throw new InterruptedIOException( "Interrupted while uploading " + objectName );
+		}
+
+		boolean submitted = false;
+
+		try {
+			verifyNoFailures();
+
+			if ( uploadId == null ) {
+				uploadId = amazonS3.initiateMultipartUpload( new InitiateMultipartUploadRequest( bucketName, objectName ) ).getUploadId();
+			}
+
+			request.withBucketName( bucketName )
+			       .withKey( objectName )
+			       .withUploadId( uploadId )
+			       .withPartNumber( parts.size() + 1 );
+
+			FutureTask<PartETag> task = new FutureTask<>( () -> {
+				try {
+					return amazonS3.uploadPart( request ).getPartETag();
+				}
+				catch ( RuntimeException re ) {
+					failure.compareAndSet( null, re );
+					throw re;
+				}
+				finally {
+					partsInFlight.release();
+					if ( afterUpload != null ) {
+						afterUpload.run();
+					}
+				}
+			} );
+			parts.add( task );
+			taskExecutor.execute( task );
+			submitted = true;
+		}
+		catch ( RuntimeException re ) {
+			abort();
+			throw re;
+		}
+		finally {
+			if ( !submitted ) {
+				partsInFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * Wait for all parts to be uploaded and complete the multipart upload.
+	 * Aborts the upload if any of the parts failed.
+	 */
+	void complete() throws IOException {
+		List<PartETag> partETags = new ArrayList<>( parts.size() );
+
+		try {
+			for ( Future<PartETag> part : parts ) {
+				partETags.add( part.get() );
+			}
+
+			amazonS3.completeMultipartUpload( new CompleteMultipartUploadRequest( bucketName, objectName, uploadId, partETags ) );
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			abort();
+			throw new InterruptedIOException( "Interrupted while uploading " + objectName );
+		}
+		catch ( ExecutionException ee ) {
+			abort();
+			throw new IOException( "Multipart upload of " + objectName + " failed", ee.getCause() );
+		}
+		catch ( RuntimeException re ) {
+			abort();
+			throw re;
+		}
+	}
+
+	/**
+	 * Cancel all parts that have not yet been uploaded and abort the multipart upload.
+	 * Only the first call has any effect.
+	 */
+	void abort() {
+		if ( aborted ) {
+			return;
+		}
+
+		aborted = true;
+		parts.forEach( part -> part.cancel( true ) );
+
+		if ( uploadId != null ) {
+			try {
+				amazonS3.abortMultipartUpload( new AbortMultipartUploadRequest( bucketName, objectName, uploadId ) );
+			}
+			catch ( RuntimeException re ) {
+				LOG.warn( "Unable to abort multipart upload {} of {}", uploadId, objectName, re );
+			}
+		}
+	}
+
+	private void verifyNoFailures() throws IOException {
+		Throwable cause = failure.get();
+
+		if ( cause != null ) {
+			abort();
+			throw new IOException( "Multipart upload of " + objectName + " failed", cause );
+		}
+	}
+}
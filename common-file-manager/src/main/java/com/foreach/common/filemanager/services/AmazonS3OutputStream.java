@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import lombok.NonNull;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link OutputStream} writing to an Amazon S3 object. Data is buffered in memory and uploaded
+ * as a single object when the stream is closed, unless it exceeds the part size. In that case every
+ * full buffer is uploaded as a separate part of a {@link AmazonS3MultipartUpload} while writing continues.
+ * <p/>
+ * Buffers are reused once their part has been uploaded, so the memory used is limited to the part size
+ * times the number of parts in flight (plus the buffer being written to).
+ * <p/>
+ * If uploading a part fails while writing, the stream is marked as failed: closing it aborts the multipart
+ * upload and throws an exception instead of writing the object.
+ *
+ * @since 1.4.0
+ */
+final class AmazonS3OutputStream extends OutputStream
+{
+	/**
+	 * Size of a single part, also the size of the buffer.
+	 */
+	static final int PART_SIZE = 8 * 1024 * 1024;
+
+	private final AmazonS3 amazonS3;
+	private final String bucketName;
+	private final String objectName;
+	private final AmazonS3MultipartUpload multipartUpload;
+
+	private final Queue<byte[]> availableBuffers = new ConcurrentLinkedQueue<>();
+
+	private byte[] buffer;
+	private int count;
+	private boolean closed;
+	private Exception failure;
+
+	AmazonS3OutputStream( @NonNull AmazonS3 amazonS3,
+	                      @NonNull String bucketName,
+	                      @NonNull String objectName,
+	                      @NonNull TaskExecutor taskExecutor ) {
+		this.amazonS3 = amazonS3;
+		this.bucketName = bucketName;
+		this.objectName = objectName;
+		this.multipartUpload = new AmazonS3MultipartUpload( amazonS3, bucketName, objectName, taskExecutor );
+	}
+
+	@Override
+	public void write( int b ) throws IOException {
+		verifyOpen();
+		if ( buffer == null ) {
+			buffer = nextBuffer();
+		}
+
+		buffer[count++] = (byte) b;
+
+		if ( count == buffer.length ) {
+			uploadBuffer();
+		}
+	}
+
+	@Override
+	public void write( byte[] b, int off, int len ) throws IOException {
+		verifyOpen();
+
+		int position = off;
+		int remaining = len;
+
+		while ( remaining > 0 ) {
+			if ( buffer == null ) {
+				buffer = nextBuffer();
+			}
+
+			int length = Math.min( remaining, buffer.length - count );
+			System.arraycopy( b, position, buffer, count, length );
+			count += length;
+			position += length;
+			remaining -= length;
+
+			if ( count == buffer.length ) {
+				uploadBuffer();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( closed ) {
+			return;
+		}
+
+		closed = true;
+
+		if ( failure != null ) {
+			buffer = null;
+			availableBuffers.clear();
+			multipartUpload.abort();
+			throw new IOException( "Upload of " + objectName + " failed, the object has not been written", failure );
+		}
+
+		if ( multipartUpload.isStarted() ) {
+			if ( count > 0 ) {
+				uploadBuffer();
+			}
+			multipartUpload.complete();
+		}
+		else {
+			ObjectMetadata metadata = new ObjectMetadata();
+			metadata.setContentLength( count );
+			amazonS3.putObject( bucketName, objectName, new ByteArrayInputStream( buffer != null ? buffer : new byte[0], 0, count ), metadata );
+		}
+
+		buffer = null;
+		availableBuffers.clear();
+	}
+
+	private void uploadBuffer() throws IOException {
+		byte[] data = buffer;
+		UploadPartRequest request = new UploadPartRequest()
+				.withInputStream( new ByteArrayInputStream( data, 0, count ) )
+				.withPartSize( count );
+
+		buffer = null;
+		count = 0;
+
+		try {
+			multipartUpload.uploadPart( request, () -> availableBuffers.add( data ) );
+		}
+		catch ( IOException | RuntimeException e ) {
+			failure = e;
+			throw e;
+		}
+	}
+
+	private byte[] nextBuffer() {
+		byte[] next = availableBuffers.poll();
+		return next != null ? next : new byte[PART_SIZE];
+	}
+
+	private void verifyOpen() throws IOException {
+		if ( closed ) {
+			throw new IOException( "Stream already closed" );
+		}
+		if ( failure != null ) {
+			throw new IOException( "Upload of " + objectName + " failed", failure );
+		}
+	}
+}
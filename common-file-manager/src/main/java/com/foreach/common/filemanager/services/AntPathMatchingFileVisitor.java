@@ -17,18 +17,17 @@ package com.foreach.common.filemanager.services;
 
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.util.AntPathMatcher;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
+import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Arne Vandamme
@@ -38,8 +37,7 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 {
 	private static final Pattern INVALID_PATTERN = Pattern.compile( "/?\\.{1,2}(/|$)" );
 
-	private final AntPathMatcher pathMatcher;
-	private final String pattern;
+	private final AntPathPattern pattern;
 	private final boolean matchOnlyDirectories;
 	private final String absolutePathPrefix;
 	private final Consumer<Path> matchedPathConsumer;
@@ -47,13 +45,11 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 
 	private int filesVisited;
 
-	private AntPathMatchingFileVisitor( AntPathMatcher pathMatcher,
-	                                    String pattern,
+	private AntPathMatchingFileVisitor( String pattern,
 	                                    boolean matchOnlyDirectories,
 	                                    Path basedir,
 	                                    Consumer<Path> matchedPathConsumer ) {
-		this.pathMatcher = pathMatcher;
-		this.pattern = "/" + pattern;
+		this.pattern = AntPathPattern.compile( "/" + pattern );
 		this.matchOnlyDirectories = matchOnlyDirectories;
 		this.matchedPathConsumer = matchedPathConsumer;
 
@@ -72,7 +68,7 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 
 		boolean exactMatch = false;
 
-		if ( pathMatcher.match( pattern, pathToMatch ) ) {
+		if ( pattern.matches( pathToMatch ) ) {
 			exactMatch = true;
 			matchedPathConsumer.accept( dir );
 
@@ -81,7 +77,7 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 			}
 		}
 
-		if ( exactMatch || pathMatcher.matchStart( pattern, pathToMatch ) ) {
+		if ( exactMatch || pattern.matchesStart( pathToMatch ) ) {
 			return FileVisitResult.CONTINUE;
 		}
 
@@ -94,7 +90,7 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 
 		if ( !matchOnlyDirectories ) {
 			String pathToMatch = pathToMatch( file );
-			if ( pathMatcher.match( pattern, pathToMatch ) ) {
+			if ( pattern.matches( pathToMatch ) ) {
 				matchedPathConsumer.accept( file );
 			}
 		}
@@ -125,45 +121,165 @@ class AntPathMatchingFileVisitor extends SimpleFileVisitor<Path>
 		return null;
 	}
 
-	@SneakyThrows
+	/**
+	 * Walk the directory tree and send all paths matching the pattern to the consumer.
+	 *
+	 * @param directory           to search in
+	 * @param searchPattern       ANT pattern relative to the directory
+	 * @param matchedPathConsumer to send the matching paths to
+	 * @return number of files and directories visited
+	 */
 	static int walkFileTree( Path directory, String searchPattern, Consumer<Path> matchedPathConsumer ) {
-		AntPathMatcher pathMatcher = new AntPathMatcher();
+		LazyWalk walk = new LazyWalk( directory, searchPattern );
 
-		validatePattern( searchPattern );
+		try {
+			walk.forEachRemaining( matchedPathConsumer );
+		}
+		finally {
+			walk.close();
+		}
+
+		return walk.getFilesVisited();
+	}
+
+	/**
+	 * Lazy variant of {@link #walkFileTree(Path, String, Consumer)}: a directory is only read when the stream
+	 * is consumed up to that point. The stream must be closed to release the directory handles that are
+	 * still open if it has not been entirely consumed.
+	 *
+	 * @param directory     to search in
+	 * @param searchPattern ANT pattern relative to the directory
+	 * @return stream of matching paths
+	 */
+	static Stream<Path> streamMatchingPaths( Path directory, String searchPattern ) {
+		LazyWalk walk = new LazyWalk( directory, searchPattern );
+		return StreamSupport.stream( Spliterators.spliteratorUnknownSize( walk, Spliterator.ORDERED | Spliterator.NONNULL ), false )
+		                    .onClose( walk::close );
+	}
+
+	/**
+	 * Depth-first walk that only reads the next directory entry when a next match is requested.
+	 * Uses the same visitor callbacks as {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)},
+	 * directories that cannot be read are skipped.
+	 */
+	private static class LazyWalk implements Iterator<Path>
+	{
+		private final Deque<DirectoryStream<Path>> openDirectories = new ArrayDeque<>();
+		private final Deque<Iterator<Path>> entries = new ArrayDeque<>();
+		private final Deque<Path> matches = new ArrayDeque<>();
+
+		private AntPathMatchingFileVisitor visitor;
+
+		@SneakyThrows
+		LazyWalk( Path directory, String searchPattern ) {
+			validatePattern( searchPattern );
 
-		String pattern = StringUtils.removeStart( searchPattern, "/" );
+			String pattern = StringUtils.removeStart( searchPattern, "/" );
 
-		boolean matchOnlyDirectories = pattern.endsWith( "/" );
-		if ( matchOnlyDirectories ) {
-			pattern = pattern.substring( 0, pattern.length() - 1 );
+			boolean matchOnlyDirectories = pattern.endsWith( "/" );
+			if ( matchOnlyDirectories ) {
+				pattern = pattern.substring( 0, pattern.length() - 1 );
+			}
+
+			if ( !AntPathPattern.isPattern( pattern ) ) {
+				Path targetPath = directory.resolve( pattern );
+				File file = targetPath.toFile();
+				if ( file.exists() && ( !matchOnlyDirectories || file.isDirectory() ) ) {
+					matches.add( targetPath );
+				}
+			}
+			else {
+				String prefix = getFixedPrefix( pattern );
+				Path basedir = directory;
+
+				if ( !prefix.isEmpty() ) {
+					basedir = basedir.resolve( prefix );
+					File file = basedir.toFile();
+					if ( !file.exists() || !file.isDirectory() ) {
+						return;
+					}
+					pattern = StringUtils.removeStart( pattern, prefix );
+				}
+
+				visitor = new AntPathMatchingFileVisitor( pattern, matchOnlyDirectories, basedir, matches::add );
+				visitor.preVisitDirectory( basedir, null );
+				open( basedir );
+			}
 		}
 
-		if ( !pathMatcher.isPattern( pattern ) ) {
-			Path targetPath = directory.resolve( pattern );
-			File file = targetPath.toFile();
-			if ( file.exists() && ( !matchOnlyDirectories || file.isDirectory() ) ) {
-				matchedPathConsumer.accept( targetPath );
+		int getFilesVisited() {
+			return visitor != null ? visitor.filesVisited : 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while ( matches.isEmpty() && !entries.isEmpty() ) {
+				visitNextEntry();
 			}
+			return !matches.isEmpty();
 		}
-		else {
-			String prefix = getFixedPrefix( pattern );
-			Path basedir = directory;
 
-			if ( !prefix.isEmpty() ) {
-				basedir = basedir.resolve( prefix );
-				File file = basedir.toFile();
-				if ( !file.exists() || !file.isDirectory() ) {
-					return 0;
+		@Override
+		public Path next() {
+			if ( !hasNext() ) {
+				throw new NoSuchElementException();
+			}
+			return matches.poll();
+		}
+
+		@SneakyThrows
+		private void visitNextEntry() {
+			Iterator<Path> iterator = entries.peek();
+
+			try {
+				if ( iterator.hasNext() ) {
+					Path entry = iterator.next();
+
+					if ( Files.isDirectory( entry, LinkOption.NOFOLLOW_LINKS ) ) {
+						if ( visitor.preVisitDirectory( entry, null ) == FileVisitResult.CONTINUE ) {
+							open( entry );
+						}
+					}
+					else {
+						visitor.visitFile( entry, null );
+					}
+					return;
 				}
-				pattern = StringUtils.removeStart( pattern, prefix );
+			}
+			catch ( DirectoryIteratorException ignore ) {
+				// skip the remainder of a directory that cannot be read
 			}
 
-			AntPathMatchingFileVisitor visitor = new AntPathMatchingFileVisitor( pathMatcher, pattern, matchOnlyDirectories, basedir, matchedPathConsumer );
-			Files.walkFileTree( basedir, visitor );
-			return visitor.filesVisited;
+			entries.pop();
+			closeQuietly( openDirectories.pop() );
 		}
 
-		return 0;
+		private void open( Path directory ) {
+			try {
+				DirectoryStream<Path> directoryStream = Files.newDirectoryStream( directory );
+				openDirectories.push( directoryStream );
+				entries.push( directoryStream.iterator() );
+			}
+			catch ( IOException ignore ) {
+				// skip directories that cannot be read
+			}
+		}
+
+		void close() {
+			while ( !openDirectories.isEmpty() ) {
+				closeQuietly( openDirectories.pop() );
+			}
+			entries.clear();
+		}
+
+		private static void closeQuietly( DirectoryStream<Path> directoryStream ) {
+			try {
+				directoryStream.close();
+			}
+			catch ( IOException ignore ) {
+				// nothing to do
+			}
+		}
 	}
 
 	@SuppressWarnings("Duplicates")
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * ANT style path pattern using {@code /} as separator, which is parsed into segments only once and can then be
+ * matched against any number of paths without tokenizing the path or creating intermediate objects.
+ * Matching follows {@link org.springframework.util.AntPathMatcher}: {@code ?} matches a single character,
+ * {@code *} zero or more characters within a segment and {@code **} zero or more segments.
+ * URI template variables are not supported, curly braces are matched literally.
+ * <p/>
+ * Compiled patterns are immutable and shared, {@link #compile(String)} keeps the most recently used ones.
+ *
+ * @since 1.4.0
+ */
+final class AntPathPattern
+{
+	/**
+	 * Maximum number of compiled patterns that are kept for reuse.
+	 */
+	static final int MAX_CACHED_PATTERNS = 1024;
+
+	private static final ConcurrentLruTrackingMap<String, AntPathPattern> COMPILED_PATTERNS
+			= new ConcurrentLruTrackingMap<>( MAX_CACHED_PATTERNS, Runnable::run, ( pattern, compiled ) -> {
+	} );
+
+	private static final char SEPARATOR = '/';
+	private static final String DOUBLE_WILDCARD = "**";
+
+	private final String pattern;
+	private final String[] segments;
+	private final boolean[] wildcardSegments;
+	private final boolean startsWithSeparator;
+	private final boolean endsWithSeparator;
+	private final boolean containsDoubleWildcard;
+
+	private AntPathPattern( String pattern ) {
+		this.pattern = pattern;
+
+		segments = StringUtils.split( pattern, SEPARATOR );
+		wildcardSegments = new boolean[segments.length];
+
+		boolean doubleWildcard = false;
+		for ( int i = 0; i < segments.length; i++ ) {
+			wildcardSegments[i] = isPattern( segments[i] );
+			doubleWildcard |= DOUBLE_WILDCARD.equals( segments[i] );
+		}
+
+		startsWithSeparator = pattern.startsWith( "/" );
+		endsWithSeparator = pattern.endsWith( "/" );
+		containsDoubleWildcard = doubleWildcard;
+	}
+
+	/**
+	 * Get the compiled version of a pattern.
+	 *
+	 * @param pattern ANT pattern
+	 * @return compiled pattern
+	 */
+	static AntPathPattern compile( @NonNull String pattern ) {
+		return COMPILED_PATTERNS.computeIfAbsent( pattern, AntPathPattern::new );
+	}
+
+	/**
+	 * @param path to check
+	 * @return true if the path contains wildcards and should be matched as a pattern
+	 */
+	static boolean isPattern( @NonNull String path ) {
+		return path.indexOf( '*' ) != -1 || path.indexOf( '?' ) != -1;
+	}
+
+	/**
+	 * @return true if the pattern ends with a separator
+	 */
+	boolean endsWithSeparator() {
+		return endsWithSeparator;
+	}
+
+	/**
+	 * @param path to match
+	 * @return true if the entire path matches this pattern
+	 */
+	boolean matches( @NonNull String path ) {
+		return startsWithSeparator == path.startsWith( "/" ) && matchSegments( 0, path, 0 );
+	}
+
+	/**
+	 * Check if the path matches the start of this pattern, meaning that paths below it might match.
+	 * Used to prune entire subtrees when searching.
+	 *
+	 * @param path to match
+	 * @return true if the pattern matches the start of the path
+	 */
+	boolean matchesStart( @NonNull String path ) {
+		if ( startsWithSeparator != path.startsWith( "/" ) ) {
+			return false;
+		}
+
+		int segment = 0;
+		int position = skipSeparators( path, 0 );
+
+		while ( position < path.length() ) {
+			if ( segment == segments.length ) {
+				return false;
+			}
+			if ( DOUBLE_WILDCARD.equals( segments[segment] ) ) {
+				return true;
+			}
+
+			int end = endOfSegment( path, position );
+			if ( !matchSegment( segment, path, position, end ) ) {
+				return false;
+			}
+
+			segment++;
+			position = skipSeparators( path, end );
+		}
+
+		return segment < segments.length || endsWithSeparator == path.endsWith( "/" );
+	}
+
+	private boolean matchSegments( int segment, String path, int start ) {
+		int position = skipSeparators( path, start );
+
+		if ( segment == segments.length ) {
+			// AntPathMatcher ignores a trailing separator as soon as the pattern contains a double wildcard
+			return position == path.length() && ( containsDoubleWildcard || endsWithSeparator == path.endsWith( "/" ) );
+		}
+
+		if ( DOUBLE_WILDCARD.equals( segments[segment] ) ) {
+			// try the remainder of the pattern at every segment boundary
+			while ( !matchSegments( segment + 1, path, position ) ) {
+				if ( position == path.length() ) {
+					return false;
+				}
+				position = skipSeparators( path, endOfSegment( path, position ) );
+			}
+			return true;
+		}
+
+		if ( position == path.length() ) {
+			// a directory path also matches a pattern for all its children, as AntPathMatcher does
+			return !containsDoubleWildcard && segment == segments.length - 1 && "*".equals( segments[segment] ) && path.endsWith( "/" );
+		}
+
+		int end = endOfSegment( path, position );
+		return matchSegment( segment, path, position, end ) && matchSegments( segment + 1, path, end );
+	}
+
+	private boolean matchSegment( int segment, String path, int start, int end ) {
+		String glob = segments[segment];
+
+		if ( !wildcardSegments[segment] ) {
+			return glob.length() == end - start && path.regionMatches( start, glob, 0, glob.length() );
+		}
+
+		int g = 0;
+		int p = start;
+		int lastStar = -1;
+		int lastStarPosition = -1;
+
+		while ( p < end ) {
+			if ( g < glob.length() && glob.charAt( g ) == '*' ) {
+				lastStar = g++;
+				lastStarPosition = p;
+			}
+			else if ( g < glob.length() && ( glob.charAt( g ) == '?' || glob.charAt( g ) == path.charAt( p ) ) ) {
+				g++;
+				p++;
+			}
+			else if ( lastStar != -1 ) {
+				// let the last star consume one more character
+				g = lastStar + 1;
+				p = ++lastStarPosition;
+			}
+			else {
+				return false;
+			}
+		}
+
+		while ( g < glob.length() && glob.charAt( g ) == '*' ) {
+			g++;
+		}
+
+		return g == glob.length();
+	}
+
+	private static int skipSeparators( String path, int position ) {
+		int index = position;
+		while ( index < path.length() && path.charAt( index ) == SEPARATOR ) {
+			index++;
+		}
+		return index;
+	}
+
+	private static int endOfSegment( String path, int position ) {
+		int index = path.indexOf( SEPARATOR, position );
+		return index == -1 ? path.length() : index;
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+}
@@ -15,10 +15,17 @@
  */
 package com.foreach.common.filemanager.services;
 
+import com.azure.core.util.Context;
+import com.azure.core.util.polling.LongRunningOperationStatus;
+import com.azure.core.util.polling.PollResponse;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.models.BlobCopyInfo;
 import com.azure.storage.blob.models.BlobProperties;
+import com.azure.storage.blob.models.BlobRange;
 import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.options.BlobDownloadToFileOptions;
+import com.azure.storage.common.ParallelTransferOptions;
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
 import com.foreach.common.filemanager.business.FileStorageException;
@@ -27,19 +34,33 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URL;
+import java.time.Duration;
 
+/**
+ * Represents a blob in an Azure storage container. Copying between two resources in the same
+ * storage account is done server-side. Ranged reads only fetch the requested range of the blob,
+ * and downloads to a file are done in parallel blocks.
+ */
 @Getter
 public class AzureFileResource implements FileResource
 {
 	public static final int NOT_FOUND = 404;
 
+	private static final Duration COPY_POLL_INTERVAL = Duration.ofSeconds( 1 );
+
 	private final FileDescriptor descriptor;
 	private final BlobServiceClient blobServiceClient;
 	private final String containerName;
@@ -164,6 +185,130 @@ public class AzureFileResource implements FileResource
 		}
 	}
 
+	/**
+	 * Fetches only the requested range of the blob.
+	 */
+	@Override
+	public InputStream getInputStream( long offset, long length ) {
+		if ( offset < 0 ) {
+			throw new IllegalArgumentException( "Offset must not be negative: " + offset );
+		}
+
+		resetBlobProperties();
+		if ( length == 0 || offset >= contentLength() ) {
+			return new ByteArrayInputStream( new byte[0] );
+		}
+
+		try {
+			return blobClient.openInputStream( new BlobRange( offset, length > 0 ? length : null ), null );
+		}
+		catch ( BlobStorageException e ) {
+			throw handleStorageException( e );
+		}
+	}
+
+	/**
+	 * Downloads the blob in parallel blocks, using the same segment size and concurrency as {@link SegmentedDownload}.
+	 * The data is written to a temporary file which is moved into place when the download is complete.
+	 */
+	@Override
+	public void copyTo( @NonNull File file ) throws IOException {
+		File tempFile = SegmentedDownload.createTempFile( file );
+
+		try {
+			ParallelTransferOptions parallelTransferOptions = new ParallelTransferOptions()
+					.setBlockSizeLong( SegmentedDownload.SEGMENT_SIZE )
+					.setMaxConcurrency( SegmentedDownload.MAX_SEGMENTS_IN_FLIGHT );
+			blobClient.downloadToFileWithResponse(
+					new BlobDownloadToFileOptions( tempFile.getPath() ).setParallelTransferOptions( parallelTransferOptions ), null, Context.NONE
+			);
+			SegmentedDownload.moveIntoPlace( tempFile, file );
+		}
+		catch ( BlobStorageException e ) {
+			throw handleStorageException( e );
+		}
+		catch ( UncheckedIOException uioe ) {
+			throw uioe.getCause();
+		}
+		finally {
+			FileUtils.deleteQuietly( tempFile );
+		}
+	}
+
+	@Override
+	public void copyFrom( @NonNull Resource resource ) throws IOException {
+		if ( resource instanceof FileResource && isOnSameStorage( (FileResource) resource ) ) {
+			copyFrom( (FileResource) resource, false );
+		}
+		else {
+			FileResource.super.copyFrom( resource );
+		}
+	}
+
+	@Override
+	public void copyFrom( @NonNull FileResource originalFileResource, boolean deleteOriginal ) throws IOException {
+		if ( isOnSameStorage( originalFileResource ) ) {
+			AzureFileResource source = (AzureFileResource) originalFileResource;
+
+			if ( !isSameBlob( source ) ) {
+				copyBlob( source );
+
+				if ( deleteOriginal ) {
+					source.delete();
+				}
+			}
+		}
+		else {
+			FileResource.super.copyFrom( originalFileResource, deleteOriginal );
+		}
+	}
+
+	@Override
+	public void copyTo( @NonNull WritableResource targetResource ) throws IOException {
+		if ( targetResource instanceof AzureFileResource && ( (AzureFileResource) targetResource ).isOnSameStorage( this ) ) {
+			if ( !isSameBlob( (AzureFileResource) targetResource ) ) {
+				( (AzureFileResource) targetResource ).copyBlob( this );
+			}
+		}
+		else {
+			FileResource.super.copyTo( targetResource );
+		}
+	}
+
+	private boolean isOnSameStorage( FileResource other ) {
+		return other instanceof AzureFileResource
+				&& blobServiceClient.getAccountUrl().equals( ( (AzureFileResource) other ).blobServiceClient.getAccountUrl() );
+	}
+
+	private boolean isSameBlob( AzureFileResource other ) {
+		return containerName.equals( other.containerName ) && fileName.equals( other.fileName );
+	}
+
+	/**
+	 * Copies the source blob using a server-side copy and waits for it to complete.
+	 * A copy within the same storage account is authorized with the credentials of this client.
+	 */
+	private void copyBlob( AzureFileResource source ) throws IOException {
+		try {
+			PollResponse<BlobCopyInfo> response = blobClient.beginCopy( source.blobClient.getBlobUrl(), COPY_POLL_INTERVAL ).waitForCompletion();
+
+			if ( response.getStatus() != LongRunningOperationStatus.SUCCESSFULLY_COMPLETED ) {
+				throw new IOException( "Copying " + source.descriptor + " to " + descriptor + " did not complete: " + response.getStatus() );
+			}
+		}
+		catch ( BlobStorageException e ) {
+			if ( e.getStatusCode() == NOT_FOUND ) {
+				FileNotFoundException exception = new FileNotFoundException( "File resource with descriptor [" + source.descriptor + "] not found!" );
+				exception.initCause( e );
+				throw exception;
+			}
+			throw handleStorageException( e );
+		}
+		finally {
+			resetBlobProperties();
+		}
+	}
+
 	@Override
 	public boolean equals( Object o ) {
 		if ( this == o ) {
@@ -20,17 +20,15 @@ import com.azure.storage.blob.models.BlobItem;
 import com.azure.storage.blob.specialized.BlockBlobClient;
 import com.foreach.common.filemanager.business.*;
 import lombok.NonNull;
-import lombok.SneakyThrows;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.util.AntPathMatcher;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class AzureFolderResource implements FolderResource
 {
@@ -83,8 +81,17 @@ public class AzureFolderResource implements FolderResource
 
 	@Override
 	public Collection<FileRepositoryResource> findResources( @NonNull String pattern ) {
-		Set<FileRepositoryResource> resources = new LinkedHashSet<>();
-		AntPathMatcher pathMatcher = new AntPathMatcher( "/" );
+		try (Stream<FileRepositoryResource> resources = streamResources( pattern )) {
+			return resources.collect( Collectors.toCollection( LinkedHashSet::new ) );
+		}
+	}
+
+	/**
+	 * Blobs are listed one page at a time as the stream is consumed, the listing of a virtual directory
+	 * is only started once the stream has reached it. Limiting the stream avoids listing the remaining pages.
+	 */
+	@Override
+	public Stream<FileRepositoryResource> streamResources( @NonNull String pattern ) {
 		String p = StringUtils.startsWith( pattern, "/" ) ? pattern.substring( 1 ) : pattern;
 		boolean matchOnlyDirectories = StringUtils.endsWith( p, "/" );
 
@@ -92,41 +99,90 @@ public class AzureFolderResource implements FolderResource
 			p = p.substring( 0, p.length() - 1 );
 		}
 
-		BiPredicate<String, String> keyMatcher = ( candidateObjectName, antPattern ) -> {
-			if ( pathMatcher.match( antPattern, antPattern.endsWith( "/" ) ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" ) ) ) {
+		BiPredicate<String, AntPathPattern> keyMatcher = ( candidateObjectName, keyPattern ) -> {
+			if ( keyPattern.matches( keyPattern.endsWithSeparator() ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" ) ) ) {
 				return !matchOnlyDirectories || candidateObjectName.endsWith( "/" );
 			}
 			return false;
 		};
 
-		addAllMatchingResources( directoryName, resources, keyMatcher, p );
-		return resources;
+		MatchingResourcesIterator resources = new MatchingResourcesIterator( keyMatcher, p );
+		return StreamSupport.stream( Spliterators.spliteratorUnknownSize( resources, Spliterator.ORDERED | Spliterator.NONNULL ), false );
 	}
 
-	@SneakyThrows
-	private void addAllMatchingResources( String prefix,
-	                                      Collection<FileRepositoryResource> resources,
-	                                      BiPredicate<String, String> keyMatcher,
-	                                      String pattern ) {
-		for ( BlobItem candidate : blobServiceClient.getBlobContainerClient( containerName ).listBlobsByHierarchy( prefix ) ) {
+	/**
+	 * Depth-first iteration over the blob hierarchy, keeping a (lazily paged) listing per virtual directory
+	 * that is being visited.
+	 */
+	private class MatchingResourcesIterator implements Iterator<FileRepositoryResource>
+	{
+		private final BiPredicate<String, AntPathPattern> keyMatcher;
+		private final AntPathPattern keyPattern;
+		private final AntPathPattern rootKeyPattern;
+
+		private final Deque<Iterator<BlobItem>> listings = new ArrayDeque<>();
+		private FileRepositoryResource nextResource;
+		private boolean started;
+
+		MatchingResourcesIterator( BiPredicate<String, AntPathPattern> keyMatcher, String pattern ) {
+			this.keyMatcher = keyMatcher;
+			keyPattern = AntPathPattern.compile( directoryName + pattern );
+			rootKeyPattern = AntPathPattern.compile( directoryName + getRootPattern( pattern ) );
+		}
+
+		@Override
+		public boolean hasNext() {
+			if ( !started ) {
+				started = true;
+				listings.push( listBlobs( directoryName ) );
+			}
+
+			while ( nextResource == null && !listings.isEmpty() ) {
+				Iterator<BlobItem> listing = listings.peek();
+
+				if ( listing.hasNext() ) {
+					visit( listing.next() );
+				}
+				else {
+					listings.pop();
+				}
+			}
+			return nextResource != null;
+		}
+
+		@Override
+		public FileRepositoryResource next() {
+			if ( !hasNext() ) {
+				throw new NoSuchElementException();
+			}
+			FileRepositoryResource resource = nextResource;
+			nextResource = null;
+			return resource;
+		}
+
+		private void visit( BlobItem candidate ) {
 			BlockBlobClient listedBlob = blobServiceClient.getBlobContainerClient( containerName )
 			                                              .getBlobClient( candidate.getName() )
 			                                              .getBlockBlobClient();
 			String objectName = listedBlob.getBlobName();
 			if ( candidate.isPrefix() ) {
-				if ( keyMatcher.test( objectName, directoryName + pattern ) ) {
-					resources.add( buildResourceFromListBlobItem( candidate, objectName ) );
+				if ( keyMatcher.test( objectName, keyPattern ) ) {
+					nextResource = buildResourceFromListBlobItem( candidate, objectName );
 				}
-				if ( keyMatcher.test( objectName, directoryName + getRootPattern( pattern ) ) ) {
-					addAllMatchingResources( objectName, resources, keyMatcher, pattern );
+				if ( keyMatcher.test( objectName, rootKeyPattern ) ) {
+					listings.push( listBlobs( objectName ) );
 				}
 			}
 			else {
-				if ( !objectName.equals( directoryName ) && !objectName.endsWith( "/" ) && keyMatcher.test( objectName, directoryName + pattern ) ) {
-					resources.add( buildResourceFromListBlobItem( candidate, objectName ) );
+				if ( !objectName.equals( directoryName ) && !objectName.endsWith( "/" ) && keyMatcher.test( objectName, keyPattern ) ) {
+					nextResource = buildResourceFromListBlobItem( candidate, objectName );
 				}
 			}
 		}
+
+		private Iterator<BlobItem> listBlobs( String prefix ) {
+			return blobServiceClient.getBlobContainerClient( containerName ).listBlobsByHierarchy( prefix ).iterator();
+		}
 	}
 
 	private String getRootPattern( String pattern ) {
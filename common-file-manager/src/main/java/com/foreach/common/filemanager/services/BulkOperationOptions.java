@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Options for the bulk operations on a {@link FileRepository}, like {@link FileRepository#delete(java.util.Collection, BulkOperationOptions)}.
+ * Determines how many resources are processed at the same time and who should be notified of the progress.
+ *
+ * @see BulkOperationResult
+ * @since 1.4.0
+ */
+@Getter
+public final class BulkOperationOptions
+{
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	/**
+	 * Maximum number of resources (or batches of resources) that are processed at the same time.
+	 */
+	private final int parallelism;
+
+	/**
+	 * Optional listener that should be notified of the progress.
+	 */
+	private final ProgressListener progressListener;
+
+	@Builder(toBuilder = true)
+	private BulkOperationOptions( int parallelism, ProgressListener progressListener ) {
+		this.parallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * @return options with the default parallelism and no progress listener
+	 */
+	public static BulkOperationOptions defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Receives progress updates of a bulk operation. Notifications can be sent from different threads
+	 * at the same time, depending on the parallelism of the operation.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener
+	{
+		/**
+		 * @param processed number of resources that have been processed, including the failed ones
+		 * @param failed    number of resources for which the operation failed
+		 * @param total     total number of resources in the operation
+		 */
+		void progress( int processed, int failed, int total );
+	}
+}
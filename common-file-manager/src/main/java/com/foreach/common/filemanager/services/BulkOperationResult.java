@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcome of a bulk operation on a {@link FileRepository}. A failure of a single resource does not fail
+ * the entire operation: every resource either ends up in {@link #getSucceeded()} or in {@link #getFailures()}.
+ * Resources are identified by their (source) {@link FileDescriptor}.
+ *
+ * @see BulkOperationOptions
+ * @since 1.4.0
+ */
+public final class BulkOperationResult
+{
+	/**
+	 * Total number of resources in the operation.
+	 */
+	@Getter
+	private final int total;
+
+	private final Set<FileDescriptor> succeeded = ConcurrentHashMap.newKeySet();
+	private final Map<FileDescriptor, Exception> failures = new ConcurrentHashMap<>();
+
+	BulkOperationResult( int total ) {
+		this.total = total;
+	}
+
+	/**
+	 * @return descriptors of the resources for which the operation succeeded
+	 */
+	public Collection<FileDescriptor> getSucceeded() {
+		return Collections.unmodifiableSet( succeeded );
+	}
+
+	/**
+	 * @return exception for every resource for which the operation failed
+	 */
+	public Map<FileDescriptor, Exception> getFailures() {
+		return Collections.unmodifiableMap( failures );
+	}
+
+	/**
+	 * @return number of resources that have been processed, including the failed ones
+	 */
+	public int getProcessed() {
+		return succeeded.size() + failures.size();
+	}
+
+	/**
+	 * @return true if the operation succeeded for all resources
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty() && succeeded.size() == total;
+	}
+
+	void succeeded( FileDescriptor descriptor ) {
+		succeeded.add( descriptor );
+	}
+
+	void failed( FileDescriptor descriptor, Exception exception ) {
+		failures.put( descriptor, exception );
+	}
+
+	void add( BulkOperationResult other ) {
+		succeeded.addAll( other.succeeded );
+		failures.putAll( other.failures );
+	}
+}
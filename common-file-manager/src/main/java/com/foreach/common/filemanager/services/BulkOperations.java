@@ -0,0 +1,227 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import com.foreach.common.filemanager.business.FileStorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.CustomizableThreadCreator;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Executes bulk operations on a collection of file descriptors, with the parallelism configured
+ * in the {@link BulkOperationOptions}. Descriptors are processed in batches, allowing implementations
+ * to use a native batch API of the underlying storage. The parallel operations are executed on a
+ * temporary thread pool that only exists for the duration of the call.
+ *
+ * @since 1.4.0
+ */
+@Slf4j
+final class BulkOperations
+{
+	private static final CustomizableThreadCreator BULK_OPERATION_THREADS = new CustomizableThreadCreator( "bulk-operation-" );
+
+	static {
+		BULK_OPERATION_THREADS.setDaemon( true );
+	}
+
+	private BulkOperations() {
+	}
+
+	/**
+	 * Operation on a single resource.
+	 */
+	@FunctionalInterface
+	interface Operation
+	{
+		/**
+		 * @param descriptor of the resource
+		 * @return false if the operation did not succeed
+		 */
+		boolean execute( FileDescriptor descriptor ) throws Exception;
+	}
+
+	/**
+	 * Operation on a batch of resources, which registers the outcome for every resource
+	 * in the result. If an exception is thrown, all resources not yet registered are considered failed.
+	 */
+	@FunctionalInterface
+	interface BatchOperation
+	{
+		void execute( List<FileDescriptor> descriptors, BulkOperationResult result ) throws Exception;
+	}
+
+	/**
+	 * Operation on a group of resources, executed by {@link #executePerGroup(Collection, BulkOperationOptions, Function, GroupOperation)}.
+	 */
+	@FunctionalInterface
+	interface GroupOperation
+	{
+		BulkOperationResult execute( String group, Collection<FileDescriptor> descriptors, BulkOperationOptions options );
+	}
+
+	/**
+	 * Execute an operation for every descriptor separately.
+	 */
+	static BulkOperationResult execute( Collection<FileDescriptor> descriptors, BulkOperationOptions options, Operation operation ) {
+		return execute( descriptors, 1, options, ( batch, result ) -> {
+			for ( FileDescriptor descriptor : batch ) {
+				try {
+					if ( operation.execute( descriptor ) ) {
+						result.succeeded( descriptor );
+					}
+					else {
+						result.failed( descriptor, new FileStorageException( "Operation did not succeed for " + descriptor ) );
+					}
+				}
+				catch ( Exception e ) {
+					result.failed( descriptor, e );
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Execute an operation for batches of descriptors. Duplicate descriptors are only processed once.
+	 *
+	 * @param descriptors to process
+	 * @param batchSize   maximum number of descriptors in a single batch
+	 * @param options     for the operation
+	 * @param operation   to execute for every batch
+	 * @return result
+	 */
+	static BulkOperationResult execute( Collection<FileDescriptor> descriptors,
+	                                    int batchSize,
+	                                    BulkOperationOptions options,
+	                                    BatchOperation operation ) {
+		List<FileDescriptor> unique = new ArrayList<>( new LinkedHashSet<>( descriptors ) );
+		BulkOperationResult result = new BulkOperationResult( unique.size() );
+
+		List<Runnable> tasks = new ArrayList<>();
+		for ( int i = 0; i < unique.size(); i += batchSize ) {
+			List<FileDescriptor> batch = unique.subList( i, Math.min( i + batchSize, unique.size() ) );
+			tasks.add( () -> {
+				executeBatch( batch, result, operation );
+				notifyProgress( options, result );
+			} );
+		}
+
+		int threads = Math.min( options.getParallelism(), tasks.size() );
+
+		if ( threads <= 1 ) {
+			tasks.forEach( Runnable::run );
+		}
+		else {
+			executeInParallel( tasks, threads );
+		}
+
+		return result;
+	}
+
+	/**
+	 * Split the descriptors in groups and execute the group operation for every group.
+	 * The groups are processed one after the other, progress is reported for the operation as a whole.
+	 *
+	 * @param descriptors   to process
+	 * @param options       for the operation
+	 * @param groupFunction returns the group for a descriptor
+	 * @param operation     to execute for every group
+	 * @return combined result
+	 */
+	static BulkOperationResult executePerGroup( Collection<FileDescriptor> descriptors,
+	                                            BulkOperationOptions options,
+	                                            Function<FileDescriptor, String> groupFunction,
+	                                            GroupOperation operation ) {
+		Map<String, Set<FileDescriptor>> groups = new LinkedHashMap<>();
+		descriptors.forEach( descriptor -> groups.computeIfAbsent( groupFunction.apply( descriptor ), g -> new LinkedHashSet<>() ).add( descriptor ) );
+
+		int total = groups.values().stream().mapToInt( Set::size ).sum();
+		BulkOperationResult result = new BulkOperationResult( total );
+
+		groups.forEach( ( group, groupDescriptors ) -> {
+			BulkOperationOptions groupOptions = options.toBuilder()
+			                                           .progressListener( groupProgressListener( options, result ) )
+			                                           .build();
+			result.add( operation.execute( group, groupDescriptors, groupOptions ) );
+		} );
+
+		return result;
+	}
+
+	private static BulkOperationOptions.ProgressListener groupProgressListener( BulkOperationOptions options, BulkOperationResult result ) {
+		BulkOperationOptions.ProgressListener listener = options.getProgressListener();
+
+		if ( listener == null ) {
+			return null;
+		}
+
+		int processedBefore = result.getProcessed();
+		int failedBefore = result.getFailures().size();
+
+		return ( processed, failed, groupTotal ) -> listener.progress( processedBefore + processed, failedBefore + failed, result.getTotal() );
+	}
+
+	private static void executeBatch( List<FileDescriptor> batch, BulkOperationResult result, BatchOperation operation ) {
+		try {
+			operation.execute( batch, result );
+		}
+		catch ( Exception e ) {
+			LOG.debug( "Bulk operation failed for a batch of {} resources", batch.size(), e );
+			batch.stream()
+			     .filter( descriptor -> !result.getSucceeded().contains( descriptor ) && !result.getFailures().containsKey( descriptor ) )
+			     .forEach( descriptor -> result.failed( descriptor, e ) );
+		}
+	}
+
+	private static void notifyProgress( BulkOperationOptions options, BulkOperationResult result ) {
+		BulkOperationOptions.ProgressListener listener = options.getProgressListener();
+
+		if ( listener != null ) {
+			try {
+				listener.progress( result.getProcessed(), result.getFailures().size(), result.getTotal() );
+			}
+			catch ( RuntimeException re ) {
+				LOG.warn( "Exception in bulk operation progress listener", re );
+			}
+		}
+	}
+
+	private static void executeInParallel( List<Runnable> tasks, int threads ) {
+		ExecutorService executorService = Executors.newFixedThreadPool( threads, BULK_OPERATION_THREADS::createThread );
+
+		try {
+			List<Future<?>> futures = new ArrayList<>( tasks.size() );
+			tasks.forEach( task -> futures.add( executorService.submit( task ) ) );
+
+			for ( Future<?> future : futures ) {
+				future.get();
+			}
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			throw new FileStorageException( ie );
+		}
+		catch ( ExecutionException ee ) {
+			throw new FileStorageException( ee.getCause() );
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+	}
+}
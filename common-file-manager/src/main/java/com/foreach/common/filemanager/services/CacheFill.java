@@ -0,0 +1,308 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import com.foreach.common.filemanager.business.FileResource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copies a target file resource into a physical cache file. Only a single fill is executed at any time
+ * for the same cache {@link FileDescriptor}, other readers join the fill in progress.
+ * <p/>
+ * The data is written to a temporary file next to the cache file, which is moved into place once the
+ * copy is complete. This ensures a cache file always contains the complete data. Readers do not wait for the
+ * fill to complete: they read from the temporary file and only block when they have caught up with the bytes
+ * written so far.
+ *
+ * @since 1.4.0
+ */
+@Slf4j
+final class CacheFill implements Runnable
+{
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final ConcurrentMap<FileDescriptor, CacheFill> FILLS_IN_PROGRESS = new ConcurrentHashMap<>();
+
+	private final FileDescriptor cacheDescriptor;
+	private final FileResource target;
+	private final File cacheFile;
+	private final File tempFile;
+	private final Runnable completionCallback;
+
+	// guarded by this
+	private long bytesWritten;
+	private boolean completed;
+	private IOException failure;
+	private int waitingReaders;
+
+	private CacheFill( FileDescriptor cacheDescriptor, FileResource target, File cacheFile, Runnable completionCallback ) {
+		this.cacheDescriptor = cacheDescriptor;
+		this.target = target;
+		this.cacheFile = cacheFile;
+		this.tempFile = new File( cacheFile.getParentFile(), cacheFile.getName() + "." + UUID.randomUUID() + ".tmp" );
+		this.completionCallback = completionCallback;
+	}
+
+	/**
+	 * Open an input stream on the cache file, filling it from the target if necessary.
+	 * If a fill for the same cache descriptor is already in progress, the stream will read from that fill.
+	 * Else a new fill is started using the task executor. The completion callback is only executed
+	 * if the fill is started by this call, and if it succeeds.
+	 *
+	 * @param cacheDescriptor    descriptor of the cache resource
+	 * @param cacheFile          physical file of the cache resource
+	 * @param target             resource to copy the data from
+	 * @param taskExecutor       to execute the actual copy
+	 * @param completionCallback to execute once the cache file has been filled
+	 * @return input stream
+	 * @throws IOException if the cache file cannot be filled
+	 */
+	static InputStream openInputStream( FileDescriptor cacheDescriptor,
+	                                    File cacheFile,
+	                                    FileResource target,
+	                                    TaskExecutor taskExecutor,
+	                                    Runnable completionCallback ) throws IOException {
+		CacheFill fill = FILLS_IN_PROGRESS.get( cacheDescriptor );
+
+		if ( fill == null ) {
+			CacheFill created = new CacheFill( cacheDescriptor, target, cacheFile, completionCallback );
+			// the temporary file must exist before the fill is published, readers joining it will open the file
+			created.createTempFile();
+			fill = FILLS_IN_PROGRESS.putIfAbsent( cacheDescriptor, created );
+
+			if ( fill != null ) {
+				FileUtils.deleteQuietly( created.tempFile );
+			}
+			else {
+				fill = created;
+
+				if ( cacheFile.exists() ) {
+					// a fill has completed in the meantime
+					FILLS_IN_PROGRESS.remove( cacheDescriptor, created );
+					FileUtils.deleteQuietly( created.tempFile );
+					return new FileInputStream( cacheFile );
+				}
+
+				created.start( taskExecutor );
+			}
+		}
+
+		return fill.openInputStream();
+	}
+
+	private void createTempFile() throws IOException {
+		FileUtils.forceMkdirParent( cacheFile );
+		Files.createFile( tempFile.toPath() );
+	}
+
+	private void start( TaskExecutor taskExecutor ) {
+		try {
+			taskExecutor.execute( this );
+		}
+		catch ( Exception e ) {
+			completed( e instanceof IOException ? (IOException) e : new IOException( "Unable to start cache fill for " + cacheDescriptor, e ) );
+		}
+	}
+
+	@Override
+	public void run() {
+		IOException exception = null;
+
+		try (InputStream inputStream = target.getInputStream()) {
+			try (OutputStream outputStream = new FileOutputStream( tempFile, false )) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int bytesRead;
+
+				while ( ( bytesRead = inputStream.read( buffer ) ) != -1 ) {
+					outputStream.write( buffer, 0, bytesRead );
+					written( bytesRead );
+				}
+			}
+		}
+		catch ( IOException ioe ) {
+			exception = ioe;
+		}
+		catch ( RuntimeException re ) {
+			exception = new IOException( "Unable to fill cache " + cacheDescriptor, re );
+		}
+
+		completed( exception );
+	}
+
+	private synchronized void written( int bytes ) {
+		bytesWritten += bytes;
+
+		if ( waitingReaders > 0 ) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Moves the temporary file into place while holding the monitor: a reader that sees the fill
+	 * as not yet completed can safely open the temporary file.
+	 */
+	private void completed( IOException exception ) {
+		boolean succeeded = false;
+
+		synchronized ( this ) {
+			failure = exception;
+
+			if ( failure == null ) {
+				try {
+					moveIntoPlace();
+					succeeded = true;
+				}
+				catch ( IOException ioe ) {
+					failure = ioe;
+				}
+			}
+
+			if ( failure != null ) {
+				LOG.warn( "Filling cache {} failed", cacheDescriptor, failure );
+				FileUtils.deleteQuietly( tempFile );
+			}
+
+			completed = true;
+			notifyAll();
+		}
+
+		FILLS_IN_PROGRESS.remove( cacheDescriptor, this );
+
+		if ( succeeded && completionCallback != null ) {
+			completionCallback.run();
+		}
+	}
+
+	private void moveIntoPlace() throws IOException {
+		try {
+			Files.move( tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch ( AtomicMoveNotSupportedException amnse ) {
+			Files.move( tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+
+	private synchronized InputStream openInputStream() throws IOException {
+		if ( completed ) {
+			if ( failure != null ) {
+				throw new IOException( "Unable to fill cache " + cacheDescriptor, failure );
+			}
+			return new FileInputStream( cacheFile );
+		}
+
+		return new FillInputStream( FileChannel.open( tempFile.toPath(), StandardOpenOption.READ ) );
+	}
+
+	/**
+	 * Waits until more data is available than the position specified.
+	 *
+	 * @return number of bytes available after the position, -1 if the end has been reached
+	 */
+	private synchronized long awaitAvailable( long position ) throws IOException {
+		waitingReaders++;
+		try {
+			while ( !completed && bytesWritten <= position ) {
+				wait();
+			}
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while waiting for cache fill of " + cacheDescriptor );
+		}
+		finally {
+			waitingReaders--;
+		}
+
+		if ( failure != null ) {
+			throw new IOException( "Unable to fill cache " + cacheDescriptor, failure );
+		}
+
+		return bytesWritten > position ? bytesWritten - position : -1;
+	}
+
+	/**
+	 * Reads the file that is being filled, blocks if all bytes written so far have been read.
+	 * The channel remains valid after the file has been moved into place.
+	 */
+	private class FillInputStream extends InputStream
+	{
+		private final FileChannel channel;
+		private long position;
+
+		FillInputStream( FileChannel channel ) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			int bytesRead = read( single, 0, 1 );
+			return bytesRead == -1 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len ) throws IOException {
+			if ( len == 0 ) {
+				return 0;
+			}
+
+			long available = awaitAvailable( position );
+
+			if ( available < 0 ) {
+				return -1;
+			}
+
+			int bytesRead = channel.read( ByteBuffer.wrap( b, off, (int) Math.min( len, available ) ), position );
+
+			if ( bytesRead > 0 ) {
+				position += bytesRead;
+			}
+
+			return bytesRead;
+		}
+
+		@Override
+		public long skip( long n ) throws IOException {
+			if ( n <= 0 ) {
+				return 0;
+			}
+
+			long available = awaitAvailable( position );
+			long skipped = available < 0 ? 0 : Math.min( n, available );
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
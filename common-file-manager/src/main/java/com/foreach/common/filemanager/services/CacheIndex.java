@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Append-only log of the cache resources that exist for a {@link CachingFileRepository}, allowing
+ * cache files to be tracked again after a restart. Every record holds the target {@link FileDescriptor},
+ * the size of the cache file and the last time it was accessed. Later records replace earlier records for
+ * the same descriptor.
+ * <p/>
+ * The log is only read once, when {@link #entries()} is first called. It is rewritten with only the
+ * current entries when it contains more than twice as many records as there are entries. A truncated
+ * last record, for example when the application was killed while writing, is ignored and the log is
+ * rewritten on the next update.
+ *
+ * @since 1.4.0
+ */
+@Slf4j
+final class CacheIndex implements Closeable
+{
+	private static final int MAGIC = 0x43494458;
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	private static final int MINIMUM_RECORDS_BEFORE_COMPACTION = 1000;
+
+	private final File indexFile;
+
+	// guarded by this
+	private Map<FileDescriptor, Entry> entries;
+	private DataOutputStream log;
+	private int records;
+	private boolean rewriteRequired;
+
+	CacheIndex( File indexFile ) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * @return all entries in the index, ordered from least to most recently accessed
+	 */
+	synchronized List<Entry> entries() {
+		loadIfNecessary();
+
+		List<Entry> ordered = new ArrayList<>( entries.values() );
+		ordered.sort( Comparator.comparingLong( Entry::getLastAccessTime ) );
+		return ordered;
+	}
+
+	/**
+	 * Register or update the entry for a descriptor.
+	 *
+	 * @param descriptor     of the target resource
+	 * @param size           of the cache resource
+	 * @param lastAccessTime of the cache resource
+	 */
+	synchronized void put( FileDescriptor descriptor, long size, long lastAccessTime ) {
+		loadIfNecessary();
+
+		Entry entry = new Entry( descriptor, size, lastAccessTime );
+		Entry previous = entries.put( descriptor, entry );
+
+		if ( !entry.equals( previous ) ) {
+			append( PUT, entry );
+		}
+	}
+
+	/**
+	 * Remove the entry for a descriptor, because its cache resource no longer exists.
+	 *
+	 * @param descriptor of the target resource
+	 */
+	synchronized void remove( FileDescriptor descriptor ) {
+		loadIfNecessary();
+
+		Entry removed = entries.remove( descriptor );
+		if ( removed != null ) {
+			append( REMOVE, removed );
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if ( log != null ) {
+			try {
+				log.close();
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Unable to close cache index {}", indexFile, ioe );
+			}
+			log = null;
+		}
+	}
+
+	private void append( byte type, Entry entry ) {
+		try {
+			if ( rewriteRequired || ( records > MINIMUM_RECORDS_BEFORE_COMPACTION && records > entries.size() * 2 ) ) {
+				compact();
+			}
+			else {
+				if ( log == null ) {
+					log = openLog();
+				}
+				writeRecord( log, type, entry );
+				log.flush();
+				records++;
+			}
+		}
+		catch ( IOException ioe ) {
+			LOG.warn( "Unable to update cache index {}", indexFile, ioe );
+			close();
+		}
+	}
+
+	private void loadIfNecessary() {
+		if ( entries != null ) {
+			return;
+		}
+
+		entries = new HashMap<>();
+
+		if ( !indexFile.exists() ) {
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( indexFile ) ) )) {
+			if ( in.readInt() != MAGIC ) {
+				LOG.warn( "Ignoring cache index {} - unknown file format", indexFile );
+				rewriteRequired = true;
+				return;
+			}
+
+			int type;
+			while ( ( type = in.read() ) != -1 ) {
+				FileDescriptor descriptor = FileDescriptor.of( in.readUTF() );
+				long size = in.readLong();
+				long lastAccessTime = in.readLong();
+
+				if ( type == PUT ) {
+					entries.put( descriptor, new Entry( descriptor, size, lastAccessTime ) );
+				}
+				else {
+					entries.remove( descriptor );
+				}
+				records++;
+			}
+
+			LOG.debug( "Loaded {} entries from cache index {}", entries.size(), indexFile );
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to read cache index {} completely - using the {} entries read", indexFile, entries.size(), e );
+			rewriteRequired = true;
+		}
+	}
+
+	/**
+	 * Writes all current entries to a new file and moves it into place.
+	 */
+	private void compact() throws IOException {
+		close();
+
+		File compacted = new File( indexFile.getPath() + ".compact" );
+		try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( compacted, false ) ) )) {
+			out.writeInt( MAGIC );
+			for ( Entry entry : entries.values() ) {
+				writeRecord( out, PUT, entry );
+			}
+		}
+
+		try {
+			Files.move( compacted.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch ( AtomicMoveNotSupportedException amnse ) {
+			Files.move( compacted.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+
+		records = entries.size();
+		rewriteRequired = false;
+	}
+
+	private DataOutputStream openLog() throws IOException {
+		boolean exists = indexFile.exists() && indexFile.length() > 0;
+		if ( !exists ) {
+			FileUtils.forceMkdirParent( indexFile );
+		}
+
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( indexFile, exists ) ) );
+		if ( !exists ) {
+			out.writeInt( MAGIC );
+			records = 0;
+		}
+		return out;
+	}
+
+	private static void writeRecord( DataOutputStream out, byte type, Entry entry ) throws IOException {
+		out.writeByte( type );
+		out.writeUTF( entry.descriptor.getUri() );
+		out.writeLong( entry.size );
+		out.writeLong( entry.lastAccessTime );
+	}
+
+	/**
+	 * Single cache resource in the index.
+	 */
+	@Getter
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	static final class Entry
+	{
+		private final FileDescriptor descriptor;
+		private final long size;
+		private final long lastAccessTime;
+	}
+}
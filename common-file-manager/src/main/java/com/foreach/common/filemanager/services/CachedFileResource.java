@@ -23,13 +23,18 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a caching wrapper around a target {@link FileResource}.
@@ -43,6 +48,14 @@ import java.net.URL;
  * <p/>
  * The cache is primarily used for the actual data streams, other methods
  * might forward directly to the target resource to ensure maximum consistency.
+ * <p/>
+ * If the cache is a physical file (implements {@link FileResource.TargetFile}), only a single
+ * fill of the cache is executed at a time and concurrent readers stream the data
+ * while it is being downloaded. See {@link CachingFileRepository#getCacheFillTaskExecutor()}.
+ * <p/>
+ * Metadata of the target resource (existence, content length and last modified) can be memoized
+ * for the {@link CachingFileRepository#getMetadataTimeToLive()}, avoiding a remote call on every request.
+ * Writing to or deleting the resource through this instance always resets the memoized values.
  *
  * @author Arne Vandamme
  * @since 1.4.0
@@ -73,6 +86,15 @@ public class CachedFileResource implements ExpiringFileResource
 	@Getter
 	private long lastAccessTime = System.currentTimeMillis();
 
+	/**
+	 * Number of times the data of this resource has been read.
+	 */
+	private final AtomicLong readCount = new AtomicLong();
+
+	private volatile MemoizedValue<Boolean> targetExists;
+	private volatile MemoizedValue<Long> targetContentLength;
+	private volatile MemoizedValue<Long> targetLastModified;
+
 	@Override
 	public FileDescriptor getDescriptor() {
 		return target.getDescriptor();
@@ -86,7 +108,12 @@ public class CachedFileResource implements ExpiringFileResource
 	@Override
 	public boolean delete() {
 		flushCache();
-		return target.delete();
+		try {
+			return target.delete();
+		}
+		finally {
+			resetMetadata();
+		}
 	}
 
 	@Override
@@ -103,7 +130,7 @@ public class CachedFileResource implements ExpiringFileResource
 	public boolean exists() {
 		lastAccessTime = System.currentTimeMillis();
 
-		return cache.exists() || target.exists();
+		return cache.exists() || targetExists();
 	}
 
 	@Override
@@ -129,13 +156,67 @@ public class CachedFileResource implements ExpiringFileResource
 	@Override
 	public long contentLength() throws IOException {
 		lastAccessTime = System.currentTimeMillis();
-		return cache.exists() ? cache.contentLength() : target.contentLength();
+		return cache.exists() ? cache.contentLength() : targetContentLength();
 	}
 
 	@Override
 	public long lastModified() throws IOException {
 		lastAccessTime = System.currentTimeMillis();
-		return target.lastModified();
+
+		MemoizedValue<Long> memoized = targetLastModified;
+		if ( memoized != null && memoized.isValid() ) {
+			return memoized.value;
+		}
+
+		long lastModified = target.lastModified();
+		targetLastModified = memoize( lastModified );
+		return lastModified;
+	}
+
+	private boolean targetExists() {
+		MemoizedValue<Boolean> memoized = targetExists;
+		if ( memoized != null && memoized.isValid() ) {
+			return memoized.value;
+		}
+
+		boolean exists = target.exists();
+		targetExists = memoize( exists );
+		return exists;
+	}
+
+	private long targetContentLength() throws IOException {
+		MemoizedValue<Long> memoized = targetContentLength;
+		if ( memoized != null && memoized.isValid() ) {
+			return memoized.value;
+		}
+
+		long contentLength = target.contentLength();
+		targetContentLength = memoize( contentLength );
+		return contentLength;
+	}
+
+	/**
+	 * Restore the last access time, for example when the resource is tracked again after a restart.
+	 *
+	 * @param lastAccessTime timestamp
+	 */
+	void restoreLastAccessTime( long lastAccessTime ) {
+		this.lastAccessTime = lastAccessTime;
+	}
+
+	private <V> MemoizedValue<V> memoize( V value ) {
+		long timeToLive = cachingFileRepository != null ? cachingFileRepository.getMetadataTimeToLive() : 0;
+		return timeToLive > 0 ? new MemoizedValue<>( value, System.currentTimeMillis() + timeToLive ) : null;
+	}
+
+	/**
+	 * Reset the memoized metadata of the target resource, the next request will fetch it again.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void resetMetadata() {
+		targetExists = null;
+		targetContentLength = null;
+		targetLastModified = null;
 	}
 
 	@Override
@@ -151,20 +232,121 @@ public class CachedFileResource implements ExpiringFileResource
 	@Override
 	public InputStream getInputStream() throws IOException {
 		lastAccessTime = System.currentTimeMillis();
+		readCount.incrementAndGet();
+		return openInputStream( null, null );
+	}
+
+	/**
+	 * Reads the range from the cache if it exists, else directly from the target without filling the cache.
+	 */
+	@Override
+	public InputStream getInputStream( long offset, long length ) throws IOException {
+		lastAccessTime = System.currentTimeMillis();
+		readCount.incrementAndGet();
+
+		if ( cache.exists() ) {
+			try {
+				return cache.getInputStream( offset, length );
+			}
+			catch ( FileNotFoundException fnfe ) {
+				// cache has been flushed in the meantime
+			}
+		}
+
+		return target.getInputStream( offset, length );
+	}
+
+	/**
+	 * @return number of times the data of this resource has been read
+	 */
+	public long getReadCount() {
+		return readCount.get();
+	}
+
+	/**
+	 * Fill the cache from the target if the cache does not exist yet, without counting it as an access.
+	 * The cache is filled on the calling thread, unless a fill is already in progress.
+	 *
+	 * @return true if the cache has been filled by this call, false if it already existed or another fill was joined
+	 * @throws IOException if the cache could not be filled
+	 */
+	boolean fillCache() throws IOException {
+		if ( cache.exists() ) {
+			return false;
+		}
+
+		AtomicBoolean filled = new AtomicBoolean();
+		try (InputStream ignore = openInputStream( new SyncTaskExecutor(), () -> filled.set( true ) )) {
+			return filled.get();
+		}
+	}
+
+	/**
+	 * @param filledCallback optional callback, only executed if the cache has been filled by this call
+	 */
+	private InputStream openInputStream( TaskExecutor cacheFillTaskExecutor, Runnable filledCallback ) throws IOException {
+		if ( cache instanceof FileResource.TargetFile && cache.getDescriptor() != null ) {
+			return getInputStream( ( (FileResource.TargetFile) cache ).getTargetFile(), cacheFillTaskExecutor, filledCallback );
+		}
+
+		boolean filled = false;
 		if ( !cache.exists() ) {
 			synchronized ( this ) {
 				if ( !cache.exists() ) {
 					target.copyTo( cache );
+					filled = true;
 				}
 			}
 		}
-		return cache.getInputStream();
+		InputStream inputStream = cache.getInputStream();
+		if ( filled ) {
+			cacheFilled( filledCallback );
+		}
+		return inputStream;
 	}
 
 	@Override
 	public OutputStream getOutputStream() throws IOException {
 		lastAccessTime = System.currentTimeMillis();
-		return new TeeOutputStream( target.getOutputStream(), cache.getOutputStream() );
+		return new TeeOutputStream( target.getOutputStream(), cache.getOutputStream() )
+		{
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				}
+				finally {
+					resetMetadata();
+					cacheUpdated();
+				}
+			}
+		};
+	}
+
+	private InputStream getInputStream( File cacheFile, TaskExecutor cacheFillTaskExecutor, Runnable filledCallback ) throws IOException {
+		if ( cacheFile.exists() ) {
+			return cache.getInputStream();
+		}
+
+		TaskExecutor taskExecutor = cacheFillTaskExecutor != null
+				? cacheFillTaskExecutor : ( cachingFileRepository != null ? cachingFileRepository.getCacheFillTaskExecutor() : null );
+		return CacheFill.openInputStream(
+				cache.getDescriptor(), cacheFile, target, taskExecutor != null ? taskExecutor : new SyncTaskExecutor(),
+				() -> cacheFilled( filledCallback )
+		);
+	}
+
+	private void cacheFilled( Runnable filledCallback ) {
+		cacheUpdated();
+		if ( filledCallback != null ) {
+			filledCallback.run();
+		}
+	}
+
+	private void cacheUpdated() {
+		if ( cachingFileRepository != null ) {
+			cachingFileRepository.cacheUpdated( this );
+		}
 	}
 
 	@SuppressWarnings("WeakerAccess")
@@ -229,6 +411,11 @@ public class CachedFileResource implements ExpiringFileResource
 	 */
 	@Override
 	public long getCreationTime() {
+		if ( cache instanceof FileResource.TargetFile ) {
+			// single file system call, returns 0 if the file does not exist
+			return ( (FileResource.TargetFile) cache ).getTargetFile().lastModified();
+		}
+
 		try {
 			return cache.exists() ? cache.lastModified() : 0;
 		}
@@ -237,6 +424,17 @@ public class CachedFileResource implements ExpiringFileResource
 		}
 	}
 
+	@RequiredArgsConstructor
+	private static final class MemoizedValue<V>
+	{
+		private final V value;
+		private final long expiresAt;
+
+		boolean isValid() {
+			return System.currentTimeMillis() < expiresAt;
+		}
+	}
+
 	@Override
 	public boolean equals( Object obj ) {
 		return obj == this || ( obj instanceof FileResource && target.equals( obj ) );
@@ -17,13 +17,29 @@ package com.foreach.common.filemanager.services;
 
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
+import com.foreach.common.filemanager.business.FolderResource;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.CustomizableThreadCreator;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * {@link FileRepository} implementation which deals out cached file resources.
@@ -43,6 +59,22 @@ import java.util.function.Function;
  * not be much of a problem. Multi-instance applications can use a {@link #withTranslatedFileDescriptor()} strategy
  * to ensure optimal cache use (for example with shared network storage).
  * <p/>
+ * Apart from the number of cached resources, the total size of the cache can be limited using {@link #getMaxCacheSize()}.
+ * Each cached resource then weighs as much as the content length of its cache resource, once it has been filled.
+ * If the cache resources are physical files, a {@link #getReservedFreeSpace()} can be configured as well:
+ * when less free space remains on the cache disk, the least recently fetched resources are evicted to make room.
+ * Note that the cache is only freed by evictions if {@link #isExpireOnEvict()} is {@code true}.
+ * <p/>
+ * If cache resources are reused across restarts (see {@link #withTranslatedFileDescriptor()}), a {@link #getCacheIndexFile()}
+ * can be configured. The cache resources that exist are then registered in that file, and are tracked again when the
+ * repository is first used after a restart. Expiration and the cache limits then apply to all cache resources,
+ * not only to those that have been accessed since the restart.
+ * <p/>
+ * To avoid starting with a cold cache, resources can be fetched into the cache up front using
+ * {@link #prefetch(Collection, int)} or {@link #prefetch(String, int)}. If a {@link #getPrefetchListFile()} is configured,
+ * the most read resources are registered in it on shutdown, and can be fetched again after a restart with
+ * {@link #prefetchMostRead(int)}.
+ * <p/>
  * NOTE: Developers should only register the caching version of the repository in their application.
  *
  * @author Arne Vandamme
@@ -55,6 +87,12 @@ import java.util.function.Function;
 @Slf4j
 public class CachingFileRepository extends AbstractExpiringFileRepository<CachedFileResource>
 {
+	private static final CustomizableThreadCreator PREFETCH_THREADS = new CustomizableThreadCreator( "cache-prefetch-" );
+
+	static {
+		PREFETCH_THREADS.setDaemon( true );
+	}
+
 	/**
 	 * The id of the of the repository which contains the actual cache file resources.
 	 * Usually this will refer to a {@link LocalFileRepository} though this is not a requirement.
@@ -68,6 +106,51 @@ public class CachingFileRepository extends AbstractExpiringFileRepository<Cached
 	 */
 	private final BiFunction<FileDescriptor, FileRepository, FileResource> cacheFileResourceResolver;
 
+	/**
+	 * Maximum combined size in bytes of the cache resources. Zero or less means no limit.
+	 */
+	@Getter
+	private final long maxCacheSize;
+
+	/**
+	 * Minimum number of bytes that should remain available on the disk holding the cache files.
+	 * Only applies to cache resources that are physical files. Zero or less means no free space is reserved.
+	 */
+	@Getter
+	private final long reservedFreeSpace;
+
+	/**
+	 * Executor used to fill physical cache files from the target resource. With the default {@link SyncTaskExecutor}
+	 * the first reader downloads the file before it can read it, while concurrent readers already stream the downloaded data.
+	 * With an asynchronous executor the first reader also streams the data while it is being downloaded.
+	 */
+	@Getter
+	private final TaskExecutor cacheFillTaskExecutor;
+
+	/**
+	 * Number of milliseconds that metadata of a target resource (existence, content length and last modified)
+	 * can be reused by a {@link CachedFileResource} without fetching it again. Zero or less disables memoization.
+	 */
+	@Getter
+	private final long metadataTimeToLive;
+
+	/**
+	 * File that keeps an index of the existing cache resources, so they can be tracked again after a restart.
+	 * Only useful if the {@link #cacheFileResourceResolver} returns the same cache resource for a descriptor every time.
+	 */
+	@Getter
+	private final File cacheIndexFile;
+
+	/**
+	 * File in which the descriptors of the most read resources are written on shutdown, most read first.
+	 * Used by {@link #prefetchMostRead(int)} to fill the cache with the same resources after a restart.
+	 */
+	@Getter
+	private final File prefetchListFile;
+
+	private final CacheIndex cacheIndex;
+	private final AtomicBoolean cacheIndexRestored = new AtomicBoolean();
+
 	private FileManager fileManager;
 
 	@Builder
@@ -77,10 +160,27 @@ public class CachingFileRepository extends AbstractExpiringFileRepository<Cached
 	                               boolean expireOnShutdown,
 	                               boolean expireOnEvict,
 	                               int maxItemsToTrack,
-	                               @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy ) {
-		super( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack, expirationStrategy );
+	                               long maxCacheSize,
+	                               long reservedFreeSpace,
+	                               @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy,
+	                               Executor evictionExecutor,
+	                               TaskExecutor cacheFillTaskExecutor,
+	                               long metadataTimeToLive,
+	                               File cacheIndexFile,
+	                               File prefetchListFile ) {
+		super( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack,
+		       // resources must be weighed to determine how many should be evicted to free up disk space
+		       maxCacheSize > 0 ? maxCacheSize : ( reservedFreeSpace > 0 ? Long.MAX_VALUE : 0 ),
+		       expirationStrategy, evictionExecutor );
 		this.cacheRepositoryId = cacheRepositoryId;
 		this.cacheFileResourceResolver = cacheFileResourceResolver;
+		this.maxCacheSize = maxCacheSize;
+		this.reservedFreeSpace = reservedFreeSpace;
+		this.cacheFillTaskExecutor = cacheFillTaskExecutor != null ? cacheFillTaskExecutor : new SyncTaskExecutor();
+		this.metadataTimeToLive = metadataTimeToLive;
+		this.cacheIndexFile = cacheIndexFile;
+		this.cacheIndex = cacheIndexFile != null ? new CacheIndex( cacheIndexFile ) : null;
+		this.prefetchListFile = prefetchListFile;
 	}
 
 	@Override
@@ -97,9 +197,267 @@ public class CachingFileRepository extends AbstractExpiringFileRepository<Cached
 		return new CachedFileResource( targetFileResource, cacheFileResource, this );
 	}
 
+	@Override
+	public CachedFileResource getFileResource( FileDescriptor descriptor ) {
+		restoreCacheIndex();
+		return super.getFileResource( descriptor );
+	}
+
+	/**
+	 * Also expires the cache resources from the index that are not tracked, using the last access time
+	 * that was registered in the index.
+	 */
+	@Override
+	public void expireTrackedItems() {
+		restoreCacheIndex();
+		super.expireTrackedItems();
+
+		if ( cacheIndex != null ) {
+			cacheIndex.entries()
+			          .stream()
+			          .filter( entry -> !isTracked( entry.getDescriptor() ) )
+			          .forEach( this::expireUntracked );
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		writePrefetchList();
+		super.shutdown();
+
+		if ( cacheIndex != null ) {
+			cacheIndex.close();
+		}
+	}
+
 	@Override
 	protected void expire( CachedFileResource fileResource ) {
 		fileResource.flushCache();
+
+		if ( cacheIndex != null ) {
+			cacheIndex.remove( fileResource.getDescriptor() );
+		}
+	}
+
+	@Override
+	protected void evicted( CachedFileResource fileResource, boolean expired ) {
+		if ( !expired ) {
+			updateCacheIndex( fileResource );
+		}
+	}
+
+	/**
+	 * A cached resource weighs as much as the content length of its cache resource, or nothing if it has not been filled.
+	 */
+	@Override
+	protected long weigh( CachedFileResource fileResource ) {
+		try {
+			FileResource cache = fileResource.getCache();
+			return cache.exists() ? cache.contentLength() : 0;
+		}
+		catch ( IOException ioe ) {
+			LOG.trace( "Unable to determine cache size of {}", fileResource.getDescriptor(), ioe );
+			return 0;
+		}
+	}
+
+	/**
+	 * Called by a {@link CachedFileResource} when its cache has been written.
+	 * Updates the weight of the resource and evicts other resources if the cache limits have been exceeded.
+	 *
+	 * @param fileResource whose cache has been written
+	 */
+	void cacheUpdated( CachedFileResource fileResource ) {
+		if ( getMaxWeightToTrack() > 0 ) {
+			updateWeight( fileResource );
+		}
+
+		updateCacheIndex( fileResource );
+
+		if ( reservedFreeSpace > 0 && fileResource.getCache() instanceof FileResource.TargetFile ) {
+			File cacheFile = ( (FileResource.TargetFile) fileResource.getCache() ).getTargetFile();
+			File cacheFolder = cacheFile.getParentFile() != null ? cacheFile.getParentFile() : cacheFile;
+			long usableSpace = cacheFolder.getUsableSpace();
+
+			if ( usableSpace > 0 && usableSpace < reservedFreeSpace ) {
+				LOG.debug( "Free space for cache repository {} is {} bytes - evicting cached resources", cacheRepositoryId, usableSpace );
+				evictTrackedItems( reservedFreeSpace - usableSpace );
+			}
+		}
+	}
+
+	/**
+	 * Fetch the resources into the cache, if they are not yet cached. The resources will be tracked like
+	 * any other resource, fetching more resources than {@link #getMaxItemsToTrack()} will cause evictions.
+	 * Failures to fetch a single resource are logged but do not fail the prefetch.
+	 *
+	 * @param descriptors            of the resources to fetch
+	 * @param maxConcurrentDownloads maximum number of resources that are fetched at the same time
+	 * @return future with the number of resources that have been fetched into the cache
+	 */
+	public CompletableFuture<Integer> prefetch( @NonNull Collection<FileDescriptor> descriptors, int maxConcurrentDownloads ) {
+		if ( maxConcurrentDownloads < 1 ) {
+			throw new IllegalArgumentException( "At least one concurrent download is required" );
+		}
+
+		List<FileDescriptor> distinct = new ArrayList<>( new LinkedHashSet<>( descriptors ) );
+		if ( distinct.isEmpty() ) {
+			return CompletableFuture.completedFuture( 0 );
+		}
+
+		LOG.debug( "Prefetching {} resources into cache repository {}", distinct.size(), cacheRepositoryId );
+
+		ExecutorService executorService = Executors.newFixedThreadPool( Math.min( maxConcurrentDownloads, distinct.size() ), PREFETCH_THREADS::createThread );
+		AtomicInteger fetched = new AtomicInteger();
+
+		try {
+			CompletableFuture<?>[] futures = distinct.stream()
+			                                         .map( descriptor -> CompletableFuture.runAsync( () -> prefetch( descriptor, fetched ), executorService ) )
+			                                         .toArray( CompletableFuture[]::new );
+			return CompletableFuture.allOf( futures ).thenApply( done -> fetched.get() );
+		}
+		finally {
+			// already submitted downloads are still executed
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Fetch all files from the target repository matching the pattern into the cache.
+	 *
+	 * @param pattern                to match against the root folder of the target repository
+	 * @param maxConcurrentDownloads maximum number of resources that are fetched at the same time
+	 * @return future with the number of resources that have been fetched into the cache
+	 * @see FolderResource#findFiles(String)
+	 * @see #prefetch(Collection, int)
+	 */
+	public CompletableFuture<Integer> prefetch( @NonNull String pattern, int maxConcurrentDownloads ) {
+		List<FileDescriptor> descriptors = getTargetFileRepository().getRootFolderResource()
+		                                                            .findFiles( pattern )
+		                                                            .stream()
+		                                                            .map( FileResource::getDescriptor )
+		                                                            .collect( Collectors.toList() );
+		return prefetch( descriptors, maxConcurrentDownloads );
+	}
+
+	/**
+	 * Fetch the resources that were read most before the last shutdown into the cache.
+	 * Does nothing if there is no {@link #getPrefetchListFile()} or if it does not exist.
+	 *
+	 * @param maxConcurrentDownloads maximum number of resources that are fetched at the same time
+	 * @return future with the number of resources that have been fetched into the cache
+	 */
+	public CompletableFuture<Integer> prefetchMostRead( int maxConcurrentDownloads ) {
+		if ( prefetchListFile == null || !prefetchListFile.exists() ) {
+			return CompletableFuture.completedFuture( 0 );
+		}
+
+		try {
+			List<FileDescriptor> descriptors = Files.readAllLines( prefetchListFile.toPath(), StandardCharsets.UTF_8 )
+			                                        .stream()
+			                                        .filter( StringUtils::isNotBlank )
+			                                        .map( FileDescriptor::of )
+			                                        .collect( Collectors.toList() );
+			return prefetch( descriptors, maxConcurrentDownloads );
+		}
+		catch ( IOException ioe ) {
+			LOG.warn( "Unable to read prefetch list {}", prefetchListFile, ioe );
+			return CompletableFuture.completedFuture( 0 );
+		}
+	}
+
+	private void prefetch( FileDescriptor descriptor, AtomicInteger fetched ) {
+		try {
+			if ( getFileResource( descriptor ).fillCache() ) {
+				fetched.incrementAndGet();
+			}
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to prefetch {} into cache repository {}", descriptor, cacheRepositoryId, e );
+		}
+	}
+
+	/**
+	 * Writes the descriptors of the tracked resources that have been read, most read first.
+	 */
+	private void writePrefetchList() {
+		if ( prefetchListFile != null ) {
+			List<String> descriptors = getTrackedResources()
+					.stream()
+					.filter( fileResource -> fileResource.getReadCount() > 0 )
+					.sorted( Comparator.comparingLong( CachedFileResource::getReadCount ).reversed() )
+					.map( fileResource -> fileResource.getDescriptor().getUri() )
+					.collect( Collectors.toList() );
+
+			try {
+				FileUtils.forceMkdirParent( prefetchListFile );
+				File tempFile = new File( prefetchListFile.getPath() + ".tmp" );
+				Files.write( tempFile.toPath(), descriptors, StandardCharsets.UTF_8 );
+				Files.move( tempFile.toPath(), prefetchListFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			}
+			catch ( IOException ioe ) {
+				LOG.warn( "Unable to write prefetch list {}", prefetchListFile, ioe );
+			}
+		}
+	}
+
+	private void updateCacheIndex( CachedFileResource fileResource ) {
+		if ( cacheIndex != null ) {
+			try {
+				FileResource cache = fileResource.getCache();
+				if ( cache.exists() ) {
+					cacheIndex.put( fileResource.getDescriptor(), cache.contentLength(), fileResource.getLastAccessTime() );
+				}
+				else {
+					cacheIndex.remove( fileResource.getDescriptor() );
+				}
+			}
+			catch ( Exception e ) {
+				LOG.warn( "Unable to update cache index for {}", fileResource.getDescriptor(), e );
+			}
+		}
+	}
+
+	/**
+	 * Track all cache resources from the index again, from least to most recently accessed.
+	 * Only executed once, on first use of the repository.
+	 */
+	private void restoreCacheIndex() {
+		if ( cacheIndex != null && fileManager != null && cacheIndexRestored.compareAndSet( false, true ) ) {
+			List<CacheIndex.Entry> entries = cacheIndex.entries();
+			LOG.debug( "Restoring {} cache resources for repository {}", entries.size(), getRepositoryId() );
+
+			entries.forEach( entry -> {
+				try {
+					CachedFileResource fileResource = super.getFileResource( entry.getDescriptor() );
+					if ( fileResource.getCache().exists() ) {
+						fileResource.restoreLastAccessTime( entry.getLastAccessTime() );
+					}
+					else {
+						stopTracking( entry.getDescriptor() );
+						cacheIndex.remove( entry.getDescriptor() );
+					}
+				}
+				catch ( Exception e ) {
+					LOG.warn( "Unable to restore cache resource {}", entry.getDescriptor(), e );
+				}
+			} );
+		}
+	}
+
+	private void expireUntracked( CacheIndex.Entry entry ) {
+		try {
+			FileDescriptor descriptor = entry.getDescriptor();
+			CachedFileResource fileResource = createExpiringFileResource( descriptor, getTargetFileRepository().getFileResource( descriptor ) );
+			fileResource.restoreLastAccessTime( entry.getLastAccessTime() );
+
+			if ( getExpirationStrategy().apply( fileResource ) ) {
+				expire( fileResource );
+			}
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to expire cache resource {}", entry.getDescriptor(), e );
+		}
 	}
 
 	/**
@@ -161,6 +519,8 @@ public class CachingFileRepository extends AbstractExpiringFileRepository<Cached
 		private boolean expireOnShutdown = true;
 		private boolean expireOnEvict = true;
 		private int maxItemsToTrack = 100;
+		private long maxCacheSize = 0;
+		private long reservedFreeSpace = 0;
 
 		public CachingFileRepositoryBuilder() {
 			timeBasedExpiration( 60 * 60 * 1000L, 0 );
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Concurrent map that evicts the least recently used entries once the maximum size or the maximum weight is exceeded.
+ * <p/>
+ * Lookups and inserts go straight to a {@link ConcurrentHashMap}, the recency order is kept separately in a linked list
+ * that is only modified while holding a policy lock. Reads are recorded in a lossy ring buffer and applied in batches
+ * by whichever thread manages to acquire the lock, so readers never wait for each other. The order is therefore
+ * approximate: an access that was dropped from the buffer does not refresh the entry.
+ * <p/>
+ * The weight of an entry is determined by the weigher when it is added, and can be recalculated using
+ * {@link #updateWeight(Object, Object)} if the value changes. The weigher is never called while holding the lock.
+ * An entry that weighs more than the maximum weight on its own is evicted as well.
+ * <p/>
+ * Evicted entries are handed to the eviction listener only after the lock has been released, using the configured
+ * executor. An entry that was removed explicitly is never reported as evicted.
+ * <p/>
+ * A {@code null} key is never stored: lookups return nothing and the value created for it is not tracked.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 1.4.0
+ */
+@Slf4j
+final class ConcurrentLruTrackingMap<K, V>
+{
+	private static final int READ_BUFFER_SIZE = 128;
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+	private static final int READ_DRAIN_THRESHOLD = 32;
+
+	private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+	private final ReentrantLock policyLock = new ReentrantLock();
+	private final Node<K, V> head = new Node<>( null, null );
+
+	private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>( READ_BUFFER_SIZE );
+	private final AtomicLong readBufferWriteCount = new AtomicLong();
+	private final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+
+	private final long maximumSize;
+	private final long maximumWeight;
+	private final ToLongFunction<V> weigher;
+	private final Executor evictionExecutor;
+	private final BiConsumer<K, V> evictionListener;
+
+	// guarded by policyLock
+	private long readBufferReadCount;
+	private long size;
+	private long totalWeight;
+
+	ConcurrentLruTrackingMap( long maximumSize, Executor evictionExecutor, BiConsumer<K, V> evictionListener ) {
+		this( maximumSize, Long.MAX_VALUE, v -> 0, evictionExecutor, evictionListener );
+	}
+
+	ConcurrentLruTrackingMap( long maximumSize,
+	                          long maximumWeight,
+	                          ToLongFunction<V> weigher,
+	                          Executor evictionExecutor,
+	                          BiConsumer<K, V> evictionListener ) {
+		this.maximumSize = maximumSize;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.evictionExecutor = evictionExecutor;
+		this.evictionListener = evictionListener;
+
+		head.previous = head;
+		head.next = head;
+	}
+
+	/**
+	 * Get the value for the key, and register the access.
+	 *
+	 * @param key to look for
+	 * @return value or {@code null} if not present
+	 */
+	V get( K key ) {
+		Node<K, V> node = key != null ? data.get( key ) : null;
+
+		if ( node != null ) {
+			recordAccess( node );
+			return node.value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Check if there is a value for the key, this is not considered an access.
+	 *
+	 * @param key to look for
+	 * @return true if a value is present
+	 */
+	boolean containsKey( K key ) {
+		return key != null && data.containsKey( key );
+	}
+
+	/**
+	 * Get the value for the key or create it if it is not present. Only the creation of a value for that same key
+	 * blocks, other keys can be read or created concurrently.
+	 *
+	 * @param key     to look for
+	 * @param factory to create the value if necessary, if it returns {@code null} nothing is stored
+	 * @return value
+	 */
+	V computeIfAbsent( K key, Function<K, V> factory ) {
+		if ( key == null ) {
+			return factory.apply( null );
+		}
+
+		Node<K, V> node = data.get( key );
+
+		if ( node == null ) {
+			Node<K, V> created = data.computeIfAbsent( key, k -> {
+				V value = factory.apply( k );
+				return value != null ? new Node<>( k, value ) : null;
+			} );
+
+			if ( created == null ) {
+				return null;
+			}
+
+			if ( created.added.compareAndSet( false, true ) ) {
+				created.weight = weigher.applyAsLong( created.value );
+				writeBuffer.add( () -> addNode( created ) );
+				drainAndEvict();
+				return created.value;
+			}
+
+			node = created;
+		}
+
+		recordAccess( node );
+		return node.value;
+	}
+
+	/**
+	 * Add the value for the key, replacing any existing value. The replaced value is not reported as evicted.
+	 * A {@code null} key is ignored.
+	 *
+	 * @param key   of the entry
+	 * @param value to store
+	 * @return value that was replaced
+	 */
+	V put( K key, V value ) {
+		if ( key == null ) {
+			return null;
+		}
+
+		Node<K, V> node = new Node<>( key, value );
+		node.added.set( true );
+		node.weight = weigher.applyAsLong( value );
+
+		Node<K, V> replaced = data.put( key, node );
+		writeBuffer.add( () -> addNode( node ) );
+		if ( replaced != null ) {
+			writeBuffer.add( () -> removeNode( replaced ) );
+		}
+		drainAndEvict();
+
+		return replaced != null ? replaced.value : null;
+	}
+
+	/**
+	 * Remove the entry for the key, this is not an eviction.
+	 *
+	 * @param key to remove
+	 * @return value that was removed
+	 */
+	V remove( K key ) {
+		Node<K, V> node = key != null ? data.remove( key ) : null;
+
+		if ( node != null ) {
+			writeBuffer.add( () -> removeNode( node ) );
+			drainAndEvict();
+			return node.value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Remove the entry for the key only if it is still mapped to that same value instance, this is not an eviction.
+	 *
+	 * @param key   to remove
+	 * @param value the key should be mapped to
+	 * @return true if the entry was removed
+	 */
+	boolean remove( K key, V value ) {
+		Node<K, V> node = key != null ? data.get( key ) : null;
+
+		if ( node != null && node.value == value && data.remove( key, node ) ) {
+			writeBuffer.add( () -> removeNode( node ) );
+			drainAndEvict();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Recalculate the weight of an entry, evicting other entries if the maximum weight is exceeded.
+	 * Nothing happens if the key is no longer mapped to that value.
+	 *
+	 * @param key   of the entry
+	 * @param value the key should be mapped to
+	 */
+	void updateWeight( K key, V value ) {
+		Node<K, V> node = key != null ? data.get( key ) : null;
+
+		if ( node != null && node.value == value ) {
+			node.weight = weigher.applyAsLong( value );
+			writeBuffer.add( () -> updateNode( node ) );
+			drainAndEvict();
+		}
+	}
+
+	/**
+	 * Evict the least recently used entries until their combined weight is at least the requested weight,
+	 * or until no entries are left.
+	 *
+	 * @param weightToEvict combined weight of the entries to evict
+	 */
+	void evict( long weightToEvict ) {
+		List<Node<K, V>> evicted;
+
+		policyLock.lock();
+		try {
+			drainReadBuffer();
+			drainWriteBuffer();
+			evicted = evictEntries( weightToEvict );
+		}
+		finally {
+			policyLock.unlock();
+		}
+
+		notifyEvicted( evicted );
+	}
+
+	/**
+	 * @return combined weight of all entries, only accurate if there is no concurrent modification
+	 */
+	long weightedSize() {
+		policyLock.lock();
+		try {
+			drainWriteBuffer();
+			return totalWeight;
+		}
+		finally {
+			policyLock.unlock();
+		}
+	}
+
+	/**
+	 * Remove all entries, none are reported as evicted.
+	 */
+	void clear() {
+		new ArrayList<>( data.keySet() ).forEach( this::remove );
+	}
+
+	/**
+	 * @return snapshot of the keys
+	 */
+	Collection<K> keys() {
+		return new ArrayList<>( data.keySet() );
+	}
+
+	/**
+	 * @return snapshot of the values
+	 */
+	Collection<V> values() {
+		return data.values().stream().map( n -> n.value ).collect( Collectors.toList() );
+	}
+
+	int size() {
+		return data.size();
+	}
+
+	private void recordAccess( Node<K, V> node ) {
+		long index = readBufferWriteCount.getAndIncrement();
+		readBuffer.lazySet( (int) ( index & READ_BUFFER_MASK ), node );
+
+		if ( ( index + 1 ) % READ_DRAIN_THRESHOLD == 0 && policyLock.tryLock() ) {
+			try {
+				drainReadBuffer();
+			}
+			finally {
+				policyLock.unlock();
+			}
+		}
+	}
+
+	private void drainAndEvict() {
+		List<Node<K, V>> evicted;
+
+		policyLock.lock();
+		try {
+			drainReadBuffer();
+			drainWriteBuffer();
+			evicted = evictEntries( 0 );
+		}
+		finally {
+			policyLock.unlock();
+		}
+
+		notifyEvicted( evicted );
+	}
+
+	private void notifyEvicted( List<Node<K, V>> evicted ) {
+		evicted.forEach( node -> evictionExecutor.execute( () -> notifyEvicted( node ) ) );
+	}
+
+	private void notifyEvicted( Node<K, V> node ) {
+		try {
+			evictionListener.accept( node.key, node.value );
+		}
+		catch ( Exception e ) {
+			LOG.error( "Exception handling eviction of {}", node.key, e );
+		}
+	}
+
+	private void drainReadBuffer() {
+		long writeCount = readBufferWriteCount.get();
+		long start = Math.max( readBufferReadCount, writeCount - READ_BUFFER_SIZE );
+
+		for ( long i = start; i < writeCount; i++ ) {
+			Node<K, V> node = readBuffer.getAndSet( (int) ( i & READ_BUFFER_MASK ), null );
+
+			if ( node != null && node.linked ) {
+				unlink( node );
+				linkLast( node );
+			}
+		}
+
+		readBufferReadCount = writeCount;
+	}
+
+	private void drainWriteBuffer() {
+		Runnable task;
+
+		while ( ( task = writeBuffer.poll() ) != null ) {
+			task.run();
+		}
+	}
+
+	/**
+	 * A node can be removed from the map before its add task is applied, in which case it is never linked.
+	 */
+	private void addNode( Node<K, V> node ) {
+		if ( !node.retired && !node.linked ) {
+			linkLast( node );
+			node.policyWeight = node.weight;
+			size++;
+			totalWeight += node.policyWeight;
+		}
+	}
+
+	private void removeNode( Node<K, V> node ) {
+		if ( node.linked ) {
+			unlink( node );
+			size--;
+			totalWeight -= node.policyWeight;
+		}
+		node.retired = true;
+	}
+
+	private void updateNode( Node<K, V> node ) {
+		if ( node.linked ) {
+			totalWeight += node.weight - node.policyWeight;
+			node.policyWeight = node.weight;
+		}
+	}
+
+	private List<Node<K, V>> evictEntries( long weightToEvict ) {
+		if ( weightToEvict <= 0 && size <= maximumSize && totalWeight <= maximumWeight ) {
+			return Collections.emptyList();
+		}
+
+		List<Node<K, V>> evicted = new ArrayList<>();
+		long evictedWeight = 0;
+
+		while ( ( size > maximumSize || totalWeight > maximumWeight || evictedWeight < weightToEvict ) && head.next != head ) {
+			Node<K, V> eldest = head.next;
+			evictedWeight += eldest.policyWeight;
+			removeNode( eldest );
+
+			if ( data.remove( eldest.key, eldest ) ) {
+				evicted.add( eldest );
+			}
+		}
+
+		return evicted;
+	}
+
+	private void linkLast( Node<K, V> node ) {
+		node.previous = head.previous;
+		node.next = head;
+		head.previous.next = node;
+		head.previous = node;
+		node.linked = true;
+	}
+
+	private void unlink( Node<K, V> node ) {
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		node.previous = null;
+		node.next = null;
+		node.linked = false;
+	}
+
+	private static final class Node<K, V>
+	{
+		final K key;
+		final V value;
+		final AtomicBoolean added = new AtomicBoolean();
+		volatile long weight;
+
+		// guarded by policyLock
+		Node<K, V> previous, next;
+		boolean linked, retired;
+		long policyWeight;
+
+		Node( K key, V value ) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
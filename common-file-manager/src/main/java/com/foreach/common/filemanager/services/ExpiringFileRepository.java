@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
@@ -57,8 +58,9 @@ public class ExpiringFileRepository extends AbstractExpiringFileRepository<Expir
 	                                boolean expireOnShutdown,
 	                                boolean expireOnEvict,
 	                                int maxItemsToTrack,
-	                                @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy ) {
-		super( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack, expirationStrategy );
+	                                @NonNull Function<ExpiringFileResource, Boolean> expirationStrategy,
+	                                Executor evictionExecutor ) {
+		super( targetFileRepository, expireOnShutdown, expireOnEvict, maxItemsToTrack, expirationStrategy, evictionExecutor );
 	}
 
 	protected ExpiringFileRepository.TrackedResource createExpiringFileResource( FileDescriptor descriptor, FileResource targetFileResource ) {
@@ -20,7 +20,6 @@ import com.foreach.common.filemanager.business.*;
 import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 
 import javax.annotation.PreDestroy;
@@ -204,6 +203,67 @@ public class FileManagerImpl implements FileManager, FileRepositoryRegistry
 		}
 	}
 
+	@Override
+	public BulkOperationResult delete( Collection<FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return BulkOperations.executePerGroup(
+				descriptors, options, FileDescriptor::getRepositoryId,
+				( repositoryId, group, groupOptions ) -> requireRepository( repositoryId ).delete( group, groupOptions )
+		);
+	}
+
+	/**
+	 * Copies a collection of files, which can be in different repositories. Copies within a single repository
+	 * are executed by that repository, copies between repositories stream the data from source to target.
+	 */
+	@Override
+	public BulkOperationResult copy( Map<FileDescriptor, FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return BulkOperations.executePerGroup(
+				descriptors.keySet(), options, source -> repositoryToExecute( source, descriptors.get( source ) ),
+				( repositoryId, group, groupOptions ) -> {
+					if ( repositoryId != null ) {
+						return requireRepository( repositoryId ).copy( subMap( descriptors, group ), groupOptions );
+					}
+
+					return BulkOperations.execute( group, groupOptions, source -> {
+						getFileResource( descriptors.get( source ) ).copyFrom( getFileResource( source ), false );
+						return true;
+					} );
+				}
+		);
+	}
+
+	/**
+	 * Moves a collection of files, which can be in different repositories. Moves within a single repository
+	 * are executed by that repository, moves between repositories copy the data and delete the original.
+	 */
+	@Override
+	public BulkOperationResult move( Map<FileDescriptor, FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return BulkOperations.executePerGroup(
+				descriptors.keySet(), options, source -> repositoryToExecute( source, descriptors.get( source ) ),
+				( repositoryId, group, groupOptions ) -> {
+					if ( repositoryId != null ) {
+						return requireRepository( repositoryId ).move( subMap( descriptors, group ), groupOptions );
+					}
+
+					return BulkOperations.execute( group, groupOptions, source -> {
+						FileResource sourceResource = getFileResource( source );
+						getFileResource( descriptors.get( source ) ).copyFrom( sourceResource, true );
+						return !sourceResource.exists();
+					} );
+				}
+		);
+	}
+
+	private String repositoryToExecute( FileDescriptor source, FileDescriptor target ) {
+		return StringUtils.equals( source.getRepositoryId(), target.getRepositoryId() ) ? source.getRepositoryId() : null;
+	}
+
+	private Map<FileDescriptor, FileDescriptor> subMap( Map<FileDescriptor, FileDescriptor> descriptors, Collection<FileDescriptor> sources ) {
+		Map<FileDescriptor, FileDescriptor> subMap = new LinkedHashMap<>();
+		sources.forEach( source -> subMap.put( source, descriptors.get( source ) ) );
+		return subMap;
+	}
+
 	@Override
 	public void setFileRepositoryFactory( FileRepositoryFactory factory ) {
 		this.repositoryFactory = factory;
@@ -280,23 +340,22 @@ public class FileManagerImpl implements FileManager, FileRepositoryRegistry
 			throw new IllegalArgumentException( "Pattern must contain a repository pattern when starting with axfs:// protocol" );
 		}
 
-		AntPathMatcher pathMatcher = new AntPathMatcher();
 		String repositoryPattern = repositoryDelimiter > 0 ? withoutProtocol.substring( 0, repositoryDelimiter ) : DEFAULT_REPOSITORY;
 		String resourcesPattern = StringUtils.replaceOnce( withoutProtocol.substring( repositoryDelimiter + 1 ), ":", "/" );
 
-		return matchingRepositories( pathMatcher, repositoryPattern )
+		return matchingRepositories( repositoryPattern )
 				.flatMap( repository -> searchFunction.apply( repository, resourcesPattern ).stream() )
 				.collect( Collectors.toList() );
 	}
 
-	private Stream<? extends FileRepository> matchingRepositories( AntPathMatcher matcher, String pattern ) {
-		boolean isPattern = matcher.isPattern( pattern );
+	private Stream<? extends FileRepository> matchingRepositories( String pattern ) {
+		AntPathPattern compiledPattern = AntPathPattern.isPattern( pattern ) ? AntPathPattern.compile( pattern ) : null;
 
 		return repositories.values()
 		                   .stream()
 		                   .filter(
-				                   repository -> isPattern
-						                   ? matcher.match( pattern, repository.getRepositoryId() )
+				                   repository -> compiledPattern != null
+						                   ? compiledPattern.matches( repository.getRepositoryId() )
 						                   : StringUtils.equals( pattern, repository.getRepositoryId() )
 		                   );
 	}
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface for a single file repository, allowing storing and getting of a single file.
@@ -199,6 +201,81 @@ public interface FileRepository
 	 */
 	boolean delete( FileDescriptor descriptor );
 
+	/**
+	 * Check for a collection of descriptors if they point to an existing file resource.
+	 * The checks are executed in parallel according to the {@link BulkOperationOptions}.
+	 *
+	 * @param descriptors to check
+	 * @param options     for the bulk operation
+	 * @return existence of the file resource for every descriptor
+	 * @throws FileStorageException if the existence of a resource could not be determined
+	 */
+	default Map<FileDescriptor, Boolean> exists( @NonNull Collection<FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		Map<FileDescriptor, Boolean> existing = new ConcurrentHashMap<>();
+		BulkOperationResult result = BulkOperations.execute( descriptors, options, descriptor -> {
+			existing.put( descriptor, exists( descriptor ) );
+			return true;
+		} );
+
+		result.getFailures().values().stream().findFirst().ifPresent( e -> {
+			throw e instanceof FileStorageException ? (FileStorageException) e : new FileStorageException( e );
+		} );
+
+		return existing;
+	}
+
+	/**
+	 * Deletes a collection of files from the repository. The files are deleted in parallel according to
+	 * the {@link BulkOperationOptions}, implementations can use a native batch delete of the underlying storage.
+	 * A file for which {@link #delete(FileDescriptor)} would return {@code false} is reported as failed.
+	 * Note that some storages do not distinguish between deleting a file and deleting a file that does not exist,
+	 * in which case a missing file is reported as succeeded (see {@link AmazonS3FileRepository}).
+	 *
+	 * @param descriptors of the files to delete
+	 * @param options     for the bulk operation
+	 * @return result of the bulk operation
+	 */
+	default BulkOperationResult delete( @NonNull Collection<FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		return BulkOperations.execute( descriptors, options, this::delete );
+	}
+
+	/**
+	 * Copies a collection of files, the map holds the target descriptor for every source descriptor.
+	 * The files are copied in parallel according to the {@link BulkOperationOptions}. Existing target files are replaced.
+	 * <p/>
+	 * Both source and target descriptors should belong to this repository, use {@link FileManager#copy(Map, BulkOperationOptions)}
+	 * to copy files between repositories.
+	 *
+	 * @param descriptors target descriptor for every source descriptor
+	 * @param options     for the bulk operation
+	 * @return result of the bulk operation, resources are identified by their source descriptor
+	 */
+	default BulkOperationResult copy( @NonNull Map<FileDescriptor, FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		return BulkOperations.execute( descriptors.keySet(), options, source -> {
+			getFileResource( descriptors.get( source ) ).copyFrom( getFileResource( source ), false );
+			return true;
+		} );
+	}
+
+	/**
+	 * Moves a collection of files, the map holds the target descriptor for every source descriptor.
+	 * The files are moved in parallel according to the {@link BulkOperationOptions}. Existing target files are replaced.
+	 * <p/>
+	 * Both source and target descriptors should belong to this repository, use {@link FileManager#move(Map, BulkOperationOptions)}
+	 * to move files between repositories.
+	 *
+	 * @param descriptors target descriptor for every source descriptor
+	 * @param options     for the bulk operation
+	 * @return result of the bulk operation, resources are identified by their source descriptor
+	 */
+	default BulkOperationResult move( @NonNull Map<FileDescriptor, FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		return BulkOperations.execute( descriptors.keySet(), options, source -> {
+			FileResource sourceResource = getFileResource( source );
+			getFileResource( descriptors.get( source ) ).copyFrom( sourceResource, true );
+			return !sourceResource.exists();
+		} );
+	}
+
 	/**
 	 * Generate a unique file descriptor which can be used for creating a new file resource in this repository.
 	 *
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * A FileRepository implementation that delegates its calls to an underlying implementation.
@@ -117,6 +118,26 @@ public class FileRepositoryDelegate implements FileRepository
 		return repository().delete( descriptor );
 	}
 
+	@Override
+	public Map<FileDescriptor, Boolean> exists( Collection<FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return repository().exists( descriptors, options );
+	}
+
+	@Override
+	public BulkOperationResult delete( Collection<FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return repository().delete( descriptors, options );
+	}
+
+	@Override
+	public BulkOperationResult copy( Map<FileDescriptor, FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return repository().copy( descriptors, options );
+	}
+
+	@Override
+	public BulkOperationResult move( Map<FileDescriptor, FileDescriptor> descriptors, BulkOperationOptions options ) {
+		return repository().move( descriptors, options );
+	}
+
 	@Override
 	public OutputStream getOutputStream( FileDescriptor descriptor ) {
 		return repository().getOutputStream( descriptor );
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Short-lived cache of the folders known to exist on an FTP server, shared by all file and folder resources of a
+ * single {@link SpringIntegrationFtpFileRepository}. Storing a file first checks that its parent folder exists,
+ * with this cache only the first file written to a folder requires that round trip.
+ * <p/>
+ * A folder is added once it has been found or created, and is evicted together with all folders below it when
+ * it is deleted through the repository. Folders deleted by other clients are noticed once the entry has expired.
+ * A cache with a time-to-live of 0 stores nothing.
+ *
+ * @since 1.4.0
+ */
+final class FtpFolderCache
+{
+	/**
+	 * Cache that does not store anything, every check is a round trip.
+	 */
+	static final FtpFolderCache DISABLED = new FtpFolderCache( 0 );
+
+	/**
+	 * Maximum number of folders that are kept.
+	 */
+	static final int MAX_CACHED_FOLDERS = 10000;
+
+	private final long timeToLive;
+	private final ConcurrentLruTrackingMap<String, Long> folders;
+
+	/**
+	 * @param timeToLive number of milliseconds a folder is considered to exist
+	 */
+	FtpFolderCache( long timeToLive ) {
+		this.timeToLive = timeToLive;
+		this.folders = timeToLive > 0
+				? new ConcurrentLruTrackingMap<>( MAX_CACHED_FOLDERS, Runnable::run, ( path, expiresAt ) -> {
+		} )
+				: null;
+	}
+
+	/**
+	 * @param path of the folder
+	 * @return true if the folder is known to exist
+	 */
+	boolean contains( String path ) {
+		if ( folders == null ) {
+			return false;
+		}
+
+		String key = key( path );
+		Long expiresAt = folders.get( key );
+
+		if ( expiresAt == null ) {
+			return false;
+		}
+		if ( expiresAt < System.currentTimeMillis() ) {
+			// leave an entry that was stored concurrently
+			folders.remove( key, expiresAt );
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Register a folder that has been found or created.
+	 */
+	void add( String path ) {
+		if ( folders != null ) {
+			folders.put( key( path ), System.currentTimeMillis() + timeToLive );
+		}
+	}
+
+	/**
+	 * Remove a folder and all folders below it.
+	 */
+	void evictAll( String path ) {
+		if ( folders != null ) {
+			String key = key( path );
+			String prefix = key + "/";
+			folders.keys()
+			       .stream()
+			       .filter( folder -> folder.equals( key ) || folder.startsWith( prefix ) )
+			       .forEach( folders::remove );
+		}
+	}
+
+	private static String key( String path ) {
+		return StringUtils.removeEnd( StringUtils.replace( path, "//", "/" ), "/" );
+	}
+}
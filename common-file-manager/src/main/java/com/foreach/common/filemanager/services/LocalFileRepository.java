@@ -26,8 +26,11 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 
 /**
  * The simplest of file repositories, storing all files in a set of local folders
@@ -70,6 +73,24 @@ public class LocalFileRepository extends AbstractFileRepository
 		return new LocalFolderResource( descriptor, Paths.get( rootFolderPath, StringUtils.defaultString( descriptor.getFolderId() ) ) );
 	}
 
+	/**
+	 * Moves the files by renaming them on the file system, which avoids copying the data if
+	 * source and target are on the same file store.
+	 */
+	@Override
+	public BulkOperationResult move( @NonNull Map<FileDescriptor, FileDescriptor> descriptors, @NonNull BulkOperationOptions options ) {
+		return BulkOperations.execute( descriptors.keySet(), options, source -> {
+			FileDescriptor target = descriptors.get( source );
+			validateFileDescriptor( source );
+			validateFileDescriptor( target );
+
+			Path targetPath = buildPath( target );
+			Files.createDirectories( targetPath.getParent() );
+			Files.move( buildPath( source ), targetPath, StandardCopyOption.REPLACE_EXISTING );
+			return true;
+		} );
+	}
+
 	private Path buildPath( FileDescriptor descriptor ) {
 		if ( descriptor.getFolderId() != null ) {
 			return Paths.get( rootFolderPath, descriptor.getFolderId(), descriptor.getFileId() );
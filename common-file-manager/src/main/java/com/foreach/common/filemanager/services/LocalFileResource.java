@@ -22,13 +22,20 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -144,6 +151,7 @@ class LocalFileResource extends PathResource implements FileResource, FileResour
 			boolean fileMoved = true;
 
 			try {
+				FileUtils.forceMkdirParent( getTargetFile() );
 				Files.move( originalFile.toPath(), getTargetFile().toPath(), ATOMIC_MOVE, REPLACE_EXISTING );
 			}
 			catch ( IOException ignore ) {
@@ -157,6 +165,68 @@ class LocalFileResource extends PathResource implements FileResource, FileResour
 		}
 	}
 
+	@Override
+	public void copyFrom( @NonNull Resource resource ) throws IOException {
+		if ( resource instanceof LocalFileResource ) {
+			copyFrom( (FileResource) resource, false );
+		}
+		else {
+			FileResource.super.copyFrom( resource );
+		}
+	}
+
+	/**
+	 * Copies or moves the physical file if the original is also a local file resource.
+	 */
+	@Override
+	public void copyFrom( @NonNull FileResource originalFileResource, boolean deleteOriginal ) throws IOException {
+		if ( originalFileResource instanceof LocalFileResource ) {
+			File originalFile = ( (LocalFileResource) originalFileResource ).getTargetFile();
+
+			if ( !originalFile.equals( getTargetFile() ) ) {
+				copyFrom( originalFile, deleteOriginal );
+			}
+		}
+		else {
+			FileResource.super.copyFrom( originalFileResource, deleteOriginal );
+		}
+	}
+
+	/**
+	 * Positions a file channel at the offset instead of reading the data before it.
+	 */
+	@Override
+	public InputStream getInputStream( long offset, long length ) throws IOException {
+		if ( offset < 0 ) {
+			throw new IllegalArgumentException( "Offset must not be negative: " + offset );
+		}
+		if ( !Files.isRegularFile( file ) ) {
+			throw new FileNotFoundException( getPath() + " (no such file)" );
+		}
+
+		SeekableByteChannel channel = Files.newByteChannel( file );
+
+		try {
+			channel.position( offset );
+			InputStream inputStream = Channels.newInputStream( channel );
+			return length >= 0 ? BoundedInputStream.builder().setInputStream( inputStream ).setMaxCount( length ).get() : inputStream;
+		}
+		catch ( IOException | RuntimeException e ) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void copyTo( @NonNull WritableResource targetResource ) throws IOException {
+		if ( targetResource instanceof LocalFileResource ) {
+			( (LocalFileResource) targetResource ).copyFrom( this, false );
+		}
+		else {
+			FileResource.super.copyTo( targetResource );
+		}
+	}
+
 	@Override
 	public boolean equals( Object obj ) {
 		return obj == this || ( obj instanceof FileResource && descriptor.equals( ( (FileResource) obj ).getDescriptor() ) );
@@ -33,6 +33,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a single folder (directory) on a {@link LocalFileRepository}.
@@ -76,23 +78,30 @@ class LocalFolderResource implements FolderResource
 	}
 
 	@Override
-	@SneakyThrows
-	@SuppressWarnings("squid:S3776")
 	public Collection<FileRepositoryResource> findResources( @NonNull String pattern ) {
-		if ( exists() ) {
-			List<FileRepositoryResource> resources = new ArrayList<>();
+		try (Stream<FileRepositoryResource> resources = streamResources( pattern )) {
+			return resources.collect( Collectors.toList() );
+		}
+	}
 
+	/**
+	 * Directories are only read when the stream is consumed up to that point,
+	 * subtrees that can never match the pattern are not visited.
+	 */
+	@Override
+	public Stream<FileRepositoryResource> streamResources( @NonNull String pattern ) {
+		if ( exists() ) {
 			String pathPrefix = StringUtils.replace( directory.toAbsolutePath().toString(), "\\", "/" );
 
-			AntPathMatchingFileVisitor.walkFileTree( directory, pattern, candidate -> {
-				String relativePath = StringUtils.substring( candidate.toAbsolutePath().toString(), pathPrefix.length() );
-				resources.add( toFileRepositoryResource( candidate, relativePath ) );
-			} );
-
-			return resources;
+			return AntPathMatchingFileVisitor
+					.streamMatchingPaths( directory, pattern )
+					.map( candidate -> {
+						String relativePath = StringUtils.substring( candidate.toAbsolutePath().toString(), pathPrefix.length() );
+						return toFileRepositoryResource( candidate, relativePath );
+					} );
 		}
 
-		return Collections.emptyList();
+		return Stream.empty();
 	}
 
 	private FileRepositoryResource toFileRepositoryResource( Path candidate, String childPath ) {
@@ -15,54 +15,28 @@
  */
 package com.foreach.common.filemanager.services;
 
-import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.SftpException;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.integration.sftp.session.SftpRemoteFileTemplate;
+import com.jcraft.jsch.SftpATTRS;
 import org.springframework.util.StringUtils;
 
-@Slf4j
+/**
+ * Attributes of a file or directory on an SFTP server, as returned by a single {@code stat} or directory listing.
+ */
 public class SFTPFile
 {
-	private final String path;
 	private final String fileName;
+	private final SftpATTRS attributes;
 
-	private SftpRemoteFileTemplate remoteFileTemplate;
-
-	SFTPFile( SftpRemoteFileTemplate remoteFileTemplate, String path ) {
-		this.remoteFileTemplate = remoteFileTemplate;
-		this.path = path;
+	SFTPFile( String path, SftpATTRS attributes ) {
 		this.fileName = StringUtils.getFilename( path );
+		this.attributes = attributes;
 	}
 
 	public boolean exists() {
-
-		return remoteFileTemplate.<Boolean, ChannelSftp>executeWithClient( client -> {
-			try {
-				client.stat( path );
-			}
-			catch ( SftpException e ) {
-				if ( e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE ) {
-					return false;
-				}
-				LOG.error( "Unexpected error when checking whether file at {} exists", path, e );
-				return false;
-			}
-			return true;
-		} );
-
+		return attributes != null;
 	}
 
 	public boolean isDirectory() {
-		return remoteFileTemplate.<Boolean, ChannelSftp>executeWithClient( client -> {
-			try {
-				return client.stat( path ).isDir();
-			}
-			catch ( Exception ignore ) {
-			}
-			return false;
-		} );
-
+		return attributes != null && attributes.isDir();
 	}
 
 	public String getName() {
@@ -70,28 +44,11 @@ public class SFTPFile
 	}
 
 	public long getSize() {
-		return remoteFileTemplate.<Long, ChannelSftp>executeWithClient( client -> {
-			try {
-				return client.stat( path ).getSize();
-			}
-			catch ( Exception e ) {
-				LOG.error( "Unexpected error when checking file size for {} ", path, e );
-			}
-			return -1L;
-		} );
-
+		return attributes != null ? attributes.getSize() : -1L;
 	}
 
 	// epochmilli
 	public long getLastModified() {
-		return remoteFileTemplate.<Long, ChannelSftp>executeWithClient( client -> {
-			try {
-				return (long) client.stat( path ).getMTime();
-			}
-			catch ( Exception e ) {
-				LOG.error( "Unexpected error when checking last modified for {}", path, e );
-			}
-			return -1L;
-		} );
+		return attributes != null ? (long) attributes.getMTime() : -1L;
 	}
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileResource;
+import org.apache.commons.io.FileUtils;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads a {@link FileResource} to a physical file in segments, every segment being read by a {@link SegmentReader},
+ * usually a ranged {@link FileResource#getInputStream(long, long)}. The segments are downloaded on a {@link TaskExecutor},
+ * at most {@link #MAX_SEGMENTS_IN_FLIGHT} at the same time, and written with positional writes on
+ * a single {@link FileChannel}.
+ * <p/>
+ * Data is written to a temporary file next to the target file, which is only moved into place once
+ * all segments have been downloaded.
+ *
+ * @since 1.4.0
+ */
+final class SegmentedDownload
+{
+	/**
+	 * Size of a single segment.
+	 */
+	static final long SEGMENT_SIZE = 16L * 1024 * 1024;
+
+	/**
+	 * Maximum number of segments that are being downloaded at the same time.
+	 */
+	static final int MAX_SEGMENTS_IN_FLIGHT = 4;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private SegmentedDownload() {
+	}
+
+	/**
+	 * Reads a single segment of the resource data.
+	 */
+	@FunctionalInterface
+	interface SegmentReader
+	{
+		/**
+		 * @param offset of the first byte
+		 * @param length number of bytes
+		 * @return stream of the segment data
+		 * @throws IOException if the segment can not be read, for example because the resource has been modified
+		 */
+		InputStream read( long offset, long length ) throws IOException;
+	}
+
+	/**
+	 * Copy the data of the resource to the file using a custom segment reader, which should ensure all segments
+	 * are read from the same version of the resource. Replaces the file if it already exists.
+	 *
+	 * @param resource      to download
+	 * @param segmentReader to read a single segment of the resource
+	 * @param contentLength total length of the resource data
+	 * @param file          to write the data to
+	 * @param taskExecutor  to download the segments on
+	 * @throws IOException if any of the segments could not be downloaded
+	 */
+	static void copyTo( FileResource resource,
+	                    SegmentReader segmentReader,
+	                    long contentLength,
+	                    File file,
+	                    TaskExecutor taskExecutor ) throws IOException {
+		File tempFile = createTempFile( file );
+
+		try {
+			try (FileChannel channel = FileChannel.open( tempFile.toPath(), CREATE_NEW, WRITE )) {
+				downloadSegments( resource, segmentReader, contentLength, channel, taskExecutor );
+			}
+
+			moveIntoPlace( tempFile, file );
+		}
+		finally {
+			FileUtils.deleteQuietly( tempFile );
+		}
+	}
+
+	private static void downloadSegments( FileResource resource,
+	                                      SegmentReader segmentReader,
+	                                      long contentLength,
+	                                      FileChannel channel,
+	                                      TaskExecutor taskExecutor ) throws IOException {
+		Semaphore segmentsInFlight = new Semaphore( MAX_SEGMENTS_IN_FLIGHT );
+		List<Future<Void>> segments = new ArrayList<>();
+
+		try {
+			for ( long offset = 0; offset < contentLength; offset += SEGMENT_SIZE ) {
+				long position = offset;
+				long length = Math.min( SEGMENT_SIZE, contentLength - offset );
+
+				segmentsInFlight.acquire();
+				verifyNoFailures( segments );
+
+				FutureTask<Void> segment = new FutureTask<>( () -> {
+					try {
+						downloadSegment( resource, segmentReader, position, length, channel );
+						return null;
+					}
+					finally {
+						segmentsInFlight.release();
+					}
+				} );
+				segments.add( segment );
+				try {
+					taskExecutor.execute( segment );
+				}
+				catch ( RuntimeException re ) {
+					segmentsInFlight.release();
+					throw re;
+				}
+			}
+
+			for ( Future<Void> segment : segments ) {
+				segment.get();
+			}
+		}
+		catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			cancel( segments );
+			throw new InterruptedIOException( "Interrupted while downloading " + resource.getDescriptor() );
+		}
+		catch ( ExecutionException ee ) {
+			cancel( segments );
+			Throwable cause = ee.getCause();
+			throw cause instanceof IOException ? (IOException) cause : new IOException( "Download of " + resource.getDescriptor() + " failed", cause );
+		}
+		catch ( RuntimeException re ) {
+			cancel( segments );
+			throw re;
+		}
+	}
+
+	private static void downloadSegment( FileResource resource,
+	                                     SegmentReader segmentReader,
+	                                     long offset,
+	                                     long length,
+	                                     FileChannel channel ) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate( (int) Math.min( BUFFER_SIZE, length ) );
+		long position = offset;
+		long end = offset + length;
+
+		try (InputStream inputStream = segmentReader.read( offset, length )) {
+			while ( position < end ) {
+				int bytesRead = inputStream.read( buffer.array(), 0, (int) Math.min( buffer.capacity(), end - position ) );
+
+				if ( bytesRead < 0 ) {
+					throw new EOFException( "Unexpected end of data at position " + position + " of " + resource.getDescriptor() );
+				}
+
+				buffer.clear().limit( bytesRead );
+				while ( buffer.hasRemaining() ) {
+					position += channel.write( buffer, position );
+				}
+			}
+		}
+	}
+
+	private static void verifyNoFailures( List<Future<Void>> segments ) throws InterruptedException, ExecutionException {
+		for ( Future<Void> segment : segments ) {
+			if ( segment.isDone() ) {
+				segment.get();
+			}
+		}
+	}
+
+	private static void cancel( List<Future<Void>> segments ) {
+		segments.forEach( segment -> segment.cancel( true ) );
+	}
+
+	/**
+	 * Create the parent directories of the file and return a (not yet existing) temporary file next to it.
+	 */
+	static File createTempFile( File file ) throws IOException {
+		FileUtils.forceMkdirParent( file );
+		return new File( file.getParentFile(), file.getName() + "." + UUID.randomUUID() + ".tmp" );
+	}
+
+	/**
+	 * Move the completely written temporary file into place, replacing the file if it exists.
+	 */
+	static void moveIntoPlace( File tempFile, File file ) throws IOException {
+		try {
+			Files.move( tempFile.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING );
+		}
+		catch ( AtomicMoveNotSupportedException amnse ) {
+			Files.move( tempFile.toPath(), file.toPath(), REPLACE_EXISTING );
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.integration.sftp.session.SftpRemoteFileTemplate;
+
+/**
+ * Short-lived cache of SFTP file attributes, shared by all file and folder resources of a single
+ * {@link SpringIntegrationSftpFileRepository}. Attributes are added when a path is stat-ed or when its
+ * directory is listed, so resources returned by a listing do not need another round trip for their metadata.
+ * <p/>
+ * Only existing paths are cached, a path that was not found is always looked up again. Resources evict
+ * their own path when they modify it, changes made by other clients are visible once the entry has expired.
+ * A cache with a time-to-live of 0 stores nothing.
+ *
+ * @since 1.4.0
+ */
+@Slf4j
+final class SftpAttributesCache
+{
+	/**
+	 * Cache that does not store anything, every lookup is a round trip.
+	 */
+	static final SftpAttributesCache DISABLED = new SftpAttributesCache( 0 );
+
+	/**
+	 * Maximum number of paths for which attributes are kept.
+	 */
+	static final int MAX_CACHED_PATHS = 10000;
+
+	private final long timeToLive;
+	private final ConcurrentLruTrackingMap<String, CachedAttributes> attributes;
+
+	/**
+	 * @param timeToLive number of milliseconds attributes are kept
+	 */
+	SftpAttributesCache( long timeToLive ) {
+		this.timeToLive = timeToLive;
+		this.attributes = timeToLive > 0
+				? new ConcurrentLruTrackingMap<>( MAX_CACHED_PATHS, Runnable::run, ( path, cached ) -> {
+		} )
+				: null;
+	}
+
+	/**
+	 * Get the attributes of a path, only opening a session if they are not cached.
+	 *
+	 * @param remoteFileTemplate to use if the attributes are not cached
+	 * @param path               of the file or directory
+	 * @return attributes or {@code null} if the path does not exist
+	 */
+	SftpATTRS stat( SftpRemoteFileTemplate remoteFileTemplate, String path ) {
+		SftpATTRS cached = get( path );
+		return cached != null ? cached : remoteFileTemplate.<SftpATTRS, ChannelSftp>executeWithClient( client -> stat( client, path ) );
+	}
+
+	/**
+	 * Get the attributes of a path, using the client if they are not cached.
+	 *
+	 * @param client to use if the attributes are not cached
+	 * @param path   of the file or directory
+	 * @return attributes or {@code null} if the path does not exist
+	 */
+	SftpATTRS stat( ChannelSftp client, String path ) {
+		SftpATTRS cached = get( path );
+		if ( cached != null ) {
+			return cached;
+		}
+
+		try {
+			SftpATTRS stat = client.stat( path );
+			put( path, stat );
+			return stat;
+		}
+		catch ( SftpException e ) {
+			if ( e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE ) {
+				LOG.error( "Unexpected error when retrieving the attributes of {}", path, e );
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Store the attributes of a path, for example as returned by a directory listing.
+	 */
+	void put( String path, SftpATTRS stat ) {
+		if ( attributes != null && stat != null ) {
+			attributes.put( key( path ), new CachedAttributes( stat, System.currentTimeMillis() + timeToLive ) );
+		}
+	}
+
+	/**
+	 * Remove the attributes of a single path.
+	 */
+	void evict( String path ) {
+		if ( attributes != null ) {
+			attributes.remove( key( path ) );
+		}
+	}
+
+	/**
+	 * Remove the attributes of a directory and everything below it.
+	 */
+	void evictAll( String directory ) {
+		if ( attributes != null ) {
+			String key = key( directory );
+			String prefix = StringUtils.appendIfMissing( key, "/" );
+			attributes.keys()
+			          .stream()
+			          .filter( path -> path.equals( key ) || path.startsWith( prefix ) )
+			          .forEach( attributes::remove );
+		}
+	}
+
+	private SftpATTRS get( String path ) {
+		if ( attributes == null ) {
+			return null;
+		}
+
+		String key = key( path );
+		CachedAttributes cached = attributes.get( key );
+
+		if ( cached == null ) {
+			return null;
+		}
+		if ( cached.expiresAt < System.currentTimeMillis() ) {
+			// leave attributes that were stored concurrently
+			attributes.remove( key, cached );
+			return null;
+		}
+
+		return cached.stat;
+	}
+
+	private static String key( String path ) {
+		return StringUtils.removeEnd( StringUtils.replace( path, "//", "/" ), "/" );
+	}
+
+	@RequiredArgsConstructor
+	private static final class CachedAttributes
+	{
+		private final SftpATTRS stat;
+		private final long expiresAt;
+	}
+}
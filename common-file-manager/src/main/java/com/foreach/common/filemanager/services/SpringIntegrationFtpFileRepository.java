@@ -21,45 +21,46 @@ import com.foreach.common.filemanager.business.FolderDescriptor;
 import com.foreach.common.filemanager.business.FolderResource;
 import lombok.Builder;
 import lombok.NonNull;
-import org.apache.commons.net.ftp.FTPClient;
-import org.apache.commons.net.ftp.FTPFile;
+import org.springframework.integration.file.remote.session.CachingSessionFactory;
 import org.springframework.integration.ftp.session.FtpRemoteFileTemplate;
 
-import java.io.IOException;
-
+/**
+ * {@link FileRepository} storing files on an FTP server, using a Spring Integration {@link FtpRemoteFileTemplate}.
+ * <p/>
+ * To avoid connecting and logging in for every operation, pass a template using a {@link CachingSessionFactory}.
+ * Every open input or output stream holds on to its session until it is closed, any other operation waits for
+ * a free session. A pool must therefore have at least 2 sessions, and should be large enough for the number of
+ * streams that are open at the same time. The pool is owned by the caller and is not destroyed on {@link #shutdown()}.
+ * <p/>
+ * File resources are built without any round trip to the server, their metadata is only fetched when required.
+ * If a {@code folderCacheTimeToLive} (in milliseconds) is specified, the folders found or created by all resources
+ * of the repository are remembered for that long, so storing a file does not check its parent folder every time.
+ */
 public class SpringIntegrationFtpFileRepository extends AbstractFileRepository
 {
 	private final FtpRemoteFileTemplate remoteFileTemplate;
+	private final FtpFolderCache folderCache;
 
 	@Builder
 	protected SpringIntegrationFtpFileRepository( @NonNull String repositoryId,
 	                                              @NonNull FtpRemoteFileTemplate remoteFileTemplate,
-	                                              PathGenerator pathGenerator ) {
+	                                              PathGenerator pathGenerator,
+	                                              Long folderCacheTimeToLive ) {
 		super( repositoryId );
 		setPathGenerator( pathGenerator );
 		this.remoteFileTemplate = remoteFileTemplate;
-
+		this.folderCache = folderCacheTimeToLive != null
+				? new FtpFolderCache( folderCacheTimeToLive )
+				: FtpFolderCache.DISABLED;
 	}
 
 	@Override
 	protected FileResource buildFileResource( FileDescriptor descriptor ) {
-		String path = SpringIntegrationFtpFileResource.getPath( descriptor );
-		FTPFile file = null;
-		if ( remoteFileTemplate.exists( path ) ) {
-			file = remoteFileTemplate.<FTPFile, FTPClient>executeWithClient( client -> {
-				try {
-					return client.mdtmFile( path );
-				}
-				catch ( IOException e ) {
-					return null;
-				}
-			} );
-		}
-		return new SpringIntegrationFtpFileResource( descriptor, file, remoteFileTemplate );
+		return new SpringIntegrationFtpFileResource( descriptor, null, remoteFileTemplate, folderCache );
 	}
 
 	@Override
 	protected FolderResource buildFolderResource( FolderDescriptor descriptor ) {
-		return new SpringIntegrationFtpFolderResource( descriptor, remoteFileTemplate );
+		return new SpringIntegrationFtpFolderResource( descriptor, remoteFileTemplate, folderCache );
 	}
 }
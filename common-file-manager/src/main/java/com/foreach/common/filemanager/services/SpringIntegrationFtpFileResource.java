@@ -35,20 +35,29 @@ public class SpringIntegrationFtpFileResource extends SpringIntegrationFileResou
 {
 	private final FileDescriptor fileDescriptor;
 	private final FtpRemoteFileTemplate remoteFileTemplate;
+	private final FtpFolderCache folderCache;
 	private FTPFile file;
 
 	SpringIntegrationFtpFileResource( FileDescriptor fileDescriptor,
 	                                  FTPFile file,
 	                                  FtpRemoteFileTemplate remoteFileTemplate ) {
+		this( fileDescriptor, file, remoteFileTemplate, FtpFolderCache.DISABLED );
+	}
+
+	SpringIntegrationFtpFileResource( FileDescriptor fileDescriptor,
+	                                  FTPFile file,
+	                                  FtpRemoteFileTemplate remoteFileTemplate,
+	                                  FtpFolderCache folderCache ) {
 		super( fileDescriptor, remoteFileTemplate );
 		this.fileDescriptor = fileDescriptor;
 		this.file = file;
 		this.remoteFileTemplate = remoteFileTemplate;
+		this.folderCache = folderCache;
 	}
 
 	@Override
 	public FolderResource getFolderResource() {
-		return new SpringIntegrationFtpFolderResource( fileDescriptor.getFolderDescriptor(), remoteFileTemplate );
+		return new SpringIntegrationFtpFolderResource( fileDescriptor.getFolderDescriptor(), remoteFileTemplate, folderCache );
 	}
 
 	@Override
@@ -96,47 +105,83 @@ public class SpringIntegrationFtpFileResource extends SpringIntegrationFileResou
 		return "axfs [" + fileDescriptor.toString() + "] -> " + String.format( "FTP file[path='%s']", getPath() );
 	}
 
+	/**
+	 * Stores the file directly, using the same session to create the parent folders if they do not yet exist.
+	 * The existence of the parent folder is checked up front, as some servers only report that the folder
+	 * is missing once the transfer has been completed. Folders known to exist are not checked again.
+	 */
 	@Override
 	public OutputStream getOutputStream() throws IOException {
-		boolean shouldCreateFile = !exists();
 		Session<FTPFile> session = remoteFileTemplate.getSession();
-		FTPClient client = (FTPClient) session.getClientInstance();
 
-		if ( shouldCreateFile ) {
-			instantiateAsEmptyFile( client );
+		try {
+			FTPClient client = (FTPClient) session.getClientInstance();
+			createParentFoldersIfNecessary( client );
+			OutputStream outputStream = client.storeFileStream( getPath() );
+
+			if ( outputStream == null ) {
+				folderCache.evictAll( getParentPath() );
+				throw new FileStorageException( "Unable to store file " + fileDescriptor + ": " + client.getReplyString() );
+			}
+
+			resetFileMetadata();
+			return new FtpFileOutputStream( outputStream, client, session );
+		}
+		catch ( IOException | RuntimeException e ) {
+			session.close();
+			throw e;
 		}
-		resetFileMetadata();
-		return new FtpFileOutputStream( client.storeFileStream( getPath() ), client, session );
 	}
 
 	void resetFileMetadata() {
 		this.file = null;
 	}
 
-	private Void instantiateAsEmptyFile( FTPClient client ) throws IOException {
-		try (InputStream bin = new ByteArrayInputStream( new byte[0] )) {
-			FolderResource folder = getFolderResource();
-			if ( !folder.exists() ) {
-				folder.create();
+	private void createParentFoldersIfNecessary( FTPClient client ) throws IOException {
+		String parentPath = getParentPath();
+
+		if ( !parentPath.isEmpty() && !folderCache.contains( parentPath ) ) {
+			if ( client.mlistFile( parentPath ) == null ) {
+				createParentFolders( client, getPath() );
 			}
+			folderCache.add( parentPath );
+		}
+	}
 
-			boolean fileCreated = client.storeFile( getPath(), bin );
+	private String getParentPath() {
+		String path = getPath();
+		int lastSeparator = path.lastIndexOf( '/' );
+		return lastSeparator > 0 ? path.substring( 0, lastSeparator ) : "";
+	}
 
-			if ( !fileCreated ) {
-				throw new FileStorageException( "Unable to create a basic empty file" );
-			}
+	private void createParentFolders( FTPClient client, String path ) throws IOException {
+		int separator = path.indexOf( '/', 1 );
+
+		while ( separator != -1 ) {
+			// fails if the folder already exists
+			client.makeDirectory( path.substring( 0, separator ) );
+			separator = path.indexOf( '/', separator + 1 );
 		}
-		return null;
 	}
 
 	@Override
 	public InputStream getInputStream() throws IOException {
-		if ( !exists() ) {
-			throw new FileNotFoundException( "Unable to locate file " + fileDescriptor );
-		}
 		Session<FTPFile> session = remoteFileTemplate.getSession();
-		FTPClient client = (FTPClient) session.getClientInstance();
-		return new FtpFileInputStream( client.retrieveFileStream( getPath() ), client, session );
+
+		try {
+			FTPClient client = (FTPClient) session.getClientInstance();
+			InputStream inputStream = client.retrieveFileStream( getPath() );
+
+			if ( inputStream == null ) {
+				throw new FileNotFoundException( "Unable to locate file " + fileDescriptor );
+			}
+
+			return new FtpFileInputStream( inputStream, client, session );
+		}
+		catch ( IOException | RuntimeException e ) {
+			session.close();
+			throw e;
+		}
 	}
 
 	private FTPFile getFtpFile() {
@@ -191,13 +236,17 @@ public class SpringIntegrationFtpFileResource extends SpringIntegrationFileResou
 		@Override
 		public void close() throws IOException {
 			if ( !isClosed ) {
-				inputStream.close();
-				if ( !ftpClient.completePendingCommand() ) {
-					LOG.error( "Unable to verify that the file has been modified correctly." );
-					throw new FileStorageException( "File transfer may not be successful. Please check the logs for more info." );
-				}
-				session.close();
 				isClosed = true;
+				try {
+					inputStream.close();
+					if ( !ftpClient.completePendingCommand() ) {
+						LOG.error( "Unable to verify that the file has been modified correctly." );
+						throw new FileStorageException( "File transfer may not be successful. Please check the logs for more info." );
+					}
+				}
+				finally {
+					session.close();
+				}
 			}
 		}
 
@@ -257,13 +306,17 @@ public class SpringIntegrationFtpFileResource extends SpringIntegrationFileResou
 		@Override
 		public void close() throws IOException {
 			if ( !isClosed ) {
-				outputStream.close();
-				if ( !ftpClient.completePendingCommand() ) {
-					LOG.error( "Unable to verify that the file has been modified correctly." );
-					throw new FileStorageException( "File transfer may not be successful. Please check the logs for more info." );
-				}
-				session.close();
 				isClosed = true;
+				try {
+					outputStream.close();
+					if ( !ftpClient.completePendingCommand() ) {
+						LOG.error( "Unable to verify that the file has been modified correctly." );
+						throw new FileStorageException( "File transfer may not be successful. Please check the logs for more info." );
+					}
+				}
+				finally {
+					session.close();
+				}
 			}
 		}
 	}
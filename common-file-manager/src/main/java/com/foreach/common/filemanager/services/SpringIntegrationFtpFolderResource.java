@@ -23,7 +23,6 @@ import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.ftp.session.FtpRemoteFileTemplate;
-import org.springframework.util.AntPathMatcher;
 
 import java.io.IOException;
 import java.util.*;
@@ -36,27 +35,54 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 {
 	private final FolderDescriptor folderDescriptor;
 	private final FtpRemoteFileTemplate remoteFileTemplate;
+	private final FtpFolderCache folderCache;
 
 	SpringIntegrationFtpFolderResource( @NonNull FolderDescriptor folderDescriptor,
 	                                    @NonNull FtpRemoteFileTemplate remoteFileTemplate ) {
+		this( folderDescriptor, remoteFileTemplate, FtpFolderCache.DISABLED );
+	}
+
+	SpringIntegrationFtpFolderResource( @NonNull FolderDescriptor folderDescriptor,
+	                                    @NonNull FtpRemoteFileTemplate remoteFileTemplate,
+	                                    @NonNull FtpFolderCache folderCache ) {
 		super( folderDescriptor, remoteFileTemplate );
 		this.folderDescriptor = folderDescriptor;
 		this.remoteFileTemplate = remoteFileTemplate;
+		this.folderCache = folderCache;
 	}
 
 	@Override
 	public boolean exists() {
-		return retrieveRemoteFile( getPath() ) != null;
+		return registerIfExists( retrieveRemoteFile( getPath() ) != null );
 	}
 
 	protected boolean exists( FTPClient client ) {
-		return retrieveRemoteFile( client, getPath() ) != null;
+		return registerIfExists( retrieveRemoteFile( client, getPath() ) != null );
+	}
+
+	private boolean registerIfExists( boolean exists ) {
+		if ( exists ) {
+			folderCache.add( getPath() );
+		}
+		return exists;
+	}
+
+	@Override
+	public boolean delete( boolean deleteChildren ) {
+		boolean deleted = super.delete( deleteChildren );
+		folderCache.evictAll( getPath() );
+		return deleted;
+	}
+
+	@Override
+	public boolean create() {
+		return registerIfExists( super.create() );
 	}
 
 	@Override
 	public Optional<FolderResource> getParentFolderResource() {
 		return folderDescriptor.getParentFolderDescriptor()
-		                       .map( fd -> new SpringIntegrationFtpFolderResource( fd, remoteFileTemplate ) );
+		                       .map( fd -> new SpringIntegrationFtpFolderResource( fd, remoteFileTemplate, folderCache ) );
 	}
 
 	@Override
@@ -66,16 +92,12 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		}
 
 		if ( relativePath.endsWith( "/" ) ) {
-			return new SpringIntegrationFtpFolderResource( folderDescriptor.createFolderDescriptor( relativePath ), remoteFileTemplate );
+			return new SpringIntegrationFtpFolderResource( folderDescriptor.createFolderDescriptor( relativePath ), remoteFileTemplate,
+			                                               folderCache );
 		}
 
-		FileDescriptor fileDescriptor = folderDescriptor.createFileDescriptor( relativePath );
-		String actualPath = SpringIntegrationFtpFileResource.getPath( fileDescriptor );
-		FTPFile ftpFile = remoteFileTemplate.exists( actualPath )
-				? retrieveRemoteFile( actualPath )
-				: null;
-
-		return new SpringIntegrationFtpFileResource( fileDescriptor, ftpFile, remoteFileTemplate );
+		return new SpringIntegrationFtpFileResource( folderDescriptor.createFileDescriptor( relativePath ), null, remoteFileTemplate,
+		                                             folderCache );
 	}
 
 	@Override
@@ -91,7 +113,6 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 	protected Collection<FileRepositoryResource> findResources( @NonNull String pattern, FTPClient client ) {
 		if ( exists( client ) ) {
 			Set<FileRepositoryResource> resources = new LinkedHashSet<>();
-			AntPathMatcher pathMatcher = new AntPathMatcher( "/" );
 			String p = StringUtils.startsWith( pattern, "/" ) ? pattern.substring( 1 ) : pattern;
 			boolean matchOnlyDirectories = StringUtils.endsWith( p, "/" );
 
@@ -103,10 +124,9 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 				return resolveExactPath( p, client );
 			}
 
-			BiPredicate<String, String> keyMatcher = ( candidateObjectName, antPattern ) -> {
-				String patternToMatch = !StringUtils.isBlank( antPattern ) ? StringUtils.prependIfMissing( antPattern, "/" ) : antPattern;
-				String path = patternToMatch.endsWith( "/" ) ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" );
-				if ( pathMatcher.match( patternToMatch, path ) ) {
+			BiPredicate<String, AntPathPattern> keyMatcher = ( candidateObjectName, keyPattern ) -> {
+				String path = keyPattern.endsWithSeparator() ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" );
+				if ( keyPattern.matches( path ) ) {
 					return !matchOnlyDirectories || candidateObjectName.endsWith( "/" );
 				}
 				return false;
@@ -136,14 +156,14 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		if ( ftpFile.isDirectory() ) {
 			return Collections.singletonList(
 					new SpringIntegrationFtpFolderResource( FolderDescriptor.of( folderDescriptor.getRepositoryId(), pathToSearch ),
-					                                        remoteFileTemplate ) );
+					                                        remoteFileTemplate, folderCache ) );
 		}
 		return Collections.singletonList( createFileResource( ftpFile, StringUtils.removeStart( pathToSearch, "/" ) ) );
 	}
 
 	private Collection<FileRepositoryResource> resolvePatternForListing( String p,
 	                                                                     boolean matchOnlyDirectories,
-	                                                                     BiPredicate<String, String> keyMatcher,
+	                                                                     BiPredicate<String, AntPathPattern> keyMatcher,
 	                                                                     FTPClient client ) {
 		String validPrefix = getValidPrefix( p );
 		String remainingPattern = StringUtils.removeStart( p, validPrefix );
@@ -154,7 +174,7 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		if ( remainingPattern.contains( "/" ) ) {
 			int nextSlash = StringUtils.indexOf( remainingPattern, "/" );
 			String nextPart = StringUtils.substring( remainingPattern, 0, nextSlash + 1 );
-			String keyPattern = StringUtils.removeEnd( getPath(), "/" ) + "/" + StringUtils.removeStart( nextPart, "/" );
+			AntPathPattern keyPattern = compileKeyPattern( StringUtils.removeEnd( getPath(), "/" ) + "/" + StringUtils.removeStart( nextPart, "/" ) );
 			String withoutNextPart = StringUtils.removeStart( remainingPattern, nextPart );
 			return retrieveFoldersForPath( client, pathToSearch )
 					.stream()
@@ -172,7 +192,7 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 
 		SpringIntegrationFtpFolderResource baseResource = validPrefix.isEmpty() ? this : (SpringIntegrationFtpFolderResource) getFolderResource( validPrefix );
 
-		String keyPattern = StringUtils.removeEnd( baseResource.getPath(), "/" ) + "/" + StringUtils.removeStart( remainingPattern, "/" );
+		AntPathPattern keyPattern = compileKeyPattern( StringUtils.removeEnd( baseResource.getPath(), "/" ) + "/" + StringUtils.removeStart( remainingPattern, "/" ) );
 		if ( matchOnlyDirectories ) {
 			return baseResource.retrieveFoldersForPath( client, pathToSearch )
 			                   .stream()
@@ -210,16 +230,17 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		}
 	}
 
-	private void findResourcesWithMatchingKeys( BiPredicate<String, String> keyMatcher,
+	private void findResourcesWithMatchingKeys( BiPredicate<String, AntPathPattern> keyMatcher,
 	                                            Set<FileRepositoryResource> resources,
 	                                            String currentPath,
 	                                            String keyPattern, boolean matchOnlyDirectories, FTPClient client ) {
 		if ( !keyPattern.endsWith( "/" ) ) {
+			AntPathPattern filePattern = compileKeyPattern( keyPattern );
 			retrieveFilesForPath( client, currentPath )
 					.stream()
 					.filter( file -> {
 						String path = SpringIntegrationFtpFileResource.getPath( file.getDescriptor() );
-						return keyMatcher.test( path, keyPattern );
+						return keyMatcher.test( path, filePattern );
 					} )
 					.forEach( resources::add );
 		}
@@ -236,7 +257,7 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		String newKeyPattern = patternBasedOnPath;
 
 		if ( !newKeyPattern.contains( "/" ) && !matchOnlyDirectories && newKeyPattern.contains( "?" ) ) {
-			String matchingPattern = pathToLookFor + StringUtils.removeStart( newKeyPattern, "/" );
+			AntPathPattern matchingPattern = compileKeyPattern( pathToLookFor + StringUtils.removeStart( newKeyPattern, "/" ) );
 			List<SpringIntegrationFtpFileResource> filesForPath = retrieveFilesForPath( client, pathToLookFor );
 			filesForPath.stream()
 			            .filter( file -> {
@@ -246,11 +267,12 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 			            .forEach( resources::add );
 		}
 
+		AntPathPattern folderPattern = compileKeyPattern( newKeyPattern );
 		List<SpringIntegrationFtpFolderResource> folderResources = retrieveFoldersForPath( client, pathToLookFor );
 		folderResources.stream()
 		               .filter( folder -> {
 			               String path = StringUtils.appendIfMissing( SpringIntegrationFtpFolderResource.getPath( folder.getDescriptor() ), "/" );
-			               return keyMatcher.test( path, newKeyPattern );
+			               return keyMatcher.test( path, folderPattern );
 		               } )
 		               .forEach( resources::add );
 
@@ -264,6 +286,13 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 
 	}
 
+	/**
+	 * Compile a pattern for matching absolute paths, the pattern is made absolute unless it is blank.
+	 */
+	private static AntPathPattern compileKeyPattern( String keyPattern ) {
+		return AntPathPattern.compile( StringUtils.isBlank( keyPattern ) ? keyPattern : StringUtils.prependIfMissing( keyPattern, "/" ) );
+	}
+
 	@SuppressWarnings("Duplicates")
 	private String getValidPrefix( String keyPattern ) {
 		int starIndex = keyPattern.indexOf( '*' );
@@ -289,7 +318,7 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		return Arrays.stream( ftpFiles )
 		             .map( file -> new SpringIntegrationFtpFolderResource(
 				             FolderDescriptor.of( folderDescriptor.getRepositoryId(), getPath() ).createFolderDescriptor( file.getName() ),
-				             remoteFileTemplate ) )
+				             remoteFileTemplate, folderCache ) )
 		             .collect( Collectors.toList() );
 	}
 
@@ -322,7 +351,8 @@ public class SpringIntegrationFtpFolderResource extends SpringIntegrationFolderR
 		}
 		return new SpringIntegrationFtpFileResource( FileDescriptor.of( folderDescriptor.getRepositoryId(), folderName, fileName ),
 		                                             file,
-		                                             remoteFileTemplate );
+		                                             remoteFileTemplate,
+		                                             folderCache );
 	}
 
 }
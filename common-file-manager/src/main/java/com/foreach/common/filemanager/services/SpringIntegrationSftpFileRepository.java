@@ -19,41 +19,45 @@ import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
 import com.foreach.common.filemanager.business.FolderDescriptor;
 import com.foreach.common.filemanager.business.FolderResource;
-import com.jcraft.jsch.ChannelSftp;
 import lombok.Builder;
 import lombok.NonNull;
 import org.springframework.integration.sftp.session.SftpRemoteFileTemplate;
 
 /**
+ * {@link FileRepository} storing files on an SFTP server, using a Spring Integration {@link SftpRemoteFileTemplate}.
+ * <p/>
+ * File resources are built without any round trip to the server, their attributes are only retrieved when required.
+ * If an {@code attributesCacheTimeToLive} (in milliseconds) is specified, the attributes retrieved by all resources
+ * of the repository - including those returned by directory listings - are cached for that long.
+ *
  * @author Steven Gentens
  * @since 2.3.0
  */
 public class SpringIntegrationSftpFileRepository extends AbstractFileRepository
 {
 	private final SftpRemoteFileTemplate remoteFileTemplate;
+	private final SftpAttributesCache attributesCache;
 
 	@Builder
 	protected SpringIntegrationSftpFileRepository( @NonNull String repositoryId,
 	                                               @NonNull SftpRemoteFileTemplate remoteFileTemplate,
-	                                               PathGenerator pathGenerator ) {
+	                                               PathGenerator pathGenerator,
+	                                               Long attributesCacheTimeToLive ) {
 		super( repositoryId );
 		setPathGenerator( pathGenerator );
 		this.remoteFileTemplate = remoteFileTemplate;
-
+		this.attributesCache = attributesCacheTimeToLive != null
+				? new SftpAttributesCache( attributesCacheTimeToLive )
+				: SftpAttributesCache.DISABLED;
 	}
 
 	@Override
 	protected FileResource buildFileResource( FileDescriptor descriptor ) {
-		String path = SpringIntegrationSftpFileResource.getPath( descriptor );
-		SFTPFile file = null;
-		if ( remoteFileTemplate.exists( path ) ) {
-			file = remoteFileTemplate.<SFTPFile, ChannelSftp>executeWithClient( client -> new SFTPFile( remoteFileTemplate, path ) );
-		}
-		return new SpringIntegrationSftpFileResource( descriptor, file, remoteFileTemplate );
+		return new SpringIntegrationSftpFileResource( descriptor, null, remoteFileTemplate, attributesCache );
 	}
 
 	@Override
 	protected FolderResource buildFolderResource( FolderDescriptor descriptor ) {
-		return new SpringIntegrationSftpFolderResource( descriptor, remoteFileTemplate );
+		return new SpringIntegrationSftpFolderResource( descriptor, remoteFileTemplate, attributesCache );
 	}
 }
@@ -19,6 +19,7 @@ import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
 import com.foreach.common.filemanager.business.FolderResource;
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.integration.file.remote.session.Session;
@@ -36,25 +37,34 @@ public class SpringIntegrationSftpFileResource extends SpringIntegrationFileReso
 {
 	private final FileDescriptor fileDescriptor;
 	private final SftpRemoteFileTemplate remoteFileTemplate;
+	private final SftpAttributesCache attributesCache;
 	private SFTPFile file;
 
 	SpringIntegrationSftpFileResource( FileDescriptor fileDescriptor,
 	                                   SFTPFile file,
 	                                   SftpRemoteFileTemplate remoteFileTemplate ) {
+		this( fileDescriptor, file, remoteFileTemplate, SftpAttributesCache.DISABLED );
+	}
+
+	SpringIntegrationSftpFileResource( FileDescriptor fileDescriptor,
+	                                   SFTPFile file,
+	                                   SftpRemoteFileTemplate remoteFileTemplate,
+	                                   SftpAttributesCache attributesCache ) {
 		super( fileDescriptor, remoteFileTemplate );
 		this.fileDescriptor = fileDescriptor;
 		this.file = file;
 		this.remoteFileTemplate = remoteFileTemplate;
+		this.attributesCache = attributesCache;
 	}
 
 	@Override
 	public FolderResource getFolderResource() {
-		return new SpringIntegrationSftpFolderResource( fileDescriptor.getFolderDescriptor(), remoteFileTemplate );
+		return new SpringIntegrationSftpFolderResource( fileDescriptor.getFolderDescriptor(), remoteFileTemplate, attributesCache );
 	}
 
 	@Override
 	public boolean exists() {
-		return getSftpFile().exists();
+		return getSftpFile() != null;
 	}
 
 	@Override
@@ -72,7 +82,7 @@ public class SpringIntegrationSftpFileResource extends SpringIntegrationFileReso
 	@Override
 	public long contentLength() throws IOException {
 		SFTPFile file = getSftpFile();
-		if ( !file.exists() ) {
+		if ( file == null ) {
 			throw new FileNotFoundException( "Unable to locate file " + fileDescriptor );
 		}
 		return file.getSize();
@@ -97,58 +107,67 @@ public class SpringIntegrationSftpFileResource extends SpringIntegrationFileReso
 		return "axfs [" + fileDescriptor.toString() + "] -> " + String.format( "FTP file[path='%s']", getPath() );
 	}
 
+	/**
+	 * Opens the file for writing directly. Only if the parent folder does not exist,
+	 * it is created and the file is opened again, using the same session.
+	 */
 	@Override
 	public OutputStream getOutputStream() throws IOException {
-		boolean shouldCreateFile = !exists();
 		Session<ChannelSftp.LsEntry> session = remoteFileTemplate.getSession();
 		ChannelSftp client = (ChannelSftp) session.getClientInstance();
 
-		if ( shouldCreateFile ) {
-			instantiateAsEmptyFile( client );
-		}
 		resetFileMetadata();
 		try {
-			return client.put( getPath() );
+			try {
+				return client.put( getPath() );
+			}
+			catch ( SftpException e ) {
+				if ( e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE ) {
+					throw e;
+				}
+				createParentFolders( client );
+				return client.put( getPath() );
+			}
 		}
 		catch ( SftpException e ) {
 			LOG.error( "Unexpected error whilst opening an OutputStream for file {}", getPath() );
+			session.close();
 			throw new IOException( e );
 		}
 	}
 
 	void resetFileMetadata() {
 		this.file = null;
+		attributesCache.evict( getPath() );
 	}
 
-	private Void instantiateAsEmptyFile( ChannelSftp client ) throws IOException {
-		try (InputStream bin = new ByteArrayInputStream( new byte[0] )) {
-			FolderResource folder = getFolderResource();
-			if ( !folder.exists() ) {
-				folder.create();
-			}
+	private void createParentFolders( ChannelSftp client ) {
+		String path = getPath();
+		int separator = path.indexOf( '/', 1 );
 
+		while ( separator != -1 ) {
 			try {
-				client.put( bin, getPath() );//client.storeFile( getPath(), bin );
+				client.mkdir( path.substring( 0, separator ) );
 			}
-			catch ( SftpException e ) {
-				LOG.error( "Unable to create empty file at {}", getPath() );
-				throw new IOException( e );
+			catch ( SftpException ignore ) {
+				// fails if the folder already exists
 			}
+			separator = path.indexOf( '/', separator + 1 );
 		}
-		return null;
 	}
 
 	@Override
 	public InputStream getInputStream() throws IOException {
-		if ( !exists() ) {
-			throw new FileNotFoundException( "Unable to locate file " + fileDescriptor );
-		}
 		Session<ChannelSftp.LsEntry> session = remoteFileTemplate.getSession();
 		ChannelSftp client = (ChannelSftp) session.getClientInstance();
 		try {
 			return client.get( getPath() );
 		}
 		catch ( SftpException e ) {
+			session.close();
+			if ( e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE ) {
+				throw new FileNotFoundException( "Unable to locate file " + fileDescriptor );
+			}
 			LOG.error( "Unable to create inputstream for file {} ", getPath() );
 			throw new IOException( e );
 		}
@@ -156,12 +175,9 @@ public class SpringIntegrationSftpFileResource extends SpringIntegrationFileReso
 
 	private SFTPFile getSftpFile() {
 		if ( file == null ) {
-			this.file = remoteFileTemplate.executeWithClient( this::fetchFileInfo );
+			SftpATTRS attributes = attributesCache.stat( remoteFileTemplate, getPath() );
+			this.file = attributes != null ? new SFTPFile( getPath(), attributes ) : null;
 		}
 		return file;
 	}
-
-	private SFTPFile fetchFileInfo( ChannelSftp client ) {
-		return new SFTPFile( remoteFileTemplate /*client*/, getPath() );
-	}
 }
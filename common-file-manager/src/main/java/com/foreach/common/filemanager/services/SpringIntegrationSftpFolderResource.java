@@ -17,13 +17,13 @@ package com.foreach.common.filemanager.services;
 
 import com.foreach.common.filemanager.business.*;
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.sftp.session.SftpRemoteFileTemplate;
-import org.springframework.util.AntPathMatcher;
 
 import java.util.*;
 import java.util.function.BiPredicate;
@@ -39,27 +39,42 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 {
 	private final FolderDescriptor folderDescriptor;
 	private final SftpRemoteFileTemplate remoteFileTemplate;
+	private final SftpAttributesCache attributesCache;
 
 	SpringIntegrationSftpFolderResource( @NonNull FolderDescriptor folderDescriptor,
 	                                     @NonNull SftpRemoteFileTemplate remoteFileTemplate ) {
+		this( folderDescriptor, remoteFileTemplate, SftpAttributesCache.DISABLED );
+	}
+
+	SpringIntegrationSftpFolderResource( @NonNull FolderDescriptor folderDescriptor,
+	                                     @NonNull SftpRemoteFileTemplate remoteFileTemplate,
+	                                     @NonNull SftpAttributesCache attributesCache ) {
 		super( folderDescriptor, remoteFileTemplate );
 		this.folderDescriptor = folderDescriptor;
 		this.remoteFileTemplate = remoteFileTemplate;
+		this.attributesCache = attributesCache;
 	}
 
 	@Override
 	public boolean exists() {
-		return retrieveRemoteFile( getPath() ).exists();
+		return attributesCache.stat( remoteFileTemplate, getPath() ) != null;
 	}
 
 	protected boolean exists( ChannelSftp client ) {
-		return retrieveRemoteFile( client, getPath() ) != null;
+		return attributesCache.stat( client, getPath() ) != null;
+	}
+
+	@Override
+	public boolean delete( boolean deleteChildren ) {
+		boolean deleted = super.delete( deleteChildren );
+		attributesCache.evictAll( getPath() );
+		return deleted;
 	}
 
 	@Override
 	public Optional<FolderResource> getParentFolderResource() {
 		return folderDescriptor.getParentFolderDescriptor()
-		                       .map( fd -> new SpringIntegrationSftpFolderResource( fd, remoteFileTemplate ) );
+		                       .map( fd -> new SpringIntegrationSftpFolderResource( fd, remoteFileTemplate, attributesCache ) );
 	}
 
 	@Override
@@ -69,16 +84,12 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		}
 
 		if ( relativePath.endsWith( "/" ) ) {
-			return new SpringIntegrationSftpFolderResource( folderDescriptor.createFolderDescriptor( relativePath ), remoteFileTemplate );
+			return new SpringIntegrationSftpFolderResource( folderDescriptor.createFolderDescriptor( relativePath ), remoteFileTemplate,
+			                                                attributesCache );
 		}
 
-		FileDescriptor fileDescriptor = folderDescriptor.createFileDescriptor( relativePath );
-		String actualPath = SpringIntegrationSftpFileResource.getPath( fileDescriptor );
-		SFTPFile ftpFile = remoteFileTemplate.exists( actualPath )
-				? retrieveRemoteFile( actualPath )
-				: null;
-
-		return new SpringIntegrationSftpFileResource( fileDescriptor, ftpFile, remoteFileTemplate );
+		return new SpringIntegrationSftpFileResource( folderDescriptor.createFileDescriptor( relativePath ), null, remoteFileTemplate,
+		                                              attributesCache );
 	}
 
 	@Override
@@ -94,7 +105,6 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 	protected Collection<FileRepositoryResource> findResources( @NonNull String pattern, ChannelSftp client ) {
 		if ( exists( client ) ) {
 			Set<FileRepositoryResource> resources = new LinkedHashSet<>();
-			AntPathMatcher pathMatcher = new AntPathMatcher( "/" );
 			String p = StringUtils.startsWith( pattern, "/" ) ? pattern.substring( 1 ) : pattern;
 			boolean matchOnlyDirectories = StringUtils.endsWith( p, "/" );
 
@@ -106,10 +116,9 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 				return resolveExactPath( p, client );
 			}
 
-			BiPredicate<String, String> keyMatcher = ( candidateObjectName, antPattern ) -> {
-				String patternToMatch = !StringUtils.isBlank( antPattern ) ? StringUtils.prependIfMissing( antPattern, "/" ) : antPattern;
-				String path = patternToMatch.endsWith( "/" ) ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" );
-				if ( pathMatcher.match( patternToMatch, path ) ) {
+			BiPredicate<String, AntPathPattern> keyMatcher = ( candidateObjectName, keyPattern ) -> {
+				String path = keyPattern.endsWithSeparator() ? candidateObjectName : StringUtils.removeEnd( candidateObjectName, "/" );
+				if ( keyPattern.matches( path ) ) {
 					return !matchOnlyDirectories || candidateObjectName.endsWith( "/" );
 				}
 				return false;
@@ -139,7 +148,7 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		if ( ftpFile.isDirectory() ) {
 			return Collections.singletonList(
 					new SpringIntegrationSftpFolderResource( FolderDescriptor.of( folderDescriptor.getRepositoryId(), pathToSearch ),
-					                                         remoteFileTemplate ) );
+					                                         remoteFileTemplate, attributesCache ) );
 		}
 		return Collections.singletonList( createFileResource( ftpFile, StringUtils.removeStart( pathToSearch, "/" ) ) );
 	}
@@ -147,7 +156,7 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 	@SuppressWarnings("Duplicates")
 	private Collection<FileRepositoryResource> resolvePatternForListing( String p,
 	                                                                     boolean matchOnlyDirectories,
-	                                                                     BiPredicate<String, String> keyMatcher,
+	                                                                     BiPredicate<String, AntPathPattern> keyMatcher,
 	                                                                     ChannelSftp client ) {
 		String validPrefix = getValidPrefix( p );
 		String remainingPattern = StringUtils.removeStart( p, validPrefix );
@@ -158,9 +167,9 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		if ( remainingPattern.contains( "/" ) ) {
 			int nextSlash = StringUtils.indexOf( remainingPattern, "/" );
 			String nextPart = StringUtils.substring( remainingPattern, 0, nextSlash + 1 );
-			String keyPattern = StringUtils.removeEnd( getPath(), "/" ) + "/" + StringUtils.removeStart( nextPart, "/" );
+			AntPathPattern keyPattern = compileKeyPattern( StringUtils.removeEnd( getPath(), "/" ) + "/" + StringUtils.removeStart( nextPart, "/" ) );
 			String withoutNextPart = StringUtils.removeStart( remainingPattern, nextPart );
-			return retrieveFoldersForPath( client, pathToSearch )
+			return retrieveFoldersForPath( listEntries( client, pathToSearch ) )
 					.stream()
 					.filter( f -> {
 						String pathToTest = StringUtils.appendIfMissing( f.getPath(), "/" );
@@ -177,9 +186,10 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		SpringIntegrationSftpFolderResource baseResource = validPrefix.isEmpty() ? this : (SpringIntegrationSftpFolderResource) getFolderResource(
 				validPrefix );
 
-		String keyPattern = StringUtils.removeEnd( baseResource.getPath(), "/" ) + "/" + StringUtils.removeStart( remainingPattern, "/" );
+		AntPathPattern keyPattern = compileKeyPattern( StringUtils.removeEnd( baseResource.getPath(), "/" ) + "/" + StringUtils.removeStart( remainingPattern, "/" ) );
+		List<ChannelSftp.LsEntry> entries = listEntries( client, pathToSearch );
 		if ( matchOnlyDirectories ) {
-			return baseResource.retrieveFoldersForPath( client, pathToSearch )
+			return baseResource.retrieveFoldersForPath( entries )
 			                   .stream()
 			                   .filter( f -> {
 				                   String pathToTest = StringUtils.appendIfMissing( f.getPath(), "/" );
@@ -188,8 +198,8 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 			                   .collect( Collectors.toSet() );
 		}
 
-		return Stream.concat( baseResource.retrieveFoldersForPath( client, pathToSearch ).stream(),
-		                      baseResource.retrieveFilesForPath( client, pathToSearch ).stream() )
+		return Stream.concat( baseResource.retrieveFoldersForPath( entries ).stream(),
+		                      baseResource.retrieveFilesForPath( pathToSearch, entries ).stream() )
 		             .filter( f -> {
 			             if ( f instanceof FolderResource ) {
 				             String folderPath = SpringIntegrationFolderResource.getPath( ( (FolderResource) f ).getDescriptor() );
@@ -201,24 +211,24 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		             } ).collect( Collectors.toSet() );
 	}
 
-	private SFTPFile retrieveRemoteFile( String pathToSearch ) {
-		return remoteFileTemplate.<SFTPFile, ChannelSftp>executeWithClient( client -> retrieveRemoteFile( client, pathToSearch ) );
-	}
-
 	private SFTPFile retrieveRemoteFile( ChannelSftp client, String path ) {
-		return new SFTPFile( remoteFileTemplate, path );
+		SftpATTRS attributes = attributesCache.stat( client, path );
+		return attributes != null ? new SFTPFile( path, attributes ) : null;
 	}
 
-	private void findResourcesWithMatchingKeys( BiPredicate<String, String> keyMatcher,
+	private void findResourcesWithMatchingKeys( BiPredicate<String, AntPathPattern> keyMatcher,
 	                                            Set<FileRepositoryResource> resources,
 	                                            String currentPath,
 	                                            String keyPattern, boolean matchOnlyDirectories, ChannelSftp client ) {
+		List<ChannelSftp.LsEntry> currentEntries = null;
 		if ( !keyPattern.endsWith( "/" ) ) {
-			retrieveFilesForPath( client, currentPath )
+			AntPathPattern filePattern = compileKeyPattern( keyPattern );
+			currentEntries = listEntries( client, currentPath );
+			retrieveFilesForPath( currentPath, currentEntries )
 					.stream()
 					.filter( file -> {
 						String path = SpringIntegrationFtpFileResource.getPath( file.getDescriptor() );
-						return keyMatcher.test( path, keyPattern );
+						return keyMatcher.test( path, filePattern );
 					} )
 					.forEach( resources::add );
 		}
@@ -234,9 +244,13 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		}
 		String newKeyPattern = patternBasedOnPath;
 
+		// a directory is listed only once, even if both its files and folders are required
+		List<ChannelSftp.LsEntry> entries = currentEntries != null && pathToLookFor.equals( currentPath )
+				? currentEntries : listEntries( client, pathToLookFor );
+
 		if ( !newKeyPattern.contains( "/" ) && !matchOnlyDirectories && newKeyPattern.contains( "?" ) ) {
-			String matchingPattern = pathToLookFor + StringUtils.removeStart( newKeyPattern, "/" );
-			List<SpringIntegrationSftpFileResource> filesForPath = retrieveFilesForPath( client, pathToLookFor );
+			AntPathPattern matchingPattern = compileKeyPattern( pathToLookFor + StringUtils.removeStart( newKeyPattern, "/" ) );
+			List<SpringIntegrationSftpFileResource> filesForPath = retrieveFilesForPath( pathToLookFor, entries );
 			filesForPath.stream()
 			            .filter( file -> {
 				            String path = SpringIntegrationFileResource.getPath( file.getDescriptor() );
@@ -245,11 +259,12 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 			            .forEach( resources::add );
 		}
 
-		List<SpringIntegrationSftpFolderResource> folderResources = retrieveFoldersForPath( client, pathToLookFor );
+		AntPathPattern folderPattern = compileKeyPattern( newKeyPattern );
+		List<SpringIntegrationSftpFolderResource> folderResources = retrieveFoldersForPath( entries );
 		folderResources.stream()
 		               .filter( folder -> {
 			               String path = StringUtils.appendIfMissing( SpringIntegrationSftpFolderResource.getPath( folder.getDescriptor() ), "/" );
-			               return keyMatcher.test( path, newKeyPattern );
+			               return keyMatcher.test( path, folderPattern );
 		               } )
 		               .forEach( resources::add );
 
@@ -263,6 +278,13 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 
 	}
 
+	/**
+	 * Compile a pattern for matching absolute paths, the pattern is made absolute unless it is blank.
+	 */
+	private static AntPathPattern compileKeyPattern( String keyPattern ) {
+		return AntPathPattern.compile( StringUtils.isBlank( keyPattern ) ? keyPattern : StringUtils.prependIfMissing( keyPattern, "/" ) );
+	}
+
 	@SuppressWarnings("Duplicates")
 	private String getValidPrefix( String keyPattern ) {
 		int starIndex = keyPattern.indexOf( '*' );
@@ -275,47 +297,47 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		return beforeIndex.contains( "/" ) ? beforeIndex.substring( 0, beforeIndex.lastIndexOf( '/' ) + 1 ) : "";
 	}
 
+	/**
+	 * List the entries of a directory with a single round trip, excluding the {@code .} and {@code ..} entries.
+	 * The attributes of every entry are added to the cache, so resources built from the listing need no
+	 * further round trips for their metadata.
+	 */
 	@SuppressWarnings("unchecked")
-	private List<SpringIntegrationSftpFolderResource> retrieveFoldersForPath( ChannelSftp client, String path ) {
-		List<String> ftpFolderNames = new ArrayList<>();
+	private List<ChannelSftp.LsEntry> listEntries( ChannelSftp client, String path ) {
+		List<ChannelSftp.LsEntry> entries = new ArrayList<>();
 		try {
 			Vector<ChannelSftp.LsEntry> files = client.ls( path );
 			for ( ChannelSftp.LsEntry entry : files ) {
-				if ( !entry.getFilename().equals( "." ) && !entry.getFilename().equals( ".." ) && entry.getAttrs().isDir() ) {
-					ftpFolderNames.add( entry.getFilename() );
+				if ( !entry.getFilename().equals( "." ) && !entry.getFilename().equals( ".." ) ) {
+					entries.add( entry );
+					attributesCache.put( childPath( path, entry ), entry.getAttrs() );
 				}
 			}
 		}
 		catch ( SftpException e ) {
-			LOG.error( "Unexpected error whilst listing directories for path '{}'. Falling back to no directories found.", path, e );
+			LOG.error( "Unexpected error whilst listing path '{}'. Falling back to no files or directories found.", path, e );
 		}
-
-		return ftpFolderNames.stream()
-		                     .map( fileName -> new SpringIntegrationSftpFolderResource(
-				                     FolderDescriptor.of( folderDescriptor.getRepositoryId(), getPath() ).createFolderDescriptor( fileName ),
-				                     remoteFileTemplate ) )
-		                     .collect( Collectors.toList() );
+		return entries;
 	}
 
-	@SuppressWarnings("unchecked")
-	private List<SpringIntegrationSftpFileResource> retrieveFilesForPath( ChannelSftp client, String path ) {
-		List<String> ftpFileNames = new ArrayList<>();
+	private List<SpringIntegrationSftpFolderResource> retrieveFoldersForPath( List<ChannelSftp.LsEntry> entries ) {
+		return entries.stream()
+		              .filter( entry -> entry.getAttrs().isDir() )
+		              .map( entry -> new SpringIntegrationSftpFolderResource(
+				              FolderDescriptor.of( folderDescriptor.getRepositoryId(), getPath() ).createFolderDescriptor( entry.getFilename() ),
+				              remoteFileTemplate, attributesCache ) )
+		              .collect( Collectors.toList() );
+	}
 
-		try {
-			Vector<ChannelSftp.LsEntry> files = client.ls( path );
-			for ( ChannelSftp.LsEntry entry : files ) {
-				if ( !entry.getAttrs().isDir() ) {
-					ftpFileNames.add( entry.getFilename() );
-				}
-			}
-		}
-		catch ( SftpException e ) {
-			LOG.error( "Unexpected error whilst listing files for path '{}'. Falling back to no directories found.", path, e );
-		}
+	private List<SpringIntegrationSftpFileResource> retrieveFilesForPath( String path, List<ChannelSftp.LsEntry> entries ) {
+		return entries.stream()
+		              .filter( entry -> !entry.getAttrs().isDir() )
+		              .map( entry -> createFileResource( new SFTPFile( childPath( path, entry ), entry.getAttrs() ) ) )
+		              .collect( Collectors.toList() );
+	}
 
-		return ftpFileNames.stream()
-		                   .map( fileName -> createFileResource( new SFTPFile( remoteFileTemplate, path + "/" + fileName ) ) ) // iffy full path creation maybe
-		                   .collect( Collectors.toList() );
+	private static String childPath( String path, ChannelSftp.LsEntry entry ) {
+		return StringUtils.removeEnd( path, "/" ) + "/" + entry.getFilename();
 	}
 
 	private SpringIntegrationSftpFileResource createFileResource( SFTPFile file ) {
@@ -332,7 +354,8 @@ public class SpringIntegrationSftpFolderResource extends SpringIntegrationFolder
 		}
 		return new SpringIntegrationSftpFileResource( FileDescriptor.of( folderDescriptor.getRepositoryId(), folderName, fileName ),
 		                                              file,
-		                                              remoteFileTemplate );
+		                                              remoteFileTemplate,
+		                                              attributesCache );
 	}
 
 }
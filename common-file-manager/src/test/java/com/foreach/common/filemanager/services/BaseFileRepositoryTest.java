@@ -34,10 +34,9 @@ import org.springframework.util.StreamUtils;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -275,6 +274,62 @@ abstract class BaseFileRepositoryTest
 				.isThrownBy( () -> fileRepository.move( original, renamed ) );
 	}
 
+	@Test
+	@SneakyThrows
+	void rangedInputStream() {
+		FileResource resource = fileRepository.getFileResource( fileRepository.save( fileOne ) );
+
+		assertThat( readRange( resource, 5, 5 ) ).isEqualTo( "dummy" );
+		assertThat( readRange( resource, 11, -1 ) ).isEqualTo( "text" );
+		assertThat( readRange( resource, 11, 100 ) ).isEqualTo( "text" );
+		assertThat( readRange( resource, 0, 0 ) ).isEmpty();
+		assertThat( readRange( resource, 100, 5 ) ).isEmpty();
+	}
+
+	@SneakyThrows
+	private String readRange( FileResource resource, long offset, long length ) {
+		try (InputStream is = resource.getInputStream( offset, length )) {
+			return StreamUtils.copyToString( is, Charset.defaultCharset() );
+		}
+	}
+
+	@Test
+	void bulkCopyMoveAndDelete() {
+		List<FileDescriptor> originals = new ArrayList<>();
+		for ( int i = 0; i < 5; i++ ) {
+			originals.add( fileRepository.save( fileOne ) );
+		}
+
+		AtomicInteger processed = new AtomicInteger();
+		BulkOperationOptions options = BulkOperationOptions.builder()
+		                                                   .parallelism( 3 )
+		                                                   .progressListener( ( p, failed, total ) -> processed.accumulateAndGet( p, Math::max ) )
+		                                                   .build();
+
+		Map<FileDescriptor, FileDescriptor> copies = new LinkedHashMap<>();
+		originals.forEach( original -> copies.put( original, FileDescriptor.of( fileRepository.getRepositoryId(), "bulk-copy", original.getFileId() ) ) );
+
+		BulkOperationResult copied = fileRepository.copy( copies, options );
+		assertThat( copied.isSuccessful() ).isTrue();
+		assertThat( copied.getSucceeded() ).containsExactlyInAnyOrderElementsOf( originals );
+		assertThat( processed.get() ).isEqualTo( 5 );
+
+		Map<FileDescriptor, FileDescriptor> moves = new LinkedHashMap<>();
+		copies.values().forEach( copy -> moves.put( copy, FileDescriptor.of( fileRepository.getRepositoryId(), "bulk-move", copy.getFileId() ) ) );
+
+		assertThat( fileRepository.move( moves, options ).isSuccessful() ).isTrue();
+		assertThat( fileRepository.exists( copies.values(), options ) ).containsOnlyKeys( copies.values() ).doesNotContainValue( true );
+		assertThat( fileRepository.exists( moves.values(), options ) ).containsOnlyKeys( moves.values() ).doesNotContainValue( false );
+
+		List<FileDescriptor> toDelete = new ArrayList<>( originals );
+		toDelete.addAll( moves.values() );
+
+		BulkOperationResult deleted = fileRepository.delete( toDelete, options );
+		assertThat( deleted.isSuccessful() ).isTrue();
+		assertThat( deleted.getTotal() ).isEqualTo( 10 );
+		assertThat( fileRepository.exists( toDelete, options ) ).doesNotContainValue( true );
+	}
+
 	@Test
 	@SneakyThrows
 	void findResourcesAndFiles() {
@@ -387,6 +442,15 @@ abstract class BaseFileRepositoryTest
 				.hasSize( 2 )
 				.containsExactlyInAnyOrder( level1_1_1_png, level2_1_1_png );
 
+		// stream resources
+		try (Stream<FileResource> pngFiles = rootFolder.streamFiles( "**/*.png" )) {
+			assertThat( pngFiles ).containsExactlyInAnyOrder( level1_1_1_png, level2_1_1_png, level2_1_2_png, level2_1_2_png2, level2_2_png );
+		}
+		try (Stream<FileRepositoryResource> firstResources = rootFolder.streamResources( "**" )) {
+			assertThat( firstResources.limit( 3 ) ).hasSize( 3 ).isSubsetOf( allResources );
+		}
+		assertThat( level1_1_1.isEmpty() ).isFalse();
+
 		assertThat( rootFolder.deleteChildren() ).isTrue();
 	}
 
@@ -27,16 +27,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.util.StreamUtils;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.Random;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -236,6 +241,39 @@ class TestAmazonS3FileResource
 		assertThat( resourceData() ).isEqualTo( "hello file 2" );
 	}
 
+	@Test
+	@SneakyThrows
+	void largeDataIsTransferredInParallelParts() {
+		FileResource parallel = new AmazonS3FileResource( descriptor, amazonS3, BUCKET_NAME, objectName, new SimpleAsyncTaskExecutor() );
+		byte[] data = new byte[AmazonS3OutputStream.PART_SIZE * 2 + 100];
+		new Random().nextBytes( data );
+
+		try (OutputStream os = parallel.getOutputStream()) {
+			os.write( data );
+		}
+		assertThat( parallel.contentLength() ).isEqualTo( data.length );
+		try (InputStream is = parallel.getInputStream()) {
+			assertThat( IOUtils.toByteArray( is ) ).isEqualTo( data );
+		}
+
+		File largeFile = File.createTempFile( UUID.randomUUID().toString(), ".bin" );
+		byte[] fileData = new byte[(int) AmazonS3MultipartUpload.DEFAULT_FILE_PART_SIZE + 100];
+		new Random().nextBytes( fileData );
+		FileUtils.writeByteArrayToFile( largeFile, fileData );
+
+		parallel.copyFrom( largeFile, true );
+		assertThat( largeFile.exists() ).isFalse();
+		assertThat( parallel.contentLength() ).isEqualTo( fileData.length );
+		try (InputStream is = parallel.getInputStream()) {
+			assertThat( IOUtils.toByteArray( is ) ).isEqualTo( fileData );
+		}
+
+		File downloadedFile = File.createTempFile( UUID.randomUUID().toString(), ".bin" );
+		parallel.copyTo( downloadedFile );
+		assertThat( FileUtils.readFileToByteArray( downloadedFile ) ).isEqualTo( fileData );
+		assertThat( downloadedFile.delete() ).isTrue();
+	}
+
 	@Test
 	@SneakyThrows
 	void copyFromInputStream() {
@@ -279,6 +317,36 @@ class TestAmazonS3FileResource
 		assertThat( other.exists() ).isFalse();
 	}
 
+	@Test
+	@SneakyThrows
+	void copyFromFileResourceOnSameClientIsServerSide() {
+		String otherObjectName = UUID.randomUUID().toString();
+		amazonS3.putObject( BUCKET_NAME, otherObjectName, "server-side" );
+		AmazonS3FileResource other = spy( new AmazonS3FileResource( FileDescriptor.of( "my-repo", otherObjectName ), amazonS3, BUCKET_NAME, otherObjectName,
+		                                                            new SyncTaskExecutor() ) );
+
+		resource.copyFrom( other );
+		assertThat( resource.exists() ).isTrue();
+		assertThat( amazonS3.getObjectAsString( BUCKET_NAME, objectName ) ).isEqualTo( "server-side" );
+		assertThat( amazonS3.doesObjectExist( BUCKET_NAME, otherObjectName ) ).isTrue();
+
+		amazonS3.putObject( BUCKET_NAME, otherObjectName, "moved" );
+		resource.copyFrom( other, true );
+		assertThat( amazonS3.getObjectAsString( BUCKET_NAME, objectName ) ).isEqualTo( "moved" );
+		assertThat( amazonS3.doesObjectExist( BUCKET_NAME, otherObjectName ) ).isFalse();
+
+		verify( other, never() ).getInputStream();
+	}
+
+	@Test
+	void copyFromMissingFileResourceOnSameClientThrowsFileNotFound() {
+		FileResource other = new AmazonS3FileResource( FileDescriptor.of( "my-repo", "missing" ), amazonS3, BUCKET_NAME, UUID.randomUUID().toString(),
+		                                               new SyncTaskExecutor() );
+
+		assertThatExceptionOfType( FileNotFoundException.class ).isThrownBy( () -> resource.copyFrom( other, false ) );
+		assertThat( resource.exists() ).isFalse();
+	}
+
 	@SuppressWarnings("ResultOfMethodCallIgnored")
 	@Test
 	@SneakyThrows
@@ -23,10 +23,13 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.SyncTaskExecutor;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -183,6 +186,29 @@ class TestAmazonS3FolderResource
 				.containsExactlyInAnyOrder( childFile, childFolder, childFolderInChildFolder, childFileInChildFolder );
 	}
 
+	@Test
+	@SneakyThrows
+	void prefixesAreListedInParallelWithoutChangingTheOrder() {
+		for ( int tenant = 0; tenant < 6; tenant++ ) {
+			for ( String month : new String[] { "01", "02" } ) {
+				resource.getFileResource( "tenant-" + tenant + "/2024/" + month + "/reports/report.pdf" ).copyFrom( new ByteArrayInputStream( new byte[1] ) );
+				resource.getFileResource( "tenant-" + tenant + "/2024/" + month + "/other/report.pdf" ).copyFrom( new ByteArrayInputStream( new byte[1] ) );
+			}
+		}
+
+		AmazonS3FolderResource parallel = new AmazonS3FolderResource( descriptor, amazonS3, BUCKET_NAME, objectName, new SimpleAsyncTaskExecutor() );
+
+		assertThat( parallel.findResources( "*/2024/*/reports/*.pdf" ) )
+				.hasSize( 12 )
+				.containsExactlyElementsOf( resource.findResources( "*/2024/*/reports/*.pdf" ) );
+
+		try (Stream<FileRepositoryResource> firstReports = parallel.streamResources( "*/2024/*/reports/*.pdf" )) {
+			assertThat( firstReports.limit( 2 ) )
+					.containsExactly( resource.getFileResource( "tenant-0/2024/01/reports/report.pdf" ),
+					                  resource.getFileResource( "tenant-0/2024/02/reports/report.pdf" ) );
+		}
+	}
+
 	@Test
 	void listChildren() {
 		assertThat( resource.listResources( false ) ).isEmpty();
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @since 1.4.0
+ */
+@ExtendWith(MockitoExtension.class)
+class TestAmazonS3OutputStream
+{
+	@Mock
+	private AmazonS3 amazonS3;
+
+	private AmazonS3OutputStream outputStream;
+
+	@BeforeEach
+	void setUp() {
+		outputStream = new AmazonS3OutputStream( amazonS3, "bucket", "object", new SyncTaskExecutor() );
+	}
+
+	@Test
+	void failedInitiateIsNotPublishedOnClose() throws IOException {
+		when( amazonS3.initiateMultipartUpload( any( InitiateMultipartUploadRequest.class ) ) )
+				.thenThrow( new SdkClientException( "initiate failed" ) );
+
+		assertThatExceptionOfType( SdkClientException.class )
+				.isThrownBy( () -> outputStream.write( new byte[AmazonS3OutputStream.PART_SIZE] ) );
+		assertThatExceptionOfType( IOException.class ).isThrownBy( () -> outputStream.write( 1 ) );
+		assertThatExceptionOfType( IOException.class )
+				.isThrownBy( outputStream::close )
+				.withCauseInstanceOf( SdkClientException.class );
+
+		// closing again does not publish the object either
+		outputStream.close();
+
+		verify( amazonS3, never() ).putObject( anyString(), anyString(), any( InputStream.class ), any( ObjectMetadata.class ) );
+		verify( amazonS3, never() ).abortMultipartUpload( any() );
+		verify( amazonS3, never() ).completeMultipartUpload( any() );
+	}
+
+	@Test
+	void failedPartAbortsTheMultipartUploadOnClose() {
+		when( amazonS3.initiateMultipartUpload( any( InitiateMultipartUploadRequest.class ) ) )
+				.thenReturn( initiateResult() );
+		when( amazonS3.uploadPart( any( UploadPartRequest.class ) ) ).thenThrow( new SdkClientException( "part failed" ) );
+
+		assertThatExceptionOfType( IOException.class )
+				.isThrownBy( () -> outputStream.write( new byte[AmazonS3OutputStream.PART_SIZE * 2] ) );
+		assertThatExceptionOfType( IOException.class ).isThrownBy( outputStream::close );
+
+		verify( amazonS3 ).abortMultipartUpload( any( AbortMultipartUploadRequest.class ) );
+		verify( amazonS3, never() ).completeMultipartUpload( any() );
+		verify( amazonS3, never() ).putObject( anyString(), anyString(), any( InputStream.class ), any( ObjectMetadata.class ) );
+	}
+
+	@Test
+	void smallContentIsWrittenAsSingleObject() throws IOException {
+		outputStream.write( new byte[] { 1, 2, 3 } );
+		outputStream.close();
+
+		verify( amazonS3 ).putObject( eq( "bucket" ), eq( "object" ), any( InputStream.class ), any( ObjectMetadata.class ) );
+		verify( amazonS3, never() ).initiateMultipartUpload( any() );
+	}
+
+	private InitiateMultipartUploadResult initiateResult() {
+		InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+		result.setUploadId( "upload-id" );
+		return result;
+	}
+}
@@ -23,7 +23,9 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -150,6 +152,26 @@ class TestAntPathMatchingFileVisitor
 		assertPattern( "childFolder/childFolderInChildFolder/**/" ).visits( 2 ).hasNoResults();
 	}
 
+	@Test
+	void streamMatchesSamePathsAsWalk() {
+		Stream.of( "childFolder", "idontexist", "**", "**/", "*", "child*/*.txt", "*/*/*.txt", "childFolder/**", "**/*.txt" )
+		      .forEach( pattern -> {
+			      List<Path> walked = new ArrayList<>();
+			      AntPathMatchingFileVisitor.walkFileTree( tempDir.toPath(), pattern, walked::add );
+
+			      try (Stream<Path> streamed = AntPathMatchingFileVisitor.streamMatchingPaths( tempDir.toPath(), pattern )) {
+				      assertThat( streamed ).containsExactlyElementsOf( walked );
+			      }
+		      } );
+	}
+
+	@Test
+	void streamCanBeClosedBeforeAllPathsHaveBeenVisited() {
+		try (Stream<Path> streamed = AntPathMatchingFileVisitor.streamMatchingPaths( tempDir.toPath(), "**/*.txt" )) {
+			assertThat( streamed.limit( 1 ) ).hasSize( 1 );
+		}
+	}
+
 	private PatternTest assertPattern( String childFolder ) {
 		return new PatternTest( childFolder );
 	}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestAntPathPattern
+{
+	private static final String[] PATTERNS = {
+			"", "/", "*", "/*", "*/", "**", "/**", "**/", "a", "a/", "/a", "a/*", "a/*/", "a/**", "a/**/", "*/b", "**/b",
+			"a/**/b", "a/**/b/", "**/a/**/*.png", "**/a/**.png", "a?b", "a*b/*", "/**/a*", "*/*/*.png", "a/**/**/b", "a//b"
+	};
+
+	private static final String[] PATHS = {
+			"", "/", "a", "a/", "/a", "/a/", "ab", "aab", "a/b", "a/b/", "/a/b", "a/x/b", "a/x/y/b/", "a/b/c.png", "a/c.png",
+			"x/a/y/z.png", "x/a/z.png", "/x/a/z.png", "ab/c", "a//b", "b/b/b"
+	};
+
+	private final AntPathMatcher pathMatcher = new AntPathMatcher( "/" );
+
+	@Test
+	void matchesLikeAntPathMatcher() {
+		for ( String pattern : PATTERNS ) {
+			AntPathPattern compiled = AntPathPattern.compile( pattern );
+
+			for ( String path : PATHS ) {
+				assertThat( compiled.matches( path ) )
+						.as( "match '%s' against '%s'", pattern, path )
+						.isEqualTo( pathMatcher.match( pattern, path ) );
+				assertThat( compiled.matchesStart( path ) )
+						.as( "matchStart '%s' against '%s'", pattern, path )
+						.isEqualTo( pathMatcher.matchStart( pattern, path ) );
+			}
+		}
+	}
+
+	@Test
+	void compiledPatternsAreReused() {
+		assertThat( AntPathPattern.compile( "a/**/b" ) ).isSameAs( AntPathPattern.compile( "a/**/b" ) );
+	}
+
+	@Test
+	void isPattern() {
+		assertThat( AntPathPattern.isPattern( "a/b.txt" ) ).isFalse();
+		assertThat( AntPathPattern.isPattern( "a/*.txt" ) ).isTrue();
+		assertThat( AntPathPattern.isPattern( "a/b?.txt" ) ).isTrue();
+	}
+}
@@ -40,6 +40,9 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class TestAzureFileResource
@@ -289,6 +292,25 @@ class TestAzureFileResource
 		assertThat( other.exists() ).isFalse();
 	}
 
+	@Test
+	@SneakyThrows
+	void copyFromFileResourceInSameAccountIsServerSide() {
+		String otherObjectName = UUID.randomUUID().toString();
+		blobContainerClient.getBlobClient( otherObjectName ).upload( BinaryData.fromString( "server-side" ) );
+		AzureFileResource other = spy( new AzureFileResource( FileDescriptor.of( "my-repo", otherObjectName ), blobServiceClient, CONTAINER_NAME,
+		                                                      otherObjectName ) );
+
+		resource.copyFrom( other );
+		assertThat( blobContainerClient.getBlobClient( objectName ).downloadContent().toString() ).isEqualTo( "server-side" );
+		assertThat( other.exists() ).isTrue();
+
+		resource.copyFrom( other, true );
+		assertThat( blobContainerClient.getBlobClient( objectName ).downloadContent().toString() ).isEqualTo( "server-side" );
+		assertThat( blobContainerClient.getBlobClient( otherObjectName ).exists() ).isFalse();
+
+		verify( other, never() ).getInputStream();
+	}
+
 	@SuppressWarnings("ResultOfMethodCallIgnored")
 	@Test
 	@SneakyThrows
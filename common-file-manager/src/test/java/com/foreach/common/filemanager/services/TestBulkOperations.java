@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.4.0
+ */
+class TestBulkOperations
+{
+	private final List<String> progress = Collections.synchronizedList( new ArrayList<>() );
+
+	private final BulkOperationOptions.ProgressListener progressListener = ( processed, failed, total ) -> progress.add(
+			processed + "/" + failed + "/" + total );
+
+	@Test
+	void defaultOptions() {
+		BulkOperationOptions options = BulkOperationOptions.defaults();
+		assertThat( options.getParallelism() ).isEqualTo( BulkOperationOptions.DEFAULT_PARALLELISM );
+		assertThat( options.getProgressListener() ).isNull();
+	}
+
+	@Test
+	void failuresAreRegisteredPerDescriptor() {
+		FileDescriptor ok = FileDescriptor.of( "repo:ok" );
+		FileDescriptor notOk = FileDescriptor.of( "repo:not-ok" );
+		FileDescriptor exception = FileDescriptor.of( "repo:exception" );
+
+		BulkOperationResult result = BulkOperations.execute(
+				Arrays.asList( ok, notOk, exception, ok ),
+				BulkOperationOptions.builder().parallelism( 1 ).progressListener( progressListener ).build(),
+				descriptor -> {
+					if ( descriptor == exception ) {
+						throw new IOException( "failed" );
+					}
+					return descriptor == ok;
+				}
+		);
+
+		assertThat( result.getTotal() ).isEqualTo( 3 );
+		assertThat( result.getProcessed() ).isEqualTo( 3 );
+		assertThat( result.isSuccessful() ).isFalse();
+		assertThat( result.getSucceeded() ).containsExactly( ok );
+		assertThat( result.getFailures() ).containsOnlyKeys( notOk, exception );
+		assertThat( result.getFailures().get( exception ) ).isInstanceOf( IOException.class );
+		assertThat( progress ).containsExactly( "1/0/3", "2/1/3", "3/2/3" );
+	}
+
+	@Test
+	void operationsAreExecutedWithLimitedParallelism() {
+		List<FileDescriptor> descriptors = descriptors( "repo", 20 );
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		Set<String> threads = Collections.synchronizedSet( new HashSet<>() );
+
+		BulkOperationResult result = BulkOperations.execute(
+				descriptors, BulkOperationOptions.builder().parallelism( 3 ).progressListener( progressListener ).build(),
+				descriptor -> {
+					maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+					threads.add( Thread.currentThread().getName() );
+					Thread.sleep( 10 );
+					running.decrementAndGet();
+					return true;
+				}
+		);
+
+		assertThat( result.isSuccessful() ).isTrue();
+		assertThat( result.getSucceeded() ).containsExactlyInAnyOrderElementsOf( descriptors );
+		assertThat( maxRunning.get() ).isBetween( 2, 3 );
+		assertThat( threads ).allMatch( name -> name.startsWith( "bulk-operation-" ) );
+		assertThat( progress ).hasSize( 20 ).contains( "20/0/20" );
+	}
+
+	@Test
+	void descriptorsAreProcessedInBatches() {
+		List<Integer> batchSizes = Collections.synchronizedList( new ArrayList<>() );
+
+		BulkOperationResult result = BulkOperations.execute(
+				descriptors( "repo", 7 ), 3, BulkOperationOptions.builder().parallelism( 1 ).build(),
+				( batch, r ) -> {
+					batchSizes.add( batch.size() );
+					if ( batchSizes.size() == 2 ) {
+						r.succeeded( batch.get( 0 ) );
+						throw new IllegalStateException( "batch failed" );
+					}
+					batch.forEach( r::succeeded );
+				}
+		);
+
+		assertThat( batchSizes ).containsExactly( 3, 3, 1 );
+		assertThat( result.getSucceeded() ).hasSize( 5 );
+		assertThat( result.getFailures() ).hasSize( 2 ).allSatisfy( ( descriptor, e ) -> assertThat( e ).hasMessage( "batch failed" ) );
+	}
+
+	@Test
+	void progressIsReportedForAllGroups() {
+		List<FileDescriptor> descriptors = new ArrayList<>( descriptors( "one", 2 ) );
+		descriptors.addAll( descriptors( "two", 3 ) );
+		Map<String, Integer> groups = new LinkedHashMap<>();
+
+		BulkOperationResult result = BulkOperations.executePerGroup(
+				descriptors, BulkOperationOptions.builder().parallelism( 1 ).progressListener( progressListener ).build(),
+				FileDescriptor::getRepositoryId,
+				( group, groupDescriptors, options ) -> {
+					groups.put( group, groupDescriptors.size() );
+					return BulkOperations.execute( groupDescriptors, options, descriptor -> true );
+				}
+		);
+
+		assertThat( groups ).containsEntry( "one", 2 ).containsEntry( "two", 3 );
+		assertThat( result.getTotal() ).isEqualTo( 5 );
+		assertThat( result.getSucceeded() ).containsExactlyInAnyOrderElementsOf( descriptors );
+		assertThat( progress ).containsExactly( "1/0/5", "2/0/5", "3/0/5", "4/0/5", "5/0/5" );
+	}
+
+	private List<FileDescriptor> descriptors( String repositoryId, int count ) {
+		return IntStream.range( 0, count )
+		                .mapToObj( i -> FileDescriptor.of( repositoryId, "file-" + i ) )
+		                .collect( Collectors.toList() );
+	}
+}
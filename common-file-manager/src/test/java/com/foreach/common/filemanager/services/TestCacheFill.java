@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import com.foreach.common.filemanager.business.FileResource;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.*;
+
+/**
+ * @since 1.4.0
+ */
+class TestCacheFill
+{
+	private static final FileDescriptor CACHE_DESCRIPTOR = FileDescriptor.of( "cache:folder:file.txt" );
+
+	@TempDir
+	File tempDir;
+
+	private File cacheFile;
+	private PipedOutputStream targetData;
+	private FileResource target;
+
+	@BeforeEach
+	@SneakyThrows
+	void setUp() {
+		cacheFile = new File( tempDir, "folder/file.txt" );
+		targetData = new PipedOutputStream();
+		PipedInputStream targetInputStream = new PipedInputStream( targetData );
+
+		target = mock( FileResource.class );
+		when( target.getInputStream() ).thenReturn( targetInputStream );
+	}
+
+	@AfterEach
+	@SneakyThrows
+	void closeTarget() {
+		targetData.close();
+	}
+
+	@Test
+	@SneakyThrows
+	void readersStreamDataWhileFillIsInProgress() {
+		AtomicInteger completed = new AtomicInteger();
+		SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+
+		try (InputStream first = CacheFill.openInputStream( CACHE_DESCRIPTOR, cacheFile, target, taskExecutor, completed::incrementAndGet )) {
+			try (InputStream second = CacheFill.openInputStream( CACHE_DESCRIPTOR, cacheFile, target, taskExecutor, completed::incrementAndGet )) {
+				targetData.write( "hello ".getBytes( StandardCharsets.UTF_8 ) );
+				targetData.flush();
+
+				assertThat( readFully( first, 6 ) ).isEqualTo( "hello " );
+				assertThat( readFully( second, 6 ) ).isEqualTo( "hello " );
+				assertThat( cacheFile ).doesNotExist();
+
+				targetData.write( "world".getBytes( StandardCharsets.UTF_8 ) );
+				targetData.close();
+
+				assertThat( IOUtils.toString( first, StandardCharsets.UTF_8 ) ).isEqualTo( "world" );
+				assertThat( IOUtils.toString( second, StandardCharsets.UTF_8 ) ).isEqualTo( "world" );
+			}
+		}
+
+		assertThat( cacheFile ).exists().hasContent( "hello world" );
+		assertThat( completed.get() ).isEqualTo( 1 );
+		assertThat( tempDir.toPath().resolve( "folder" ).toFile().list() ).containsExactly( "file.txt" );
+		verify( target, times( 1 ) ).getInputStream();
+	}
+
+	@Test
+	@SneakyThrows
+	void readersJoiningAFillThatIsBeingStartedCanAlwaysOpenIt() {
+		FileResource otherTarget = mock( FileResource.class );
+		when( otherTarget.getInputStream() ).thenAnswer( invocation -> new ByteArrayInputStream( "hello world".getBytes( StandardCharsets.UTF_8 ) ) );
+
+		int readers = 8;
+		ExecutorService executorService = Executors.newFixedThreadPool( readers );
+		SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+
+		try {
+			for ( int i = 0; i < 200; i++ ) {
+				// a new folder every time, creating it widens the window between publishing and starting the fill
+				FileDescriptor descriptor = FileDescriptor.of( "cache:folder-" + i + ":file.txt" );
+				File file = new File( tempDir, "folder-" + i + "/file.txt" );
+				CyclicBarrier barrier = new CyclicBarrier( readers );
+
+				List<Future<String>> results = new ArrayList<>();
+				for ( int r = 0; r < readers; r++ ) {
+					results.add( executorService.submit( () -> {
+						barrier.await();
+						try (InputStream inputStream = CacheFill.openInputStream( descriptor, file, otherTarget, taskExecutor, null )) {
+							return IOUtils.toString( inputStream, StandardCharsets.UTF_8 );
+						}
+					} ) );
+				}
+
+				for ( Future<String> result : results ) {
+					assertThat( result.get( 10, TimeUnit.SECONDS ) ).isEqualTo( "hello world" );
+				}
+			}
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	@SneakyThrows
+	void synchronousFillCompletesBeforeReading() {
+		targetData.write( "hello world".getBytes( StandardCharsets.UTF_8 ) );
+		targetData.close();
+
+		try (InputStream inputStream = CacheFill.openInputStream( CACHE_DESCRIPTOR, cacheFile, target, new SyncTaskExecutor(), null )) {
+			assertThat( cacheFile ).exists();
+			assertThat( IOUtils.toString( inputStream, StandardCharsets.UTF_8 ) ).isEqualTo( "hello world" );
+		}
+	}
+
+	@Test
+	@SneakyThrows
+	void failedFillIsReportedToReadersAndDoesNotLeaveCacheFile() {
+		when( target.getInputStream() ).thenThrow( new FileNotFoundException( "target missing" ) );
+
+		assertThatExceptionOfType( IOException.class )
+				.isThrownBy( () -> CacheFill.openInputStream( CACHE_DESCRIPTOR, cacheFile, target, new SyncTaskExecutor(), null ) );
+
+		assertThat( cacheFile ).doesNotExist();
+		assertThat( tempDir.toPath().resolve( "folder" ).toFile().list() ).isEmpty();
+	}
+
+	private String readFully( InputStream inputStream, int length ) throws IOException {
+		byte[] data = new byte[length];
+		IOUtils.readFully( inputStream, data );
+		return new String( data, StandardCharsets.UTF_8 );
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.4.0
+ */
+class TestCacheIndex
+{
+	private static final FileDescriptor ONE = FileDescriptor.of( "repo:folder:one.txt" );
+	private static final FileDescriptor TWO = FileDescriptor.of( "repo:folder:two.txt" );
+	private static final FileDescriptor THREE = FileDescriptor.of( "repo:three.txt" );
+
+	@TempDir
+	File tempDir;
+
+	private File indexFile;
+
+	@BeforeEach
+	void setUp() {
+		indexFile = new File( tempDir, "cache/index.dat" );
+	}
+
+	@Test
+	void emptyIfIndexFileDoesNotExist() {
+		CacheIndex index = new CacheIndex( indexFile );
+		assertThat( index.entries() ).isEmpty();
+		assertThat( indexFile ).doesNotExist();
+	}
+
+	@Test
+	void entriesAreRestoredOrderedByLastAccessTime() {
+		CacheIndex index = new CacheIndex( indexFile );
+		index.put( ONE, 10, 300 );
+		index.put( TWO, 20, 100 );
+		index.put( THREE, 30, 200 );
+		index.put( ONE, 15, 50 );
+		index.remove( THREE );
+		index.close();
+
+		assertThat( new CacheIndex( indexFile ).entries() )
+				.containsExactly( new CacheIndex.Entry( ONE, 15, 50 ), new CacheIndex.Entry( TWO, 20, 100 ) );
+	}
+
+	@Test
+	@SneakyThrows
+	void truncatedRecordIsIgnoredAndIndexIsRewritten() {
+		CacheIndex index = new CacheIndex( indexFile );
+		index.put( ONE, 10, 100 );
+		index.put( TWO, 20, 200 );
+		index.close();
+
+		try (RandomAccessFile file = new RandomAccessFile( indexFile, "rw" )) {
+			file.setLength( file.length() - 3 );
+		}
+
+		index = new CacheIndex( indexFile );
+		assertThat( index.entries() ).containsExactly( new CacheIndex.Entry( ONE, 10, 100 ) );
+		index.put( THREE, 30, 300 );
+		index.close();
+
+		assertThat( new CacheIndex( indexFile ).entries() )
+				.containsExactly( new CacheIndex.Entry( ONE, 10, 100 ), new CacheIndex.Entry( THREE, 30, 300 ) );
+	}
+
+	@Test
+	void logIsCompactedWhenItContainsMostlyStaleRecords() {
+		CacheIndex index = new CacheIndex( indexFile );
+		for ( int i = 0; i < 5000; i++ ) {
+			index.put( ONE, i, i );
+		}
+		index.close();
+
+		// without compaction the 5000 records would take up more than 180kb
+		assertThat( indexFile.length() ).isLessThan( 100 * 1024 );
+		assertThat( new CacheIndex( indexFile ).entries() ).containsExactly( new CacheIndex.Entry( ONE, 4999, 4999 ) );
+	}
+}
@@ -229,6 +229,23 @@ class TestCachedFileResource
 		verifyNoMoreInteractions( target );
 	}
 
+	@Test
+	@SneakyThrows
+	void fillCacheIsOnlyReportedIfFilledByThisCall() {
+		when( cache.getInputStream() ).thenReturn( mock( InputStream.class ) );
+
+		assertThat( resource.fillCache() ).isTrue();
+		verify( target ).copyTo( cache );
+
+		// filled by another thread in the meantime
+		when( cache.exists() ).thenReturn( false, true );
+		assertThat( resource.fillCache() ).isFalse();
+
+		when( cache.exists() ).thenReturn( true );
+		assertThat( resource.fillCache() ).isFalse();
+		verify( target, times( 1 ) ).copyTo( cache );
+	}
+
 	@Test
 	@SneakyThrows
 	void outputIsWrittenToCacheAndTarget() {
@@ -265,6 +282,57 @@ class TestCachedFileResource
 		assertThat( resource.getCreationTime() ).isEqualTo( 123L );
 	}
 
+	@Test
+	@SneakyThrows
+	void targetMetadataIsMemoizedForTimeToLive() {
+		when( cachingFileRepository.getMetadataTimeToLive() ).thenReturn( 60000L );
+		when( target.exists() ).thenReturn( true );
+		when( target.contentLength() ).thenReturn( 123L );
+		when( target.lastModified() ).thenReturn( 456L );
+
+		for ( int i = 0; i < 3; i++ ) {
+			assertThat( resource.exists() ).isTrue();
+			assertThat( resource.contentLength() ).isEqualTo( 123L );
+			assertThat( resource.lastModified() ).isEqualTo( 456L );
+		}
+
+		verify( target ).exists();
+		verify( target ).contentLength();
+		verify( target ).lastModified();
+
+		resource.resetMetadata();
+		assertThat( resource.lastModified() ).isEqualTo( 456L );
+		verify( target, times( 2 ) ).lastModified();
+	}
+
+	@Test
+	@SneakyThrows
+	void targetMetadataIsResetAfterWriting() {
+		when( cachingFileRepository.getMetadataTimeToLive() ).thenReturn( 60000L );
+		when( target.lastModified() ).thenReturn( 456L );
+		when( target.getOutputStream() ).thenReturn( mock( OutputStream.class ) );
+		when( cache.getOutputStream() ).thenReturn( mock( OutputStream.class ) );
+
+		assertThat( resource.lastModified() ).isEqualTo( 456L );
+		try (OutputStream ignore = resource.getOutputStream()) {
+			ignore.write( 123 );
+		}
+		assertThat( resource.lastModified() ).isEqualTo( 456L );
+
+		verify( target, times( 2 ) ).lastModified();
+	}
+
+	@Test
+	@SneakyThrows
+	void targetMetadataIsNotMemoizedByDefault() {
+		when( target.lastModified() ).thenReturn( 456L );
+
+		resource.lastModified();
+		resource.lastModified();
+
+		verify( target, times( 2 ) ).lastModified();
+	}
+
 	@Test
 	@SneakyThrows
 	void lastAccessTimeUpdated() {
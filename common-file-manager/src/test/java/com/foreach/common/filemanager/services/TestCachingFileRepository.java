@@ -18,12 +18,20 @@ package com.foreach.common.filemanager.services;
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
 import com.foreach.common.filemanager.services.*;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.WritableResource;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -213,6 +221,167 @@ class TestCachingFileRepository
 		assertThat( repository.getFileResource( fd ) ).isNotSameAs( fr );
 	}
 
+	@Test
+	@SneakyThrows
+	void leastRecentlyUsedCacheIsEvictedWhenMaxCacheSizeIsExceeded() {
+		repository = CachingFileRepository.builder()
+		                                  .targetFileRepository( targetRepository )
+		                                  .cacheRepositoryId( "cache" )
+		                                  .cacheFileResourceResolver( cacheResolver )
+		                                  .maxCacheSize( 100 )
+		                                  .build();
+		repository.setFileManager( fileManager );
+
+		when( fileManager.getRepository( "cache" ) ).thenReturn( cacheRepository );
+
+		FileDescriptor one = FileDescriptor.of( "1:2:3" );
+		FileResource cacheOne = mock( FileResource.class );
+		when( targetRepository.getFileResource( one ) ).thenReturn( mock( FileResource.class ) );
+		when( cacheResolver.apply( one, cacheRepository ) ).thenReturn( cacheOne );
+		when( cacheOne.exists() ).thenReturn( true );
+		when( cacheOne.contentLength() ).thenReturn( 60L );
+
+		FileDescriptor two = FileDescriptor.of( "1:2:4" );
+		FileResource cacheTwo = mock( FileResource.class );
+		FileResource targetTwo = mock( FileResource.class );
+		when( targetTwo.getDescriptor() ).thenReturn( two );
+		when( targetRepository.getFileResource( two ) ).thenReturn( targetTwo );
+		when( cacheResolver.apply( two, cacheRepository ) ).thenReturn( cacheTwo );
+		when( cacheTwo.exists() ).thenReturn( false );
+
+		CachedFileResource first = repository.getFileResource( one );
+		CachedFileResource second = repository.getFileResource( two );
+		verify( cacheOne, never() ).delete();
+
+		// second cache is filled
+		when( cacheTwo.exists() ).thenReturn( false, false, true );
+		when( cacheTwo.contentLength() ).thenReturn( 50L );
+		second.getInputStream();
+
+		verify( cacheOne ).delete();
+		verify( cacheTwo, never() ).delete();
+		assertThat( repository.getFileResource( one ) ).isNotSameAs( first );
+	}
+
+	@Test
+	@SneakyThrows
+	void cacheIndexTracksCacheResourcesAgainAfterRestart( @TempDir File tempDir ) {
+		File indexFile = new File( tempDir, "index.dat" );
+		CachingFileRepository.CachingFileRepositoryBuilder builder
+				= CachingFileRepository.withTranslatedFileDescriptor()
+				                       .targetFileRepository( targetRepository )
+				                       .cacheRepositoryId( "cache" )
+				                       .cacheFileResourceResolver( cacheResolver )
+				                       .cacheIndexFile( indexFile );
+		repository = builder.build();
+		repository.setFileManager( fileManager );
+
+		when( fileManager.getRepository( "cache" ) ).thenReturn( cacheRepository );
+
+		FileDescriptor fd = FileDescriptor.of( "1:2:3" );
+		FileResource cacheFileResource = mock( FileResource.class );
+		FileResource targetFileResource = mock( FileResource.class );
+		when( targetFileResource.getDescriptor() ).thenReturn( fd );
+		when( targetRepository.getFileResource( fd ) ).thenReturn( targetFileResource );
+		when( cacheResolver.apply( fd, cacheRepository ) ).thenReturn( cacheFileResource );
+		when( cacheFileResource.exists() ).thenReturn( true );
+		when( cacheFileResource.contentLength() ).thenReturn( 10L );
+
+		CachedFileResource fr = repository.getFileResource( fd );
+		fr.restoreLastAccessTime( System.currentTimeMillis() - 10 * 60 * 1000L );
+		repository.cacheUpdated( fr );
+		repository.shutdown();
+		verify( cacheFileResource, never() ).delete();
+
+		CachingFileRepository restarted = builder.timeBasedExpiration( 60000, 0 ).build();
+		restarted.setFileManager( fileManager );
+		assertThat( restarted.isTracked( fd ) ).isFalse();
+
+		// expiration after restart restores the index and expires the resource that has not been accessed for too long
+		restarted.expireTrackedItems();
+
+		verify( cacheFileResource ).delete();
+		assertThat( restarted.isTracked( fd ) ).isFalse();
+		assertThat( new CacheIndex( indexFile ).entries() ).isEmpty();
+	}
+
+	@Test
+	@SneakyThrows
+	void prefetchFillsCachesWithLimitedConcurrency() {
+		when( fileManager.getRepository( "cache" ) ).thenReturn( cacheRepository );
+
+		FileResource targetFileResource = mock( FileResource.class );
+		when( targetRepository.getFileResource( any() ) ).thenReturn( targetFileResource );
+		when( cacheResolver.apply( any(), eq( cacheRepository ) ) ).thenAnswer( invocation -> mock( FileResource.class ) );
+
+		AtomicInteger downloading = new AtomicInteger();
+		AtomicInteger maxDownloading = new AtomicInteger();
+		doAnswer( invocation -> {
+			maxDownloading.accumulateAndGet( downloading.incrementAndGet(), Math::max );
+			Thread.sleep( 50 );
+			downloading.decrementAndGet();
+			return null;
+		} ).when( targetFileResource ).copyTo( any( WritableResource.class ) );
+
+		List<FileDescriptor> descriptors = Arrays.asList(
+				FileDescriptor.of( "1:2:3" ), FileDescriptor.of( "1:2:4" ), FileDescriptor.of( "1:2:5" ), FileDescriptor.of( "1:2:5" )
+		);
+
+		assertThat( repository.prefetch( descriptors, 2 ).get( 10, TimeUnit.SECONDS ) ).isEqualTo( 3 );
+		verify( targetFileResource, times( 3 ) ).copyTo( any( WritableResource.class ) );
+		assertThat( maxDownloading.get() ).isBetween( 1, 2 );
+		assertThat( repository.getFileResource( FileDescriptor.of( "1:2:4" ) ).getReadCount() ).isZero();
+	}
+
+	@Test
+	@SneakyThrows
+	void mostReadResourcesAreWrittenOnShutdownAndCanBePrefetched( @TempDir File tempDir ) {
+		File prefetchListFile = new File( tempDir, "prefetch.txt" );
+		repository = CachingFileRepository.builder()
+		                                  .targetFileRepository( targetRepository )
+		                                  .cacheRepositoryId( "cache" )
+		                                  .cacheFileResourceResolver( cacheResolver )
+		                                  .expireOnShutdown( false )
+		                                  .prefetchListFile( prefetchListFile )
+		                                  .build();
+		repository.setFileManager( fileManager );
+
+		when( fileManager.getRepository( "cache" ) ).thenReturn( cacheRepository );
+
+		FileDescriptor one = FileDescriptor.of( "1:2:3" );
+		FileDescriptor two = FileDescriptor.of( "1:2:4" );
+		FileDescriptor unread = FileDescriptor.of( "1:2:5" );
+		FileResource cache = mock( FileResource.class );
+		when( targetRepository.getFileResource( any() ) ).thenAnswer( invocation -> {
+			FileResource target = mock( FileResource.class );
+			lenient().when( target.getDescriptor() ).thenReturn( invocation.getArgument( 0 ) );
+			return target;
+		} );
+		when( cacheResolver.apply( any(), eq( cacheRepository ) ) ).thenReturn( cache );
+		when( cache.exists() ).thenReturn( true );
+
+		repository.getFileResource( one ).getInputStream();
+		repository.getFileResource( two ).getInputStream();
+		repository.getFileResource( two ).getInputStream();
+		repository.getFileResource( unread );
+		repository.shutdown();
+
+		assertThat( prefetchListFile ).hasContent( "1:2:4\n1:2:3" );
+
+		CachingFileRepository restarted = CachingFileRepository.builder()
+		                                                       .targetFileRepository( targetRepository )
+		                                                       .cacheRepositoryId( "cache" )
+		                                                       .cacheFileResourceResolver( cacheResolver )
+		                                                       .prefetchListFile( prefetchListFile )
+		                                                       .build();
+		restarted.setFileManager( fileManager );
+
+		when( cache.exists() ).thenReturn( false );
+		assertThat( restarted.prefetchMostRead( 4 ).get( 10, TimeUnit.SECONDS ) ).isEqualTo( 2 );
+		verify( targetRepository, times( 2 ) ).getFileResource( one );
+		verify( targetRepository, times( 2 ) ).getFileResource( two );
+	}
+
 	@Test
 	void removeCacheOnShutdown() {
 		when( fileManager.getRepository( "cache" ) ).thenReturn( cacheRepository );
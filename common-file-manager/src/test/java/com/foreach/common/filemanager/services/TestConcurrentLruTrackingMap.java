@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @since 1.4.0
+ */
+class TestConcurrentLruTrackingMap
+{
+	private final List<String> evicted = Collections.synchronizedList( new ArrayList<>() );
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( k ) );
+
+		map.computeIfAbsent( "one", String::toUpperCase );
+		map.computeIfAbsent( "two", String::toUpperCase );
+		assertThat( map.get( "one" ) ).isEqualTo( "ONE" );
+
+		map.computeIfAbsent( "three", String::toUpperCase );
+
+		assertThat( evicted ).containsExactly( "two" );
+		assertThat( map.keys() ).containsExactlyInAnyOrder( "one", "three" );
+		assertThat( map.get( "two" ) ).isNull();
+	}
+
+	@Test
+	void existingValueIsReturnedWithoutCallingFactory() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( k ) );
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThat( map.computeIfAbsent( "one", k -> "value-" + calls.incrementAndGet() ) ).isEqualTo( "value-1" );
+		assertThat( map.computeIfAbsent( "one", k -> "value-" + calls.incrementAndGet() ) ).isEqualTo( "value-1" );
+		assertThat( calls.get() ).isEqualTo( 1 );
+	}
+
+	@Test
+	void nullValueIsNotStored() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( k ) );
+
+		assertThat( map.computeIfAbsent( "one", k -> null ) ).isNull();
+		assertThat( map.size() ).isEqualTo( 0 );
+	}
+
+	@Test
+	void nullKeyIsNotTracked() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( k ) );
+
+		assertThat( map.computeIfAbsent( null, k -> "value" ) ).isEqualTo( "value" );
+		assertThat( map.size() ).isEqualTo( 0 );
+		assertThat( map.get( null ) ).isNull();
+		assertThat( map.containsKey( null ) ).isFalse();
+		assertThat( map.remove( null ) ).isNull();
+		map.updateWeight( null, "value" );
+	}
+
+	@Test
+	void removedEntriesAreNotEvicted() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 1, Runnable::run, ( k, v ) -> evicted.add( k ) );
+
+		map.computeIfAbsent( "one", String::toUpperCase );
+		assertThat( map.remove( "one" ) ).isEqualTo( "ONE" );
+		map.computeIfAbsent( "two", String::toUpperCase );
+		map.clear();
+
+		assertThat( evicted ).isEmpty();
+		assertThat( map.size() ).isEqualTo( 0 );
+	}
+
+	@Test
+	void putReplacesValueWithoutReportingEviction() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( v ) );
+
+		assertThat( map.put( "one", "ONE" ) ).isNull();
+		assertThat( map.put( "one", "UNO" ) ).isEqualTo( "ONE" );
+		assertThat( map.size() ).isEqualTo( 1 );
+		assertThat( evicted ).isEmpty();
+
+		map.put( "two", "TWO" );
+		map.put( "three", "THREE" );
+
+		assertThat( evicted ).containsExactly( "UNO" );
+		assertThat( map.keys() ).containsExactlyInAnyOrder( "two", "three" );
+		assertThat( map.put( null, "value" ) ).isNull();
+		assertThat( map.size() ).isEqualTo( 2 );
+	}
+
+	@Test
+	void removeOnlyIfMappedToSameValue() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 2, Runnable::run, ( k, v ) -> evicted.add( k ) );
+
+		String one = map.computeIfAbsent( "one", String::toUpperCase );
+		assertThat( map.remove( "one", new String( one ) ) ).isFalse();
+		assertThat( map.get( "one" ) ).isSameAs( one );
+
+		assertThat( map.remove( "one", one ) ).isTrue();
+		assertThat( map.remove( "one", one ) ).isFalse();
+		assertThat( map.remove( null, one ) ).isFalse();
+		assertThat( map.size() ).isEqualTo( 0 );
+		assertThat( evicted ).isEmpty();
+	}
+
+	@Test
+	void zeroSizeEvictsImmediately() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 0, Runnable::run, ( k, v ) -> evicted.add( v ) );
+
+		assertThat( map.computeIfAbsent( "one", String::toUpperCase ) ).isEqualTo( "ONE" );
+		assertThat( evicted ).containsExactly( "ONE" );
+		assertThat( map.size() ).isEqualTo( 0 );
+	}
+
+	@Test
+	void entriesAreEvictedWhenMaximumWeightIsExceeded() {
+		ConcurrentLruTrackingMap<String, StringBuilder> map = new ConcurrentLruTrackingMap<>(
+				10, 10, StringBuilder::length, Runnable::run, ( k, v ) -> evicted.add( k )
+		);
+
+		map.computeIfAbsent( "one", k -> new StringBuilder( "1234" ) );
+		map.computeIfAbsent( "two", k -> new StringBuilder( "1234" ) );
+		assertThat( map.weightedSize() ).isEqualTo( 8 );
+		assertThat( evicted ).isEmpty();
+
+		map.computeIfAbsent( "three", k -> new StringBuilder( "1234" ) );
+		assertThat( evicted ).containsExactly( "one" );
+		assertThat( map.weightedSize() ).isEqualTo( 8 );
+
+		StringBuilder three = map.get( "three" );
+		three.append( "567" );
+		map.updateWeight( "three", three );
+
+		assertThat( evicted ).containsExactly( "one", "two" );
+		assertThat( map.weightedSize() ).isEqualTo( 7 );
+	}
+
+	@Test
+	void evictByWeight() {
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>(
+				10, 100, String::length, Runnable::run, ( k, v ) -> evicted.add( k )
+		);
+
+		map.computeIfAbsent( "one", k -> "123" );
+		map.computeIfAbsent( "two", k -> "123" );
+		map.computeIfAbsent( "three", k -> "123" );
+
+		map.evict( 4 );
+		assertThat( evicted ).containsExactly( "one", "two" );
+		assertThat( map.keys() ).containsExactly( "three" );
+		assertThat( map.weightedSize() ).isEqualTo( 3 );
+	}
+
+	@Test
+	void evictionListenerIsCalledOnExecutor() {
+		List<Runnable> tasks = new ArrayList<>();
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 1, tasks::add, ( k, v ) -> evicted.add( k ) );
+
+		map.computeIfAbsent( "one", String::toUpperCase );
+		map.computeIfAbsent( "two", String::toUpperCase );
+
+		assertThat( evicted ).isEmpty();
+		assertThat( tasks ).hasSize( 1 );
+
+		tasks.forEach( Runnable::run );
+		assertThat( evicted ).containsExactly( "one" );
+	}
+
+	@Test
+	void evictionListenerIsNotCalledWhileHoldingLock() throws Exception {
+		CountDownLatch inListener = new CountDownLatch( 1 );
+		CountDownLatch release = new CountDownLatch( 1 );
+
+		ConcurrentLruTrackingMap<String, String> map = new ConcurrentLruTrackingMap<>( 1, Runnable::run, ( k, v ) -> {
+			if ( "one".equals( k ) ) {
+				inListener.countDown();
+				try {
+					release.await();
+				}
+				catch ( InterruptedException ie ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} );
+
+		map.computeIfAbsent( "one", String::toUpperCase );
+
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> evicting = executorService.submit( () -> map.computeIfAbsent( "two", String::toUpperCase ) );
+			assertThat( inListener.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+			// other writes can proceed while the eviction listener is running
+			assertThat( map.computeIfAbsent( "three", String::toUpperCase ) ).isEqualTo( "THREE" );
+			assertThat( map.get( "three" ) ).isEqualTo( "THREE" );
+
+			release.countDown();
+			evicting.get( 5, TimeUnit.SECONDS );
+		}
+		finally {
+			release.countDown();
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	void sizeIsRespectedUnderConcurrentAccess() throws Exception {
+		int maximumSize = 50;
+		ConcurrentLruTrackingMap<Integer, Integer> map = new ConcurrentLruTrackingMap<>( maximumSize, Runnable::run, ( k, v ) -> evicted.add( "" + k ) );
+
+		ExecutorService executorService = Executors.newFixedThreadPool( 8 );
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for ( int t = 0; t < 8; t++ ) {
+				int seed = t;
+				futures.add( executorService.submit( () -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for ( int i = 0; i < 20000; i++ ) {
+						int key = random.nextInt( 200 );
+						if ( i % 10 == seed ) {
+							map.remove( key );
+						}
+						else {
+							map.computeIfAbsent( key, k -> k );
+						}
+					}
+				} ) );
+			}
+			for ( Future<?> future : futures ) {
+				future.get( 30, TimeUnit.SECONDS );
+			}
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+
+		assertThat( map.size() ).isLessThanOrEqualTo( maximumSize );
+		map.computeIfAbsent( -1, k -> k );
+		assertThat( map.size() ).isLessThanOrEqualTo( maximumSize );
+		assertThat( map.values() ).allMatch( v -> map.get( v ) != null );
+	}
+}
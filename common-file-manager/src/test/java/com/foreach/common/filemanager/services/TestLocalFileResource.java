@@ -37,6 +37,9 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -273,6 +276,34 @@ class TestLocalFileResource
 		assertThat( other.exists() ).isFalse();
 	}
 
+	@Test
+	@SneakyThrows
+	void copyFromLocalFileResourceDoesNotStreamData() {
+		File otherTempFile = File.createTempFile( UUID.randomUUID().toString(), ".txt" );
+		FileUtils.writeStringToFile( otherTempFile, "hello file", "UTF-8" );
+		LocalFileResource other = spy( new LocalFileResource( FileDescriptor.of( "my-repo", "other" ), otherTempFile.toPath() ) );
+
+		resource.copyFrom( other );
+		assertThat( resourceData() ).isEqualTo( "hello file" );
+		assertThat( other.exists() ).isTrue();
+
+		FileUtils.writeStringToFile( otherTempFile, "moved file", "UTF-8" );
+		resource.copyFrom( other, true );
+		assertThat( resourceData() ).isEqualTo( "moved file" );
+		assertThat( other.exists() ).isFalse();
+
+		verify( other, never() ).getInputStream();
+	}
+
+	@Test
+	@SneakyThrows
+	void copyFromSameFileResourceDoesNothing() {
+		resource.copyFrom( RES_TEXTFILE );
+		resource.copyFrom( new LocalFileResource( FileDescriptor.of( "my-repo", "other" ), tempFile.toPath() ), true );
+
+		assertThat( resourceData() ).isEqualTo( "some dummy text" );
+	}
+
 	@Test
 	@SneakyThrows
 	void noFileCreatedIfExceptionOnInputStream() {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.foreach.common.filemanager.services;
+
+import com.foreach.common.filemanager.business.FileDescriptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.TaskExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @since 1.4.0
+ */
+class TestSegmentedDownload
+{
+	private static final long SHORT_SEGMENT_LENGTH = 1000;
+
+	@TempDir
+	File tempDir;
+
+	private ExecutorService executorService;
+	private TaskExecutor taskExecutor;
+	private byte[] data;
+	private LocalFileResource resource;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		executorService = Executors.newFixedThreadPool( SegmentedDownload.MAX_SEGMENTS_IN_FLIGHT );
+		taskExecutor = executorService::execute;
+
+		data = new byte[(int) ( 2 * SegmentedDownload.SEGMENT_SIZE + SHORT_SEGMENT_LENGTH )];
+		new Random( 42 ).nextBytes( data );
+
+		File source = new File( tempDir, "source.bin" );
+		Files.write( source.toPath(), data );
+		resource = new LocalFileResource( FileDescriptor.of( "local:source.bin" ), source.toPath() );
+	}
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void segmentsAreReadAtTheirBoundariesWithAShortFinalSegment() throws IOException {
+		List<long[]> segments = Collections.synchronizedList( new ArrayList<>() );
+		File target = new File( tempDir, "target/copy.bin" );
+
+		SegmentedDownload.copyTo( resource, ( offset, length ) -> {
+			segments.add( new long[] { offset, length } );
+			return resource.getInputStream( offset, length );
+		}, data.length, target, taskExecutor );
+
+		assertThat( Files.readAllBytes( target.toPath() ) ).isEqualTo( data );
+		assertThat( segments )
+				.extracting( segment -> segment[0] + ":" + segment[1] )
+				.containsExactlyInAnyOrder( "0:" + SegmentedDownload.SEGMENT_SIZE,
+				                            SegmentedDownload.SEGMENT_SIZE + ":" + SegmentedDownload.SEGMENT_SIZE,
+				                            2 * SegmentedDownload.SEGMENT_SIZE + ":" + SHORT_SEGMENT_LENGTH );
+		assertThat( target.getParentFile().list() ).containsExactly( "copy.bin" );
+	}
+
+	@Test
+	void existingFileIsReplaced() throws IOException {
+		File target = new File( tempDir, "copy.bin" );
+		Files.write( target.toPath(), new byte[] { 1, 2, 3 } );
+
+		SegmentedDownload.copyTo( resource, resource::getInputStream, data.length, target, taskExecutor );
+
+		assertThat( Files.readAllBytes( target.toPath() ) ).isEqualTo( data );
+	}
+
+	@Test
+	void partialFileIsRemovedIfASegmentFails() throws IOException {
+		File targetDir = new File( tempDir, "target" );
+		File target = new File( targetDir, "copy.bin" );
+		Files.createDirectories( targetDir.toPath() );
+		Files.write( target.toPath(), new byte[] { 1, 2, 3 } );
+
+		assertThatExceptionOfType( IOException.class )
+				.isThrownBy( () -> SegmentedDownload.copyTo( resource, ( offset, length ) -> {
+					if ( offset > 0 ) {
+						throw new IOException( "segment failed" );
+					}
+					return resource.getInputStream( offset, length );
+				}, data.length, target, taskExecutor ) )
+				.withMessage( "segment failed" );
+
+		assertThat( targetDir.list() ).containsExactly( "copy.bin" );
+		assertThat( Files.readAllBytes( target.toPath() ) ).containsExactly( 1, 2, 3 );
+	}
+
+	@Test
+	void missingDataFailsTheDownload() {
+		File target = new File( tempDir, "copy.bin" );
+
+		assertThatExceptionOfType( IOException.class )
+				.isThrownBy( () -> SegmentedDownload.copyTo( resource, resource::getInputStream, data.length + 10, target, taskExecutor ) );
+
+		assertThat( target ).doesNotExist();
+		assertThat( tempDir.list() ).containsExactly( "source.bin" );
+	}
+}
@@ -21,15 +21,21 @@ import com.foreach.common.filemanager.business.FolderDescriptor;
 import com.foreach.common.filemanager.business.FolderResource;
 import com.foreach.common.filemanager.test.utils.FtpContainer;
 import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.CachingSessionFactory;
+import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.ftp.session.DefaultFtpSessionFactory;
 import org.springframework.integration.ftp.session.FtpRemoteFileTemplate;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -179,4 +185,73 @@ public class TestSpringIntegrationFtpFileRepository extends BaseFileRepositoryTe
 		assertThat( root.findResources( "/?e/*" ) ).contains( fileInFolderInRoot );
 		assertThat( root.findResources( "/ee/*" ) ).contains( fileInFolderInRoot );
 	}
+
+	@Test
+	@SneakyThrows
+	void pooledSessionsAreReused() {
+		AtomicInteger sessionsCreated = new AtomicInteger();
+		SessionFactory<FTPFile> sessionFactory = template.getSessionFactory();
+		CachingSessionFactory<FTPFile> sessionPool = new CachingSessionFactory<>( () -> {
+			sessionsCreated.incrementAndGet();
+			return sessionFactory.getSession();
+		}, 2 );
+		FtpRemoteFileTemplate pooledTemplate = new FtpRemoteFileTemplate( sessionPool );
+		pooledTemplate.setExistsMode( FtpRemoteFileTemplate.ExistsMode.NLST );
+		pooledTemplate.setAutoCreateDirectory( true );
+
+		SpringIntegrationFtpFileRepository pooled = SpringIntegrationFtpFileRepository.builder()
+		                                                                              .repositoryId( "ftp-repo" )
+		                                                                              .remoteFileTemplate( pooledTemplate )
+		                                                                              .build();
+
+		try {
+			FileResource file = pooled.getFileResource( FileDescriptor.of( "ftp-repo:pooled/" + UUID.randomUUID() + ":myfile.txt" ) );
+			assertThat( file.exists() ).isFalse();
+
+			for ( int i = 0; i < 5; i++ ) {
+				file.copyFrom( RES_TEXTFILE );
+				assertThat( file.exists() ).isTrue();
+				assertThat( file.contentLength() ).isEqualTo( RES_TEXTFILE.contentLength() );
+				try (InputStream inputStream = file.getInputStream()) {
+					assertThat( IOUtils.toByteArray( inputStream ) ).hasSize( (int) RES_TEXTFILE.contentLength() );
+				}
+			}
+
+			assertThat( file.getFolderResource().exists() ).isTrue();
+			assertThat( file.delete() ).isTrue();
+			assertThat( file.exists() ).isFalse();
+
+			// only a single stream or operation was active at any time
+			assertThat( sessionsCreated.get() ).isEqualTo( 1 );
+		}
+		finally {
+			pooled.shutdown();
+			sessionPool.destroy();
+		}
+	}
+
+	@Test
+	@SneakyThrows
+	void deletedFolderIsCreatedAgainWhenCachingFolders() {
+		SpringIntegrationFtpFileRepository cached = SpringIntegrationFtpFileRepository.builder()
+		                                                                              .repositoryId( "ftp-repo" )
+		                                                                              .remoteFileTemplate( template )
+		                                                                              .folderCacheTimeToLive( 60000L )
+		                                                                              .build();
+		String folder = "cached/" + UUID.randomUUID();
+
+		FileResource file = cached.getFileResource( FileDescriptor.of( "ftp-repo:" + folder + ":myfile.txt" ) );
+		file.copyFrom( RES_TEXTFILE );
+		FileResource other = cached.getFileResource( FileDescriptor.of( "ftp-repo:" + folder + ":other.txt" ) );
+		other.copyFrom( RES_TEXTFILE );
+		assertThat( other.exists() ).isTrue();
+
+		FolderResource folderResource = cached.getFolderResource( FolderDescriptor.of( "ftp-repo", folder ) );
+		assertThat( folderResource.delete( true ) ).isTrue();
+		assertThat( folderResource.exists() ).isFalse();
+
+		file.copyFrom( RES_TEXTFILE );
+		assertThat( file.exists() ).isTrue();
+		assertThat( file.contentLength() ).isEqualTo( RES_TEXTFILE.contentLength() );
+	}
 }
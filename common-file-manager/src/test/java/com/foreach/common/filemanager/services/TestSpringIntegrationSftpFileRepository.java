@@ -27,12 +27,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
 import org.springframework.integration.sftp.session.SftpRemoteFileTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.time.Duration;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 public class TestSpringIntegrationSftpFileRepository extends BaseFileRepositoryTest
@@ -176,4 +178,46 @@ public class TestSpringIntegrationSftpFileRepository extends BaseFileRepositoryT
 		assertThat( root.findResources( "/?e/*" ) ).contains( fileInFolderInRoot );
 		assertThat( root.findResources( "/ee/*" ) ).contains( fileInFolderInRoot );
 	}
+
+	@Test
+	void fileResourceIsBuiltWithoutRoundTrip() {
+		SftpRemoteFileTemplate remoteFileTemplate = mock( SftpRemoteFileTemplate.class );
+		SpringIntegrationSftpFileRepository repository = SpringIntegrationSftpFileRepository.builder()
+		                                                                                    .repositoryId( "ftp-repo" )
+		                                                                                    .remoteFileTemplate( remoteFileTemplate )
+		                                                                                    .build();
+
+		assertThat( repository.getFileResource( FileDescriptor.of( "ftp-repo:aa/bb:myfile" ) ) ).isNotNull();
+		verifyNoInteractions( remoteFileTemplate );
+	}
+
+	@Test
+	@SneakyThrows
+	void cachedAttributesAreUpdatedWhenModified() {
+		SpringIntegrationSftpFileRepository cached = SpringIntegrationSftpFileRepository.builder()
+		                                                                                .repositoryId( "ftp-repo" )
+		                                                                                .remoteFileTemplate( template )
+		                                                                                .attributesCacheTimeToLive( 60000L )
+		                                                                                .build();
+
+		FolderResource folder = cached.getFolderResource( FolderDescriptor.of( "ftp-repo:cached/" + UUID.randomUUID() + "/" ) );
+		FileResource file = folder.getFileResource( "myfile.txt" );
+		assertThat( file.exists() ).isFalse();
+
+		file.copyFrom( new ByteArrayInputStream( new byte[10] ) );
+		assertThat( folder.exists() ).isTrue();
+
+		FileResource listed = (FileResource) folder.findResources( "*" ).iterator().next();
+		assertThat( listed ).isEqualTo( file );
+		assertThat( listed.contentLength() ).isEqualTo( 10 );
+
+		file.copyFrom( new ByteArrayInputStream( new byte[20] ) );
+		assertThat( folder.getFileResource( "myfile.txt" ).contentLength() ).isEqualTo( 20 );
+
+		assertThat( file.delete() ).isTrue();
+		assertThat( folder.getFileResource( "myfile.txt" ).exists() ).isFalse();
+
+		assertThat( folder.delete( true ) ).isTrue();
+		assertThat( cached.getFolderResource( folder.getDescriptor() ).exists() ).isFalse();
+	}
 }
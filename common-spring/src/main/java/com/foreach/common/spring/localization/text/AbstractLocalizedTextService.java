@@ -16,9 +16,9 @@
 package com.foreach.common.spring.localization.text;
 
 import com.foreach.common.concurrent.SynchronousTaskExecutor;
+import com.foreach.common.concurrent.locks.ConcurrentObjectLockRepository;
 import com.foreach.common.concurrent.locks.ObjectLock;
 import com.foreach.common.concurrent.locks.ObjectLockRepository;
-import com.foreach.common.concurrent.locks.ReentrantObjectLockRepository;
 import com.foreach.common.spring.localization.Language;
 import com.foreach.common.spring.localization.LanguageConfigurator;
 import org.slf4j.Logger;
@@ -56,7 +56,7 @@ public abstract class AbstractLocalizedTextService implements LocalizedTextServi
 	@SuppressWarnings("all")
 	protected final Logger LOG;
 
-	private final ObjectLockRepository<String> textSetFetchLocks = new ReentrantObjectLockRepository<String>();
+	private final ObjectLockRepository<String> textSetFetchLocks = new ConcurrentObjectLockRepository<>();
 	private final LocalizedTextDataStore localizedTextDao;
 
 	private ExecutorService executorService = new SynchronousTaskExecutor();
@@ -19,8 +19,11 @@ package com.foreach.across.modules.filemanager.business.reference;
 import com.foreach.across.core.annotations.ConditionalOnAcrossModule;
 import com.foreach.common.filemanager.business.FileDescriptor;
 import com.foreach.common.filemanager.business.FileResource;
+import com.foreach.common.filemanager.business.FileStorageException;
 import com.foreach.across.modules.filemanager.business.reference.properties.FileReferenceProperties;
 import com.foreach.across.modules.filemanager.business.reference.properties.FileReferencePropertiesService;
+import com.foreach.common.filemanager.services.BulkOperationOptions;
+import com.foreach.common.filemanager.services.BulkOperationResult;
 import com.foreach.common.filemanager.services.FileManager;
 import com.foreach.common.filemanager.services.FileRepository;
 import com.foreach.across.modules.hibernate.jpa.AcrossHibernateJpaModule;
@@ -42,6 +45,8 @@ import javax.validation.constraints.NotNull;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Central point for working with {@link FileReference}s.
@@ -120,14 +125,86 @@ public class FileReferenceService
 	/**
 	 * Changes the repositories of the physical files of a collection of references.
 	 *
+	 * If one of the files can not be copied, the files that have been copied are deleted again,
+	 * an exception is thrown and no reference is updated.
+	 *
 	 * @param fileReferences  collection of references whose descriptors should be updated
 	 * @param repositoryId    name of the target repository
 	 * @param deleteOriginals true if original files should be deleted after move
+	 * @throws FileStorageException if not all files could be copied
 	 */
 	@Transactional
 	@SuppressWarnings("unused")
 	public void changeFileRepository( @NonNull Iterable<FileReference> fileReferences, @NonNull String repositoryId, boolean deleteOriginals ) {
-		fileReferences.forEach( fr -> changeFileRepository( fr, repositoryId, deleteOriginals ) );
+		changeFileRepository( fileReferences, repositoryId, deleteOriginals, BulkOperationOptions.defaults(), true );
+	}
+
+	/**
+	 * Changes the repositories of the physical files of a collection of references. The physical files are copied
+	 * in parallel according to the {@link BulkOperationOptions}, after which the references whose file has been
+	 * copied successfully are updated. References whose file could not be copied are left unchanged.
+	 * <p/>
+	 * If {@code deleteOriginals} is {@code true}, the original files that have been copied are deleted after commit.
+	 *
+	 * @param fileReferences  collection of references whose descriptors should be updated
+	 * @param repositoryId    name of the target repository
+	 * @param deleteOriginals true if original files should be deleted after move
+	 * @param options         for copying the physical files
+	 * @return result of copying the physical files, identified by their original descriptor
+	 */
+	@Transactional
+	public BulkOperationResult changeFileRepository( @NonNull Iterable<FileReference> fileReferences,
+	                                                 @NonNull String repositoryId,
+	                                                 boolean deleteOriginals,
+	                                                 @NonNull BulkOperationOptions options ) {
+		return changeFileRepository( fileReferences, repositoryId, deleteOriginals, options, false );
+	}
+
+	private BulkOperationResult changeFileRepository( Iterable<FileReference> fileReferences,
+	                                                  String repositoryId,
+	                                                  boolean deleteOriginals,
+	                                                  BulkOperationOptions options,
+	                                                  boolean allOrNothing ) {
+		Map<FileDescriptor, FileDescriptor> targetDescriptors = new LinkedHashMap<>();
+		Map<FileDescriptor, List<FileReference>> referencesToUpdate = new LinkedHashMap<>();
+
+		for ( FileReference fileReference : fileReferences ) {
+			FileDescriptor fileDescriptor = fileReference.getFileDescriptor();
+
+			if ( fileDescriptor != null && !StringUtils.equals( repositoryId, fileDescriptor.getRepositoryId() ) ) {
+				targetDescriptors.computeIfAbsent( fileDescriptor, original -> generateTargetDescriptor( original, repositoryId ) );
+				referencesToUpdate.computeIfAbsent( fileDescriptor, original -> new ArrayList<>() ).add( fileReference );
+			}
+		}
+
+		LOG.debug( "Copying {} files to repository {}", targetDescriptors.size(), repositoryId );
+		BulkOperationResult result = fileManager.copy( targetDescriptors, options );
+
+		result.getFailures().forEach(
+				( fileDescriptor, e ) -> LOG.warn( "Unable to move file '{}' to repository {}", fileDescriptor, repositoryId, e )
+		);
+
+		List<FileDescriptor> copied = new ArrayList<>( result.getSucceeded() );
+
+		if ( allOrNothing && !result.getFailures().isEmpty() ) {
+			deleteCopiedFiles( copied, targetDescriptors, options );
+
+			FileStorageException exception = new FileStorageException(
+					"Unable to move " + result.getFailures().size() + " file(s) to repository " + repositoryId );
+			result.getFailures().values().forEach( exception::addSuppressed );
+			throw exception;
+		}
+
+		copied.forEach( fileDescriptor -> referencesToUpdate.get( fileDescriptor ).forEach( fileReference -> {
+			fileReference.setFileDescriptor( targetDescriptors.get( fileDescriptor ) );
+			fileReferenceRepository.save( fileReference );
+		} ) );
+
+		if ( deleteOriginals && !copied.isEmpty() ) {
+			transactionalDeletePhysicalFiles( copied, options );
+		}
+
+		return result;
 	}
 
 	/**
@@ -179,10 +256,32 @@ public class FileReferenceService
 		}
 	}
 
+	private void deleteCopiedFiles( List<FileDescriptor> copied,
+	                                Map<FileDescriptor, FileDescriptor> targetDescriptors,
+	                                BulkOperationOptions options ) {
+		if ( copied.isEmpty() ) {
+			return;
+		}
+
+		List<FileDescriptor> copiedTargets = copied.stream().map( targetDescriptors::get ).collect( Collectors.toList() );
+
+		try {
+			fileManager.delete( copiedTargets, options ).getFailures().forEach(
+					( fileDescriptor, e ) -> LOG.warn( "Unable to delete copied file '{}' after the move failed", fileDescriptor, e )
+			);
+		}
+		catch ( Exception e ) {
+			LOG.warn( "Unable to delete {} copied files after the move failed", copiedTargets.size(), e );
+		}
+	}
+
 	private FileResource generateTargetFileResource( FileDescriptor originalDescriptor, String targetRepositoryId ) {
+		return fileManager.getRepository( targetRepositoryId ).getFileResource( generateTargetDescriptor( originalDescriptor, targetRepositoryId ) );
+	}
+
+	private FileDescriptor generateTargetDescriptor( FileDescriptor originalDescriptor, String targetRepositoryId ) {
 		FileRepository targetRepository = fileManager.getRepository( targetRepositoryId );
-		FileDescriptor descriptor = targetRepository.generateFileDescriptor().withExtension( originalDescriptor.getExtension() );
-		return targetRepository.getFileResource( descriptor );
+		return targetRepository.generateFileDescriptor().withExtension( originalDescriptor.getExtension() );
 	}
 
 	/**
@@ -230,4 +329,22 @@ public class FileReferenceService
 			}
 		} );
 	}
+
+	private void transactionalDeletePhysicalFiles( Collection<FileDescriptor> fileDescriptors, BulkOperationOptions options ) {
+		TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+		{
+			@Override
+			public void afterCommit() {
+				try {
+					BulkOperationResult result = fileManager.delete( fileDescriptors, options );
+					result.getFailures().forEach(
+							( fileDescriptor, e ) -> LOG.warn( "Was asked to delete file {} but it was possibly not deleted.", fileDescriptor, e )
+					);
+				}
+				catch ( Exception e ) {
+					LOG.warn( "Was asked to delete {} files but an exception occurred and files were most likely not deleted.", fileDescriptors.size(), e );
+				}
+			}
+		} );
+	}
 }